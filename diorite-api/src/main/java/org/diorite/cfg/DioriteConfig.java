@@ -154,6 +154,13 @@ public interface DioriteConfig
      */
     boolean isUseNativeTransport();
 
+    /**
+     * Returns if packets sent during tick are flushed once at end of tick, instead of flushing each packet.
+     *
+     * @return true if packets are flushed once at end of tick.
+     */
+    boolean isBatchPackets();
+
     /**
      * Returns server-side viewing distance, measured in chunks in each direction of the player. (radius)
      *
@@ -175,6 +182,13 @@ public interface DioriteConfig
      */
     int getInputThreadPoolSize();
 
+    /**
+     * Returns amount of threads used to tick worlds, 0 means amount of available processors.
+     *
+     * @return amount of threads used to tick worlds.
+     */
+    int getTickThreads();
+
     /**
      * Returns name/location of file used to store administrators uuids/nicknames.
      *
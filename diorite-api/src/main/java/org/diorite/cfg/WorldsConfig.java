@@ -195,6 +195,8 @@ public interface WorldsConfig
          */
         byte getForceLoadedRadius();
 
+        int getChunkIOThreads();
+
         /**
          * Returns x coordinate of spawn location.
          *
@@ -0,0 +1,446 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.nbt;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Represent streaming nbt reader, it allows to read nbt data tag by tag without building whole tag tree. <br>
+ * Compound is read by calling {@link #nextTag()} until it returns {@link NbtTagType#END}, after each other type
+ * name of tag must be read by {@link #readName()}, and then its value must be read by one of read methods,
+ * skipped by {@link #skip(NbtTagType)} or read as normal tag by {@link #readTag(NbtTagType, String)}. <br>
+ * Example:
+ * <pre>{@code
+ * NbtTagType type;
+ * while ((type = reader.nextTag()) != NbtTagType.END)
+ * {
+ *     final String name = reader.readName();
+ *     if (name.equals("Y") && (type == NbtTagType.BYTE))
+ *     {
+ *         y = reader.readByte();
+ *     }
+ *     else
+ *     {
+ *         reader.skip(type);
+ *     }
+ * }
+ * }</pre>
+ */
+public class NbtStreamReader implements Closeable
+{
+    private final NbtInputStream inputStream;
+    private final NbtLimiter     limiter;
+    private       byte[]         nameBuffer = new byte[32];
+
+    /**
+     * Construct new nbt reader for given stream, without any limits.
+     *
+     * @param inputStream nbt stream to be used.
+     */
+    public NbtStreamReader(final NbtInputStream inputStream)
+    {
+        this(inputStream, NbtLimiter.getUnlimited());
+    }
+
+    /**
+     * Construct new nbt reader for given stream, limiter is only used for tags read by {@link #readTag(NbtTagType, String)}.
+     *
+     * @param inputStream nbt stream to be used.
+     * @param limiter     limiter to be used.
+     */
+    public NbtStreamReader(final NbtInputStream inputStream, final NbtLimiter limiter)
+    {
+        this.inputStream = inputStream;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Returns nbt stream used by this reader.
+     *
+     * @return nbt stream used by this reader.
+     */
+    public NbtInputStream getInputStream()
+    {
+        return this.inputStream;
+    }
+
+    /**
+     * Read type of next tag, {@link NbtTagType#END} means end of current compound.
+     *
+     * @return type of next tag.
+     *
+     * @throws IOException if any read operation failed or type is unknown.
+     */
+    public NbtTagType nextTag() throws IOException
+    {
+        return this.readType();
+    }
+
+    /**
+     * Read name of current tag, should be called after each {@link #nextTag()} that returned other type than {@link NbtTagType#END}.
+     *
+     * @return name of current tag.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public String readName() throws IOException
+    {
+        final int size = this.inputStream.readUnsignedShort();
+        if (size > this.nameBuffer.length)
+        {
+            this.nameBuffer = new byte[size];
+        }
+        this.inputStream.readFully(this.nameBuffer, 0, size);
+        return new String(this.nameBuffer, 0, size, NbtTag.STRING_CHARSET);
+    }
+
+    /**
+     * Read value of byte tag.
+     *
+     * @return value of tag.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public byte readByte() throws IOException
+    {
+        return this.inputStream.readByte();
+    }
+
+    /**
+     * Read value of short tag.
+     *
+     * @return value of tag.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public short readShort() throws IOException
+    {
+        return this.inputStream.readShort();
+    }
+
+    /**
+     * Read value of int tag.
+     *
+     * @return value of tag.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public int readInt() throws IOException
+    {
+        return this.inputStream.readInt();
+    }
+
+    /**
+     * Read value of long tag.
+     *
+     * @return value of tag.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public long readLong() throws IOException
+    {
+        return this.inputStream.readLong();
+    }
+
+    /**
+     * Read value of float tag.
+     *
+     * @return value of tag.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public float readFloat() throws IOException
+    {
+        return this.inputStream.readFloat();
+    }
+
+    /**
+     * Read value of double tag.
+     *
+     * @return value of tag.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public double readDouble() throws IOException
+    {
+        return this.inputStream.readDouble();
+    }
+
+    /**
+     * Read value of string tag.
+     *
+     * @return value of tag, may be null.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public String readString() throws IOException
+    {
+        final int size = this.inputStream.readShort();
+        if (size == - 1)
+        {
+            return null;
+        }
+        final byte[] data = new byte[size];
+        this.inputStream.readFully(data);
+        return new String(data, NbtTag.STRING_CHARSET);
+    }
+
+    /**
+     * Read value of byte array tag, if given buffer have the same size as array, data will be read to that buffer. <br>
+     * Otherwise new array will be allocated.
+     *
+     * @param buffer buffer to use if possible, may be null.
+     *
+     * @return value of tag, given buffer or new array.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public byte[] readByteArray(final byte[] buffer) throws IOException
+    {
+        final int size = this.inputStream.readInt();
+        final byte[] data = ((buffer != null) && (buffer.length == size)) ? buffer : new byte[size];
+        this.inputStream.readFully(data);
+        return data;
+    }
+
+    /**
+     * Read value of int array tag, if given buffer have the same size as array, data will be read to that buffer. <br>
+     * Otherwise new array will be allocated.
+     *
+     * @param buffer buffer to use if possible, may be null.
+     *
+     * @return value of tag, given buffer or new array.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public int[] readIntArray(final int[] buffer) throws IOException
+    {
+        final int size = this.inputStream.readInt();
+        final int[] data = ((buffer != null) && (buffer.length == size)) ? buffer : new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            data[i] = this.inputStream.readInt();
+        }
+        return data;
+    }
+
+    /**
+     * Read value of short array tag, if given buffer have the same size as array, data will be read to that buffer. <br>
+     * Otherwise new array will be allocated.
+     *
+     * @param buffer buffer to use if possible, may be null.
+     *
+     * @return value of tag, given buffer or new array.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public short[] readShortArray(final short[] buffer) throws IOException
+    {
+        final int size = this.inputStream.readInt();
+        final short[] data = ((buffer != null) && (buffer.length == size)) ? buffer : new short[size];
+        for (int i = 0; i < size; i++)
+        {
+            data[i] = this.inputStream.readShort();
+        }
+        return data;
+    }
+
+    /**
+     * Read header of list tag, and returns type of list elements, size of list can be read by {@link #readListSize()}.
+     *
+     * @return type of list elements.
+     *
+     * @throws IOException if any read operation failed or type is unknown.
+     */
+    public NbtTagType readListType() throws IOException
+    {
+        return this.readType();
+    }
+
+    /**
+     * Read size of list tag, should be called after {@link #readListType()}. <br>
+     * List elements don't have names and don't have own type byte.
+     *
+     * @return size of list.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public int readListSize() throws IOException
+    {
+        return this.inputStream.readInt();
+    }
+
+    /**
+     * Read value of current tag as normal nbt tag.
+     *
+     * @param type type of tag.
+     * @param name name of tag, may be null for list elements.
+     *
+     * @return read tag.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    public NbtTag readTag(final NbtTagType type, final String name) throws IOException
+    {
+        final NbtTag tag = this.inputStream.readTag(type, true, this.limiter);
+        if (name != null)
+        {
+            tag.setName(name);
+        }
+        return tag;
+    }
+
+    /**
+     * Skip value of current tag, without reading it.
+     *
+     * @param type type of tag.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    @SuppressWarnings("MagicNumber")
+    public void skip(final NbtTagType type) throws IOException
+    {
+        switch (type)
+        {
+            case END:
+                return;
+            case BYTE:
+                this.skipBytes(1);
+                return;
+            case SHORT:
+                this.skipBytes(2);
+                return;
+            case INTEGER:
+            case FLOAT:
+                this.skipBytes(4);
+                return;
+            case LONG:
+            case DOUBLE:
+                this.skipBytes(8);
+                return;
+            case BYTE_ARRAY:
+                this.skipBytes(this.inputStream.readInt());
+                return;
+            case STRING:
+                this.skipString();
+                return;
+            case LIST:
+            {
+                final NbtTagType elementType = this.readListType();
+                final int size = this.readListSize();
+                for (int i = 0; i < size; i++)
+                {
+                    this.skip(elementType);
+                }
+                return;
+            }
+            case COMPOUND:
+            {
+                NbtTagType elementType;
+                while ((elementType = this.nextTag()) != NbtTagType.END)
+                {
+                    this.skipBytes(this.inputStream.readUnsignedShort());
+                    this.skip(elementType);
+                }
+                return;
+            }
+            case INTEGER_ARRAY:
+            case FLOAT_ARRAY:
+                this.skipBytes(this.inputStream.readInt() << 2);
+                return;
+            case SHORT_ARRAY:
+                this.skipBytes(this.inputStream.readInt() << 1);
+                return;
+            case LONG_ARRAY:
+            case DOUBLE_ARRAY:
+                this.skipBytes(this.inputStream.readInt() << 3);
+                return;
+            case STRING_ARRAY:
+            {
+                final int size = this.inputStream.readInt();
+                for (int i = 0; i < size; i++)
+                {
+                    this.skipString();
+                }
+                return;
+            }
+            default:
+                throw new IOException("Can't skip unknown tag type: " + type);
+        }
+    }
+
+    private void skipString() throws IOException
+    {
+        final int size = this.inputStream.readShort();
+        if (size > 0)
+        {
+            this.skipBytes(size);
+        }
+    }
+
+    private void skipBytes(int bytes) throws IOException
+    {
+        while (bytes > 0)
+        {
+            final int skipped = this.inputStream.skipBytes(bytes);
+            if (skipped <= 0)
+            {
+                this.inputStream.readByte(); // throws EOFException if there is no more data.
+                bytes--;
+            }
+            else
+            {
+                bytes -= skipped;
+            }
+        }
+    }
+
+    private NbtTagType readType() throws IOException
+    {
+        final byte type = this.inputStream.readByte();
+        final NbtTagType tagType = NbtTagType.valueOf(type);
+        if (tagType == null)
+        {
+            throw new IOException("Invalid NBT tag: Found unknown tag type " + type + ".");
+        }
+        return tagType;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.inputStream.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("inputStream", this.inputStream).toString();
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.nbt;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Represent streaming nbt writer, it allows to write nbt data tag by tag without building whole tag tree. <br>
+ * Compounds are started by {@link #beginCompound(String)} and must be ended by {@link #endCompound()},
+ * lists are started by {@link #beginList(String, NbtTagType, int)} and then exactly given amount of elements must be
+ * written by {@link #writeListElement(NbtTag)}. Compound elements of list don't have any header, so they can be also
+ * written as tags of compound followed by {@link #endCompound()}.
+ * Writer don't validate structure of written data.
+ */
+public class NbtStreamWriter implements Closeable
+{
+    private final NbtOutputStream outputStream;
+
+    /**
+     * Construct new nbt writer for given stream.
+     *
+     * @param outputStream nbt stream to be used.
+     */
+    public NbtStreamWriter(final NbtOutputStream outputStream)
+    {
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Returns nbt stream used by this writer.
+     *
+     * @return nbt stream used by this writer.
+     */
+    public NbtOutputStream getOutputStream()
+    {
+        return this.outputStream;
+    }
+
+    /**
+     * Write header of named compound tag, it must be ended by {@link #endCompound()}.
+     *
+     * @param name name of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void beginCompound(final String name) throws IOException
+    {
+        this.writeHeader(NbtTagType.COMPOUND, name);
+    }
+
+    /**
+     * Write end of current compound tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void endCompound() throws IOException
+    {
+        this.outputStream.writeByte(NbtTagType.END.getTypeID());
+    }
+
+    /**
+     * Write header of named list tag, it must be followed by given amount of elements.
+     *
+     * @param name        name of tag.
+     * @param elementType type of list elements, {@link NbtTagType#END} should be used for empty lists.
+     * @param size        size of list.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void beginList(final String name, final NbtTagType elementType, final int size) throws IOException
+    {
+        this.writeHeader(NbtTagType.LIST, name);
+        this.outputStream.writeByte(elementType.getTypeID());
+        this.outputStream.writeInt(size);
+    }
+
+    /**
+     * Write given tag as element of current list.
+     *
+     * @param tag tag to write.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeListElement(final NbtTag tag) throws IOException
+    {
+        tag.write(this.outputStream, true);
+    }
+
+    /**
+     * Write given tag as named element of current compound.
+     *
+     * @param tag tag to write.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeTag(final NbtTag tag) throws IOException
+    {
+        this.outputStream.write(tag);
+    }
+
+    /**
+     * Write named byte tag.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeByte(final String name, final int value) throws IOException
+    {
+        this.writeHeader(NbtTagType.BYTE, name);
+        this.outputStream.writeByte(value);
+    }
+
+    /**
+     * Write named byte tag with boolean value, true is saved as 1, and false as 0.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeBoolean(final String name, final boolean value) throws IOException
+    {
+        this.writeByte(name, value ? 1 : 0);
+    }
+
+    /**
+     * Write named short tag.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeShort(final String name, final int value) throws IOException
+    {
+        this.writeHeader(NbtTagType.SHORT, name);
+        this.outputStream.writeShort(value);
+    }
+
+    /**
+     * Write named int tag.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeInt(final String name, final int value) throws IOException
+    {
+        this.writeHeader(NbtTagType.INTEGER, name);
+        this.outputStream.writeInt(value);
+    }
+
+    /**
+     * Write named long tag.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeLong(final String name, final long value) throws IOException
+    {
+        this.writeHeader(NbtTagType.LONG, name);
+        this.outputStream.writeLong(value);
+    }
+
+    /**
+     * Write named float tag.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeFloat(final String name, final float value) throws IOException
+    {
+        this.writeHeader(NbtTagType.FLOAT, name);
+        this.outputStream.writeFloat(value);
+    }
+
+    /**
+     * Write named double tag.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeDouble(final String name, final double value) throws IOException
+    {
+        this.writeHeader(NbtTagType.DOUBLE, name);
+        this.outputStream.writeDouble(value);
+    }
+
+    /**
+     * Write named string tag.
+     *
+     * @param name  name of tag.
+     * @param value value of tag, may be null.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeString(final String name, final String value) throws IOException
+    {
+        this.writeHeader(NbtTagType.STRING, name);
+        if (value == null)
+        {
+            this.outputStream.writeShort(- 1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(NbtTag.STRING_CHARSET);
+        this.outputStream.writeShort(bytes.length);
+        this.outputStream.write(bytes);
+    }
+
+    /**
+     * Write named byte array tag.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeByteArray(final String name, final byte[] value) throws IOException
+    {
+        this.writeByteArray(name, value, 0, value.length);
+    }
+
+    /**
+     * Write named byte array tag using part of given array, so reusable buffers can be used.
+     *
+     * @param name   name of tag.
+     * @param value  array with value of tag.
+     * @param offset offset of first byte.
+     * @param length length of tag value.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeByteArray(final String name, final byte[] value, final int offset, final int length) throws IOException
+    {
+        this.writeHeader(NbtTagType.BYTE_ARRAY, name);
+        this.outputStream.writeInt(length);
+        this.outputStream.write(value, offset, length);
+    }
+
+    /**
+     * Write named int array tag.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeIntArray(final String name, final int[] value) throws IOException
+    {
+        this.writeHeader(NbtTagType.INTEGER_ARRAY, name);
+        this.outputStream.writeInt(value.length);
+        for (final int i : value)
+        {
+            this.outputStream.writeInt(i);
+        }
+    }
+
+    /**
+     * Write named int array tag from short values, so int array can be saved without copying short array.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeIntArray(final String name, final short[] value) throws IOException
+    {
+        this.writeHeader(NbtTagType.INTEGER_ARRAY, name);
+        this.outputStream.writeInt(value.length);
+        for (final short i : value)
+        {
+            this.outputStream.writeInt(i);
+        }
+    }
+
+    /**
+     * Write named short array tag.
+     *
+     * @param name  name of tag.
+     * @param value value of tag.
+     *
+     * @throws IOException if any write operation failed.
+     */
+    public void writeShortArray(final String name, final short[] value) throws IOException
+    {
+        this.writeHeader(NbtTagType.SHORT_ARRAY, name);
+        this.outputStream.writeInt(value.length);
+        for (final short i : value)
+        {
+            this.outputStream.writeShort(i);
+        }
+    }
+
+    private void writeHeader(final NbtTagType type, final String name) throws IOException
+    {
+        this.outputStream.writeByte(type.getTypeID());
+        final byte[] bytes = name.getBytes(NbtTag.STRING_CHARSET);
+        this.outputStream.writeShort(bytes.length);
+        this.outputStream.write(bytes);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.outputStream.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("outputStream", this.outputStream).toString();
+    }
+}
@@ -45,6 +45,7 @@ import org.diorite.world.chunk.Chunk;
 import org.diorite.world.chunk.ChunkManager;
 import org.diorite.world.chunk.ChunkPos;
 import org.diorite.world.generator.WorldGenerator;
+import org.diorite.world.generator.WorldPreGenerator;
 
 public interface World extends BossBarHolder
 {
@@ -137,6 +138,24 @@ public interface World extends BossBarHolder
 
     void setGenerator(WorldGenerator generator);
 
+    /**
+     * @return last started pre-generation job of this world, or null.
+     */
+    WorldPreGenerator getPreGenerator();
+
+    /**
+     * Start pre-generation of all chunks in given radius around given chunk.
+     *
+     * @param centerX x coordinate of center chunk.
+     * @param centerZ z coordinate of center chunk.
+     * @param radius  radius in chunks.
+     *
+     * @return started pre-generation job.
+     *
+     * @throws IllegalStateException if other pre-generation job of this world is still running.
+     */
+    WorldPreGenerator preGenerate(int centerX, int centerZ, int radius);
+
     Chunk getChunkAt(int x, int z);
 
     Chunk getChunkAt(ChunkPos pos);
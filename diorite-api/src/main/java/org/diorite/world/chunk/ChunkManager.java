@@ -134,7 +134,7 @@ public interface ChunkManager
      *
      * @param chunk The chunk to save.
      *
-     * @return true if chunk was added to save queue
+     * @return true if chunk was added to save queue, or it wasn't modified since last save.
      */
     boolean save(Chunk chunk);
 
@@ -144,7 +144,7 @@ public interface ChunkManager
      * @param chunk    The chunk to save.
      * @param priority priority of save.
      *
-     * @return true if chunk was added to save queue
+     * @return true if chunk was added to save queue, or it wasn't modified since last save.
      */
     boolean save(Chunk chunk, int priority);
 }
@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.world.generator;
+
+import org.diorite.world.World;
+
+/**
+ * Background job that generates, populates and saves all chunks in given radius around center chunk. <br>
+ * Job is started by {@link World#preGenerate(int, int, int)}, and never uses more than {@link #getMaxStepTime()} ms of single tick.
+ */
+public interface WorldPreGenerator
+{
+    /**
+     * @return world of this job.
+     */
+    World getWorld();
+
+    /**
+     * @return x coordinate of center chunk.
+     */
+    int getCenterX();
+
+    /**
+     * @return z coordinate of center chunk.
+     */
+    int getCenterZ();
+
+    /**
+     * @return radius in chunks.
+     */
+    int getRadius();
+
+    /**
+     * @return max amount of chunks that are queued to load or generate at once.
+     */
+    int getMaxInFlight();
+
+    /**
+     * Set max amount of chunks that are queued to load or generate at once.
+     *
+     * @param maxInFlight new max amount of queued chunks, at least 1.
+     */
+    void setMaxInFlight(int maxInFlight);
+
+    /**
+     * @return max time in milliseconds that job can use in single tick of main thread.
+     */
+    long getMaxStepTime();
+
+    /**
+     * Set max time in milliseconds that job can use in single tick of main thread.
+     *
+     * @param maxStepTime new max time in milliseconds, at least 1.
+     */
+    void setMaxStepTime(long maxStepTime);
+
+    /**
+     * @return amount of chunks to populate, (2 * radius + 1)^2
+     */
+    long getTotalChunks();
+
+    /**
+     * @return amount of already populated chunks.
+     */
+    long getPopulatedChunks();
+
+    /**
+     * @return amount of chunks requested to load or generate, including one ring of chunks around radius.
+     */
+    long getRequestedChunks();
+
+    /**
+     * @return amount of chunks saved and unloaded by this job.
+     */
+    long getUnloadedChunks();
+
+    /**
+     * @return amount of ticks skipped because server TPS was too low.
+     */
+    long getThrottledSteps();
+
+    /**
+     * @return average amount of populated chunks per second since start.
+     */
+    double getChunksPerSecond();
+
+    /**
+     * @return true if job is finished or cancelled.
+     */
+    boolean isDone();
+
+    /**
+     * @return true if job was cancelled.
+     */
+    boolean isCancelled();
+
+    /**
+     * Stop pre-generation, chunks that are already loaded are left to be unloaded by server.
+     */
+    void cancel();
+}
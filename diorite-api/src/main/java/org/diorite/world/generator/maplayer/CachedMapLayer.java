@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.world.generator.maplayer;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+/**
+ * Layer that caches values of below layer in square tiles, so neighbouring chunks don't need to generate
+ * all coarser layers again. <br>
+ * Values of map layers depend only on seed and coordinates, so cached values are always same as generated ones. <br>
+ * Least recently used tiles are removed when cache is full.
+ */
+public class CachedMapLayer extends MapLayer
+{
+    protected final MapLayer belowLayer;
+    protected final int      tileShift;
+    protected final int      tileSize;
+    protected final int      maxTiles;
+
+    private final Long2ObjectLinkedOpenHashMap<int[]> tiles;
+
+    /**
+     * Construct new cached layer.
+     *
+     * @param seed       seed of layer.
+     * @param belowLayer layer to cache.
+     * @param tileShift  size of single tile as power of 2, in values of below layer.
+     * @param maxTiles   max amount of cached tiles.
+     */
+    public CachedMapLayer(final long seed, final MapLayer belowLayer, final int tileShift, final int maxTiles)
+    {
+        super(seed);
+        this.belowLayer = belowLayer;
+        this.tileShift = tileShift;
+        this.tileSize = 1 << tileShift;
+        this.maxTiles = maxTiles;
+        this.tiles = new Long2ObjectLinkedOpenHashMap<>(maxTiles + 1);
+    }
+
+    @Override
+    public int[] generateValues(final int x, final int z, final int sizeX, final int sizeZ)
+    {
+        final int[] values = new int[sizeX * sizeZ];
+        final int mask = this.tileSize - 1;
+        final int minTileX = x >> this.tileShift;
+        final int minTileZ = z >> this.tileShift;
+        final int maxTileX = ((x + sizeX) - 1) >> this.tileShift;
+        final int maxTileZ = ((z + sizeZ) - 1) >> this.tileShift;
+        for (int tileZ = minTileZ; tileZ <= maxTileZ; tileZ++)
+        {
+            final int tileStartZ = tileZ << this.tileShift;
+            final int fromZ = Math.max(z, tileStartZ);
+            final int toZ = Math.min(z + sizeZ, tileStartZ + this.tileSize);
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++)
+            {
+                final int[] tile = this.getTile(tileX, tileZ);
+                final int tileStartX = tileX << this.tileShift;
+                final int fromX = Math.max(x, tileStartX);
+                final int length = Math.min(x + sizeX, tileStartX + this.tileSize) - fromX;
+                for (int valueZ = fromZ; valueZ < toZ; valueZ++)
+                {
+                    System.arraycopy(tile, (fromX & mask) + ((valueZ & mask) << this.tileShift), values, (fromX - x) + ((valueZ - z) * sizeX), length);
+                }
+            }
+        }
+        return values;
+    }
+
+    private int[] getTile(final int tileX, final int tileZ)
+    {
+        final long key = (((long) tileX) << 32) | (tileZ & 0xffffffffL);
+        synchronized (this.tiles)
+        {
+            final int[] tile = this.tiles.getAndMoveToLast(key);
+            if (tile != null)
+            {
+                return tile;
+            }
+        }
+        // generated outside of lock, other thread may generate this same tile, but values will be same.
+        final int[] tile = this.belowLayer.generateValues(tileX << this.tileShift, tileZ << this.tileShift, this.tileSize, this.tileSize);
+        synchronized (this.tiles)
+        {
+            this.tiles.putAndMoveToLast(key, tile);
+            if (this.tiles.size() > this.maxTiles)
+            {
+                this.tiles.removeFirst();
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Remove all cached tiles.
+     */
+    public void clear()
+    {
+        synchronized (this.tiles)
+        {
+            this.tiles.clear();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("belowLayer", this.belowLayer).append("tileSize", this.tileSize).append("maxTiles", this.maxTiles).toString();
+    }
+}
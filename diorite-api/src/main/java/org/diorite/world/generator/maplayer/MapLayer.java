@@ -37,10 +37,15 @@ import org.diorite.world.generator.maplayer.WhittakerMapLayer.ClimateType;
 import org.diorite.world.generator.maplayer.ZoomMapLayer.ZoomType;
 
 
+/**
+ * Represent one layer of biome map generation. <br>
+ * Random state used by {@link #setCoordsSeed(int, int)} and {@link #nextInt(int)} is kept per thread,
+ * and values depend only on seed and coordinates, so layers can be used by many generation threads at once.
+ */
 @SuppressWarnings("MagicNumber")
 public abstract class MapLayer
 {
-    protected final Random random = new Random();
+    private final ThreadLocal<Random> random = ThreadLocal.withInitial(Random::new);
     protected final long seed;
 
     public MapLayer(final long seed)
@@ -48,15 +53,26 @@ public abstract class MapLayer
         this.seed = seed;
     }
 
+    /**
+     * Returns random instance of current thread, it should be seeded by {@link #setCoordsSeed(int, int)} before use.
+     *
+     * @return random instance of current thread.
+     */
+    protected Random getRandom()
+    {
+        return this.random.get();
+    }
+
     public void setCoordsSeed(final int x, final int z)
     {
-        this.random.setSeed(this.seed);
-        this.random.setSeed(((x * this.random.nextLong()) + (z * this.random.nextLong())) ^ this.seed);
+        final Random random = this.random.get();
+        random.setSeed(this.seed);
+        random.setSeed(((x * random.nextLong()) + (z * random.nextLong())) ^ this.seed);
     }
 
     public int nextInt(final int max)
     {
-        return this.random.nextInt(max);
+        return this.random.get().nextInt(max);
     }
 
     public abstract int[] generateValues(int x, int z, int sizeX, int sizeZ);
@@ -126,6 +142,8 @@ public abstract class MapLayer
         layerRiver = new RiverMapLayer(seed + 10, layerRiver);
         layer = new RiverMapLayer(seed + 1000, layerRiver, layer);
 
+        // values of this layer are in 1:4 scale, so single tile of 64x64 values covers 256x256 blocks.
+        layer = new CachedMapLayer(seed, layer, 6, 256);
         final MapLayer layerLowerRes = layer;
         for (int i = 0; i < 2; i++)
         {
@@ -140,6 +158,6 @@ public abstract class MapLayer
     @Override
     public String toString()
     {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("random", this.random).append("seed", this.seed).toString();
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("seed", this.seed).toString();
     }
 }
@@ -47,11 +47,12 @@ public class NoiseMapLayer extends MapLayer
     public int[] generateValues(final int x, final int z, final int sizeX, final int sizeZ)
     {
         final int[] values = new int[sizeX * sizeZ];
+        final double[] noises = this.noiseGen.fill(new double[sizeX * sizeZ], x, z, sizeX, sizeZ, FREQUENCY, AMPLITUDE, true);
         for (int i = 0; i < sizeZ; i++)
         {
             for (int j = 0; j < sizeX; j++)
             {
-                final double noise = this.noiseGen.noise(x + j, z + i, FREQUENCY, AMPLITUDE, true) * 4.0D;
+                final double noise = noises[(i + (j * sizeZ))] * 4.0D;
                 final int val;
                 if (noise >= 0.05D)
                 {
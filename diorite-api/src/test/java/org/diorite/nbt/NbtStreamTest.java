@@ -0,0 +1,251 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.nbt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("MagicNumber")
+public class NbtStreamTest extends TestCase
+{
+    private static NbtTagCompound createItem(final int slot)
+    {
+        final NbtTagCompound item = new NbtTagCompound();
+        item.setByte("Slot", slot);
+        item.setString("id", "minecraft:stone");
+        item.setShort("Damage", slot * 3);
+        return item;
+    }
+
+    /**
+     * Creates compound with all types of tags written by {@link NbtStreamWriter}, and writes this same data to given writer.
+     */
+    private static NbtTagCompound createTag(final NbtStreamWriter writer) throws IOException
+    {
+        final Random random = new Random(7);
+        final byte[] bytes = new byte[5000];
+        random.nextBytes(bytes);
+        final int[] ints = random.ints(300).toArray();
+        final short[] shorts = new short[256];
+        for (int i = 0; i < shorts.length; i++)
+        {
+            shorts[i] = (short) random.nextInt();
+        }
+        final int[] shortsAsInts = new int[shorts.length];
+        for (int i = 0; i < shorts.length; i++)
+        {
+            shortsAsInts[i] = shorts[i];
+        }
+
+        final NbtTagCompound tag = new NbtTagCompound("root");
+        writer.beginCompound("root");
+        tag.setByte("Byte", - 5);
+        writer.writeByte("Byte", - 5);
+        tag.setBoolean("Boolean", true);
+        writer.writeBoolean("Boolean", true);
+        tag.setShort("Short", - 12345);
+        writer.writeShort("Short", - 12345);
+        tag.setInt("Int", Integer.MIN_VALUE);
+        writer.writeInt("Int", Integer.MIN_VALUE);
+        tag.setLong("Long", Long.MAX_VALUE);
+        writer.writeLong("Long", Long.MAX_VALUE);
+        tag.setFloat("Float", 1.5f);
+        writer.writeFloat("Float", 1.5f);
+        tag.setDouble("Double", - Math.PI);
+        writer.writeDouble("Double", - Math.PI);
+        tag.setString("String", "zażółć gęślą jaźń");
+        writer.writeString("String", "zażółć gęślą jaźń");
+        tag.setString("EmptyString", "");
+        writer.writeString("EmptyString", "");
+        tag.setByteArray("Bytes", bytes);
+        writer.writeByteArray("Bytes", bytes);
+        tag.setByteArray("BytesSlice", Arrays.copyOfRange(bytes, 100, 2148));
+        writer.writeByteArray("BytesSlice", bytes, 100, 2048);
+        tag.setIntArray("Ints", ints);
+        writer.writeIntArray("Ints", ints);
+        tag.setIntArray("ShortsAsInts", shortsAsInts);
+        writer.writeIntArray("ShortsAsInts", shorts);
+        tag.setShortArray("Shorts", shorts);
+        writer.writeShortArray("Shorts", shorts);
+
+        final NbtTagCompound level = new NbtTagCompound("Level");
+        writer.beginCompound("Level");
+        level.setInt("xPos", - 3);
+        writer.writeInt("xPos", - 3);
+
+        final List<NbtTag> items = new ArrayList<>(3);
+        writer.beginList("Items", NbtTagType.COMPOUND, 3);
+        for (int i = 0; i < 3; i++)
+        {
+            final NbtTagCompound item = createItem(i);
+            items.add(item);
+            if (i == 1)
+            {
+                // compound elements can be also written tag by tag.
+                writer.writeByte("Slot", i);
+                writer.writeString("id", "minecraft:stone");
+                writer.writeShort("Damage", i * 3);
+                writer.endCompound();
+            }
+            else
+            {
+                writer.writeListElement(item);
+            }
+        }
+        level.setList("Items", items);
+
+        level.setList("Empty", new ArrayList<>(0));
+        writer.beginList("Empty", NbtTagType.END, 0);
+
+        final List<NbtTag> numbers = new ArrayList<>(2);
+        writer.beginList("Numbers", NbtTagType.INTEGER, 2);
+        for (int i = 0; i < 2; i++)
+        {
+            final NbtTagInt number = new NbtTagInt(null, i * 1000);
+            numbers.add(number);
+            writer.writeListElement(number);
+        }
+        level.setList("Numbers", numbers);
+
+        final NbtTagCompound nested = new NbtTagCompound("Nested");
+        nested.setString("Name", "nested");
+        writer.writeTag(nested);
+        level.addTag(nested);
+
+        writer.endCompound();
+        tag.addTag(level);
+        writer.endCompound();
+        return tag;
+    }
+
+    private static byte[] write(final NbtTag tag) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        try (final NbtOutputStream stream = new NbtOutputStream(out))
+        {
+            stream.write(tag);
+        }
+        return out.toByteArray();
+    }
+
+    @org.junit.Test
+    public void testStreamWriteTreeRead() throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        final NbtTagCompound expected;
+        try (final NbtStreamWriter writer = new NbtStreamWriter(new NbtOutputStream(out)))
+        {
+            expected = createTag(writer);
+        }
+        final NbtTag read = new NbtInputStream(new ByteArrayInputStream(out.toByteArray())).readTag(NbtLimiter.getUnlimited());
+        assertEquals("Tag written by stream writer must be this same as tree tag!", expected, read);
+        assertEquals("Stream writer must write this same amount of bytes as tree writer!", write(expected).length, out.size());
+    }
+
+    @org.junit.Test
+    public void testTreeWriteStreamRead() throws Exception
+    {
+        final NbtTagCompound expected = createTag(new NbtStreamWriter(new NbtOutputStream(new ByteArrayOutputStream())));
+        final NbtStreamReader reader = new NbtStreamReader(new NbtInputStream(new ByteArrayInputStream(write(expected))));
+        assertEquals("Root tag must be compound!", NbtTagType.COMPOUND, reader.nextTag());
+        assertEquals("Root tag must have this same name!", "root", reader.readName());
+
+        int tags = 0;
+        NbtTagType type;
+        while ((type = reader.nextTag()) != NbtTagType.END)
+        {
+            final String name = reader.readName();
+            final String msg = "Tag " + name + " must be this same as tree tag!";
+            tags++;
+            switch (name)
+            {
+                case "Byte":
+                    assertEquals(msg, expected.getByte(name), reader.readByte());
+                    break;
+                case "Short":
+                    assertEquals(msg, expected.getShort(name), reader.readShort());
+                    break;
+                case "Int":
+                    assertEquals(msg, expected.getInt(name), reader.readInt());
+                    break;
+                case "Long":
+                    assertEquals(msg, expected.getLong(name), reader.readLong());
+                    break;
+                case "Float":
+                    assertEquals(msg, expected.getFloat(name), reader.readFloat(), 0);
+                    break;
+                case "Double":
+                    assertEquals(msg, expected.getDouble(name), reader.readDouble(), 0);
+                    break;
+                case "String":
+                    assertEquals(msg, expected.getString(name), reader.readString());
+                    break;
+                case "Bytes":
+                    // too small buffer must be replaced.
+                    assertTrue(msg, Arrays.equals(expected.getByteArray(name), reader.readByteArray(new byte[10])));
+                    break;
+                case "BytesSlice":
+                {
+                    final byte[] buffer = new byte[2048];
+                    assertTrue("Buffer of exact size must be reused!", reader.readByteArray(buffer) == buffer);
+                    assertTrue(msg, Arrays.equals(expected.getByteArray(name), buffer));
+                    break;
+                }
+                case "Ints":
+                    assertTrue(msg, Arrays.equals(expected.getIntArray(name), reader.readIntArray(null)));
+                    break;
+                case "Shorts":
+                    assertTrue(msg, Arrays.equals(expected.getShortArray(name), reader.readShortArray(null)));
+                    break;
+                case "Level":
+                    assertEquals(msg, expected.getCompound(name), reader.readTag(type, name));
+                    break;
+                default:
+                    reader.skip(type); // skipped tags must be skipped completely, so following tags are still valid.
+                    break;
+            }
+        }
+        assertEquals("All tags of root compound must be read!", expected.getTags().size(), tags);
+        assertEquals("Whole stream must be read!", - 1, reader.getInputStream().read());
+    }
+
+    @org.junit.Test
+    public void testSkip() throws Exception
+    {
+        final NbtTagCompound expected = createTag(new NbtStreamWriter(new NbtOutputStream(new ByteArrayOutputStream())));
+        final NbtStreamReader reader = new NbtStreamReader(new NbtInputStream(new ByteArrayInputStream(write(expected))));
+        final NbtTagType type = reader.nextTag();
+        reader.readName();
+        reader.skip(type);
+        assertEquals("Whole stream must be skipped!", - 1, reader.getInputStream().read());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.world.generator.maplayer;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.diorite.world.Dimension;
+import org.diorite.world.WorldType;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("MagicNumber")
+public class CachedMapLayerTest extends TestCase
+{
+    private static final long SEED = 0x5EED_DEAD_BEEFL;
+
+    @org.junit.Test
+    public void testCachedLayerAcrossTileBorders() throws Exception
+    {
+        final CachedMapLayer cached = getCachedLayer(MapLayer.initialize(SEED, Dimension.OVERWORLD, WorldType.NORMAL));
+        final Random random = new Random(1);
+        for (int i = 0; i < 200; i++)
+        {
+            // windows start few values before tile border and may cover more than one tile in each direction.
+            final int x = ((random.nextInt(8) - 4) << cached.tileShift) - random.nextInt(8);
+            final int z = ((random.nextInt(8) - 4) << cached.tileShift) - random.nextInt(8);
+            final int sizeX = 1 + random.nextInt(cached.tileSize + 20);
+            final int sizeZ = 1 + random.nextInt(cached.tileSize + 20);
+            checkWindow(cached, cached.belowLayer, x, z, sizeX, sizeZ);
+        }
+    }
+
+    @org.junit.Test
+    public void testEvictedTilesGeneratedAgain() throws Exception
+    {
+        final CachedMapLayer source = getCachedLayer(MapLayer.initialize(SEED, Dimension.OVERWORLD, WorldType.NORMAL));
+        final CachedMapLayer cached = new CachedMapLayer(SEED, source.belowLayer, 3, 4);
+        final Random random = new Random(2);
+        for (int i = 0; i < 200; i++)
+        {
+            checkWindow(cached, source.belowLayer, random.nextInt(128) - 64, random.nextInt(128) - 64, 1 + random.nextInt(20), 1 + random.nextInt(20));
+        }
+    }
+
+    @org.junit.Test
+    public void testInitializedLayersAcrossTileBorders() throws Exception
+    {
+        for (final WorldType worldType : new WorldType[]{WorldType.NORMAL, WorldType.LARGE_BIOMES})
+        {
+            final MapLayer[] layers = MapLayer.initialize(SEED, Dimension.OVERWORLD, worldType);
+            final CachedMapLayer cached = getCachedLayer(layers);
+            // this same layers as in MapLayer#initialize, but reading below layer directly.
+            final MapLayer uncached = new SmoothMapLayer(SEED + 1001, new ZoomMapLayer(SEED + 2001, new ZoomMapLayer(SEED + 2000, cached.belowLayer)));
+
+            // chunks around corner of 4 tiles, each tile covers 256x256 blocks.
+            for (int chunkX = - 18; chunkX < 18; chunkX++)
+            {
+                for (int chunkZ = - 18; chunkZ < 18; chunkZ++)
+                {
+                    checkWindow(layers[0], uncached, chunkX << 4, chunkZ << 4, 16, 16);
+                    checkWindow(layers[1], cached.belowLayer, (chunkX << 2) - 1, (chunkZ << 2) - 1, 6, 6);
+                }
+            }
+        }
+    }
+
+    private static CachedMapLayer getCachedLayer(final MapLayer[] layers)
+    {
+        assertTrue("Lower resolution layer must be cached!", layers[1] instanceof CachedMapLayer);
+        return (CachedMapLayer) layers[1];
+    }
+
+    private static void checkWindow(final MapLayer cached, final MapLayer uncached, final int x, final int z, final int sizeX, final int sizeZ)
+    {
+        final int[] expected = uncached.generateValues(x, z, sizeX, sizeZ);
+        final int[] values = cached.generateValues(x, z, sizeX, sizeZ);
+        assertTrue("Cached values must be this same as generated ones! (" + x + ", " + z + ", " + sizeX + "x" + sizeZ + ")", Arrays.equals(expected, values));
+    }
+}
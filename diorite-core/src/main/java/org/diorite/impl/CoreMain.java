@@ -43,6 +43,7 @@ import org.diorite.impl.connection.packets.RegisterPackets;
 import org.diorite.impl.entity.attrib.SimpleAttributeModifier;
 import org.diorite.impl.inventory.item.ItemStackImpl;
 import org.diorite.impl.log.LoggerOutputStream;
+import org.diorite.impl.world.chunk.palette.BlockStates;
 import org.diorite.Core;
 import org.diorite.auth.GameProfile;
 import org.diorite.auth.Property;
@@ -168,6 +169,7 @@ public final class CoreMain
             System.out.println("Registered " + Material.getBlockMaterialsCount() + " (" + Material.getAllBlockMaterialsCount() + " with sub-types) diorite blocks.");
             System.out.println("Registered " + Material.getItemMaterialsCount() + " (" + Material.getAllItemMaterialsCount() + " with sub-types) diorite items.");
             System.out.println("Registered " + Material.getMaterialsCount() + " (" + Material.getAllMaterialsCount() + " with sub-types) diorite blocks and items.");
+            System.out.println("Registered " + BlockStates.init() + " block states.");
         } catch (final Throwable t)
         {
             t.printStackTrace();
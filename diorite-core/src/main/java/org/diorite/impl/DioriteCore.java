@@ -31,12 +31,10 @@ import java.net.Proxy;
 import java.security.KeyPair;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
@@ -163,34 +161,6 @@ public class DioriteCore implements Core
 
     private static final org.slf4j.Logger coreLogger = LoggerFactory.getLogger("");
 
-    private static class SimpleSyncTask
-    {
-        private final Synchronizable sync;
-        private final Runnable       runnable;
-
-        private SimpleSyncTask(final Synchronizable sync, final Runnable runnable)
-        {
-            this.sync = sync;
-            this.runnable = runnable;
-        }
-
-        public Synchronizable getSynchronizable()
-        {
-            return this.sync;
-        }
-
-        public void run()
-        {
-            runSync(this.runnable);
-        }
-
-        @Override
-        public String toString()
-        {
-            return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("sync", this.sync).append("runnable", this.runnable).toString();
-        }
-    }
-
     static
     {
         ClassPool.getDefault().appendClassPath(new LoaderClassPath(DioriteCore.class.getClassLoader()));
@@ -281,11 +251,11 @@ public class DioriteCore implements Core
     }
 
     protected final boolean isClient;
-    protected final CommandMapImpl                        commandMap  = new CommandMapImpl();
-    protected final TickGroups                            ticker      = new TickGroups(this);
-    protected final SchedulerImpl                         scheduler   = new SchedulerImpl();
-    protected final ConcurrentLinkedQueue<SimpleSyncTask> syncQueue   = new ConcurrentLinkedQueue<>();
-    protected final ItemFactory                           itemFactory = new ItemFactoryImpl();
+    protected final CommandMapImpl commandMap    = new CommandMapImpl();
+    protected final TickGroups     ticker        = new TickGroups(this);
+    protected final SchedulerImpl  scheduler     = new SchedulerImpl();
+    protected final SyncMailboxes  syncMailboxes = new SyncMailboxes(this);
+    protected final ItemFactory    itemFactory   = new ItemFactoryImpl();
     protected final Thread mainThread;
     protected final double[] recentTps = new double[3];
     private final String      serverVersion;
@@ -373,7 +343,7 @@ public class DioriteCore implements Core
             runSync(runnable);
             return;
         }
-        this.syncQueue.add(new SimpleSyncTask(sync, runnable));
+        this.syncMailboxes.add(runnable, sync);
     }
 
     public void sync(final Runnable runnable)
@@ -389,7 +359,7 @@ public class DioriteCore implements Core
 
     public void addSync(final Runnable runnable, final Synchronizable sync)
     {
-        this.syncQueue.add(new SimpleSyncTask(sync, runnable));
+        this.syncMailboxes.add(runnable, sync);
     }
 
     public void addSync(final Runnable runnable)
@@ -399,16 +369,15 @@ public class DioriteCore implements Core
 
     public void runSync()
     {
-        for (final Iterator<SimpleSyncTask> it = this.syncQueue.iterator(); it.hasNext(); )
-        {
-            final SimpleSyncTask st = it.next();
-            //noinspection ObjectEquality
-            if (st.getSynchronizable().getLastTickThread() == Thread.currentThread())
-            {
-                st.run();
-                it.remove();
-            }
-        }
+        this.syncMailboxes.run();
+    }
+
+    /**
+     * @return mailboxes of sync tasks, with queue and latency statistics.
+     */
+    public SyncMailboxes getSyncMailboxes()
+    {
+        return this.syncMailboxes;
     }
 
     @Override
@@ -842,11 +811,13 @@ public class DioriteCore implements Core
         if (this.worldsManager != null)
         {
             this.worldsManager.getWorlds().stream().forEach(w -> {
+                w.getChunkManager().getGenerationService().close(TimeUnit.SECONDS.toMillis(5));
                 w.save(true);
                 w.getChunkManager().getService().await(i -> coreLogger.info("[" + w.getName() + "] Queue: " + i + " left."));
             });
             CoreMain.debug("done?");
         }
+        this.ticker.close();
         System.out.println("Goodbye <3");
     }
 
@@ -1027,12 +998,16 @@ public class DioriteCore implements Core
                     }
                     lastTick = curTime;
 
+                    // scheduler isn't thread-safe, so it is executed only here, once per tick, never by tick groups.
                     this.runScheduler(true);
 
                     this.runSync();
+                    this.worldsManager.populateChunks();
 
                     this.playersManager.doTick(this.tps);
                     this.ticker.doTick(this.tps);
+                    this.worldsManager.flushBlockChanges();
+                    this.connectionHandler.flush();
                 }
             }
         } catch (final Throwable e)
@@ -1118,6 +1093,7 @@ public class DioriteCore implements Core
             }
         })));
         initPipeline.addLast("DioriteCore|RegisterDefaultCommands", (s, p, d) -> RegisterDefaultCommands.init(s.commandMap));
+        initPipeline.addLast("DioriteCore|initTicker", (s, p, d) -> s.ticker.setThreads(s.config.getTickThreads()));
         initPipeline.addLast("DioriteCore|initInputThread", (s, p, d) -> s.inputThread = InputThread.start(s.config.getInputThreadPoolSize()));
         initPipeline.addLast("DioriteCore|initGame", (s, p, d) -> {
             s.serverManager = new ServerManagerImpl(s);
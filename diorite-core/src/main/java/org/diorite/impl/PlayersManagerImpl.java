@@ -43,6 +43,7 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.diorite.impl.auth.GameProfileImpl;
 import org.diorite.impl.connection.CoreNetworkManager;
 import org.diorite.impl.connection.packets.Packet;
+import org.diorite.impl.connection.packets.PreparedPacket;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundKeepAlive;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundPlayerInfo;
 import org.diorite.impl.entity.IPlayer;
@@ -152,26 +153,59 @@ public class PlayersManagerImpl implements Tickable
         }
     }
 
+    private static PreparedPacket[] prepare(final Packet<?>[] packets)
+    {
+        final PreparedPacket[] prepared = new PreparedPacket[packets.length];
+        for (int i = 0; i < packets.length; i++)
+        {
+            prepared[i] = new PreparedPacket(packets[i]);
+        }
+        return prepared;
+    }
+
+    private static void release(final PreparedPacket[] packets)
+    {
+        for (final PreparedPacket packet : packets)
+        {
+            packet.release();
+        }
+    }
+
     public void forEach(final Packet<?> packet)
     {
-        this.forEach(player -> player.getNetworkManager().sendPacket(packet));
+        // packet is encoded and compressed only once for all players.
+        final PreparedPacket prepared = new PreparedPacket(packet);
+        try
+        {
+            this.forEach(player -> player.getNetworkManager().sendPacket(prepared));
+        } finally
+        {
+            prepared.release();
+        }
     }
 
     public void forEachExcept(final Player except, final Packet<?> packet)
     {
         //noinspection ObjectEquality
-        this.forEach(p -> p != except, player -> player.getNetworkManager().sendPacket(packet));
+        this.forEach(p -> p != except, packet);
     }
 
     public void forEach(final Packet<?>[] packets)
     {
-        this.forEach(player -> player.getNetworkManager().sendPackets(packets));
+        final PreparedPacket[] prepared = prepare(packets);
+        try
+        {
+            this.forEach(player -> player.getNetworkManager().sendPackets(prepared));
+        } finally
+        {
+            release(prepared);
+        }
     }
 
     public void forEachExcept(final Player except, final Packet<?>[] packets)
     {
         //noinspection ObjectEquality
-        this.forEach(p -> p != except, player -> player.getNetworkManager().sendPackets(packets));
+        this.forEach(p -> p != except, packets);
     }
 
     public Collection<IPlayer> getOnlinePlayers(final Predicate<IPlayer> predicate)
@@ -181,24 +215,38 @@ public class PlayersManagerImpl implements Tickable
 
     public void forEach(final Predicate<IPlayer> predicate, final Packet<?> packet)
     {
-        this.forEach(predicate, player -> player.getNetworkManager().sendPacket(packet));
+        final PreparedPacket prepared = new PreparedPacket(packet);
+        try
+        {
+            this.forEach(predicate, player -> player.getNetworkManager().sendPacket(prepared));
+        } finally
+        {
+            prepared.release();
+        }
     }
 
     public void forEachExcept(final Player except, final Predicate<IPlayer> predicate, final Packet<?> packet)
     {
         //noinspection ObjectEquality
-        this.forEach(p -> (p != except) && predicate.test(p), player -> player.getNetworkManager().sendPacket(packet));
+        this.forEach(p -> (p != except) && predicate.test(p), packet);
     }
 
     public void forEach(final Predicate<IPlayer> predicate, final Packet<?>[] packets)
     {
-        this.forEach(predicate, player -> player.getNetworkManager().sendPackets(packets));
+        final PreparedPacket[] prepared = prepare(packets);
+        try
+        {
+            this.forEach(predicate, player -> player.getNetworkManager().sendPackets(prepared));
+        } finally
+        {
+            release(prepared);
+        }
     }
 
     public void forEachExcept(final Player except, final Predicate<IPlayer> predicate, final Packet<?>[] packets)
     {
         //noinspection ObjectEquality
-        this.forEach(p -> (p != except) && predicate.test(p), player -> player.getNetworkManager().sendPackets(packets));
+        this.forEach(p -> (p != except) && predicate.test(p), packets);
     }
 
     public void forEachExcept(final Player except, final Consumer<IPlayer> consumer)
@@ -0,0 +1,235 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import org.diorite.scheduler.Synchronizable;
+
+/**
+ * Sync tasks queued for tick threads. <br>
+ * Each tick thread have own mailbox, so thread only looks at tasks of synchronizables that were ticked by it. If synchronizable was moved to
+ * other thread (like chunk ticked by other tick group) task is moved to mailbox of that thread. Tasks of synchronizables that weren't ticked
+ * yet, or whose thread died, are routed again by main thread.
+ */
+public class SyncMailboxes
+{
+    private final Synchronizable                          main;
+    private final ConcurrentMap<Thread, Queue<SyncTask>> mailboxes  = new ConcurrentHashMap<>(16, .75f, 4);
+    private final Queue<SyncTask>                         unassigned = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger   pending      = new AtomicInteger();
+    private final LongAdder       executed     = new LongAdder();
+    private final LongAdder       migrated     = new LongAdder();
+    private final LongAdder       totalLatency = new LongAdder();
+    private final LongAccumulator maxLatency   = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Construct new mailboxes.
+     *
+     * @param main synchronizable of main thread, main thread is responsible for routing unassigned tasks.
+     */
+    public SyncMailboxes(final Synchronizable main)
+    {
+        this.main = main;
+    }
+
+    /**
+     * Queue task to run on thread that is ticking given synchronizable.
+     *
+     * @param runnable task to run.
+     * @param sync     synchronizable object.
+     */
+    public void add(final Runnable runnable, final Synchronizable sync)
+    {
+        this.pending.incrementAndGet();
+        this.route(new SyncTask(sync, runnable));
+    }
+
+    private void route(final SyncTask task)
+    {
+        final Thread thread = task.sync.getLastTickThread();
+        if ((thread == null) || ! thread.isAlive())
+        {
+            this.unassigned.add(task);
+            return;
+        }
+        Queue<SyncTask> mailbox = this.mailboxes.get(thread);
+        if (mailbox == null)
+        {
+            mailbox = this.mailboxes.computeIfAbsent(thread, t -> new ConcurrentLinkedQueue<>());
+        }
+        mailbox.add(task);
+    }
+
+    /**
+     * Run tasks from mailbox of current thread, tasks of synchronizables that are now ticked by other thread are moved to mailbox of that
+     * thread.
+     */
+    public void run()
+    {
+        final Thread current = Thread.currentThread();
+        //noinspection ObjectEquality
+        if (current == this.main.getLastTickThread())
+        {
+            this.routeUnassigned();
+        }
+        final Queue<SyncTask> mailbox = this.mailboxes.get(current);
+        if (mailbox == null)
+        {
+            return;
+        }
+        SyncTask task;
+        while ((task = mailbox.poll()) != null)
+        {
+            //noinspection ObjectEquality
+            if (task.sync.getLastTickThread() == current)
+            {
+                this.pending.decrementAndGet();
+                task.run();
+                final long latency = System.nanoTime() - task.queuedAt;
+                this.executed.increment();
+                this.totalLatency.add(latency);
+                this.maxLatency.accumulate(latency);
+            }
+            else
+            {
+                this.migrated.increment();
+                this.route(task);
+            }
+        }
+    }
+
+    private void routeUnassigned()
+    {
+        for (final Iterator<Entry<Thread, Queue<SyncTask>>> it = this.mailboxes.entrySet().iterator(); it.hasNext(); )
+        {
+            final Entry<Thread, Queue<SyncTask>> entry = it.next();
+            if (! entry.getKey().isAlive())
+            {
+                it.remove();
+                this.unassigned.addAll(entry.getValue());
+            }
+        }
+        for (final Iterator<SyncTask> it = this.unassigned.iterator(); it.hasNext(); )
+        {
+            final SyncTask task = it.next();
+            final Thread thread = task.sync.getLastTickThread();
+            if ((thread != null) && thread.isAlive())
+            {
+                it.remove();
+                this.route(task);
+            }
+        }
+    }
+
+    /**
+     * @return amount of tasks waiting for execution.
+     */
+    public int getPendingTasks()
+    {
+        return this.pending.get();
+    }
+
+    /**
+     * @return amount of executed tasks.
+     */
+    public long getExecutedTasks()
+    {
+        return this.executed.sum();
+    }
+
+    /**
+     * @return amount of times when task was moved to mailbox of other thread.
+     */
+    public long getMigratedTasks()
+    {
+        return this.migrated.sum();
+    }
+
+    /**
+     * @return average time between queuing and execution of task, in nanoseconds.
+     */
+    public long getAverageLatency()
+    {
+        final long executed = this.executed.sum();
+        return (executed == 0) ? 0 : (this.totalLatency.sum() / executed);
+    }
+
+    /**
+     * @return max time between queuing and execution of task, in nanoseconds.
+     */
+    public long getMaxLatency()
+    {
+        return this.maxLatency.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("mailboxes", this.mailboxes.size()).append("pending", this.pending.get()).toString();
+    }
+
+    private static class SyncTask
+    {
+        private final Synchronizable sync;
+        private final Runnable       runnable;
+        private final long           queuedAt = System.nanoTime();
+
+        private SyncTask(final Synchronizable sync, final Runnable runnable)
+        {
+            this.sync = sync;
+            this.runnable = runnable;
+        }
+
+        void run()
+        {
+            try
+            {
+                this.runnable.run();
+            } catch (final Throwable throwable)
+            {
+                throwable.printStackTrace();
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("sync", this.sync).append("runnable", this.runnable).toString();
+        }
+    }
+}
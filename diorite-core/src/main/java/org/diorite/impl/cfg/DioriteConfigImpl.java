@@ -112,6 +112,10 @@ public class DioriteConfigImpl implements DioriteConfig
     @CfgBooleanDefault(true)
     private boolean useNativeTransport;
 
+    @CfgComment("Packets sent during tick are written without flushing, and each connection is flushed once at end of tick, this greatly reduces amount of system calls. Keep-alive and disconnect packets are always sent at once.")
+    @CfgBooleanDefault(true)
+    private boolean batchPackets;
+
     @CfgComment("It determines the server-side viewing distance, measured in chunks in each direction of the player. (radius)")
     @CfgIntDefault(8)
     private int viewDistance;
@@ -120,6 +124,10 @@ public class DioriteConfigImpl implements DioriteConfig
     @CfgIntDefault(2)
     private int inputThreadPoolSize;
 
+    @CfgComment("How many threads are used to tick worlds, 0 to use amount of available processors.")
+    @CfgIntDefault(0)
+    private int tickThreads;
+
     @CfgComment("Path to file with administrators UUIDs/nicknames and settings. (Users that have most of permissions by default.)")
     @CfgStringDefault("adms.yml")
     private File administratorsFile;
@@ -299,6 +307,17 @@ public class DioriteConfigImpl implements DioriteConfig
         this.useNativeTransport = useNativeTransport;
     }
 
+    @Override
+    public boolean isBatchPackets()
+    {
+        return this.batchPackets;
+    }
+
+    public void setBatchPackets(final boolean batchPackets)
+    {
+        this.batchPackets = batchPackets;
+    }
+
     @Override
     public int getViewDistance()
     {
@@ -322,6 +341,17 @@ public class DioriteConfigImpl implements DioriteConfig
         this.inputThreadPoolSize = inputThreadPoolSize;
     }
 
+    @Override
+    public int getTickThreads()
+    {
+        return this.tickThreads;
+    }
+
+    public void setTickThreads(final int tickThreads)
+    {
+        this.tickThreads = tickThreads;
+    }
+
     @Override
     public File getAdministratorsFile()
     {
@@ -457,6 +487,10 @@ public class DioriteConfigImpl implements DioriteConfig
         {
             return false;
         }
+        if (this.batchPackets != that.batchPackets)
+        {
+            return false;
+        }
         if (this.viewDistance != that.viewDistance)
         {
             return false;
@@ -465,6 +499,10 @@ public class DioriteConfigImpl implements DioriteConfig
         {
             return false;
         }
+        if (this.tickThreads != that.tickThreads)
+        {
+            return false;
+        }
         if (this.whiteListEnabled != that.whiteListEnabled)
         {
             return false;
@@ -521,8 +559,10 @@ public class DioriteConfigImpl implements DioriteConfig
         result = (31 * result) + ((this.resourcePack != null) ? this.resourcePack.hashCode() : 0);
         result = (31 * result) + ((this.resourcePackHash != null) ? this.resourcePackHash.hashCode() : 0);
         result = (31 * result) + (this.useNativeTransport ? 1 : 0);
+        result = (31 * result) + (this.batchPackets ? 1 : 0);
         result = (31 * result) + this.viewDistance;
         result = (31 * result) + this.inputThreadPoolSize;
+        result = (31 * result) + this.tickThreads;
         result = (31 * result) + ((this.administratorsFile != null) ? this.administratorsFile.hashCode() : 0);
         result = (31 * result) + (this.whiteListEnabled ? 1 : 0);
         result = (31 * result) + ((this.whiteListFile != null) ? this.whiteListFile.hashCode() : 0);
@@ -542,7 +582,7 @@ public class DioriteConfigImpl implements DioriteConfig
     @Override
     public String toString()
     {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("hostname", this.hostname).append("port", this.port).append("queryPort", this.queryPort).append("rconPort", this.rconPort).append("rconPassword", this.rconPassword).append("networkCompressionThreshold", this.networkCompressionThreshold).append("onlineMode", this.onlineMode).append("maxPlayers", this.maxPlayers).append("playerIdleTimeout", this.playerIdleTimeout).append("resourcePack", this.resourcePack).append("resourcePackHash", this.resourcePackHash).append("useNativeTransport", this.useNativeTransport).append("viewDistance", this.viewDistance).append("inputThreadPoolSize", this.inputThreadPoolSize).append("administratorsFile", this.administratorsFile).append("whiteListEnabled", this.whiteListEnabled).append("whiteListFile", this.whiteListFile).append("motd", this.motd).append("worlds", this.worlds).toString();
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("hostname", this.hostname).append("port", this.port).append("queryPort", this.queryPort).append("rconPort", this.rconPort).append("rconPassword", this.rconPassword).append("networkCompressionThreshold", this.networkCompressionThreshold).append("onlineMode", this.onlineMode).append("maxPlayers", this.maxPlayers).append("playerIdleTimeout", this.playerIdleTimeout).append("resourcePack", this.resourcePack).append("resourcePackHash", this.resourcePackHash).append("useNativeTransport", this.useNativeTransport).append("batchPackets", this.batchPackets).append("viewDistance", this.viewDistance).append("inputThreadPoolSize", this.inputThreadPoolSize).append("tickThreads", this.tickThreads).append("administratorsFile", this.administratorsFile).append("whiteListEnabled", this.whiteListEnabled).append("whiteListFile", this.whiteListFile).append("motd", this.motd).append("worlds", this.worlds).toString();
     }
 
     private static WorldsConfigImpl defaultWorldsConfigImpl()
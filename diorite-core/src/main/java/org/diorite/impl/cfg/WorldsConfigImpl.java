@@ -37,6 +37,7 @@ import java.util.Map;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import org.diorite.impl.world.io.ChunkIODurability;
 import org.diorite.Difficulty;
 import org.diorite.GameMode;
 import org.diorite.cfg.WorldsConfig;
@@ -260,6 +261,18 @@ public class WorldsConfigImpl implements WorldsConfig
         @CfgByteDefault(10)
         private byte forceLoadedRadius;
 
+        @CfgComment("Amount of threads used to load and save chunks of this world, regions are split between threads, so there is no reason to use more threads than regions. (1 -> single chunk io thread)")
+        @CfgIntDefault(1)
+        private int chunkIOThreads;
+
+        @CfgComment("Amount of threads used to generate biomes and terrain of new chunks of this world, population is always done by main thread. (0 -> chunks are generated by main thread)")
+        @CfgIntDefault(2)
+        private int chunkGenerationThreads;
+
+        @CfgComment("When saved chunks should be forced to disk: PER_CHUNK (safest, slowest), PER_BATCH (when chunk io thread has nothing more to do), PER_AUTOSAVE (only on world save), OS_MANAGED (never, system decides, no crash-consistency).")
+        @CfgChunkIODurabilityDefault(ChunkIODurability.PER_BATCH)
+        private ChunkIODurability chunkIODurability;
+
         @CfgComment("X coordinates of spawn location.")
         private double spawnX;
 
@@ -456,6 +469,37 @@ public class WorldsConfigImpl implements WorldsConfig
             this.forceLoadedRadius = forceLoadedRadius;
         }
 
+        @Override
+        public int getChunkIOThreads()
+        {
+            return this.chunkIOThreads;
+        }
+
+        public void setChunkIOThreads(final int chunkIOThreads)
+        {
+            this.chunkIOThreads = chunkIOThreads;
+        }
+
+        public int getChunkGenerationThreads()
+        {
+            return this.chunkGenerationThreads;
+        }
+
+        public void setChunkGenerationThreads(final int chunkGenerationThreads)
+        {
+            this.chunkGenerationThreads = chunkGenerationThreads;
+        }
+
+        public ChunkIODurability getChunkIODurability()
+        {
+            return this.chunkIODurability;
+        }
+
+        public void setChunkIODurability(final ChunkIODurability chunkIODurability)
+        {
+            this.chunkIODurability = chunkIODurability;
+        }
+
         @Override
         public double getSpawnX()
         {
@@ -551,6 +595,18 @@ public class WorldsConfigImpl implements WorldsConfig
             {
                 return false;
             }
+            if (this.chunkIOThreads != that.chunkIOThreads)
+            {
+                return false;
+            }
+            if (this.chunkGenerationThreads != that.chunkGenerationThreads)
+            {
+                return false;
+            }
+            if (this.chunkIODurability != that.chunkIODurability)
+            {
+                return false;
+            }
             if (this.spawnX != that.spawnX)
             {
                 return false;
@@ -618,6 +674,9 @@ public class WorldsConfigImpl implements WorldsConfig
             result = (31 * result) + (this.hardcore ? 1 : 0);
             result = (31 * result) + this.hardcoreAction.hashCode();
             result = (31 * result) + (int) this.forceLoadedRadius;
+            result = (31 * result) + this.chunkIOThreads;
+            result = (31 * result) + this.chunkGenerationThreads;
+            result = (31 * result) + ((this.chunkIODurability != null) ? this.chunkIODurability.hashCode() : 0);
             temp = Double.doubleToLongBits(this.spawnX);
             result = (31 * result) + (int) (temp ^ (temp >>> 32));
             temp = Double.doubleToLongBits(this.spawnY);
@@ -673,6 +732,14 @@ public class WorldsConfigImpl implements WorldsConfig
         HardcoreAction value();
     }
 
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.FIELD)
+    @CfgCustomDefault(ChunkIODurability.class)
+    public @interface CfgChunkIODurabilityDefault
+    {
+        ChunkIODurability value();
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.command.defaults;
+
+import static org.diorite.cfg.messages.Message.MessageData;
+
+
+import java.util.regex.Pattern;
+
+import org.diorite.impl.command.SystemCommandImpl;
+import org.diorite.impl.entity.IPlayer;
+import org.diorite.Diorite;
+import org.diorite.cfg.messages.DioriteMessages;
+import org.diorite.command.CommandPriority;
+import org.diorite.command.sender.CommandSender;
+import org.diorite.world.World;
+import org.diorite.world.chunk.ChunkPos;
+import org.diorite.world.generator.WorldPreGenerator;
+
+public class PreGenerateCmd extends SystemCommandImpl
+{
+    public PreGenerateCmd()
+    {
+        super("pregenerate", Pattern.compile("(pregen(erate|))(:(?<world>([a-z0-9_]*))|)", Pattern.CASE_INSENSITIVE), CommandPriority.LOW);
+        this.setDescription("Pre-generates chunks of world");
+        this.setCommandExecutor((sender, command, label, matchedPattern, args) -> {
+            final World world;
+            final String parWorld = matchedPattern.group("world");
+            if (parWorld == null)
+            {
+                if (sender instanceof IPlayer)
+                {
+                    world = ((IPlayer) sender).getWorld();
+                }
+                else
+                {
+                    DioriteMessages.sendMessage(DioriteMessages.MSG_CMD_CONSOLE_NO_WORLD, sender, MessageData.e("command", this));
+                    return;
+                }
+            }
+            else
+            {
+                world = Diorite.getWorldsManager().getWorld(parWorld);
+                if (world == null)
+                {
+                    DioriteMessages.sendMessage(DioriteMessages.MSG_CMD_NO_WORLD, sender);
+                    return;
+                }
+            }
+
+            final WorldPreGenerator current = world.getPreGenerator();
+            if (args.length() == 0)
+            {
+                if (current == null)
+                {
+                    sender.sendSimpleColoredMessage("&7World &3" + world.getName() + "&7 was not pre-generated, use: &3/pregen:" + world.getName() + " <radius> [centerX] [centerZ]&7, or &3stop&7.");
+                    return;
+                }
+                this.sendStatus(sender, current);
+                return;
+            }
+            if (args.asString(0).equalsIgnoreCase("stop"))
+            {
+                if ((current == null) || current.isDone())
+                {
+                    sender.sendSimpleColoredMessage("&7World &3" + world.getName() + "&7 isn't pre-generating.");
+                    return;
+                }
+                current.cancel();
+                sender.sendSimpleColoredMessage("&7Stopping pre-generation of &3" + world.getName() + "&7.");
+                return;
+            }
+
+            final Integer radius = args.asInt(0);
+            if ((radius == null) || (radius < 0) || ((args.length() != 1) && (args.length() != 3)))
+            {
+                DioriteMessages.sendMessage(DioriteMessages.MSG_CMD_INVALID_ARGUMENTS, sender);
+                return;
+            }
+            final int centerX;
+            final int centerZ;
+            if (args.length() == 3)
+            {
+                final Integer x = args.asInt(1);
+                final Integer z = args.asInt(2);
+                if ((x == null) || (z == null))
+                {
+                    DioriteMessages.sendMessage(DioriteMessages.MSG_CMD_INVALID_ARGUMENTS, sender);
+                    return;
+                }
+                centerX = x;
+                centerZ = z;
+            }
+            else
+            {
+                final ChunkPos spawn = world.getSpawn().getChunkPos();
+                centerX = spawn.getX();
+                centerZ = spawn.getZ();
+            }
+            try
+            {
+                final WorldPreGenerator preGenerator = world.preGenerate(centerX, centerZ, radius);
+                sender.sendSimpleColoredMessage("&7Pre-generating &3" + preGenerator.getTotalChunks() + "&7 chunks of &3" + world.getName() + "&7 around chunk &3" + centerX + "&7, &3" + centerZ + "&7.");
+            } catch (final IllegalStateException e)
+            {
+                sender.sendSimpleColoredMessage("&7World &3" + world.getName() + "&7 is already pre-generating, use &3stop&7 first.");
+            }
+        });
+    }
+
+    private void sendStatus(final CommandSender sender, final WorldPreGenerator preGenerator)
+    {
+        final String state = preGenerator.isDone() ? (preGenerator.isCancelled() ? "cancelled" : "done") : "running";
+        sender.sendSimpleColoredMessage(String.format("&7Pre-generation of &3%s&7 (%s): &3%d&7/&3%d&7 chunks (&3%.1f%%&7), &3%.1f&7 chunks/s, throttled ticks: &3%d", preGenerator.getWorld().getName(), state, preGenerator.getPopulatedChunks(), preGenerator.getTotalChunks(), (preGenerator.getPopulatedChunks() * 100.0) / preGenerator.getTotalChunks(), preGenerator.getChunksPerSecond(), preGenerator.getThrottledSteps()));
+    }
+}
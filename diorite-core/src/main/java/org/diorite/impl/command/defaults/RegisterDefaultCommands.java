@@ -52,6 +52,7 @@ public final class RegisterDefaultCommands
         cmds.registerCommand(new ParticleCmd());
         cmds.registerCommand(new PerformanceMonitorCmd());
         cmds.registerCommand(new PluginsCmd());
+        cmds.registerCommand(new PreGenerateCmd());
         cmds.registerCommand(new SaveCmd());
         cmds.registerCommand(new SayCmd());
         cmds.registerCommand(new SetTpsCmd());
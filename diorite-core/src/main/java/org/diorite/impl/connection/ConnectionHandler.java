@@ -42,5 +42,10 @@ public interface ConnectionHandler
 
     void start();
 
+    /**
+     * Flush packets batched by all connections, invoked at end of each tick.
+     */
+    void flush();
+
 //    void remove(CoreNetworkManager networkManager);
 }
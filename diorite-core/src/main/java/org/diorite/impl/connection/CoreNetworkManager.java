@@ -43,8 +43,11 @@ import org.diorite.impl.connection.listeners.PacketPlayListener;
 import org.diorite.impl.connection.packets.Packet;
 import org.diorite.impl.connection.packets.PacketCompression;
 import org.diorite.impl.connection.packets.PacketEncryptor;
+import org.diorite.impl.connection.packets.PacketFrame;
 import org.diorite.impl.connection.packets.PacketListener;
+import org.diorite.impl.connection.packets.PreparedPacket;
 import org.diorite.impl.connection.packets.QueuedPacket;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundDisconnect;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundKeepAlive;
 import org.diorite.impl.connection.packets.play.serverbound.PacketPlayServerboundKeepAlive;
 import org.diorite.chat.component.BaseComponent;
@@ -61,6 +64,15 @@ import io.netty.util.concurrent.GenericFutureListener;
 
 public abstract class CoreNetworkManager extends SimpleChannelInboundHandler<Packet<? super PacketListener>>
 {
+    /**
+     * Batched packets are flushed before end of tick if there is more of them than this.
+     */
+    public static final int MAX_BATCHED_PACKETS = 256;
+    /**
+     * Batched packets are flushed before end of tick if they take more bytes than this.
+     */
+    public static final int MAX_BATCHED_BYTES   = 65536;
+
     protected final DioriteCore core;
     protected final Queue<QueuedPacket> packetQueue = Queues.newConcurrentLinkedQueue();
     protected final int            playerTimeout;
@@ -69,11 +81,16 @@ public abstract class CoreNetworkManager extends SimpleChannelInboundHandler<Pac
     protected       PacketListener packetListener;
     protected       BaseComponent  disconnectMessage;
     protected boolean preparing = true;
+    protected volatile int compressionThreshold = - 1;
+    protected final boolean batching;
+    private int batchedPackets; // batch counters are used only by event loop of channel.
+    private int batchedBytes;
 
     public CoreNetworkManager(final DioriteCore core)
     {
         this.core = core;
         this.playerTimeout = (int) TimeUnit.SECONDS.toMillis(this.core.getPlayerTimeout());
+        this.batching = this.core.getConfig().isBatchPackets();
     }
 
     private long lastKeepAlive = System.currentTimeMillis();
@@ -157,7 +174,7 @@ public abstract class CoreNetworkManager extends SimpleChannelInboundHandler<Pac
         {
             for (final Packet<?> packet : packets)
             {
-                this.packetQueue.add(new QueuedPacket(packet, null));
+                this.packetQueue.add(new QueuedPacket(packet));
             }
         }
     }
@@ -176,7 +193,7 @@ public abstract class CoreNetworkManager extends SimpleChannelInboundHandler<Pac
         }
         else
         {
-            this.packetQueue.add(new QueuedPacket(packet, null));
+            this.packetQueue.add(new QueuedPacket(packet));
         }
     }
 
@@ -199,6 +216,112 @@ public abstract class CoreNetworkManager extends SimpleChannelInboundHandler<Pac
         }
     }
 
+    /**
+     * Send packet that is encoded only once for all connections. <br>
+     * If connection isn't open yet or it use other protocol, packet is sent in normal way.
+     *
+     * @param packet prepared packet to send.
+     */
+    public void sendPacket(final PreparedPacket packet)
+    {
+        if (this.closed)
+        {
+            this.handleClosed();
+            return;
+        }
+        if (! this.isChannelOpen())
+        {
+            this.packetQueue.add(new QueuedPacket(packet.getPacket()));
+            return;
+        }
+        this.nextPacket();
+        if (this.channel.attr(this.core.getConnectionHandler().getProtocolKey()).get() != packet.getProtocol())
+        {
+            this.sendPacket(packet.getPacket(), null);
+            return;
+        }
+        final PacketFrame frame = packet.retainFrame(this.compressionThreshold);
+        if (this.channel.eventLoop().inEventLoop())
+        {
+            this.write(frame, false).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+        }
+        else
+        {
+            this.channel.eventLoop().execute(() -> this.write(frame, false).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE));
+        }
+    }
+
+    /**
+     * Write given message to channel, message is flushed at once if batching is disabled or message should bypass it,
+     * otherwise it is flushed at end of tick or when batch is full.
+     *
+     * @param msg   message to write.
+     * @param flush if message should be flushed at once.
+     *
+     * @return write future.
+     */
+    private ChannelFuture write(final Object msg, final boolean flush)
+    {
+        if (! this.batching || flush)
+        {
+            this.batchedPackets = 0;
+            this.batchedBytes = 0;
+            return this.channel.writeAndFlush(msg);
+        }
+        int size = (msg instanceof PacketFrame) ? ((PacketFrame) msg).content().readableBytes() : 0;
+        final ChannelFuture future = this.channel.write(msg); // packet is encoded here, as we are in event loop.
+        if (msg instanceof Packet)
+        {
+            final byte[] data = ((Packet<?>) msg).getCachedData();
+            size = (data == null) ? 0 : data.length;
+        }
+        this.batchedBytes += size;
+        if ((++ this.batchedPackets >= MAX_BATCHED_PACKETS) || (this.batchedBytes >= MAX_BATCHED_BYTES))
+        {
+            this.flushBatch();
+        }
+        return future;
+    }
+
+    private void flushBatch()
+    {
+        if (this.batchedPackets != 0)
+        {
+            this.batchedPackets = 0;
+            this.batchedBytes = 0;
+            this.channel.flush();
+        }
+    }
+
+    /**
+     * Flush all batched packets. <br>
+     * If invoked outside of event loop, flush is executed by event loop after all writes queued before it,
+     * so packets sent in this tick are always flushed.
+     */
+    public void flush()
+    {
+        if (! this.isChannelOpen())
+        {
+            return;
+        }
+        if (this.channel.eventLoop().inEventLoop())
+        {
+            this.flushBatch();
+        }
+        else
+        {
+            this.channel.eventLoop().execute(this::flushBatch);
+        }
+    }
+
+    public void sendPackets(final PreparedPacket[] packets)
+    {
+        for (final PreparedPacket packet : packets)
+        {
+            this.sendPacket(packet);
+        }
+    }
+
     private void sendPacket(final Packet<?> packet, final GenericFutureListener<? extends Future<? super Void>>[] listeners)
     {
         if (this.closed)
@@ -212,6 +335,8 @@ public abstract class CoreNetworkManager extends SimpleChannelInboundHandler<Pac
         }
         final EnumProtocol ep1 = EnumProtocol.getByPacketClass(packet);
         final EnumProtocol ep2 = this.channel.attr(this.core.getConnectionHandler().getProtocolKey()).get();
+        // only play packets are batched, keep-alive and disconnect packets must be sent at once.
+        final boolean flush = (ep1 != EnumProtocol.PLAY) || (packet instanceof PacketPlayClientboundKeepAlive) || (packet instanceof PacketPlayClientboundDisconnect);
         if (ep2 != ep1)
         {
             this.channel.config().setAutoRead(false);
@@ -222,7 +347,7 @@ public abstract class CoreNetworkManager extends SimpleChannelInboundHandler<Pac
             {
                 this.setProtocol(ep1);
             }
-            final ChannelFuture channelfuture = this.channel.writeAndFlush(packet);
+            final ChannelFuture channelfuture = this.write(packet, flush);
             if (listeners != null)
             {
                 channelfuture.addListeners(listeners);
@@ -236,7 +361,7 @@ public abstract class CoreNetworkManager extends SimpleChannelInboundHandler<Pac
                 {
                     this.setProtocol(ep1);
                 }
-                final ChannelFuture channelFuture = this.channel.writeAndFlush(packet);
+                final ChannelFuture channelFuture = this.write(packet, flush);
                 if (listeners != null)
                 {
                     channelFuture.addListeners(listeners);
@@ -404,6 +529,7 @@ public abstract class CoreNetworkManager extends SimpleChannelInboundHandler<Pac
             this.handleClosed();
             return;
         }
+        this.compressionThreshold = (i >= 0) ? i : - 1;
         if (i >= 0)
         {
             if ((this.channel.pipeline().get("compression") instanceof PacketCompression))
@@ -65,6 +65,13 @@ public class PacketCodec extends PacketByteToMessageCodec
         }
     }
 
+    @Override
+    protected ByteBuf allocateBuffer(final ChannelHandlerContext ctx, final Packet<?> msg, final boolean preferDirect) throws Exception
+    {
+        // compression works on backing arrays, so heap buffer allows to compress it without copying.
+        return super.allocateBuffer(ctx, msg, preferDirect && (ctx.pipeline().get(PacketCompression.class) == null));
+    }
+
     @Override
     protected void decode(final ChannelHandlerContext context, final ByteBuf byteBuf, final List<Object> packets) throws InstantiationException, IllegalAccessException, IOException
     {
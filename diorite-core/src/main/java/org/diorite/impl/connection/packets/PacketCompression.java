@@ -26,6 +26,8 @@ package org.diorite.impl.connection.packets;
 
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -36,182 +38,147 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.diorite.impl.connection.ByteToMessageCodec.PacketByteBufByteToMessageCodec;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.DecoderException;
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 
+/**
+ * Packet compression handler, deflaters and inflaters are shared by all connections handled by the same thread. <br>
+ * Data is compressed directly from and to backing arrays of heap buffers, other buffers are copied to shared temporary array first.
+ */
 @SuppressWarnings("MagicNumber")
 public class PacketCompression extends PacketByteBufByteToMessageCodec
 {
-    public static final int    MAX_PACKET_SIZE = 2097152; // 2 MB
-    private final       byte[] bytes           = new byte[8192];
-    private final Inflater inflater;
-    private final Deflater deflater;
-    private       int      threshold;
+    public static final int MAX_PACKET_SIZE = 2097152; // 2 MB
+    private static final int SCRATCH_SIZE   = 8192;
 
-    public PacketCompression(final int threshold)
-    {
-        this.threshold = threshold;
-        this.deflater = new Deflater();
-        this.inflater = new Inflater();
-    }
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+    private static final ThreadLocal<byte[]>   inputs    = ThreadLocal.withInitial(() -> new byte[SCRATCH_SIZE]);
+    private static final ThreadLocal<byte[]>   outputs   = ThreadLocal.withInitial(() -> new byte[SCRATCH_SIZE]);
 
+    // estimated compressed size in permille of uncompressed size, for each power of two size.
+    private static final AtomicIntegerArray ratios = new AtomicIntegerArray(Integer.SIZE);
 
-    private static final Int2IntMap sizes;
+    private static final LongAdder compressedPackets   = new LongAdder();
+    private static final LongAdder uncompressedBytes   = new LongAdder();
+    private static final LongAdder compressedBytes     = new LongAdder();
+    private static final LongAdder compressionTime     = new LongAdder();
+    private static final LongAdder decompressedPackets = new LongAdder();
+    private static final LongAdder decompressionTime   = new LongAdder();
 
     static
     {
-        sizes = new Int2IntOpenHashMap(641, .1f);
-        for (int k = 100; k <= 1_000_000_000; k *= 10)
-        {
-            for (int i = k, to = (k * 10), add = (k / 10); i < to; i += add)
-            {
-                sizes.put(((i / add) * add), 1);
-            }
-        }
-        for (int i = 1_500_000_000, to = 2_000_000_000, add = (100_000_000); i <= to; i += add)
+        for (int i = 0; i < ratios.length(); i++)
         {
-            sizes.put(((i / add) * add), 1);
+            ratios.set(i, 1000);
         }
     }
 
-    private static int getSize(final int key)
+    private int threshold;
+
+    public PacketCompression(final int threshold)
     {
-        if (key < 128)
+        this.threshold = threshold;
+    }
+
+    private static byte[] getInput(final ByteBuf byteBuf, final int length)
+    {
+        byte[] bytes = inputs.get();
+        if (bytes.length < length)
         {
-            return 0;
+            bytes = new byte[length];
+            inputs.set(bytes);
         }
-        return sizes.get(key);
+        byteBuf.getBytes(byteBuf.readerIndex(), bytes, 0, length);
+        return bytes;
     }
 
-    private static void update(final int key, final int newValue)
+    private static int estimateSize(final int size)
     {
-        sizes.put(key, newValue);
-//        final TIntIntIterator it = sizes.iterator();
-//        while (it.hasNext())
-//        {
-//            it.advance();
-//            if ((it.key() >= key) && (it.value() < newValue))
-//            {
-//                it.setValue(newValue);
-//            }
-//        }
+        return (int) ((size * (long) ratios.get(31 - Integer.numberOfLeadingZeros(size))) / 1000) + 64;
     }
 
-    private static int getKey(final int i)
+    private static void updateRatio(final int size, final int compressed)
     {
-        if (i > 1_000_000_000)
-        {
-            return (i / 100_000_000) * 100_000_000;
-        }
-        if (i > 100_000_000)
-        {
-            return (i / 10_000_000) * 10_000_000;
-        }
-        if (i > 10_000_000)
-        {
-            return (i / 1_000_000) * 1_000_000;
-        }
-        if (i > 1_000_000)
-        {
-            return (i / 100_000) * 100_000;
-        }
-        if (i > 100_000)
+        final int index = 31 - Integer.numberOfLeadingZeros(size);
+        final int ratio = (int) ((compressed * 1000L) / size);
+        final int old = ratios.get(index);
+        // grow at once to avoid expanding buffers, but shrink slowly.
+        ratios.set(index, (ratio > old) ? ratio : (old - ((old - ratio) >> 4)));
+    }
+
+    /**
+     * Write given packet data to output buffer in compressed format, data smaller than threshold is written without compression.
+     *
+     * @param threshold  compression threshold.
+     * @param srcByteBuf source packet data.
+     * @param byteBuf    output buffer.
+     *
+     * @return true if data was compressed.
+     */
+    public static boolean compress(final int threshold, final ByteBuf srcByteBuf, final ByteBuf byteBuf)
+    {
+        final int i = srcByteBuf.readableBytes();
+        final PacketDataSerializer localPacketDataSerializer = new PacketDataSerializer(byteBuf);
+        if (i < threshold)
         {
-            return (i / 10_000) * 10_000;
+            localPacketDataSerializer.writeVarInt(0);
+            localPacketDataSerializer.writeBytes(srcByteBuf);
+            return false;
         }
-        if (i > 10_000)
+        final long start = System.nanoTime();
+        localPacketDataSerializer.writeVarInt(i);
+        final int startIndex = byteBuf.writerIndex();
+
+        final Deflater deflater = deflaters.get();
+        if (srcByteBuf.hasArray())
         {
-            return (i / 1_000) * 1_000;
+            deflater.setInput(srcByteBuf.array(), srcByteBuf.arrayOffset() + srcByteBuf.readerIndex(), i);
         }
-        if (i > 1_000)
+        else
         {
-            return (i / 100) * 100;
+            deflater.setInput(getInput(srcByteBuf, i), 0, i);
         }
-        if (i > 127)
+        srcByteBuf.skipBytes(i);
+        deflater.finish();
+        while (! deflater.finished())
         {
-            return (i / 10) * 10;
+            if (byteBuf.hasArray())
+            {
+                byteBuf.ensureWritable(Math.max(64, i >> 3));
+                final int j = deflater.deflate(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.writerIndex(), byteBuf.writableBytes());
+                byteBuf.writerIndex(byteBuf.writerIndex() + j);
+            }
+            else
+            {
+                final byte[] bytes = outputs.get();
+                final int j = deflater.deflate(bytes);
+                byteBuf.writeBytes(bytes, 0, j);
+            }
         }
-        return 0;
+        deflater.reset();
+
+        final int compressed = byteBuf.writerIndex() - startIndex;
+        updateRatio(i, compressed);
+        compressedPackets.increment();
+        uncompressedBytes.add(i);
+        compressedBytes.add(compressed);
+        compressionTime.add(System.nanoTime() - start);
+        return true;
     }
 
     @Override
     protected ByteBuf allocateBuffer(final ChannelHandlerContext ctx, final ByteBuf msg, final boolean preferDirect) throws Exception
     {
-        // TODO: keep this in valid values, to keep byte buffers not extends when writing, but also don't crate 2 000 000 byte buffers for 50 000 bytes data.
+        // heap buffer is always used, so deflater can write to its backing array.
         final int i = msg.readableBytes();
-        final int sizesKey = getKey(i);
-        int size = getSize(sizesKey);
-        if (size == - 1)
-        {
-            throw new AssertionError();
-        }
-        if (size == 0)
-        {
-            size = msg.readableBytes() + 10;
-        }
-        else if (size > msg.readableBytes())
-        {
-            size = msg.readableBytes();
-        }
-        if (preferDirect)
-        {
-            return ctx.alloc().ioBuffer(size);
-        }
-        else
-        {
-            return ctx.alloc().heapBuffer(size);
-        }
+        return ctx.alloc().heapBuffer(((i < this.threshold) ? i : estimateSize(i)) + 5);
     }
 
     @Override
     protected void encode(final ChannelHandlerContext channelHandlerContext, final ByteBuf srcByteBuf, final ByteBuf byteBuf)
     {
-        final int i = srcByteBuf.readableBytes();
-        final PacketDataSerializer localPacketDataSerializer = new PacketDataSerializer(byteBuf);
-        if (i < this.threshold)
-        {
-            localPacketDataSerializer.writeVarInt(0);
-            localPacketDataSerializer.writeBytes(srcByteBuf);
-        }
-        else
-        {
-            final byte[] arrayOfByte = new byte[i];
-            srcByteBuf.readBytes(arrayOfByte);
-
-            localPacketDataSerializer.writeVarInt(arrayOfByte.length);
-
-            this.deflater.setInput(arrayOfByte, 0, i);
-            this.deflater.finish();
-            while (! this.deflater.finished())
-            {
-                final int j = this.deflater.deflate(this.bytes);
-                localPacketDataSerializer.writeBytes(this.bytes, 0, j);
-            }
-
-            if (i > 127)
-            {
-                final int sizesKey = getKey(i);
-                final int maxSize = getSize(sizesKey);
-                if (byteBuf.readableBytes() > maxSize)
-                {
-                    int newSize = byteBuf.readableBytes();
-                    if (maxSize == 1)
-                    {
-                        newSize += newSize / 100;
-                    }
-                    else
-                    {
-                        newSize += (byteBuf.readableBytes() - maxSize) * 5;
-                    }
-                    update(sizesKey, newSize);
-//                    CoreMain.debug("Updated " + sizesKey + ", to: " + newSize + ", bytes: " + byteBuf.readableBytes());
-                }
-            }
-            this.deflater.reset();
-        }
+        compress(this.threshold, srcByteBuf, byteBuf);
     }
 
     @Override
@@ -225,28 +192,59 @@ public class PacketCompression extends PacketByteBufByteToMessageCodec
         final int i = localPacketDataSerializer.readVarInt();
         if (i == 0)
         {
-            paramList.add(localPacketDataSerializer.readBytes(localPacketDataSerializer.readableBytes()));
+            paramList.add(byteBuf.readSlice(byteBuf.readableBytes()).retain());
+            return;
+        }
+        if (i < this.threshold)
+        {
+            throw new DecoderException("Badly compressed packet - size of " + i + " is below server threshold of " + this.threshold);
+        }
+        if (i > MAX_PACKET_SIZE)
+        {
+            throw new DecoderException("Badly compressed packet - size of " + i + " is larger than protocol maximum of " + MAX_PACKET_SIZE);
+        }
+        final long start = System.nanoTime();
+        final int readableBytes = byteBuf.readableBytes();
+        final Inflater inflater = inflaters.get();
+        if (byteBuf.hasArray())
+        {
+            inflater.setInput(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), readableBytes);
         }
         else
         {
-            if (i < this.threshold)
+            inflater.setInput(getInput(byteBuf, readableBytes), 0, readableBytes);
+        }
+        byteBuf.skipBytes(readableBytes);
+
+        final ByteBuf out = channelHandlerContext.alloc().heapBuffer(i, i);
+        try
+        {
+            int written = 0;
+            while ((written < i) && ! inflater.finished())
             {
-                throw new DecoderException("Badly compressed packet - size of " + i + " is below server threshold of " + this.threshold);
+                final int j = inflater.inflate(out.array(), out.arrayOffset() + written, i - written);
+                if ((j == 0) && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                written += j;
             }
-            if (i > MAX_PACKET_SIZE)
+            if (written != i)
             {
-                throw new DecoderException("Badly compressed packet - size of " + i + " is larger than protocol maximum of " + MAX_PACKET_SIZE);
+                throw new DecoderException("Badly compressed packet - size of " + written + " doesn't match declared size of " + i);
             }
-            final byte[] arrayOfByte1 = new byte[localPacketDataSerializer.readableBytes()];
-            localPacketDataSerializer.readBytes(arrayOfByte1);
-            this.inflater.setInput(arrayOfByte1);
-
-            final byte[] arrayOfByte2 = new byte[i];
-            this.inflater.inflate(arrayOfByte2);
-            paramList.add(Unpooled.wrappedBuffer(arrayOfByte2));
-
-            this.inflater.reset();
+            out.writerIndex(written);
+        } catch (final DataFormatException | RuntimeException e)
+        {
+            out.release();
+            throw e;
+        } finally
+        {
+            inflater.reset();
         }
+        paramList.add(out);
+        decompressedPackets.increment();
+        decompressionTime.add(System.nanoTime() - start);
     }
 
     public void setThreshold(final int threshold)
@@ -254,9 +252,66 @@ public class PacketCompression extends PacketByteBufByteToMessageCodec
         this.threshold = threshold;
     }
 
+    /**
+     * @return amount of compressed packets.
+     */
+    public static long getCompressedPackets()
+    {
+        return compressedPackets.sum();
+    }
+
+    /**
+     * @return amount of bytes before compression, only compressed packets are counted.
+     */
+    public static long getUncompressedBytes()
+    {
+        return uncompressedBytes.sum();
+    }
+
+    /**
+     * @return amount of bytes after compression.
+     */
+    public static long getCompressedBytes()
+    {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * @return compressed size to uncompressed size ratio of all compressed packets.
+     */
+    public static double getCompressionRatio()
+    {
+        final long uncompressed = uncompressedBytes.sum();
+        return (uncompressed == 0) ? 1 : (compressedBytes.sum() / (double) uncompressed);
+    }
+
+    /**
+     * @return total time spent on compression, in nanoseconds.
+     */
+    public static long getCompressionTime()
+    {
+        return compressionTime.sum();
+    }
+
+    /**
+     * @return amount of decompressed packets.
+     */
+    public static long getDecompressedPackets()
+    {
+        return decompressedPackets.sum();
+    }
+
+    /**
+     * @return total time spent on decompression, in nanoseconds.
+     */
+    public static long getDecompressionTime()
+    {
+        return decompressionTime.sum();
+    }
+
     @Override
     public String toString()
     {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("deflater", this.deflater).append("threshold", this.threshold).toString();
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("threshold", this.threshold).toString();
     }
-}
\ No newline at end of file
+}
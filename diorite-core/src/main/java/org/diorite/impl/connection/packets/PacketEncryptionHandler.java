@@ -27,57 +27,76 @@ package org.diorite.impl.connection.packets;
 import javax.crypto.Cipher;
 import javax.crypto.ShortBufferException;
 
+import java.nio.ByteBuffer;
+
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandlerContext;
 
+/**
+ * Stream cipher used by connection, AES/CFB8 output has always the same size as input, so data can be ciphered in place.
+ */
 public class PacketEncryptionHandler
 {
-    private static final byte[] EMPTY_BYTES = new byte[0];
     private final Cipher cipher;
-    private byte[] b = EMPTY_BYTES;
-    private byte[] c = EMPTY_BYTES;
 
     protected PacketEncryptionHandler(final Cipher cipher)
     {
         this.cipher = cipher;
     }
 
-    private byte[] getBytes(final ByteBuf byteBuf)
+    /**
+     * Cipher readable bytes of given buffer in place, buffer must not be shared with other connections.
+     *
+     * @param byteBuf buffer to cipher.
+     *
+     * @throws ShortBufferException if cipher output is larger than input.
+     */
+    protected void handle(final ByteBuf byteBuf) throws ShortBufferException
     {
+        final int readerIndex = byteBuf.readerIndex();
         final int readableBytes = byteBuf.readableBytes();
-        if (this.b.length < readableBytes)
+        if (byteBuf.hasArray())
         {
-            this.b = new byte[readableBytes];
+            final byte[] array = byteBuf.array();
+            final int offset = byteBuf.arrayOffset() + readerIndex;
+            this.cipher.update(array, offset, readableBytes, array, offset);
+            return;
+        }
+        for (final ByteBuffer nioBuffer : byteBuf.nioBuffers(readerIndex, readableBytes))
+        {
+            this.cipher.update(nioBuffer, nioBuffer.duplicate());
         }
-        byteBuf.readBytes(this.b, 0, readableBytes);
-        return this.b;
-    }
-
-    protected ByteBuf handle(final ChannelHandlerContext channelHandlerContext, final ByteBuf byteBuf) throws ShortBufferException
-    {
-        final int readableBytes = byteBuf.readableBytes();
-        final byte[] arrayOfByte = this.getBytes(byteBuf);
-
-        final ByteBuf newBuf = channelHandlerContext.alloc().heapBuffer(this.cipher.getOutputSize(readableBytes));
-        newBuf.writerIndex(this.cipher.update(arrayOfByte, 0, readableBytes, newBuf.array(), newBuf.arrayOffset()));
-
-        return newBuf;
     }
 
+    /**
+     * Cipher readable bytes of source buffer and write them to other buffer.
+     *
+     * @param srcByteBuf source buffer, all readable bytes are consumed.
+     * @param byteBuf    output buffer.
+     *
+     * @throws ShortBufferException if cipher output is larger than input.
+     */
     protected void copy(final ByteBuf srcByteBuf, final ByteBuf byteBuf) throws ShortBufferException
     {
         final int readableBytes = srcByteBuf.readableBytes();
-        final byte[] bytes = this.getBytes(srcByteBuf);
-
-        final int outputSize = this.cipher.getOutputSize(readableBytes);
-        if (this.c.length < outputSize)
+        byteBuf.ensureWritable(readableBytes);
+        final int writerIndex = byteBuf.writerIndex();
+        if (srcByteBuf.hasArray() && byteBuf.hasArray())
         {
-            this.c = new byte[outputSize];
+            this.cipher.update(srcByteBuf.array(), srcByteBuf.arrayOffset() + srcByteBuf.readerIndex(), readableBytes, byteBuf.array(), byteBuf.arrayOffset() + writerIndex);
         }
-        byteBuf.writeBytes(this.c, 0, this.cipher.update(bytes, 0, readableBytes, this.c));
+        else
+        {
+            final ByteBuffer out = byteBuf.nioBuffer(writerIndex, readableBytes);
+            for (final ByteBuffer nioBuffer : srcByteBuf.nioBuffers(srcByteBuf.readerIndex(), readableBytes))
+            {
+                this.cipher.update(nioBuffer, out);
+            }
+        }
+        srcByteBuf.skipBytes(readableBytes);
+        byteBuf.writerIndex(writerIndex + readableBytes);
     }
 
     @Override
@@ -86,4 +105,3 @@ public class PacketEncryptionHandler
         return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("cipher", this.cipher).toString();
     }
 }
-
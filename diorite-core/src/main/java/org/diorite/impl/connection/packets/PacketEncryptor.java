@@ -26,16 +26,19 @@ package org.diorite.impl.connection.packets;
 
 import javax.crypto.Cipher;
 
-import java.util.List;
-
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageCodec;
+import io.netty.channel.ChannelPromise;
 
-public class PacketEncryptor extends ByteToMessageCodec<ByteBuf>
+/**
+ * Encrypts and decrypts whole connection stream, buffers owned only by this connection are ciphered in place,
+ * shared ones (like {@link PacketFrame}s sent to many connections) are ciphered into new pooled buffer.
+ */
+public class PacketEncryptor extends ChannelDuplexHandler
 {
     private final PacketEncryptionHandler handler1;
     private final PacketEncryptionHandler handler2;
@@ -47,15 +50,58 @@ public class PacketEncryptor extends ByteToMessageCodec<ByteBuf>
     }
 
     @Override
-    protected void encode(final ChannelHandlerContext channelHandlerContext, final ByteBuf srcByteBuf, final ByteBuf byteBuf) throws Exception
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) throws Exception
     {
-        this.handler1.copy(srcByteBuf, byteBuf);
+        if (! (msg instanceof ByteBuf))
+        {
+            ctx.write(msg, promise);
+            return;
+        }
+        final ByteBuf byteBuf = (ByteBuf) msg;
+        if (byteBuf.refCnt() == 1)
+        {
+            try
+            {
+                this.handler1.handle(byteBuf);
+            } catch (final Throwable e)
+            {
+                byteBuf.release();
+                throw e;
+            }
+            ctx.write(byteBuf, promise);
+            return;
+        }
+        final ByteBuf out = ctx.alloc().ioBuffer(byteBuf.readableBytes());
+        try
+        {
+            this.handler1.copy(byteBuf, out);
+        } catch (final Throwable e)
+        {
+            out.release();
+            throw e;
+        } finally
+        {
+            byteBuf.release();
+        }
+        ctx.write(out, promise);
     }
 
     @Override
-    protected void decode(final ChannelHandlerContext channelHandlerContext, final ByteBuf byteBuf, final List<Object> list) throws Exception
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception
     {
-        list.add(this.handler2.handle(channelHandlerContext, byteBuf));
+        if (msg instanceof ByteBuf)
+        {
+            final ByteBuf byteBuf = (ByteBuf) msg;
+            try
+            {
+                this.handler2.handle(byteBuf);
+            } catch (final Throwable e)
+            {
+                byteBuf.release();
+                throw e;
+            }
+        }
+        ctx.fireChannelRead(msg);
     }
 
     @Override
@@ -64,4 +110,3 @@ public class PacketEncryptor extends ByteToMessageCodec<ByteBuf>
         return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("handler1", this.handler1).append("handler2", this.handler2).toString();
     }
 }
-
@@ -33,12 +33,36 @@ import org.diorite.utils.math.DioriteMathUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.CorruptedFrameException;
 
 public class PacketSizer extends PacketByteBufByteToMessageCodec
 {
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) throws Exception
+    {
+        if (msg instanceof PacketFrame)
+        {
+            // frame is already encoded, compressed and sized.
+            ctx.write(((PacketFrame) msg).content(), promise);
+            return;
+        }
+        super.write(ctx, msg, promise);
+    }
+
     @Override
     protected void encode(final ChannelHandlerContext context, final ByteBuf srcByteBuf, final ByteBuf byteBuf)
+    {
+        writeFrame(srcByteBuf, byteBuf);
+    }
+
+    /**
+     * Write given packet data to output buffer prefixed by its size.
+     *
+     * @param srcByteBuf source packet data, reader index isn't changed.
+     * @param byteBuf    output buffer.
+     */
+    public static void writeFrame(final ByteBuf srcByteBuf, final ByteBuf byteBuf)
     {
         final int readableBytes = srcByteBuf.readableBytes();
         final int neededBytes = DioriteMathUtils.varintSize(readableBytes);
@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.diorite.impl.connection.packets;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import org.diorite.impl.connection.EnumProtocol;
+import org.diorite.impl.connection.EnumProtocolDirection;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Packet that is encoded and compressed only once for each used compression threshold, and then
+ * sent to many connections as duplicate of the same buffer, only encryption is done separately for each connection. <br>
+ * It must be released after sending it to all connections.
+ */
+public class PreparedPacket
+{
+    private final Packet<?>              packet;
+    private final EnumProtocol           protocol;
+    private final int                    id;
+    private final Int2ObjectMap<ByteBuf> frames = new Int2ObjectOpenHashMap<>(2);
+
+    public PreparedPacket(final Packet<?> packet)
+    {
+        this.packet = packet;
+        this.protocol = EnumProtocol.getByPacketClass(packet);
+        final Integer id = (this.protocol == null) ? null : this.protocol.getPacketID(EnumProtocolDirection.CLIENTBOUND, packet);
+        if (id == null)
+        {
+            throw new IllegalArgumentException("Can't serialize unregistered packet, " + packet);
+        }
+        this.id = id;
+    }
+
+    public Packet<?> getPacket()
+    {
+        return this.packet;
+    }
+
+    public EnumProtocol getProtocol()
+    {
+        return this.protocol;
+    }
+
+    /**
+     * Returns new frame with encoded packet for given compression threshold, frame must be written to channel or released.
+     *
+     * @param threshold compression threshold of connection, -1 if compression is disabled.
+     *
+     * @return new frame with encoded packet.
+     */
+    public synchronized PacketFrame retainFrame(final int threshold)
+    {
+        ByteBuf frame = this.frames.get(threshold);
+        if (frame == null)
+        {
+            frame = this.encode(threshold);
+            this.frames.put(threshold, frame);
+        }
+        return new PacketFrame(frame.duplicate().retain());
+    }
+
+    private ByteBuf encode(final int threshold)
+    {
+        final PacketClass pc = this.packet.getPacketData();
+        final ByteBuf data = Unpooled.buffer(pc.size());
+        try
+        {
+            final PacketDataSerializer dataSerializer = new PacketDataSerializer(data);
+            dataSerializer.writeVarInt(this.id);
+            this.packet.writePacket(dataSerializer);
+            if (threshold < 0)
+            {
+                final ByteBuf frame = Unpooled.buffer(data.readableBytes() + 3);
+                PacketSizer.writeFrame(data, frame);
+                return frame;
+            }
+            final ByteBuf compressed = Unpooled.buffer(data.readableBytes() + 5);
+            try
+            {
+                PacketCompression.compress(threshold, data, compressed);
+                final ByteBuf frame = Unpooled.buffer(compressed.readableBytes() + 3);
+                PacketSizer.writeFrame(compressed, frame);
+                return frame;
+            } finally
+            {
+                compressed.release();
+            }
+        } catch (final IOException e)
+        {
+            throw new RuntimeException("Can't serialize packet: " + this.packet, e);
+        } finally
+        {
+            data.release();
+        }
+    }
+
+    /**
+     * Release all encoded frames, frames that are still used by connections are released after writing them.
+     */
+    public synchronized void release()
+    {
+        this.frames.values().forEach(ByteBuf::release);
+        this.frames.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("packet", this.packet).append("protocol", this.protocol).toString();
+    }
+}
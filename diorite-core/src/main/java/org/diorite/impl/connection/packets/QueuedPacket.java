@@ -35,6 +35,12 @@ public class QueuedPacket
     private final Packet<?>                                               packet;
     private final GenericFutureListener<? extends Future<? super Void>>[] listeners;
 
+    public QueuedPacket(final Packet<?> packet)
+    {
+        this.packet = packet;
+        this.listeners = null;
+    }
+
     @SafeVarargs
     public QueuedPacket(final Packet<?> packet, final GenericFutureListener<? extends Future<? super Void>>... listeners)
     {
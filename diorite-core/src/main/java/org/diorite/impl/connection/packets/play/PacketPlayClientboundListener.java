@@ -49,6 +49,7 @@ import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboun
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundKeepAlive;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundLogin;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundMapChunk;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundMultiBlockChange;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundNamedEntitySpawn;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundNamedSoundEffect;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundOpenWindow;
@@ -106,6 +107,8 @@ public interface PacketPlayClientboundListener extends PacketPlayListener
 
     void handle(PacketPlayClientboundBlockChange packet);
 
+    void handle(PacketPlayClientboundMultiBlockChange packet);
+
     void handle(PacketPlayClientboundTabComplete packet);
 
     void handle(PacketPlayClientboundDisconnect packet);
@@ -34,9 +34,9 @@ import org.diorite.impl.connection.EnumProtocolDirection;
 import org.diorite.impl.connection.packets.PacketClass;
 import org.diorite.impl.connection.packets.PacketDataSerializer;
 import org.diorite.impl.connection.packets.play.PacketPlayClientboundListener;
+import org.diorite.impl.world.chunk.palette.BlockStates;
 import org.diorite.block.BlockLocation;
 import org.diorite.material.BlockMaterialData;
-import org.diorite.material.Material;
 
 @PacketClass(id = 0x0B, protocol = EnumProtocol.PLAY, direction = EnumProtocolDirection.CLIENTBOUND, size = 13)
 public class PacketPlayClientboundBlockChange extends PacketPlayClientbound
@@ -92,8 +92,7 @@ public class PacketPlayClientboundBlockChange extends PacketPlayClientbound
 
     public BlockMaterialData getMaterial()
     {
-        final Material mat = Material.getByID(this.rawID, this.rawType);
-        return (mat instanceof BlockMaterialData) ? (BlockMaterialData) mat : null;
+        return BlockStates.getExact((this.rawID << 4) | (this.rawType & 15));
     }
 
     public void setMaterial(final BlockMaterialData material)
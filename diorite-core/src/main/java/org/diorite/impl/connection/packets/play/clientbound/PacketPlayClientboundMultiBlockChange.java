@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.connection.packets.play.clientbound;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import org.diorite.impl.connection.EnumProtocol;
+import org.diorite.impl.connection.EnumProtocolDirection;
+import org.diorite.impl.connection.packets.PacketClass;
+import org.diorite.impl.connection.packets.PacketDataSerializer;
+import org.diorite.impl.connection.packets.play.PacketPlayClientboundListener;
+import org.diorite.material.BlockMaterialData;
+
+@PacketClass(id = 0x10, protocol = EnumProtocol.PLAY, direction = EnumProtocolDirection.CLIENTBOUND, size = 64)
+public class PacketPlayClientboundMultiBlockChange extends PacketPlayClientbound
+{
+    private int     chunkX; // 4 bytes
+    private int     chunkZ; // 4 bytes
+    private short[] positions; // 2 bytes per record, (x << 12) | (z << 8) | y
+    private int[]   blockData; // ~2 bytes per record, (rawID << 4) | rawType
+
+    public PacketPlayClientboundMultiBlockChange()
+    {
+    }
+
+    public PacketPlayClientboundMultiBlockChange(final int chunkX, final int chunkZ, final short[] positions, final int[] blockData)
+    {
+        if (positions.length != blockData.length)
+        {
+            throw new IllegalArgumentException("Positions and block data must have the same length: " + positions.length + " != " + blockData.length);
+        }
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.positions = positions;
+        this.blockData = blockData;
+    }
+
+    @Override
+    public void readPacket(final PacketDataSerializer data) throws IOException
+    {
+        this.chunkX = data.readInt();
+        this.chunkZ = data.readInt();
+        final int size = data.readVarInt();
+        this.positions = new short[size];
+        this.blockData = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            this.positions[i] = data.readShort();
+            this.blockData[i] = data.readVarInt();
+        }
+    }
+
+    @Override
+    public void writeFields(final PacketDataSerializer data) throws IOException
+    {
+        data.writeInt(this.chunkX);
+        data.writeInt(this.chunkZ);
+        data.writeVarInt(this.positions.length);
+        for (int i = 0; i < this.positions.length; i++)
+        {
+            data.writeShort(this.positions[i]);
+            data.writeVarInt(this.blockData[i]);
+        }
+    }
+
+    public int getChunkX()
+    {
+        return this.chunkX;
+    }
+
+    public void setChunkX(final int chunkX)
+    {
+        this.chunkX = chunkX;
+    }
+
+    public int getChunkZ()
+    {
+        return this.chunkZ;
+    }
+
+    public void setChunkZ(final int chunkZ)
+    {
+        this.chunkZ = chunkZ;
+    }
+
+    public short[] getPositions()
+    {
+        return this.positions;
+    }
+
+    public int[] getBlockData()
+    {
+        return this.blockData;
+    }
+
+    public int size()
+    {
+        return this.positions.length;
+    }
+
+    @Override
+    public void handle(final PacketPlayClientboundListener listener)
+    {
+        listener.handle(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("chunkX", this.chunkX).append("chunkZ", this.chunkZ).append("size", this.positions.length).toString();
+    }
+
+    /**
+     * Pack position of block inside chunk to format used by this packet.
+     *
+     * @param x x coordinate of block inside chunk (0-15).
+     * @param y y coordinate of block (0-255).
+     * @param z z coordinate of block inside chunk (0-15).
+     *
+     * @return packed position.
+     */
+    @SuppressWarnings("MagicNumber")
+    public static short packPosition(final int x, final int y, final int z)
+    {
+        return (short) (((x & 15) << 12) | ((z & 15) << 8) | (y & 0xFF));
+    }
+
+    /**
+     * Pack block type to format used by this packet.
+     *
+     * @param material block type.
+     *
+     * @return packed block data.
+     */
+    public static int packBlockData(final BlockMaterialData material)
+    {
+        return (material.ordinal() << 4) | (material.getType() & 15);
+    }
+}
@@ -47,6 +47,11 @@ public interface IPlayer extends IHuman, Player
 
     PlayerChunksImpl getPlayerChunks();
 
+    /**
+     * @return mailbox with latest movement sent by client, applied once per tick.
+     */
+    MovementMailbox getMovementMailbox();
+
     /**
      * @return file that contains player data shared between all world groups
      */
@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.entity;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Latest movement state sent by client. <br>
+ * Movement packets only overwrite state stored here on network thread, and it is applied once per tick on player tick thread, so there is no
+ * sync task for each movement packet.
+ */
+public class MovementMailbox
+{
+    private boolean hasPosition;
+    private boolean hasRotation;
+    private double  x;
+    private double  y;
+    private double  z;
+    private float   yaw;
+    private float   pitch;
+
+    /**
+     * Store new position of player, replacing previous one if it wasn't applied yet.
+     *
+     * @param x new x coordinate.
+     * @param y new y coordinate.
+     * @param z new z coordinate.
+     */
+    public synchronized void offerPosition(final double x, final double y, final double z)
+    {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.hasPosition = true;
+    }
+
+    /**
+     * Store new rotation of player, replacing previous one if it wasn't applied yet.
+     *
+     * @param yaw   new yaw.
+     * @param pitch new pitch.
+     */
+    public synchronized void offerRotation(final float yaw, final float pitch)
+    {
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.hasRotation = true;
+    }
+
+    /**
+     * Store new position and rotation of player, replacing previous ones if they weren't applied yet.
+     *
+     * @param x     new x coordinate.
+     * @param y     new y coordinate.
+     * @param z     new z coordinate.
+     * @param yaw   new yaw.
+     * @param pitch new pitch.
+     */
+    public synchronized void offerPositionAndRotation(final double x, final double y, final double z, final float yaw, final float pitch)
+    {
+        this.offerPosition(x, y, z);
+        this.offerRotation(yaw, pitch);
+    }
+
+    /**
+     * Remove all not applied state, used when player is teleported by server, as client state from before teleport is outdated.
+     */
+    public synchronized void clear()
+    {
+        this.hasPosition = false;
+        this.hasRotation = false;
+    }
+
+    /**
+     * Apply stored state to given entity and clear it, should be invoked from entity tick thread.
+     *
+     * @param entity entity to update.
+     *
+     * @return true if entity was updated.
+     */
+    public boolean apply(final IEntity entity)
+    {
+        final boolean hasPosition;
+        final boolean hasRotation;
+        final double x;
+        final double y;
+        final double z;
+        final float yaw;
+        final float pitch;
+        synchronized (this)
+        {
+            hasPosition = this.hasPosition;
+            hasRotation = this.hasRotation;
+            if (! hasPosition && ! hasRotation)
+            {
+                return false;
+            }
+            x = this.x;
+            y = this.y;
+            z = this.z;
+            yaw = this.yaw;
+            pitch = this.pitch;
+            this.hasPosition = false;
+            this.hasRotation = false;
+        }
+        if (hasPosition && ((entity.getX() != x) || (entity.getY() != y) || (entity.getZ() != z)))
+        {
+            entity.setPosition(x, y, z);
+        }
+        if (hasRotation && ((entity.getYaw() != yaw) || (entity.getPitch() != pitch)))
+        {
+            entity.setRotation(yaw, pitch);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("hasPosition", this.hasPosition).append("hasRotation", this.hasRotation).append("x", this.x).append("y", this.y).append("z", this.z).append("yaw", this.yaw).append("pitch", this.pitch).toString();
+    }
+}
@@ -26,6 +26,7 @@ package org.diorite.impl.entity.diorite;
 
 import javax.vecmath.Vector3f;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -51,6 +52,7 @@ import org.diorite.impl.entity.meta.entry.EntityMetadataIntEntry;
 import org.diorite.impl.entity.meta.entry.EntityMetadataStringEntry;
 import org.diorite.impl.entity.pathfinder.EntityControllerImpl;
 import org.diorite.impl.entity.tracker.BaseTracker;
+import org.diorite.impl.world.EntitySpatialIndex;
 import org.diorite.impl.world.WorldImpl;
 import org.diorite.impl.world.chunk.ChunkImpl;
 import org.diorite.ILocation;
@@ -62,7 +64,6 @@ import org.diorite.nbt.NbtTagCompound;
 import org.diorite.nbt.NbtTagDouble;
 import org.diorite.nbt.NbtTagFloat;
 import org.diorite.utils.lazy.BooleanLazyValue;
-import org.diorite.utils.math.DioriteMathUtils;
 import org.diorite.utils.math.DioriteRandom;
 import org.diorite.utils.math.DioriteRandomUtils;
 import org.diorite.utils.math.geometry.EntityBoundingBox;
@@ -86,6 +87,7 @@ abstract class EntityImpl extends GameObjectImpl implements IEntity
     private volatile Thread            lastTickThread;
     private          EntityBoundingBox aabb;
     private          int               id;
+    private          long              indexCell = EntitySpatialIndex.NO_CELL;
     protected        EntityMetadata    metadata;
     private          BaseTracker<?>    tracker;
     protected        int               age; // in 1/100th of second
@@ -388,6 +390,16 @@ abstract class EntityImpl extends GameObjectImpl implements IEntity
         }
         this.id = - 1;
         this.getChunk().removeEntity(this);
+        this.removeFromIndex(this.world);
+    }
+
+    private void removeFromIndex(final WorldImpl world)
+    {
+        synchronized (this)
+        {
+            world.getEntityIndex().remove(this, this.indexCell);
+            this.indexCell = EntitySpatialIndex.NO_CELL;
+        }
     }
 
     public void doPhysics()
@@ -520,6 +532,14 @@ abstract class EntityImpl extends GameObjectImpl implements IEntity
                 newChunk.addEntity(this);
             }
         }
+        else
+        {
+            chunk.markEntityModified(this); // entity data is saved with chunk.
+        }
+        synchronized (this)
+        {
+            this.indexCell = this.world.getEntityIndex().update(this, this.indexCell);
+        }
     }
 
     @Override
@@ -653,36 +673,13 @@ abstract class EntityImpl extends GameObjectImpl implements IEntity
     public <T extends Entity> Collection<? extends T> getNearbyEntities(final double x, final double y, final double z, final Predicate<Entity> predicate)
     {
         final Vector3f entitySize = this.aabb.getEntitySize();
-        final Set<T> entities = new HashSet<>(25);
-
-        final int cx = this.getChunk().getX(); // Chunk X location
-        final int cz = this.getChunk().getZ(); // Chunk Z location
-
-
-        final int chunkScanSizeX = 1 + DioriteMathUtils.ceil((x + entitySize.x) / Chunk.CHUNK_SIZE);
-        final int chunkScanSizeZ = 1 + DioriteMathUtils.ceil((z + entitySize.z) / Chunk.CHUNK_SIZE);
-
-        final int cxBeginScan = cx - chunkScanSizeX;
-        final int czBeginScan = cz - chunkScanSizeZ;
-
-        final int cxEndScan = cx + chunkScanSizeX;
-        final int czEndScan = cz + chunkScanSizeZ;
-
-        for (int i = cxBeginScan; i <= cxEndScan; i++)
-        {
-            for (int j = czBeginScan; j <= czEndScan; j++)
-            {
-                final ChunkImpl chunk = this.world.getChunkAt(i, j);
-                if (! chunk.isLoaded())
-                {
-                    continue;
-                }
-
-                //noinspection unchecked,ObjectEquality
-                chunk.getEntities().stream().filter(e -> (e != this) && predicate.test(e)).forEach(e -> entities.add((T) e));
-            }
-        }
+        final double sx = x + entitySize.x;
+        final double sy = y + entitySize.y;
+        final double sz = z + entitySize.z;
+        final Collection<T> entities = new ArrayList<>(16);
 
+        //noinspection unchecked,ObjectEquality
+        this.world.getEntityIndex().forEachInBox(this.x - sx, this.y - sy, this.z - sz, this.x + sx, this.y + sy, this.z + sz, e -> (e != this) && predicate.test(e), e -> entities.add((T) e));
         return entities;
     }
 
@@ -711,21 +708,6 @@ abstract class EntityImpl extends GameObjectImpl implements IEntity
     public Collection<? extends IEntity> getNearbyEntities(final double x, final double y, final double z, final EntityType type, final LookupShape shape)
     {
         final Vector3f entitySize = this.aabb.getEntitySize();
-        final Set<IEntity> entities = new HashSet<>(25);
-
-        final int cx = this.getChunk().getX(); // Chunk X location
-        final int cz = this.getChunk().getZ(); // Chunk Z location
-
-
-        final int chunkScanSizeX = 1 + DioriteMathUtils.ceil((x + entitySize.x) / Chunk.CHUNK_SIZE);
-        final int chunkScanSizeZ = 1 + DioriteMathUtils.ceil((z + entitySize.z) / Chunk.CHUNK_SIZE);
-
-        final int cxBeginScan = cx - chunkScanSizeX;
-        final int czBeginScan = cz - chunkScanSizeZ;
-
-        final int cxEndScan = cx + chunkScanSizeX;
-        final int czEndScan = cz + chunkScanSizeZ;
-
         final Predicate<Entity> entityPredicate;
         final Class<? extends Entity> typeClass = type.getDioriteEntityClass();
         if ((x == y) && (y == z))
@@ -740,22 +722,7 @@ abstract class EntityImpl extends GameObjectImpl implements IEntity
         {
             entityPredicate = e -> (e != this) && typeClass.isAssignableFrom(e.getClass()) && shape.isNotOutside(this.x, this.y, this.z, (entitySize.x / 2) + x, (entitySize.y / 2) + y, (entitySize.z / 2) + z, e.getX(), e.getY(), e.getZ());
         }
-        for (int i = cxBeginScan; i <= cxEndScan; i++)
-        {
-            for (int j = czBeginScan; j <= czEndScan; j++)
-            {
-                final ChunkImpl chunk = this.world.getChunkAt(i, j);
-                if (! chunk.isLoaded())
-                {
-                    continue;
-                }
-
-                //noinspection unchecked,ObjectEquality
-                chunk.getEntities().stream().filter(entityPredicate).forEach(entities::add);
-            }
-        }
-
-        return entities;
+        return this.getNearbyEntities(x, y, z, entityPredicate);
     }
 
     @Override
@@ -819,6 +786,7 @@ abstract class EntityImpl extends GameObjectImpl implements IEntity
     protected void worldChange(final WorldImpl oldW, final WorldImpl newW)
     {
         CoreMain.debug("Entity " + this + " moved from " + oldW + " to " + newW);
+        this.removeFromIndex(oldW);
         this.remove(true);
         this.tracker = null; // TODO better way?
         newW.addEntity(this, false);
@@ -56,6 +56,7 @@ import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboun
 import org.diorite.impl.connection.packets.play.serverbound.PacketPlayServerboundAbilities;
 import org.diorite.impl.entity.IItem;
 import org.diorite.impl.entity.IPlayer;
+import org.diorite.impl.entity.MovementMailbox;
 import org.diorite.impl.entity.tracker.BaseTracker;
 import org.diorite.impl.input.InputAction;
 import org.diorite.impl.input.InputActionType;
@@ -66,6 +67,7 @@ import org.diorite.impl.world.chunk.ChunkImpl;
 import org.diorite.impl.world.chunk.PlayerChunksImpl;
 import org.diorite.BossBar;
 import org.diorite.GameMode;
+import org.diorite.ILocation;
 import org.diorite.ImmutableLocation;
 import org.diorite.Particle;
 import org.diorite.TeleportData;
@@ -96,6 +98,7 @@ class PlayerImpl extends HumanImpl implements IPlayer
 
     private final CoreNetworkManager networkManager;
     private final PlayerChunksImpl   playerChunks;
+    private final MovementMailbox    movementMailbox = new MovementMailbox();
     private       byte               viewDistance;
     private       byte               renderDistance;
     private       Locale             preferredLocale;
@@ -145,6 +148,7 @@ class PlayerImpl extends HumanImpl implements IPlayer
     @Override
     public void doTick(final int tps)
     {
+        this.movementMailbox.apply(this);
         super.doTick(tps);
         if (this.playerChunks == null) // sometimes it is null on first tick o.O
         {
@@ -521,6 +525,20 @@ class PlayerImpl extends HumanImpl implements IPlayer
         return temp;
     }
 
+    @Override
+    public MovementMailbox getMovementMailbox()
+    {
+        return this.movementMailbox;
+    }
+
+    @Override
+    public void teleport(final ILocation location)
+    {
+        // client movement from before teleport is outdated.
+        this.movementMailbox.clear();
+        super.teleport(location);
+    }
+
     @Override
     protected void worldChange(final WorldImpl oldW, final WorldImpl newW)
     {
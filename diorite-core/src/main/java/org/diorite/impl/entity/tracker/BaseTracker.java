@@ -32,7 +32,10 @@ import java.util.Iterator;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import org.diorite.impl.connection.packets.PreparedPacket;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientbound;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundEntityHeadRotation;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundEntityLook;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundEntityMetadata;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundEntityTeleport;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundRelEntityMoveLook;
@@ -49,8 +52,8 @@ public abstract class BaseTracker<T extends IEntity>
     protected       double xLoc;
     protected       double yLoc;
     protected       double zLoc;
-    protected final float  yaw;
-    protected final float  pitch;
+    protected       float  yaw;
+    protected       float  pitch;
     protected       float  headRot;
     protected       float  velX;
     protected       float  velY;
@@ -127,23 +130,44 @@ public abstract class BaseTracker<T extends IEntity>
             this.velX = vel.x;
             this.velY = vel.y;
             this.velZ = vel.z;
-            this.updatePlayers(players);
         }
+        // players may move to this entity too, so given players are checked even if entity didn't move.
+        this.updatePlayers(players);
         if (this.tracker.getId() == - 1)
         {
             this.tracked.forEach(p -> p.removeEntityFromView(this));
         }
 
+        final boolean isRotating = (this.yaw != this.tracker.getYaw()) || (this.pitch != this.tracker.getPitch());
+        if (isRotating)
+        {
+            this.yaw = this.tracker.getYaw();
+            this.pitch = this.tracker.getPitch();
+        }
+
         if (this.isMoving && ! this.tracked.isEmpty())
         {
+            final PacketPlayClientbound movePacket;
             if ((deltaX < 4) && (deltaX > - 4) && (deltaY < 4) && (deltaY > - 4) && (deltaZ < 4) && (deltaZ > - 4))
             {
-                this.sendToAllExceptOwn(new PacketPlayClientboundRelEntityMoveLook(this.tracker, deltaX, deltaY, deltaZ));
+                movePacket = new PacketPlayClientboundRelEntityMoveLook(this.tracker, deltaX, deltaY, deltaZ);
             }
             else
             {
-                this.sendToAllExceptOwn(new PacketPlayClientboundEntityTeleport(this.tracker));
+                movePacket = new PacketPlayClientboundEntityTeleport(this.tracker);
+            }
+            if (isRotating)
+            {
+                this.sendToAllExceptOwn(new PacketPlayClientbound[]{movePacket, new PacketPlayClientboundEntityHeadRotation(this.id, this.yaw)});
             }
+            else
+            {
+                this.sendToAllExceptOwn(movePacket);
+            }
+        }
+        else if (isRotating && ! this.tracked.isEmpty())
+        {
+            this.sendToAllExceptOwn(new PacketPlayClientbound[]{new PacketPlayClientboundEntityLook(this.id, this.yaw, this.pitch, this.tracker.isOnGround()), new PacketPlayClientboundEntityHeadRotation(this.id, this.yaw)});
         }
 
         //if (this.tracker.getHeadPitch() != this.headRot)
@@ -162,7 +186,19 @@ public abstract class BaseTracker<T extends IEntity>
 
     public void sendToAll(final PacketPlayClientbound packet)
     {
-        this.tracked.forEach(p -> p.getNetworkManager().sendPacket(packet));
+        if (this.tracked.isEmpty())
+        {
+            return;
+        }
+        // packet is encoded and compressed only once for all players.
+        final PreparedPacket prepared = new PreparedPacket(packet);
+        try
+        {
+            this.tracked.forEach(p -> p.getNetworkManager().sendPacket(prepared));
+        } finally
+        {
+            prepared.release();
+        }
     }
 
     public void sendToAllExceptOwn(final PacketPlayClientbound packet)
@@ -172,7 +208,25 @@ public abstract class BaseTracker<T extends IEntity>
 
     public void sendToAll(final PacketPlayClientbound[] packet)
     {
-        this.tracked.forEach(p -> p.getNetworkManager().sendPackets(packet));
+        if (this.tracked.isEmpty())
+        {
+            return;
+        }
+        final PreparedPacket[] prepared = new PreparedPacket[packet.length];
+        for (int i = 0; i < packet.length; i++)
+        {
+            prepared[i] = new PreparedPacket(packet[i]);
+        }
+        try
+        {
+            this.tracked.forEach(p -> p.getNetworkManager().sendPackets(prepared));
+        } finally
+        {
+            for (final PreparedPacket preparedPacket : prepared)
+            {
+                preparedPacket.release();
+            }
+        }
     }
 
     public void sendToAllExceptOwn(final PacketPlayClientbound[] packet)
@@ -180,8 +234,24 @@ public abstract class BaseTracker<T extends IEntity>
         this.sendToAll(packet);
     }
 
+    /**
+     * Update tracking state of given players, and remove tracked players that are no longer in tracking range. <br>
+     * Given players should contain at least all players that might be in tracking range.
+     *
+     * @param players players to check.
+     */
     public void updatePlayers(final Iterable<IPlayer> players)
     {
+        // tracked players might be outside of given players if they moved far away.
+        for (final Iterator<IPlayer> iterator = this.tracked.iterator(); iterator.hasNext(); )
+        {
+            final IPlayer p = iterator.next();
+            if (! this.isInTrackedRange(p))
+            {
+                iterator.remove();
+                p.removeEntityFromView(this.tracker);
+            }
+        }
         players.forEach(this::updatePlayer);
     }
 
@@ -191,22 +261,27 @@ public abstract class BaseTracker<T extends IEntity>
         {
             return;
         }
-        final int range = this.getTrackRange();
-        final double dX = player.getX() - this.xLoc;
-        final double dZ = player.getZ() - this.zLoc;
-        final boolean isInTrackedRange = ! ((dX < - range) || (dX > range) || (dZ < - range) || (dZ > range));
+        final boolean isInTrackedRange = this.isInTrackedRange(player);
         final boolean isTracked = this.tracked.contains(player);
         if (isTracked && ! isInTrackedRange)
         {
             this.remove(player);
         }
-        else if (! isTracked && isInTrackedRange)
+        else if (! isTracked && isInTrackedRange && this.tracked.add(player))
         {
-            this.tracked.add(player);
-            this.spawn();
+            // only new player needs spawn packets.
+            player.getNetworkManager().sendPackets(this.tracker.getSpawnPackets());
         }
     }
 
+    private boolean isInTrackedRange(final IPlayer player)
+    {
+        final int range = this.getTrackRange();
+        final double dX = player.getX() - this.xLoc;
+        final double dZ = player.getZ() - this.zLoc;
+        return ! ((dX < - range) || (dX > range) || (dZ < - range) || (dZ > range));
+    }
+
     public void spawn()
     {
         this.sendToAllExceptOwn(this.tracker.getSpawnPackets());
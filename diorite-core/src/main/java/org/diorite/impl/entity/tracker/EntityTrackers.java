@@ -24,26 +24,39 @@
 
 package org.diorite.impl.entity.tracker;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import org.diorite.impl.CoreMain;
-import org.diorite.impl.DioriteCore;
 import org.diorite.impl.Tickable;
 import org.diorite.impl.entity.IEntity;
 import org.diorite.impl.entity.IPlayer;
 import org.diorite.impl.world.WorldImpl;
 import org.diorite.entity.Entity;
+import org.diorite.utils.math.DioriteMathUtils;
+import org.diorite.utils.math.endian.BigEndianUtils;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import it.unimi.dsi.fastutil.shorts.Short2IntMap;
 import it.unimi.dsi.fastutil.shorts.Short2IntOpenHashMap;
 
 public class EntityTrackers implements Tickable
 {
+    /**
+     * Size of tracking cell, players are grouped by tracking cells so each tracker only checks players from cells in his tracking range.
+     */
+    public static final  int  CELL_SIZE  = 32;
+    public static final  int  CELL_SHIFT = 5;
+    private static final long NO_CELL    = Long.MIN_VALUE;
+
     private final Int2ObjectMap<BaseTracker<?>> trackers = new Int2ObjectOpenHashMap<>(1000, 0.25F);
     /**
      * Maps entity type id and amount of entity of that type. <br>
@@ -52,9 +65,18 @@ public class EntityTrackers implements Tickable
     private final Short2IntMap                  stats    = new Short2IntOpenHashMap(50, 0.1f); // only for stats, performance commands etc.
     private final WorldImpl world;
 
+    private final Long2ObjectMap<List<IPlayer>> cells       = new Long2ObjectOpenHashMap<>(64);
+    private final Object2LongMap<IPlayer>       playerCells = new Object2LongOpenHashMap<>(64);
+    private final List<IPlayer>                 candidates  = new ArrayList<>(16);
+
+    private volatile int  lastTickTrackers;
+    private volatile int  lastTickChecks;
+    private volatile long totalChecks;
+
     public EntityTrackers(final WorldImpl world)
     {
         this.world = world;
+        this.playerCells.defaultReturnValue(NO_CELL);
     }
 
     public WorldImpl getWorld()
@@ -135,6 +157,7 @@ public class EntityTrackers implements Tickable
         {
             final IPlayer player = (IPlayer) trackable;
             this.trackers.values().forEach((t) -> t.remove(player));
+            this.removeFromCell(player, this.playerCells.removeLong(player));
         }
         this.decrementStat(trackable);
         return true;
@@ -145,12 +168,111 @@ public class EntityTrackers implements Tickable
         this.trackers.values().forEach((t) -> t.updatePlayer(player));
     }
 
+    /**
+     * @return amount of trackers ticked in last tick.
+     */
+    public int getLastTickTrackers()
+    {
+        return this.lastTickTrackers;
+    }
+
+    /**
+     * @return amount of tracker-player range checks done in last tick.
+     */
+    public int getLastTickChecks()
+    {
+        return this.lastTickChecks;
+    }
+
+    /**
+     * @return amount of tracker-player range checks done since world was loaded.
+     */
+    public long getTotalChecks()
+    {
+        return this.totalChecks;
+    }
+
+    private static long getCell(final double x, final double z)
+    {
+        return BigEndianUtils.toLong(DioriteMathUtils.floor(x) >> CELL_SHIFT, DioriteMathUtils.floor(z) >> CELL_SHIFT);
+    }
+
+    private void removeFromCell(final IPlayer player, final long cell)
+    {
+        if (cell == NO_CELL)
+        {
+            return;
+        }
+        final List<IPlayer> players = this.cells.get(cell);
+        if ((players != null) && players.remove(player) && players.isEmpty())
+        {
+            this.cells.remove(cell);
+        }
+    }
+
+    private void updateCells()
+    {
+        for (final IPlayer player : this.world.getPlayersInWorld())
+        {
+            final long cell = getCell(player.getX(), player.getZ());
+            final long oldCell = this.playerCells.put(player, cell);
+            if (oldCell == cell)
+            {
+                continue;
+            }
+            this.removeFromCell(player, oldCell);
+            List<IPlayer> players = this.cells.get(cell);
+            if (players == null)
+            {
+                players = new ArrayList<>(4);
+                this.cells.put(cell, players);
+            }
+            players.add(player);
+        }
+    }
+
+    private List<IPlayer> getCandidates(final BaseTracker<?> tracker)
+    {
+        this.candidates.clear();
+        if (this.cells.isEmpty())
+        {
+            return this.candidates;
+        }
+        final IEntity entity = tracker.getTracker();
+        final int range = tracker.getTrackRange();
+        final int minX = DioriteMathUtils.floor(entity.getX() - range) >> CELL_SHIFT;
+        final int minZ = DioriteMathUtils.floor(entity.getZ() - range) >> CELL_SHIFT;
+        final int maxX = DioriteMathUtils.floor(entity.getX() + range) >> CELL_SHIFT;
+        final int maxZ = DioriteMathUtils.floor(entity.getZ() + range) >> CELL_SHIFT;
+        for (int x = minX; x <= maxX; x++)
+        {
+            for (int z = minZ; z <= maxZ; z++)
+            {
+                final List<IPlayer> players = this.cells.get(BigEndianUtils.toLong(x, z));
+                if (players != null)
+                {
+                    this.candidates.addAll(players);
+                }
+            }
+        }
+        return this.candidates;
+    }
+
     @Override
     public void doTick(final int tps)
     {
-        //noinspection ObjectEquality
-        final Collection<IPlayer> players = DioriteCore.getInstance().getPlayersManager().getOnlinePlayers(p -> p.getWorld() == this.world);
-        this.trackers.values().forEach((t) -> t.tick(tps, players));
+        this.updateCells();
+        int checks = 0;
+        for (final BaseTracker<?> tracker : this.trackers.values())
+        {
+            final List<IPlayer> players = this.getCandidates(tracker);
+            checks += players.size() + tracker.tracked.size();
+            tracker.tick(tps, players);
+        }
+        this.candidates.clear();
+        this.lastTickTrackers = this.trackers.size();
+        this.lastTickChecks = checks;
+        this.totalChecks += checks;
     }
 
     @Override
@@ -49,7 +49,7 @@ public class ChunkPopulatePipelineImpl extends SimpleEventPipeline<ChunkPopulate
             {
                 for (int z2 = z - 1; z2 <= (z + 1); ++ z2)
                 {
-                    if (! chunks.getChunk(x2, z2).isLoaded() && (! evt.isForce() || ! chunks.loadChunk(x2, z2, true)))
+                    if (! chunks.isChunkLoaded(x2, z2) && (! evt.isForce() || ! chunks.loadChunk(x2, z2, true)))
                     {
                         return;
                     }
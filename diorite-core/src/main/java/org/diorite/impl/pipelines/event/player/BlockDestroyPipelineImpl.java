@@ -24,8 +24,6 @@
 
 package org.diorite.impl.pipelines.event.player;
 
-import org.diorite.impl.DioriteCore;
-import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundBlockChange;
 import org.diorite.GameMode;
 import org.diorite.event.EventPriority;
 import org.diorite.event.pipelines.event.player.BlockDestroyPipeline;
@@ -49,7 +47,6 @@ public class BlockDestroyPipelineImpl extends SimpleEventPipeline<PlayerBlockDes
             }
 
             evt.getWorld().setBlock(evt.getLocation(), Material.AIR);
-            DioriteCore.getInstance().getPlayersManager().forEach(p -> p.getWorld().equals(evt.getWorld()), new PacketPlayClientboundBlockChange(evt.getLocation(), Material.AIR));
         });
 
         this.addAfter(EventPriority.NORMAL, "Diorite|DropItem", (evt, pipeline) -> {
@@ -24,8 +24,6 @@
 
 package org.diorite.impl.pipelines.event.player;
 
-import org.diorite.impl.DioriteCore;
-import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundBlockChange;
 import org.diorite.impl.inventory.PlayerInventoryImpl;
 import org.diorite.GameMode;
 import org.diorite.entity.data.HandType;
@@ -78,7 +76,6 @@ public class BlockPlacePipelineImpl extends SimpleEventPipeline<PlayerBlockPlace
             }
 
             evt.getBlock().setType((BlockMaterialData) item.getMaterial());
-            DioriteCore.getInstance().getPlayersManager().forEach(p -> p.getWorld().equals(evt.getBlock().getWorld()), new PacketPlayClientboundBlockChange(evt.getBlock().getLocation(), evt.getBlock().getType()));
         });
     }
 }
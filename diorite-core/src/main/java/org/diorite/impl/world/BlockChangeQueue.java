@@ -0,0 +1,231 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import org.diorite.impl.connection.packets.Packet;
+import org.diorite.impl.connection.packets.PreparedPacket;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundBlockChange;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundMapChunk;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundMultiBlockChange;
+import org.diorite.impl.entity.IPlayer;
+import org.diorite.impl.world.chunk.ChunkImpl;
+import org.diorite.impl.world.chunk.ChunkPartImpl;
+import org.diorite.block.BlockLocation;
+import org.diorite.utils.math.endian.BigEndianUtils;
+import org.diorite.world.chunk.Chunk;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap.Entry;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+import it.unimi.dsi.fastutil.shorts.ShortIterator;
+import it.unimi.dsi.fastutil.shorts.ShortList;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+
+/**
+ * Collects block changes of world during tick and sends them at the end of tick, grouped by chunk, only to players that can see changed chunk.
+ * <br>
+ * Single change is sent as block change packet, multiple changes as one multi block change packet, and if chunk was changed a lot, changed chunk
+ * sections are resent instead.
+ */
+public class BlockChangeQueue
+{
+    /**
+     * Number of changed blocks in single chunk at which changed sections are resent instead of multi block change packet.
+     */
+    public static final int SECTIONS_RESEND_THRESHOLD = 64;
+
+    private final WorldImpl world;
+    private Long2ObjectMap<ShortSet> changes = new Long2ObjectOpenHashMap<>(16);
+
+    public BlockChangeQueue(final WorldImpl world)
+    {
+        this.world = world;
+    }
+
+    /**
+     * Queue change of block, block type is read from chunk when changes are sent, so only last change of block in tick is sent.
+     *
+     * @param x x coordinate of block.
+     * @param y y coordinate of block.
+     * @param z z coordinate of block.
+     */
+    public void add(final int x, final int y, final int z)
+    {
+        final long key = BigEndianUtils.toLong(x >> 4, z >> 4);
+        final short pos = PacketPlayClientboundMultiBlockChange.packPosition(x, y, z);
+        synchronized (this)
+        {
+            ShortSet positions = this.changes.get(key);
+            if (positions == null)
+            {
+                positions = new ShortOpenHashSet(4);
+                this.changes.put(key, positions);
+            }
+            positions.add(pos);
+        }
+    }
+
+    /**
+     * @return true if there are no queued changes.
+     */
+    public synchronized boolean isEmpty()
+    {
+        return this.changes.isEmpty();
+    }
+
+    /**
+     * Send all queued changes to players that can see changed chunks.
+     */
+    public void flush()
+    {
+        final Long2ObjectMap<ShortSet> changes;
+        synchronized (this)
+        {
+            if (this.changes.isEmpty())
+            {
+                return;
+            }
+            changes = this.changes;
+            this.changes = new Long2ObjectOpenHashMap<>(Math.max(16, changes.size()));
+        }
+        final Collection<IPlayer> players = this.world.getPlayersInWorld();
+        if (players.isEmpty())
+        {
+            return;
+        }
+        final Collection<IPlayer> viewers = new ArrayList<>(players.size());
+        final List<Packet<?>> packets = new ArrayList<>(2);
+        for (final Entry<ShortSet> entry : changes.long2ObjectEntrySet())
+        {
+            final long key = entry.getLongKey();
+            final int chunkX = BigEndianUtils.getIntA(key);
+            final int chunkZ = BigEndianUtils.getIntB(key);
+            viewers.clear();
+            for (final IPlayer player : players)
+            {
+                if (player.isVisibleChunk(chunkX, chunkZ))
+                {
+                    viewers.add(player);
+                }
+            }
+            if (viewers.isEmpty() || ! this.world.isChunkLoaded(chunkX, chunkZ))
+            {
+                continue;
+            }
+            packets.clear();
+            this.createPackets(this.world.getChunkAt(chunkX, chunkZ), entry.getValue(), packets);
+            for (final Packet<?> packet : packets)
+            {
+                final PreparedPacket prepared = new PreparedPacket(packet);
+                try
+                {
+                    for (final IPlayer player : viewers)
+                    {
+                        player.getNetworkManager().sendPacket(prepared);
+                    }
+                } finally
+                {
+                    prepared.release();
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("MagicNumber")
+    void createPackets(final ChunkImpl chunk, final ShortSet positions, final List<Packet<?>> packets)
+    {
+        if (positions.size() < SECTIONS_RESEND_THRESHOLD)
+        {
+            packets.add(this.createChangePacket(chunk, positions.toShortArray()));
+            return;
+        }
+        final ChunkPartImpl[] sections = chunk.getChunkParts();
+        if (sections == null)
+        {
+            return;
+        }
+        int mask = 0;
+        ShortList emptied = null;
+        for (final ShortIterator it = positions.iterator(); it.hasNext(); )
+        {
+            final short pos = it.nextShort();
+            final int y = (pos & 0xFF) / Chunk.CHUNK_PART_HEIGHT;
+            if (sections[y] != null)
+            {
+                mask |= 1 << y;
+            }
+            else
+            {
+                // section was removed as it is now empty, it can't be resent, so client must get this block as air change.
+                if (emptied == null)
+                {
+                    emptied = new ShortArrayList(positions.size());
+                }
+                emptied.add(pos);
+            }
+        }
+        if (mask != 0)
+        {
+            packets.add(new PacketPlayClientboundMapChunk(false, chunk, this.world.hasSkyLight(), mask));
+        }
+        if (emptied != null)
+        {
+            packets.add(this.createChangePacket(chunk, emptied.toShortArray()));
+        }
+    }
+
+    @SuppressWarnings("MagicNumber")
+    private Packet<?> createChangePacket(final ChunkImpl chunk, final short[] packed)
+    {
+        if (packed.length == 1)
+        {
+            final int x = (packed[0] >> 12) & 15;
+            final int z = (packed[0] >> 8) & 15;
+            final int y = packed[0] & 0xFF;
+            return new PacketPlayClientboundBlockChange(new BlockLocation((chunk.getX() << 4) | x, y, (chunk.getZ() << 4) | z, this.world), chunk.getBlockType(x, y, z));
+        }
+        final int[] blockData = new int[packed.length];
+        for (int i = 0; i < packed.length; i++)
+        {
+            blockData[i] = PacketPlayClientboundMultiBlockChange.packBlockData(chunk.getBlockType((packed[i] >> 12) & 15, packed[i] & 0xFF, (packed[i] >> 8) & 15));
+        }
+        return new PacketPlayClientboundMultiBlockChange(chunk.getX(), chunk.getZ(), packed, blockData);
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("world", this.world.getName()).toString();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import org.diorite.impl.entity.IEntity;
+import org.diorite.utils.math.DioriteMathUtils;
+import org.diorite.utils.math.endian.BigEndianUtils;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Spatial index of entities in world, entities are stored in grid of {@link #CELL_SIZE}x{@link #CELL_SIZE} columns keyed by packed cell
+ * coordinates, so lookups only visit cells that overlap given box and never touch chunk manager.
+ * <br>
+ * Grid is split to {@link #SEGMENTS} segments with own locks, so entities ticked in parallel can be moved without contention.
+ */
+public class EntitySpatialIndex
+{
+    /**
+     * Cell value used by entities that aren't stored in any index.
+     */
+    public static final long NO_CELL    = Long.MIN_VALUE;
+    /**
+     * Size of single cell, must be power of two and divisor of chunk size.
+     */
+    public static final int  CELL_SIZE  = 8;
+    public static final int  CELL_SHIFT = 3;
+    public static final int  SEGMENTS   = 16;
+
+    private final WorldImpl world;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public EntitySpatialIndex(final WorldImpl world)
+    {
+        this.world = world;
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            this.segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Returns key of cell containing given coordinates.
+     *
+     * @param x x coordinate.
+     * @param z z coordinate.
+     *
+     * @return key of cell.
+     */
+    public static long getCell(final double x, final double z)
+    {
+        return BigEndianUtils.toLong(DioriteMathUtils.floor(x) >> CELL_SHIFT, DioriteMathUtils.floor(z) >> CELL_SHIFT);
+    }
+
+    private Segment getSegment(final long cell)
+    {
+        return this.segments[((int) HashCommon.mix(cell)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Move entity to cell matching its current position.
+     *
+     * @param entity entity to update.
+     * @param cell   cell where entity was stored before, or {@link #NO_CELL} if entity isn't stored yet.
+     *
+     * @return cell where entity is stored now, caller should remember it for next update.
+     */
+    public long update(final IEntity entity, final long cell)
+    {
+        final long newCell = getCell(entity.getX(), entity.getZ());
+        if (newCell == cell)
+        {
+            return cell;
+        }
+        if (cell != NO_CELL)
+        {
+            this.getSegment(cell).remove(cell, entity);
+        }
+        this.getSegment(newCell).add(newCell, entity);
+        return newCell;
+    }
+
+    /**
+     * Remove entity from index.
+     *
+     * @param entity entity to remove.
+     * @param cell   cell where entity is stored.
+     */
+    public void remove(final IEntity entity, final long cell)
+    {
+        if (cell != NO_CELL)
+        {
+            this.getSegment(cell).remove(cell, entity);
+        }
+    }
+
+    /**
+     * Invoke given action for each entity inside given box that matches given predicate, entities from unloaded chunks are skipped.
+     * <br>
+     * Predicate and action are invoked while segment of index is locked, so they can't add, move or remove entities, action should only
+     * collect entities.
+     *
+     * @param minX      min x coordinate of box.
+     * @param minY      min y coordinate of box.
+     * @param minZ      min z coordinate of box.
+     * @param maxX      max x coordinate of box.
+     * @param maxY      max y coordinate of box.
+     * @param maxZ      max z coordinate of box.
+     * @param predicate predicate of entities.
+     * @param action    action to invoke for each matching entity.
+     */
+    public void forEachInBox(final double minX, final double minY, final double minZ, final double maxX, final double maxY, final double maxZ, final Predicate<? super IEntity> predicate, final Consumer<? super IEntity> action)
+    {
+        final int minCellX = DioriteMathUtils.floor(minX) >> CELL_SHIFT;
+        final int minCellZ = DioriteMathUtils.floor(minZ) >> CELL_SHIFT;
+        final int maxCellX = DioriteMathUtils.floor(maxX) >> CELL_SHIFT;
+        final int maxCellZ = DioriteMathUtils.floor(maxZ) >> CELL_SHIFT;
+        final int chunkShift = 4 - CELL_SHIFT;
+        for (int cx = minCellX; cx <= maxCellX; cx++)
+        {
+            for (int cz = minCellZ; cz <= maxCellZ; cz++)
+            {
+                final long cell = BigEndianUtils.toLong(cx, cz);
+                final Segment segment = this.getSegment(cell);
+                synchronized (segment)
+                {
+                    final Cell entities = segment.cells.get(cell);
+                    if ((entities == null) || ! this.world.isChunkLoaded(cx >> chunkShift, cz >> chunkShift))
+                    {
+                        continue;
+                    }
+                    for (int i = 0; i < entities.size; i++)
+                    {
+                        final IEntity entity = entities.entities[i];
+                        final double x = entity.getX();
+                        final double y = entity.getY();
+                        final double z = entity.getZ();
+                        if ((x >= minX) && (x <= maxX) && (y >= minY) && (y <= maxY) && (z >= minZ) && (z <= maxZ) && predicate.test(entity))
+                        {
+                            action.accept(entity);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return amount of indexed entities.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (final Segment segment : this.segments)
+        {
+            synchronized (segment)
+            {
+                for (final Cell cell : segment.cells.values())
+                {
+                    size += cell.size;
+                }
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("world", this.world.getName()).toString();
+    }
+
+    private static class Segment
+    {
+        private final Long2ObjectMap<Cell> cells = new Long2ObjectOpenHashMap<>(64);
+
+        synchronized void add(final long key, final IEntity entity)
+        {
+            Cell cell = this.cells.get(key);
+            if (cell == null)
+            {
+                cell = new Cell();
+                this.cells.put(key, cell);
+            }
+            cell.add(entity);
+        }
+
+        synchronized void remove(final long key, final IEntity entity)
+        {
+            final Cell cell = this.cells.get(key);
+            if ((cell != null) && cell.remove(entity) && (cell.size == 0))
+            {
+                this.cells.remove(key);
+            }
+        }
+    }
+
+    private static class Cell
+    {
+        private IEntity[] entities = new IEntity[4];
+        private int size;
+
+        void add(final IEntity entity)
+        {
+            if (this.size == this.entities.length)
+            {
+                this.entities = Arrays.copyOf(this.entities, this.size << 1);
+            }
+            this.entities[this.size++] = entity;
+        }
+
+        @SuppressWarnings("ObjectEquality")
+        boolean remove(final IEntity entity)
+        {
+            for (int i = 0; i < this.size; i++)
+            {
+                if (this.entities[i] == entity)
+                {
+                    this.entities[i] = this.entities[-- this.size];
+                    this.entities[this.size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
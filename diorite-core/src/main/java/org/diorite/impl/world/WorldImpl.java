@@ -53,8 +53,8 @@ import org.diorite.impl.entity.tracker.EntityTrackers;
 import org.diorite.impl.world.chunk.ChunkImpl;
 import org.diorite.impl.world.chunk.ChunkManagerImpl;
 import org.diorite.impl.world.chunk.ChunkManagerImpl.ChunkLock;
+import org.diorite.impl.world.generator.WorldPreGeneratorImpl;
 import org.diorite.impl.world.io.ChunkIOService;
-import org.diorite.impl.world.io.requests.Request;
 import org.diorite.BossBar;
 import org.diorite.Difficulty;
 import org.diorite.GameMode;
@@ -107,6 +107,7 @@ public class WorldImpl implements World, Tickable
     protected final Dimension        dimension;
     protected final WorldType        worldType;
     protected final EntityTrackers   entityTrackers;
+    protected final BlockChangeQueue blockChanges      = new BlockChangeQueue(this);
     protected final WorldBorderImpl  worldBorder       = new WorldBorderImpl(this);
     protected final Set<BossBarImpl> bossBars          = new ConcurrentSet<>(2);
     protected final Set<IPlayer>     players           = new ConcurrentSet<>();
@@ -127,10 +128,12 @@ public class WorldImpl implements World, Tickable
     protected       WorldGenerator generator;
     protected       long           time;
     protected final ChunkLock      spawnLock;
+    protected volatile WorldPreGeneratorImpl preGenerator;
     protected       boolean       noUpdateMode = true;
     protected final DioriteRandom random       = DioriteRandomUtils.newRandom();
     protected       int           saveTimer    = DEFAULT_AUTOSAVE_TIME;
     protected       boolean       autosave     = true;
+    protected final EntitySpatialIndex entityIndex = new EntitySpatialIndex(this);
 
 
     // TODO: add some method allowing to set multiple blocks without calling getChunk so often
@@ -161,6 +164,22 @@ public class WorldImpl implements World, Tickable
         return this.entityTrackers;
     }
 
+    /**
+     * @return queue of block changes that will be sent to players at the end of tick.
+     */
+    public BlockChangeQueue getBlockChanges()
+    {
+        return this.blockChanges;
+    }
+
+    /**
+     * @return spatial index of entities in this world.
+     */
+    public EntitySpatialIndex getEntityIndex()
+    {
+        return this.entityIndex;
+    }
+
     @Override
     public void addBossBar(final BossBar bossBar)
     {
@@ -565,6 +584,25 @@ public class WorldImpl implements World, Tickable
         return this.chunkManager;
     }
 
+    @Override
+    public WorldPreGeneratorImpl getPreGenerator()
+    {
+        return this.preGenerator;
+    }
+
+    @Override
+    public synchronized WorldPreGeneratorImpl preGenerate(final int centerX, final int centerZ, final int radius)
+    {
+        if ((this.preGenerator != null) && ! this.preGenerator.isDone())
+        {
+            throw new IllegalStateException("World " + this.name + " is already pre-generating.");
+        }
+        final WorldPreGeneratorImpl preGenerator = new WorldPreGeneratorImpl(this.core, this, centerX, centerZ, radius);
+        this.preGenerator = preGenerator;
+        preGenerator.start();
+        return preGenerator;
+    }
+
     @Override
     public long getSeed()
     {
@@ -919,20 +957,17 @@ public class WorldImpl implements World, Tickable
         if (async) // temp code
         {
             this.chunkManager.getLoadedChunks().forEach(c -> this.chunkManager.save(c, ChunkIOService.HIGH_PRIORITY - 1));
+            this.chunkManager.getService().queueFlush(ChunkIOService.HIGH_PRIORITY - 2);
         }
         else
         {
             int p = ChunkIOService.HIGH_PRIORITY - 1;
             final ChunkIOService io = this.chunkManager.getService();
-            Request<Void> request = null;
             for (final ChunkImpl chunk : this.chunkManager.getLoadedChunks())
             {
-                request = io.queueChunkSave(chunk, p--);
-            }
-            if (request != null)
-            {
-                request.await();
+                this.chunkManager.save(chunk, p--);
             }
+            io.queueFlush(p).await();
         }
 
         { // write level.dat // TODO temp code
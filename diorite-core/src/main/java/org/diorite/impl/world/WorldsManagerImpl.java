@@ -32,6 +32,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableMap;
@@ -46,11 +47,14 @@ import org.slf4j.LoggerFactory;
 import org.diorite.impl.DioriteCore;
 import org.diorite.impl.cfg.DioriteConfigImpl;
 import org.diorite.impl.cfg.WorldsConfigImpl;
+import org.diorite.impl.cfg.WorldsConfigImpl.WorldGroupConfigImpl;
+import org.diorite.impl.world.chunk.ChunkManagerImpl;
+import org.diorite.impl.world.io.ChunkIOService;
+import org.diorite.impl.world.io.anvil.parallel.AnvilParallelIOService;
 import org.diorite.impl.world.io.anvil.serial.AnvilSerialIOService;
 import org.diorite.impl.world.tick.TickGroupImpl;
 import org.diorite.impl.world.tick.WorldTickGroup;
 import org.diorite.cfg.WorldsConfig.WorldConfig;
-import org.diorite.cfg.WorldsConfig.WorldGroupConfig;
 import org.diorite.entity.Player;
 import org.diorite.nbt.NbtInputStream;
 import org.diorite.nbt.NbtLimiter;
@@ -134,6 +138,29 @@ public class WorldsManagerImpl implements WorldsManager
         return ImmutableMap.copyOf(this.groups);
     }
 
+    /**
+     * Send block changes queued in all worlds during this tick.
+     */
+    public void flushBlockChanges()
+    {
+        for (final WorldImpl world : this.worlds.values())
+        {
+            world.getBlockChanges().flush();
+        }
+    }
+
+    /**
+     * Populate chunks loaded since last tick in all worlds, main thread never spends more than {@link ChunkManagerImpl#MAX_POPULATE_TIME} ms on it in single tick.
+     */
+    public void populateChunks()
+    {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ChunkManagerImpl.MAX_POPULATE_TIME);
+        for (final WorldImpl world : this.worlds.values())
+        {
+            world.getChunkManager().populateQueued(deadline);
+        }
+    }
+
     @Override
     public Collection<WorldImpl> getWorlds()
     {
@@ -197,13 +224,19 @@ public class WorldsManagerImpl implements WorldsManager
         }
 
         final Collection<Runnable> loaders = new LinkedHashSet<>(10);
-        for (final WorldGroupConfig wgc : this.config.getGroups())
+        for (final WorldGroupConfigImpl wgc : this.config.getGroups())
         {
             final WorldGroupImpl wgImpl = new WorldGroupImpl(wgc.getName(), new File(worldsFile, wgc.getName()));
             this.groups.put(wgc.getName(), wgImpl);
             loaders.addAll(wgc.getWorlds().stream().filter(WorldConfig::isEnabled).map(wc -> (Runnable) () -> {
                 final File wFile = new File(wgImpl.getDataFolder(), wc.getName());
-                final WorldImpl wImpl = new WorldImpl(this.core, new AnvilSerialIOService(wFile, wc.getName()), wc.getName(), wgImpl, wc.getDimension(), wc.getWorldType(), wc.getGenerator(), wc.getGeneratorSettings());
+                final ChunkIOService io = (wc.getChunkIOThreads() > 1) ? new AnvilParallelIOService(wFile, wc.getName(), wc.getChunkIOThreads()) : new AnvilSerialIOService(wFile, wc.getName());
+                if (wc.getChunkIODurability() != null)
+                {
+                    io.setDurability(wc.getChunkIODurability());
+                }
+                final WorldImpl wImpl = new WorldImpl(this.core, io, wc.getName(), wgImpl, wc.getDimension(), wc.getWorldType(), wc.getGenerator(), wc.getGeneratorSettings());
+                wImpl.getChunkManager().getGenerationService().setThreads(wc.getChunkGenerationThreads());
                 this.loadWorld(wImpl, wc);
                 wgImpl.addWorld(wImpl);
             }).collect(Collectors.toList()));
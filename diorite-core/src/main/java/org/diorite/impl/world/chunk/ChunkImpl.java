@@ -24,29 +24,36 @@
 
 package org.diorite.impl.world.chunk;
 
+import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import org.diorite.impl.DioriteCore;
 import org.diorite.impl.block.BlockImpl;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundMapChunk;
 import org.diorite.impl.entity.IEntity;
 import org.diorite.impl.entity.IPlayer;
 import org.diorite.impl.tileentity.TileEntityImpl;
 import org.diorite.impl.world.WorldImpl;
+import org.diorite.impl.world.chunk.palette.BlockStates;
 import org.diorite.impl.world.chunk.palette.PaletteImpl;
 import org.diorite.block.Block;
 import org.diorite.event.EventType;
 import org.diorite.event.chunk.ChunkUnloadEvent;
 import org.diorite.material.BlockMaterialData;
 import org.diorite.material.Material;
-import org.diorite.nbt.NbtTag;
+import org.diorite.nbt.NbtStreamReader;
+import org.diorite.nbt.NbtStreamWriter;
 import org.diorite.nbt.NbtTagCompound;
+import org.diorite.nbt.NbtTagType;
 import org.diorite.tileentity.TileEntity;
 import org.diorite.utils.collections.arrays.NibbleArray;
 import org.diorite.utils.collections.sets.ConcurrentSet;
@@ -60,12 +67,21 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 public class ChunkImpl implements Chunk
 {
+    private static final int                 NIBBLES_SIZE = ChunkPartImpl.CHUNK_DATA_SIZE >> 1;
+    private static final byte[]              EMPTY_LIGHT  = new byte[NIBBLES_SIZE];
+    private static final ThreadLocal<byte[]> saveBuffer   = ThreadLocal.withInitial(() -> new byte[ChunkPartImpl.CHUNK_DATA_SIZE + (NIBBLES_SIZE << 1)]); // blocks, data and add arrays of section
+
     private final Object lock = new Object();
 
     protected volatile Thread   lastTickThread;
     protected final    ChunkPos pos;
     protected final    short[]  heightMap;
     protected final AtomicBoolean populated = new AtomicBoolean(false);
+    protected final AtomicInteger modCount  = new AtomicInteger(); // bumped on every change that is saved with chunk
+    protected volatile int savedModCount; // modCount of last successfully saved (or loaded) state
+    protected final AtomicInteger contentModCount = new AtomicInteger(); // bumped on every change that is visible in map chunk packet
+    private SoftReference<PacketPlayClientboundMapChunk> mapChunkPacket; // shared by all players, guarded by lock
+    private int mapChunkPacketVersion;
     protected byte[]          biomes;
     protected ChunkPartImpl[] chunkParts; // size of 16, parts can be null
 
@@ -135,6 +151,72 @@ public class ChunkImpl implements Chunk
             return;
         }
         this.biomes[((z * Chunk.CHUNK_SIZE) + x)] = (byte) biome.getBiomeId();
+        this.markContentModified();
+    }
+
+    /**
+     * Mark this chunk as modified, so it will be saved on next world save.
+     */
+    public void markModified()
+    {
+        this.modCount.incrementAndGet();
+    }
+
+    /**
+     * Mark blocks, biomes or tile entities of this chunk as modified, so cached map chunk packet will be created again.
+     */
+    public void markContentModified()
+    {
+        this.contentModCount.incrementAndGet();
+        this.markModified();
+    }
+
+    /**
+     * Returns map chunk packet with whole chunk, packet is cached and shared by all players until chunk content is changed,
+     * so chunk data is serialized only once.
+     *
+     * @return map chunk packet with whole chunk.
+     */
+    public PacketPlayClientboundMapChunk getMapChunkPacket()
+    {
+        synchronized (this.lock)
+        {
+            final int version = this.contentModCount.get();
+            PacketPlayClientboundMapChunk packet = (this.mapChunkPacket == null) ? null : this.mapChunkPacket.get();
+            if ((packet == null) || (this.mapChunkPacketVersion != version))
+            {
+                packet = new PacketPlayClientboundMapChunk(true, this);
+                this.mapChunkPacket = new SoftReference<>(packet);
+                this.mapChunkPacketVersion = version;
+            }
+            return packet;
+        }
+    }
+
+    /**
+     * @return current modification version of chunk, changed every time when chunk is modified.
+     */
+    public int getModificationVersion()
+    {
+        return this.modCount.get();
+    }
+
+    /**
+     * @return true if chunk was modified since last successful save or load.
+     */
+    public boolean isModifiedSinceSave()
+    {
+        return this.modCount.get() != this.savedModCount;
+    }
+
+    /**
+     * Invoked after chunk was successfully saved.
+     *
+     * @param version modification version of chunk read before chunk data was serialized.
+     */
+    public void markSaved(final int version)
+    {
+        this.savedModCount = version;
     }
 
     @Override
@@ -187,6 +269,7 @@ public class ChunkImpl implements Chunk
         synchronized (this.lock)
         {
             this.biomes = biomes;
+            this.markContentModified();
         }
     }
 
@@ -195,6 +278,7 @@ public class ChunkImpl implements Chunk
         synchronized (this.lock)
         {
             this.chunkParts = chunkParts;
+            this.markContentModified();
         }
     }
 
@@ -210,12 +294,35 @@ public class ChunkImpl implements Chunk
 
     public boolean removeEntity(final IEntity entity)
     {
-        return this.entities.remove(entity);
+        if (this.entities.remove(entity))
+        {
+            this.markEntityModified(entity);
+            return true;
+        }
+        return false;
     }
 
     public boolean addEntity(final IEntity entity)
     {
-        return this.entities.add(entity);
+        if (this.entities.add(entity))
+        {
+            this.markEntityModified(entity);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Mark chunk as modified if given entity is saved with chunk data. (players are not)
+     *
+     * @param entity changed entity.
+     */
+    public void markEntityModified(final IEntity entity)
+    {
+        if (! (entity instanceof IPlayer))
+        {
+            this.markModified();
+        }
     }
 
     @Override
@@ -227,6 +334,7 @@ public class ChunkImpl implements Chunk
     public void setPopulated(final boolean populated)
     {
         this.populated.set(populated);
+        this.markModified();
     }
 
     @Override
@@ -238,6 +346,7 @@ public class ChunkImpl implements Chunk
             {
                 if (this.populated.compareAndSet(false, true))
                 {
+                    this.markContentModified();
                     this.getWorld().getGenerator().getPopulators().forEach(pop -> pop.populate(this));
                     return true;
                 }
@@ -297,9 +406,14 @@ public class ChunkImpl implements Chunk
                 }
             }
         }
-//        ServerImpl.getInstance().getPlayersManager().forEach(p -> p.getPlayerChunks().getVisibleChunks().contains(this), new PacketPlayOutBlockChange(new BlockLocation(x + (this.pos.getX() << 4), y, z + (this.pos.getZ() << 4), this.getWorld()), materialData));
+        if (this.populated.get())
+        {
+            // changes are sent at the end of tick, only to players that can see this chunk.
+            this.getWorld().getBlockChanges().add(x + (this.pos.getX() << 4), y, z + (this.pos.getZ() << 4));
+        }
         this.checkPart(chunkPart);
         this.checkTileEntity(x, y, z);
+        this.markContentModified();
         return prev;
     }
 
@@ -409,78 +523,268 @@ public class ChunkImpl implements Chunk
     @SuppressWarnings("MagicNumber")
     public void loadFrom(final NbtTagCompound tag)
     {
-        final boolean vc = this.getWorld().isVanillaCompatible();
-
         final List<NbtTagCompound> sectionList = tag.getList("Sections", NbtTagCompound.class);
         final ChunkPartImpl[] sections = new ChunkPartImpl[16];
-        for (final NbtTagCompound sectionTag : sectionList)
+        if (sectionList != null)
         {
-            final byte y = sectionTag.getByte("Y");
-            final byte[] rawTypes = sectionTag.getByteArray("Blocks");
-            final NibbleArray extTypes = sectionTag.containsTag("Add") ? new NibbleArray(sectionTag.getByteArray("Add")) : null;
-            final NibbleArray data = new NibbleArray(sectionTag.getByteArray("Data"));
-            final NibbleArray blockLight = new NibbleArray(sectionTag.getByteArray("BlockLight"));
-            final NibbleArray skyLight = new NibbleArray(sectionTag.getByteArray("SkyLight"));
+            for (final NbtTagCompound sectionTag : sectionList)
+            {
+                final byte y = sectionTag.getByte("Y");
+                final byte[] rawTypes = sectionTag.getByteArray("Blocks");
+                final NibbleArray extTypes = sectionTag.containsTag("Add") ? new NibbleArray(sectionTag.getByteArray("Add")) : null;
+                final NibbleArray data = new NibbleArray(sectionTag.getByteArray("Data"));
+                final NibbleArray blockLight = new NibbleArray(sectionTag.getByteArray("BlockLight"));
+                final NibbleArray skyLight = new NibbleArray(sectionTag.getByteArray("SkyLight"));
+                sections[y] = loadSection(y, rawTypes, extTypes, data, blockLight, skyLight);
+            }
+        }
+        this.loadFrom(sections, tag.getBoolean("TerrainPopulated"), tag.getList("Entities", NbtTagCompound.class), tag.getList("TileEntities", NbtTagCompound.class), tag.getByteArray("Biomes"), tag.getIntArray("HeightMap"), tag.getShortArray("Diorite.HeightMap"));
+    }
 
-            final PaletteImpl palette = new PaletteImpl();
-            final int[] loading = new int[rawTypes.length];
-            for (int i = 0; i < rawTypes.length; i++)
+    /**
+     * Load chunk directly from nbt stream, reader must be placed at first tag of "Level" compound,
+     * and it will be placed after end of that compound. <br>
+     * Only entities and tile entities are read as nbt tags, block data, light and height map are decoded without building tag tree.
+     *
+     * @param reader nbt reader to use.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    @SuppressWarnings("MagicNumber")
+    public void loadFrom(final NbtStreamReader reader) throws IOException
+    {
+        final boolean vc = this.getWorld().isVanillaCompatible();
+        final ChunkPartImpl[] sections = new ChunkPartImpl[16];
+        final byte[][] buffers = {new byte[ChunkPartImpl.CHUNK_DATA_SIZE], new byte[ChunkPartImpl.CHUNK_DATA_SIZE >> 1], new byte[ChunkPartImpl.CHUNK_DATA_SIZE >> 1]};
+        boolean populated = false;
+        List<NbtTagCompound> entities = null;
+        List<NbtTagCompound> tileEntities = null;
+        byte[] biomes = null;
+        int[] heightMap = null;
+        short[] dioriteHeightMap = null;
+
+        NbtTagType type;
+        while ((type = reader.nextTag()) != NbtTagType.END)
+        {
+            final String name = reader.readName();
+            if ((type == NbtTagType.LIST) && name.equals("Sections"))
             {
-                int k = ((((extTypes == null) ? 0 : extTypes.get(i)) << 12) | ((rawTypes[i] & 0xff) << 4) | data.get(i));
-                if (Material.getByID(k >> 4, k & 15) == null)
+                final NbtTagType elementType = reader.readListType();
+                final int size = reader.readListSize();
+                for (int i = 0; i < size; i++)
                 {
-                    final Material material = Material.getByID(k >> 4);
-                    k = (material == null) ? 0 : material.getIdAndMeta();
-//                    throw new IllegalArgumentException("Unknown material: " + k + " (" + (k >> 4) + ":" + (k & 15) + ")");
+                    if (elementType != NbtTagType.COMPOUND)
+                    {
+                        reader.skip(elementType);
+                        continue;
+                    }
+                    final ChunkPartImpl part = readSection(reader, buffers);
+                    if ((part.getYPos() >= 0) && (part.getYPos() < sections.length))
+                    {
+                        sections[part.getYPos()] = part;
+                    }
                 }
-                loading[i] = k;
             }
-            final ChunkBlockData cd = new ChunkBlockData(palette.bitsPerBlock(), ChunkPartImpl.CHUNK_DATA_SIZE);
-            int k = 0;
-            for (final int i : loading)
+            else if ((type == NbtTagType.LIST) && name.equals("Entities"))
+            {
+                entities = readCompoundList(reader);
+            }
+            else if ((type == NbtTagType.LIST) && name.equals("TileEntities"))
             {
-                cd.set(k++, palette.put(i));
+                tileEntities = readCompoundList(reader);
+            }
+            else if ((type == NbtTagType.BYTE) && name.equals("TerrainPopulated"))
+            {
+                populated = reader.readByte() == 1;
+            }
+            else if ((type == NbtTagType.BYTE_ARRAY) && name.equals("Biomes"))
+            {
+                biomes = reader.readByteArray(null);
+            }
+            else if ((type == NbtTagType.INTEGER_ARRAY) && name.equals("HeightMap"))
+            {
+                heightMap = reader.readIntArray(null);
+            }
+            else if ((type == NbtTagType.COMPOUND) && ! vc && name.equals("Diorite"))
+            {
+                dioriteHeightMap = this.readDioriteData(reader);
+            }
+            else
+            {
+                reader.skip(type);
             }
-            final ChunkPartImpl part = new ChunkPartImpl(cd, palette, skyLight, blockLight, y);
-            sections[y] = part;
         }
-        this.chunkParts = sections;
-        this.recalculateBlockCounts();
+        this.loadFrom(sections, populated, entities, tileEntities, biomes, heightMap, dioriteHeightMap);
+    }
 
-        this.populated.set(tag.getBoolean("TerrainPopulated"));
+    /**
+     * Read content of "Diorite" compound, tree nbt api saves "Diorite.HeightMap" path as "HeightMap" tag inside that compound.
+     *
+     * @param reader nbt reader to use.
+     *
+     * @return read height map, or null if there was no height map.
+     *
+     * @throws IOException if any read operation failed.
+     */
+    private short[] readDioriteData(final NbtStreamReader reader) throws IOException
+    {
+        short[] heightMap = null;
+        NbtTagType type;
+        while ((type = reader.nextTag()) != NbtTagType.END)
+        {
+            if (reader.readName().equals("HeightMap") && (type == NbtTagType.SHORT_ARRAY))
+            {
+                heightMap = reader.readShortArray(this.heightMap);
+            }
+            else
+            {
+                reader.skip(type);
+            }
+        }
+        return heightMap;
+    }
 
-        final List<NbtTagCompound> entities = tag.getList("Entities", NbtTagCompound.class);
-        for (final NbtTagCompound entity : entities)
+    @SuppressWarnings("MagicNumber")
+    private static ChunkPartImpl readSection(final NbtStreamReader reader, final byte[][] buffers) throws IOException
+    {
+        byte y = 0;
+        byte[] rawTypes = null;
+        byte[] extTypes = null;
+        byte[] data = null;
+        byte[] blockLight = null;
+        byte[] skyLight = null;
+
+        NbtTagType type;
+        while ((type = reader.nextTag()) != NbtTagType.END)
         {
-            final IEntity dioriteEntity;
-            try
+            final String name = reader.readName();
+            if (type == NbtTagType.BYTE_ARRAY)
             {
-                dioriteEntity = DioriteCore.getInstance().getServerManager().getEntityFactory().createEntity(entity, this.getWorld());
-            } catch (final Exception e)
+                switch (name)
+                {
+                    case "Blocks":
+                        rawTypes = reader.readByteArray(buffers[0]);
+                        continue;
+                    case "Add":
+                        extTypes = reader.readByteArray(buffers[1]);
+                        continue;
+                    case "Data":
+                        data = reader.readByteArray(buffers[2]);
+                        continue;
+                    case "BlockLight":
+                        blockLight = reader.readByteArray(null);
+                        continue;
+                    case "SkyLight":
+                        skyLight = reader.readByteArray(null);
+                        continue;
+                    default:
+                        break;
+                }
+            }
+            else if ((type == NbtTagType.BYTE) && name.equals("Y"))
             {
-                System.err.println("Failed to load entity (" + entity + ")");
+                y = reader.readByte();
                 continue;
             }
-            this.getWorld().addEntity(dioriteEntity, false);
+            reader.skip(type);
         }
+        if (rawTypes == null)
+        {
+            rawTypes = new byte[ChunkPartImpl.CHUNK_DATA_SIZE];
+        }
+        return loadSection(y, rawTypes, (extTypes == null) ? null : new NibbleArray(extTypes), new NibbleArray((data == null) ? new byte[ChunkPartImpl.CHUNK_DATA_SIZE >> 1] : data),
+                           new NibbleArray((blockLight == null) ? new byte[ChunkPartImpl.CHUNK_DATA_SIZE >> 1] : blockLight),
+                           new NibbleArray((skyLight == null) ? new byte[ChunkPartImpl.CHUNK_DATA_SIZE >> 1] : skyLight));
+    }
 
-        final List<NbtTagCompound> nbtTileEntities = tag.getList("TileEntities", NbtTagCompound.class);
-        for(final NbtTagCompound nbtTileEntity : nbtTileEntities)
+    private static List<NbtTagCompound> readCompoundList(final NbtStreamReader reader) throws IOException
+    {
+        final NbtTagType elementType = reader.readListType();
+        final int size = reader.readListSize();
+        final List<NbtTagCompound> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
         {
-            final TileEntityImpl tileEntity;
-            try
+            if (elementType == NbtTagType.COMPOUND)
             {
-                tileEntity = DioriteCore.getInstance().getServerManager().getTileEntityFactory().createTileEntity(nbtTileEntity, this.getWorld());
+                list.add((NbtTagCompound) reader.readTag(elementType, null));
             }
-            catch (final Exception e)
+            else
             {
-                System.err.println("Failed to load tile entity (" + nbtTileEntity + ")");
-                continue;
+                reader.skip(elementType);
+            }
+        }
+        return list;
+    }
+
+    @SuppressWarnings("MagicNumber")
+    private static ChunkPartImpl loadSection(final byte y, final byte[] rawTypes, final NibbleArray extTypes, final NibbleArray data, final NibbleArray blockLight, final NibbleArray skyLight)
+    {
+        final PaletteImpl palette = new PaletteImpl();
+        // palette is filled first, so block data is created with final amount of bits per block, and ids don't change after palette grows.
+        for (int i = 0; i < rawTypes.length; i++)
+        {
+            palette.put(BlockStates.resolve((((extTypes == null) ? 0 : extTypes.get(i)) << 12) | ((rawTypes[i] & 0xff) << 4) | data.get(i)));
+        }
+        final ChunkBlockData cd = new ChunkBlockData(palette.bitsPerBlock(), ChunkPartImpl.CHUNK_DATA_SIZE);
+        for (int i = 0; i < rawTypes.length; i++)
+        {
+            cd.set(i, palette.put(BlockStates.resolve((((extTypes == null) ? 0 : extTypes.get(i)) << 12) | ((rawTypes[i] & 0xff) << 4) | data.get(i))));
+        }
+        return new ChunkPartImpl(cd, palette, skyLight, blockLight, y);
+    }
+
+    private void loadFrom(final ChunkPartImpl[] sections, final boolean populated, final List<NbtTagCompound> entities, final List<NbtTagCompound> tileEntities, final byte[] biomes, final int[] heightMap,
+                          final short[] dioriteHeightMap)
+    {
+        final boolean vc = this.getWorld().isVanillaCompatible();
+
+        this.chunkParts = sections;
+        this.recalculateBlockCounts();
+
+        this.populated.set(populated);
+
+        if ((entities != null) && ! entities.isEmpty())
+        {
+            final List<IEntity> loadedEntities = new ArrayList<>(entities.size());
+            for (final NbtTagCompound entity : entities)
+            {
+                final IEntity dioriteEntity;
+                try
+                {
+                    dioriteEntity = DioriteCore.getInstance().getServerManager().getEntityFactory().createEntity(entity, this.getWorld());
+                } catch (final Exception e)
+                {
+                    System.err.println("Failed to load entity (" + entity + ")");
+                    continue;
+                }
+                loadedEntities.add(dioriteEntity);
+            }
+            if (! loadedEntities.isEmpty())
+            {
+                // chunks are decoded by many io threads at once, and entity trackers can be only changed by main thread.
+                final WorldImpl world = this.getWorld();
+                DioriteCore.getInstance().sync(() -> loadedEntities.forEach(e -> world.addEntity(e, false)));
+            }
+        }
+
+        if (tileEntities != null)
+        {
+            for(final NbtTagCompound nbtTileEntity : tileEntities)
+            {
+                final TileEntityImpl tileEntity;
+                try
+                {
+                    tileEntity = DioriteCore.getInstance().getServerManager().getTileEntityFactory().createTileEntity(nbtTileEntity, this.getWorld());
+                }
+                catch (final Exception e)
+                {
+                    System.err.println("Failed to load tile entity (" + nbtTileEntity + ")");
+                    continue;
+                }
+                this.tileEntities.put(tileEntity.getBlock().getLocation().asLong(), tileEntity);
             }
-            this.tileEntities.put(tileEntity.getBlock().getLocation().asLong(), tileEntity);
         }
 
-        final byte[] biomes = tag.getByteArray("Biomes");
         if (biomes != null)
         {
             this.biomes = biomes;
@@ -489,15 +793,13 @@ public class ChunkImpl implements Chunk
         {
             this.biomes = new byte[CHUNK_BIOMES_SIZE];
         }
-        final short[] heightMap = tag.getShortArray("Diorite.HeightMap");
-        if (vc || (heightMap == null))
+        if (vc || (dioriteHeightMap == null))
         {
-            final int[] array = tag.getIntArray("HeightMap");
-            if (array != null)
+            if (heightMap != null)
             {
                 for (int i = 0; i < this.heightMap.length; i++)
                 {
-                    this.heightMap[i] = (short) array[i];
+                    this.heightMap[i] = (short) heightMap[i];
                 }
             }
             else
@@ -505,106 +807,111 @@ public class ChunkImpl implements Chunk
                 this.initHeightMap();
             }
         }
-        else
+        else if (dioriteHeightMap != this.heightMap)
         {
-            System.arraycopy(heightMap, 0, this.heightMap, 0, this.heightMap.length);
+            System.arraycopy(dioriteHeightMap, 0, this.heightMap, 0, this.heightMap.length);
         }
 
         this.init();
+        this.contentModCount.incrementAndGet();
+        this.savedModCount = this.modCount.get(); // loaded state is same as saved one.
 //        tag.getBoolean("LightPopulated"); // TODO
 //        tag.getLong("InhabitedTime"); // TODO
     }
 
+    /**
+     * Write chunk directly to given nbt writer, only content of "Level" compound is written, without its header and end. <br>
+     * Block arrays are expanded from palette into reused per-thread buffer, only entities and tile entities are saved as nbt tags.
+     *
+     * @param writer nbt writer to use.
+     *
+     * @return false if chunk isn't loaded and nothing was written.
+     *
+     * @throws IOException if any write operation failed.
+     */
     @SuppressWarnings("MagicNumber")
-    public NbtTagCompound writeTo(final NbtTagCompound tag)
+    public boolean writeTo(final NbtStreamWriter writer) throws IOException
     {
         synchronized (this.lock)
         {
             if (! this.isLoaded())
             {
-                return null;
+                return false;
             }
             final boolean vc = this.getWorld().isVanillaCompatible();
 
-            tag.setByte("V", 1);
-            tag.setInt("xPos", this.getX());
-            tag.setInt("zPos", this.getZ());
-            tag.setLong("LastUpdate", this.getWorld().getTime());
+            writer.writeByte("V", 1);
+            writer.writeInt("xPos", this.getX());
+            writer.writeInt("zPos", this.getZ());
+            writer.writeLong("LastUpdate", this.getWorld().getTime());
 
-            // TODO: add converter command/util, to convert worlds to diorite/vanilla type.
             if (vc)
             {
-                final int[] array = new int[this.heightMap.length];
-                for (int i = 0; i < this.heightMap.length; i++)
-                {
-                    array[i] = this.heightMap[i];
-                }
-                tag.setIntArray("HeightMap", array);
+                writer.writeIntArray("HeightMap", this.heightMap);
             }
             else
             {
-                tag.setShortArray("Diorite.HeightMap", this.heightMap);
+                writer.beginCompound("Diorite"); // tree nbt api saves "Diorite.HeightMap" path as nested compound.
+                writer.writeShortArray("HeightMap", this.heightMap);
+                writer.endCompound();
             }
 
-            tag.setBoolean("TerrainPopulated", this.populated.get());
-            tag.setBoolean("LightPopulated", false); // TODO
-            tag.setLong("InhabitedTime", 0); // TODO: value used to set local difficulty based on play time
-            final List<NbtTag> sections = new ArrayList<>(16);
+            writer.writeBoolean("TerrainPopulated", this.populated.get());
+            writer.writeBoolean("LightPopulated", false); // TODO
+            writer.writeLong("InhabitedTime", 0); // TODO: value used to set local difficulty based on play time
+
+            int sectionsCount = 0;
+            for (final ChunkPartImpl chunkPart : this.chunkParts)
+            {
+                if (chunkPart != null)
+                {
+                    sectionsCount++;
+                }
+            }
+            writer.beginList("Sections", (sectionsCount == 0) ? NbtTagType.END : NbtTagType.COMPOUND, sectionsCount);
             final boolean hasSkyLight = this.getWorld().getDimension().hasSkyLight();
+            final byte[] buffer = saveBuffer.get();
+            final int dataOffset = ChunkPartImpl.CHUNK_DATA_SIZE;
+            final int addOffset = dataOffset + NIBBLES_SIZE;
             for (final ChunkPartImpl chunkPart : this.chunkParts)
             {
                 if (chunkPart == null)
                 {
                     continue;
                 }
-                final NbtTagCompound sectionNBT = new NbtTagCompound();
-                sectionNBT.setByte("Y", chunkPart.getYPos());
                 final ChunkBlockData data = chunkPart.getBlockData();
                 final PaletteImpl palette = chunkPart.getPalette();
-                final byte[] blocksIDs = new byte[ChunkPartImpl.CHUNK_DATA_SIZE];
-                final org.diorite.impl.world.chunk.ChunkNibbleArray blocksMetaData = new org.diorite.impl.world.chunk.ChunkNibbleArray();
-                org.diorite.impl.world.chunk.ChunkNibbleArray additionalData = null;
+                Arrays.fill(buffer, dataOffset, buffer.length, (byte) 0);
+                boolean hasAdd = false;
                 for (int i = 0; i < ChunkPartImpl.CHUNK_DATA_SIZE; ++ i)
                 {
                     final int block = data.getAsInt(i, palette);
-                    final int blockMeta = i & 15;
-                    final int blockData = (i >> 8) & 15;
-                    final int blockID = (i >> 4) & 15;
+                    final int shift = (i & 1) << 2;
+                    buffer[i] = (byte) (block >> 4);
+                    buffer[dataOffset + (i >> 1)] |= (block & 15) << shift;
                     if ((block >> 12) != 0)
                     {
-                        if (additionalData == null)
-                        {
-                            additionalData = new ChunkNibbleArray();
-                        }
-                        additionalData.set(blockMeta, blockData, blockID, block >> 12);
+                        hasAdd = true;
+                        buffer[addOffset + (i >> 1)] |= ((block >> 12) & 15) << shift;
                     }
-                    blocksIDs[i] = (byte) ((block >> 4) & 255);
-                    blocksMetaData.set(blockMeta, blockData, blockID, block & 15);
-                }
-                sectionNBT.setByteArray("Blocks", blocksIDs);
-                sectionNBT.setByteArray("Data", blocksMetaData.getRawData());
-                if (additionalData != null)
-                {
-                    sectionNBT.setByteArray("Add", additionalData.getRawData());
-                }
-                sectionNBT.setByteArray("BlockLight", chunkPart.getBlockLight().getRawData());
-                if (hasSkyLight)
-                {
-                    sectionNBT.setByteArray("SkyLight", chunkPart.getSkyLight().getRawData());
                 }
-                else
+                writer.writeByte("Y", chunkPart.getYPos());
+                writer.writeByteArray("Blocks", buffer, 0, ChunkPartImpl.CHUNK_DATA_SIZE);
+                writer.writeByteArray("Data", buffer, dataOffset, NIBBLES_SIZE);
+                if (hasAdd)
                 {
-                    sectionNBT.setByteArray("SkyLight", new byte[chunkPart.getBlockLight().getRawData().length]);
+                    writer.writeByteArray("Add", buffer, addOffset, NIBBLES_SIZE);
                 }
-                sections.add(sectionNBT);
+                writer.writeByteArray("BlockLight", chunkPart.getBlockLight().getRawData());
+                writer.writeByteArray("SkyLight", hasSkyLight ? chunkPart.getSkyLight().getRawData() : EMPTY_LIGHT);
+                writer.endCompound();
             }
-            tag.setList("Sections", sections);
             if (this.biomes != null)
             {
-                tag.setByteArray("Biomes", this.biomes);
+                writer.writeByteArray("Biomes", this.biomes);
             }
 
-            final List<NbtTag> entities = new ArrayList<>(this.getEntities().size());
+            final List<NbtTagCompound> entities = new ArrayList<>(this.getEntities().size());
             for (final IEntity dioriteEntity : this.getEntities())
             {
                 if (dioriteEntity instanceof IPlayer)
@@ -613,25 +920,28 @@ public class ChunkImpl implements Chunk
                 }
                 final NbtTagCompound entity = new NbtTagCompound();
                 dioriteEntity.saveToNbt(entity);
-
                 entities.add(entity);
             }
+            writeCompoundList(writer, "Entities", entities);
 
-            tag.setList("Entities", entities);
-
-            final List<NbtTag> nbtTileEntities = new ArrayList<>(this.tileEntities.size());
-
-            Collection<TileEntityImpl> tileEntitiesCollection = this.tileEntities.values();
-            for (final TileEntityImpl aTileEntitiesCollection : tileEntitiesCollection)
+            final List<NbtTagCompound> nbtTileEntities = new ArrayList<>(this.tileEntities.size());
+            for (final TileEntityImpl tileEntity : this.tileEntities.values())
             {
-                NbtTagCompound nbtTileEntity = new NbtTagCompound();
-                aTileEntitiesCollection.saveToNbt(nbtTileEntity);
-
+                final NbtTagCompound nbtTileEntity = new NbtTagCompound();
+                tileEntity.saveToNbt(nbtTileEntity);
                 nbtTileEntities.add(nbtTileEntity);
             }
+            writeCompoundList(writer, "TileEntities", nbtTileEntities);
+            return true;
+        }
+    }
 
-            tag.setList("TileEntities", nbtTileEntities);
-            return tag;
+    private static void writeCompoundList(final NbtStreamWriter writer, final String name, final List<NbtTagCompound> list) throws IOException
+    {
+        writer.beginList(name, list.isEmpty() ? NbtTagType.END : NbtTagType.COMPOUND, list.size());
+        for (final NbtTagCompound tag : list)
+        {
+            writer.writeListElement(tag);
         }
     }
 
@@ -678,7 +988,11 @@ public class ChunkImpl implements Chunk
 
     public void init()
     {
-        // TODO
+        final WorldImpl world = this.getWorld();
+        if (world != null)
+        {
+            world.getChunkManager().onChunkLoaded(this);
+        }
     }
 
     public static ChunkImpl loadFromNBT(final World world, final NbtTagCompound tag)
@@ -702,6 +1016,7 @@ public class ChunkImpl implements Chunk
             if (block.getType().equals(BlockMaterialData.AIR))
             {
                 this.tileEntities.remove(blockLocation);
+                this.markContentModified();
             }
             //else if () TODO check if tile entity type match block type to prevent ClassCastException and other issues.
             {
@@ -718,6 +1033,7 @@ public class ChunkImpl implements Chunk
         }
 
         this.tileEntities.put(blockLocation, tileEntity);
+        this.markContentModified();
     }
 
     @Override
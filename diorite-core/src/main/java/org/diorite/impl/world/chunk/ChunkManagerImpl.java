@@ -24,15 +24,17 @@
 
 package org.diorite.impl.world.chunk;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -40,13 +42,14 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.diorite.impl.DioriteCore;
 import org.diorite.impl.Tickable;
 import org.diorite.impl.world.WorldImpl;
-import org.diorite.impl.world.generator.ChunkBuilderImpl;
+import org.diorite.impl.world.generator.ChunkGenerationService;
 import org.diorite.impl.world.io.ChunkIOService;
 import org.diorite.impl.world.io.requests.ChunkLoadRequest;
 import org.diorite.event.EventType;
 import org.diorite.event.chunk.ChunkGenerateEvent;
 import org.diorite.event.chunk.ChunkLoadEvent;
 import org.diorite.event.chunk.ChunkPopulateEvent;
+import org.diorite.utils.collections.maps.ConcurrentLong2ObjectHashMap;
 import org.diorite.utils.math.endian.BigEndianUtils;
 import org.diorite.world.chunk.Chunk;
 import org.diorite.world.chunk.ChunkManager;
@@ -59,6 +62,10 @@ import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 
 public class ChunkManagerImpl implements ChunkManager, Tickable
 {
+    /**
+     * Max time in ms that main thread can spend on population of loaded chunks in single tick, shared by all worlds.
+     */
+    public static final long MAX_POPULATE_TIME = 10;
 
     /**
      * Core instance.
@@ -86,15 +93,40 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
      */
     private final MapLayer[] biomeGrid;
 
+    /**
+     * The service used to generate new chunks outside of main thread.
+     */
+    private final ChunkGenerationService generationService;
+
     /**
      * A map of chunks currently loaded in memory.
      */
-    private final ConcurrentMap<Long, ChunkImpl> chunks = new ConcurrentHashMap<>(1000, .25f, 8);
+    private final ConcurrentLong2ObjectHashMap<ChunkImpl> chunks = new ConcurrentLong2ObjectHashMap<>(1000);
 
     /**
      * A map of chunks which are being kept loaded by players or other factors.
      */
-    private final ConcurrentMap<Long, Set<ChunkLock>> locks = new ConcurrentHashMap<>(1000, .25f, 8);
+    private final ConcurrentLong2ObjectHashMap<Set<ChunkLock>> locks = new ConcurrentLong2ObjectHashMap<>(1000);
+
+    /**
+     * Chunks loaded or generated by any thread, waiting for main thread to populate chunks around them.
+     */
+    private final Queue<ChunkImpl> loadedQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Listeners invoked by main thread after chunks around loaded chunk were populated.
+     */
+    private final Set<Consumer<ChunkImpl>> populateListeners = new CopyOnWriteArraySet<>();
+
+    /**
+     * Amount of chunks queued to save.
+     */
+    private final AtomicLong savedChunks = new AtomicLong();
+
+    /**
+     * Amount of chunks that weren't saved, because they weren't modified since last save.
+     */
+    private final AtomicLong skippedChunks = new AtomicLong();
 
     public ChunkManagerImpl(final DioriteCore core, final WorldImpl world, final ChunkIOService service, final WorldGenerator generator)
     {
@@ -103,6 +135,7 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
         this.service = service;
         this.generator = generator;
         this.biomeGrid = MapLayer.initialize(world.getSeed(), world.getDimension(), world.getWorldType());
+        this.generationService = new ChunkGenerationService(core, world, generator, this.biomeGrid);
     }
 
     public WorldGenerator getGenerator()
@@ -115,6 +148,11 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
         return this.service;
     }
 
+    public ChunkGenerationService getGenerationService()
+    {
+        return this.generationService;
+    }
+
     public MapLayer[] getBiomeGrid()
     {
         return this.biomeGrid;
@@ -125,6 +163,22 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
         return this.world;
     }
 
+    /**
+     * @return amount of chunks queued to save since server start.
+     */
+    public long getSavedChunksCount()
+    {
+        return this.savedChunks.get();
+    }
+
+    /**
+     * @return amount of chunks that weren't saved since server start, because they weren't modified since last save.
+     */
+    public long getSkippedChunksCount()
+    {
+        return this.skippedChunks.get();
+    }
+
     @Override
     public ChunkImpl getChunk(final ChunkPos pos)
     {
@@ -134,34 +188,30 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
     @Override
     public ChunkImpl getChunk(final int x, final int z)
     {
-        final Long key = BigEndianUtils.toLong(x, z);
-        if (this.chunks.containsKey(key))
+        final long key = BigEndianUtils.toLong(x, z);
+        final ChunkImpl current = this.chunks.get(key);
+        if (current != null)
         {
-            return this.chunks.get(key);
-        }
-        else
-        {
-            // only create chunk if it's not in the map already
-            final ChunkImpl chunk = new ChunkImpl(new ChunkPos(x, z, this.world));
-            final ChunkImpl prev = this.chunks.putIfAbsent(key, chunk);
-            // if it was created in the intervening time, the earlier one wins
-            return (prev == null) ? chunk : prev;
+            return current;
         }
+        // only create chunk if it's not in the map already
+        final ChunkImpl chunk = new ChunkImpl(new ChunkPos(x, z, this.world));
+        final ChunkImpl prev = this.chunks.putIfAbsent(key, chunk);
+        // if it was created in the intervening time, the earlier one wins
+        return (prev == null) ? chunk : prev;
     }
 
     @Override
     public boolean isChunkLoaded(final int x, final int z)
     {
-        final Long key = BigEndianUtils.toLong(x, z);
-        final ChunkImpl chunk = this.chunks.get(key);
+        final ChunkImpl chunk = this.chunks.get(BigEndianUtils.toLong(x, z));
         return (chunk != null) && chunk.isLoaded();
     }
 
     @Override
     public boolean isChunkInUse(final int x, final int z)
     {
-        final Long key = BigEndianUtils.toLong(x, z);
-        final Set<ChunkLock> lockSet = this.locks.get(key);
+        final Set<ChunkLock> lockSet = this.locks.get(BigEndianUtils.toLong(x, z));
         return (lockSet != null) && ! lockSet.isEmpty();
     }
 
@@ -175,20 +225,19 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
         }
         final ChunkLoadRequest chunkLoadRequest = new ChunkLoadRequest(ChunkIOService.INSTANT_PRIORITY, chunk, x, z);
         chunkLoadRequest.addOnEnd(r -> {
-            ChunkImpl loadedChunk = r.get();
-            if (generate && (loadedChunk == null))
+            final ChunkImpl loadedChunk = r.get();
+            if (loadedChunk != null)
+            {
+                onEnd.accept(loadedChunk, true);
+            }
+            else if (generate)
             {
-                this.core.sync(() -> {
-                    final ChunkGenerateEvent genEvt = new ChunkGenerateEvent(chunk);
-                    EventType.callEvent(genEvt);
-                });
-                loadedChunk = chunk;
+                this.generationService.generate(chunk, () -> onEnd.accept(chunk, true));
             }
-            else if (loadedChunk == null)
+            else
             {
-                loadedChunk = chunk;
+                onEnd.accept(chunk, true);
             }
-            onEnd.accept(loadedChunk, true);
         });
         this.service.queue(chunkLoadRequest);
     }
@@ -223,14 +272,14 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
     @Override
     public void unloadOldChunks()
     {
-        for (final Map.Entry<Long, ChunkImpl> entry : this.chunks.entrySet())
-        {
-            final Set<ChunkLock> lockSet = this.locks.get(entry.getKey());
+        this.chunks.forEachValue(chunk -> {
+            final long key = BigEndianUtils.toLong(chunk.getX(), chunk.getZ());
+            final Set<ChunkLock> lockSet = this.locks.get(key);
             if ((lockSet == null) || lockSet.isEmpty())
             {
-                if (! entry.getValue().unload(true, true))
+                if (! chunk.unload(true, true))
                 {
-                    System.err.println("[ChunkIO] Failed to unload chunk " + this.world.getName() + ":" + entry.getKey());
+                    System.err.println("[ChunkIO] Failed to unload chunk " + this.world.getName() + ":" + key);
                 }
             }
             // cannot remove old chunks from cache - Block and BlockState keep references.
@@ -239,17 +288,129 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
                 chunks.entrySet().remove(entry);
                 locks.remove(entry.getKey());
             }*/
-        }
+        });
     }
 
     @Override
     public void populateChunk(final int x, final int z, final boolean force)
     {
         final ChunkImpl chunk = this.getChunk(x, z);
+        if (chunk.isPopulated())
+        {
+            return;
+        }
         final ChunkPopulateEvent popEvt = new ChunkPopulateEvent(chunk, force);
         EventType.callEvent(popEvt);
     }
 
+    /**
+     * Invoked when chunk is loaded or generated, by any thread. <br>
+     * Chunk is queued, and main thread then populates this chunk and chunks around it that are not yet populated,
+     * if whole 3x3 area around them is loaded, so each chunk is populated once, when last of its neighbours is loaded.
+     *
+     * @param chunk loaded chunk.
+     *
+     * @see #populateQueued(long)
+     */
+    public void onChunkLoaded(final ChunkImpl chunk)
+    {
+        // always queued, so population isn't done in middle of loading chunk.
+        this.loadedQueue.add(chunk);
+    }
+
+    /**
+     * Populate chunks around queued loaded chunks, until queue is empty or given time is reached,
+     * rest of chunks are left in queue for next tick, so many chunks loaded at once can't freeze main thread. <br>
+     * Must be invoked by main thread.
+     *
+     * @param deadline {@link System#nanoTime()} after which no more chunks are processed.
+     */
+    public void populateQueued(final long deadline)
+    {
+        ChunkImpl chunk;
+        while ((System.nanoTime() < deadline) && ((chunk = this.loadedQueue.poll()) != null))
+        {
+            try
+            {
+                this.populateAround(chunk.getX(), chunk.getZ());
+            } catch (final Throwable e)
+            {
+                System.err.println("[ChunkIO] Error while populating chunks around (" + chunk.getX() + "," + chunk.getZ() + ")");
+                e.printStackTrace();
+            }
+            for (final Consumer<ChunkImpl> listener : this.populateListeners)
+            {
+                listener.accept(chunk);
+            }
+        }
+    }
+
+    /**
+     * @return amount of loaded chunks waiting for main thread to populate chunks around them.
+     */
+    public int getQueuedToPopulate()
+    {
+        return this.loadedQueue.size();
+    }
+
+    /**
+     * Add listener invoked by main thread after chunks around loaded chunk were populated (or skipped if not every chunk around them is loaded yet).
+     *
+     * @param listener listener to add.
+     */
+    public void addPopulateListener(final Consumer<ChunkImpl> listener)
+    {
+        this.populateListeners.add(listener);
+    }
+
+    /**
+     * Remove listener added by {@link #addPopulateListener(Consumer)}.
+     *
+     * @param listener listener to remove.
+     */
+    public void removePopulateListener(final Consumer<ChunkImpl> listener)
+    {
+        this.populateListeners.remove(listener);
+    }
+
+    private void populateAround(final int x, final int z)
+    {
+        for (int ax = x - 1; ax <= (x + 1); ++ ax)
+        {
+            for (int az = z - 1; az <= (z + 1); ++ az)
+            {
+                final ChunkImpl chunk = this.chunks.get(BigEndianUtils.toLong(ax, az));
+                if ((chunk != null) && chunk.isLoaded() && ! chunk.isPopulated() && this.isLoadedAround(ax, az))
+                {
+                    this.populateChunk(ax, az, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if all chunks in 3x3 area around given chunk are loaded, without creating chunk objects for missing chunks.
+     *
+     * @param x x coordinate of center chunk.
+     * @param z z coordinate of center chunk.
+     *
+     * @return true if all 9 chunks are loaded.
+     */
+    public boolean isLoadedAround(final int x, final int z)
+    {
+        for (int ax = x - 1; ax <= (x + 1); ++ ax)
+        {
+            for (int az = z - 1; az <= (z + 1); ++ az)
+            {
+                if (! this.isChunkLoaded(ax, az))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public void forcePopulation(final int x, final int z)
     {
@@ -268,8 +429,7 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
     @Override
     public void generateChunk(final Chunk chunk, final int x, final int z)
     {
-        final ChunkPos pos = new ChunkPos(x, z, this.world);
-        this.generator.generate(this.generator.generateBiomes(new ChunkBuilderImpl(this.biomeGrid), pos), pos).init(chunk);
+        this.generationService.takeOrBuild(x, z).init(chunk);
     }
 
     @Override
@@ -308,18 +468,20 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
     @Override
     public List<ChunkImpl> getLoadedChunks()
     {
-        return this.chunks.values().stream().filter(ChunkImpl::isLoaded).collect(Collectors.toList());
+        final List<ChunkImpl> loaded = new ArrayList<>(this.chunks.size());
+        this.chunks.forEachValue(chunk -> {
+            if (chunk.isLoaded())
+            {
+                loaded.add(chunk);
+            }
+        });
+        return loaded;
     }
 
     @Override
     public boolean save(final Chunk chunk)
     {
-        if (chunk.isLoaded())
-        {
-            this.service.queueChunkSave((ChunkImpl) chunk, ChunkIOService.MEDIUM_PRIORITY);
-            return true;
-        }
-        return false;
+        return this.save(chunk, ChunkIOService.MEDIUM_PRIORITY);
     }
 
     @Override
@@ -327,7 +489,14 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
     {
         if (chunk.isLoaded())
         {
-            this.service.queueChunkSave((ChunkImpl) chunk, priority);
+            final ChunkImpl impl = (ChunkImpl) chunk;
+            if (! impl.isModifiedSinceSave())
+            {
+                this.skippedChunks.incrementAndGet();
+                return true;
+            }
+            this.savedChunks.incrementAndGet();
+            this.service.queueChunkSave(impl, priority);
             return true;
         }
         return false;
@@ -341,7 +510,12 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
     @Override
     public void doTick(final int tps)
     {
-        this.chunks.values().stream().filter(ChunkImpl::isLoaded).forEach(c -> c.getTileEntities().forEach((l, t) -> t.doTick(tps)));
+        this.chunks.forEachValue(c -> {
+            if (c.isLoaded())
+            {
+                c.getTileEntities().forEach((l, t) -> t.doTick(tps));
+            }
+        });
     }
 
     /**
@@ -351,20 +525,9 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
      *
      * @return The set of locks for that chunk.
      */
-    private Collection<ChunkLock> getLockSet(final Long key)
+    private Collection<ChunkLock> getLockSet(final long key)
     {
-        if (this.locks.containsKey(key))
-        {
-            return this.locks.get(key);
-        }
-        else
-        {
-            // only create chunk if it's not in the map already
-            final Set<ChunkLock> set = new HashSet<>(5);
-            final Set<ChunkLock> prev = this.locks.putIfAbsent(key, set);
-            // if it was created in the intervening time, the earlier one wins
-            return (prev == null) ? set : prev;
-        }
+        return this.locks.computeIfAbsent(key, k -> new HashSet<>(5));
     }
 
     /**
@@ -423,6 +586,6 @@ public class ChunkManagerImpl implements ChunkManager, Tickable
     @Override
     public String toString()
     {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("world", this.world).append("generator", this.generator).toString();
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("world", this.world).append("generator", this.generator).append("savedChunks", this.savedChunks.get()).append("skippedChunks", this.skippedChunks.get()).toString();
     }
 }
@@ -174,7 +174,7 @@ public class PlayerChunksImpl implements Tickable
         int i = 0;
         for (final ChunkImpl chunk : chunksToSent)
         {
-            packets[i++] = new PacketPlayClientboundMapChunk(true, chunk);
+            packets[i++] = chunk.getMapChunkPacket();
         }
         this.player.getNetworkManager().sendPackets(packets);
     }
@@ -225,7 +225,6 @@ public class PlayerChunksImpl implements Tickable
         }
         if (chunk.isLoaded())
         {
-            impl.populateChunk(cx, cz, false);
             final long key = BigEndianUtils.toLong(cx, cz);
             if (this.visibleChunks.contains(key))
             {
@@ -257,7 +256,6 @@ public class PlayerChunksImpl implements Tickable
         }
         if (impl.isChunkLoaded(cx, cz))
         {
-            impl.populateChunk(cx, cz, false);
             final long key = BigEndianUtils.toLong(cx, cz);
             if (this.visibleChunks.contains(key))
             {
@@ -88,18 +88,8 @@ public class ArrayPaletteImpl implements PaletteData
         {
             return - 1;
         }
-        Material mat = Material.getByID(minecraftIDandData >> 4, minecraftIDandData & 15);
-        if (! (mat instanceof BlockMaterialData))
-        {
-            mat = Material.getByID(minecraftIDandData >> 4);
-            if (! (mat instanceof BlockMaterialData))
-            {
-                mat = Material.AIR;
-//                throw new IllegalArgumentException("Unknown material: " + minecraftIDandData + " (" + (minecraftIDandData >> 4) + ":" + (minecraftIDandData & 15) + ")");
-            }
-        }
         final int index = this.lastIndex++;
-        pattern[index] = (BlockMaterialData) mat;
+        pattern[index] = BlockStates.get(minecraftIDandData);
         return index;
     }
 
@@ -188,12 +178,12 @@ public class ArrayPaletteImpl implements PaletteData
         for (int i = 0; i < size; i++)
         {
             final int id = data.readVarInt();
-            final Material mat = Material.getByID(id >> 4, id & 15);
-            if (! (mat instanceof BlockMaterialData))
+            final BlockMaterialData mat = BlockStates.getExact(id);
+            if (mat == null)
             {
                 throw new IllegalArgumentException("Unknown material: " + id + " (" + (id >> 4) + ":" + (id & 15) + ")");
             }
-            this.pattern[i] = (BlockMaterialData) mat;
+            this.pattern[i] = mat;
         }
     }
 
@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world.chunk.palette;
+
+import org.diorite.material.BlockMaterialData;
+import org.diorite.material.Material;
+
+/**
+ * Flat lookup table of all block states, indexed by combined id and meta value ({@literal (id << 4) | meta}). <br>
+ * Built once at startup, so decoding chunks and packets don't need to query material maps for every block.
+ * Unknown states are resolved to first sub-type of material with that id, or to {@link Material#AIR}.
+ */
+public final class BlockStates
+{
+    /**
+     * Amount of possible combined id and meta values.
+     */
+    public static final int STATES_SIZE = 1 << 16;
+
+    private static volatile Table table = new Table();
+
+    private BlockStates()
+    {
+    }
+
+    /**
+     * Force build of table, should be called after all materials are loaded.
+     *
+     * @return amount of valid block states.
+     */
+    public static int init()
+    {
+        return table.validCount;
+    }
+
+    /**
+     * Rebuild table, needed only if new materials are registered after startup.
+     */
+    public static void rebuild()
+    {
+        table = new Table();
+    }
+
+    /**
+     * Returns true if given combined id and meta value is registered block state.
+     *
+     * @param idAndMeta combined id and meta value.
+     *
+     * @return true if given value is registered block state.
+     */
+    public static boolean isValid(final int idAndMeta)
+    {
+        return (idAndMeta >= 0) && (idAndMeta < STATES_SIZE) && ((table.valid[idAndMeta >>> 6] & (1L << idAndMeta)) != 0);
+    }
+
+    /**
+     * Returns block material for given combined id and meta value, never null. <br>
+     * Unknown states are resolved to first sub-type of material or to {@link Material#AIR}.
+     *
+     * @param idAndMeta combined id and meta value.
+     *
+     * @return block material for given value.
+     */
+    public static BlockMaterialData get(final int idAndMeta)
+    {
+        if ((idAndMeta < 0) || (idAndMeta >= STATES_SIZE))
+        {
+            return Material.AIR;
+        }
+        return table.states[idAndMeta];
+    }
+
+    /**
+     * Returns block material for given combined id and meta value, or null if it isn't registered block state.
+     *
+     * @param idAndMeta combined id and meta value.
+     *
+     * @return block material for given value or null.
+     */
+    public static BlockMaterialData getExact(final int idAndMeta)
+    {
+        return isValid(idAndMeta) ? table.states[idAndMeta] : null;
+    }
+
+    /**
+     * Returns given combined id and meta value if it is valid block state, or combined id and meta of
+     * material that {@link #get(int)} resolves it to.
+     *
+     * @param idAndMeta combined id and meta value.
+     *
+     * @return valid combined id and meta value.
+     */
+    public static int resolve(final int idAndMeta)
+    {
+        if ((idAndMeta < 0) || (idAndMeta >= STATES_SIZE))
+        {
+            return 0;
+        }
+        return table.resolved[idAndMeta];
+    }
+
+    private static final class Table
+    {
+        private final BlockMaterialData[] states   = new BlockMaterialData[STATES_SIZE];
+        private final char[]              resolved = new char[STATES_SIZE];
+        private final long[]              valid    = new long[STATES_SIZE >> 6];
+        private       int                 validCount;
+
+        @SuppressWarnings("MagicNumber")
+        private Table()
+        {
+            for (int id = 0, size = STATES_SIZE >> 4; id < size; id++)
+            {
+                final Material base = Material.getByID(id);
+                final BlockMaterialData fallback = (base instanceof BlockMaterialData) ? (BlockMaterialData) base : Material.AIR;
+                for (int meta = 0; meta < 16; meta++)
+                {
+                    final int k = (id << 4) | meta;
+                    final Material mat = (base == null) ? null : base.getType(meta);
+                    if (mat instanceof BlockMaterialData)
+                    {
+                        this.states[k] = (BlockMaterialData) mat;
+                        this.resolved[k] = (char) k;
+                        this.valid[k >>> 6] |= 1L << k;
+                        this.validCount++;
+                    }
+                    else
+                    {
+                        this.states[k] = fallback;
+                        this.resolved[k] = (char) fallback.getIdAndMeta();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -87,12 +87,7 @@ public class GlobalPaletteImpl implements PaletteData
     @Override
     public BlockMaterialData get(final int sectionID)
     {
-        final BlockMaterialData data = (BlockMaterialData) BlockMaterialData.getByID(sectionID >> 4, sectionID & 15);
-        if (data == null)
-        {
-            return Material.AIR;
-        }
-        return data;
+        return BlockStates.get(sectionID);
     }
 
     @Override
@@ -26,7 +26,6 @@ package org.diorite.impl.world.chunk.palette;
 
 import org.diorite.impl.connection.packets.PacketDataSerializer;
 import org.diorite.material.BlockMaterialData;
-import org.diorite.material.Material;
 
 public interface Palette
 {
@@ -50,13 +49,7 @@ public interface Palette
 
     default BlockMaterialData get(final int sectionID)
     {
-        final int data = this.getAsInt(sectionID);
-        final BlockMaterialData mat = (BlockMaterialData) BlockMaterialData.getByID(data >> 4, data & 15);
-        if (mat == null)
-        {
-            return Material.AIR;
-        }
-        return mat;
+        return BlockStates.get(this.getAsInt(sectionID));
     }
 
     int size();
@@ -30,6 +30,7 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.diorite.impl.world.chunk.ChunkBlockData;
 import org.diorite.impl.world.chunk.ChunkImpl;
 import org.diorite.impl.world.chunk.ChunkPartImpl;
+import org.diorite.impl.world.chunk.palette.BlockStates;
 import org.diorite.impl.world.chunk.palette.PaletteImpl;
 import org.diorite.material.BlockMaterialData;
 import org.diorite.material.Material;
@@ -176,12 +177,7 @@ public class ChunkBuilderImpl implements ChunkBuilder
         @SuppressWarnings("MagicNumber")
         private BlockMaterialData getBlockType(final int x, final int y, final int z)
         {
-            final int data = this.blockData.getAsInt(this.toArrayIndex(x, y, z), this.palette);
-            if (Material.getByID(data >> 4, data & 15) == null)
-            {
-                return Material.AIR;
-            }
-            return (BlockMaterialData) Material.getByID(data >> 4, data & 15);
+            return BlockStates.get(this.blockData.getAsInt(this.toArrayIndex(x, y, z), this.palette));
         }
 
         @SuppressWarnings("MagicNumber")
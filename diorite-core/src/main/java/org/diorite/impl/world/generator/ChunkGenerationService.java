@@ -0,0 +1,306 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world.generator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import org.diorite.impl.DioriteCore;
+import org.diorite.impl.world.WorldImpl;
+import org.diorite.impl.world.chunk.ChunkImpl;
+import org.diorite.event.EventType;
+import org.diorite.event.chunk.ChunkGenerateEvent;
+import org.diorite.utils.collections.maps.ConcurrentLong2ObjectHashMap;
+import org.diorite.utils.math.endian.BigEndianUtils;
+import org.diorite.world.chunk.ChunkPos;
+import org.diorite.world.generator.ChunkBuilder;
+import org.diorite.world.generator.WorldGenerator;
+import org.diorite.world.generator.maplayer.MapLayer;
+
+/**
+ * Generates chunks of single world on bounded pool of worker threads. <br>
+ * Workers only build biomes and terrain into {@link ChunkBuilder}, the builder is then handed back to the main thread,
+ * where {@link ChunkGenerateEvent} is called and builder is applied to chunk, population is still done by main thread. <br>
+ * If service is using 0 threads, chunks are generated directly by main thread.
+ */
+public class ChunkGenerationService
+{
+    public static final int DEFAULT_THREADS = 2;
+
+    private final DioriteCore    core;
+    private final WorldImpl      world;
+    private final WorldGenerator generator;
+    private final MapLayer[]     biomeGrid;
+
+    /**
+     * Callbacks of chunks queued or generated by workers, but not yet applied.
+     */
+    private final ConcurrentLong2ObjectHashMap<Collection<Runnable>> pending  = new ConcurrentLong2ObjectHashMap<>(100);
+    /**
+     * Builders generated by workers, waiting for {@link ChunkGenerateEvent} to apply them.
+     */
+    private final ConcurrentLong2ObjectHashMap<ChunkBuilder>         prepared = new ConcurrentLong2ObjectHashMap<>(100);
+
+    private final AtomicLong asyncGenerated = new AtomicLong();
+    private final AtomicLong syncGenerated  = new AtomicLong();
+
+    private volatile int             threads = DEFAULT_THREADS;
+    private volatile ExecutorService executor;
+    private volatile boolean         closed;
+
+    public ChunkGenerationService(final DioriteCore core, final WorldImpl world, final WorldGenerator generator, final MapLayer[] biomeGrid)
+    {
+        this.core = core;
+        this.world = world;
+        this.generator = generator;
+        this.biomeGrid = biomeGrid;
+    }
+
+    /**
+     * @return amount of worker threads, 0 if chunks are generated by main thread.
+     */
+    public int getThreads()
+    {
+        return this.threads;
+    }
+
+    /**
+     * Set amount of worker threads, must be used before first chunk is generated.
+     *
+     * @param threads amount of worker threads, 0 to generate chunks on main thread.
+     */
+    public void setThreads(final int threads)
+    {
+        if (this.executor != null)
+        {
+            throw new IllegalStateException("Generation threads are already running.");
+        }
+        this.threads = Math.max(threads, 0);
+    }
+
+    /**
+     * @return amount of chunks generated by worker threads since server start.
+     */
+    public long getAsyncGeneratedCount()
+    {
+        return this.asyncGenerated.get();
+    }
+
+    /**
+     * @return amount of chunks generated by main thread since server start.
+     */
+    public long getSyncGeneratedCount()
+    {
+        return this.syncGenerated.get();
+    }
+
+    /**
+     * @return amount of chunks queued to generate.
+     */
+    public int getPendingCount()
+    {
+        return this.pending.size();
+    }
+
+    /**
+     * Generate biomes and terrain of given chunk in current thread.
+     *
+     * @param x x coordinate of chunk.
+     * @param z z coordinate of chunk.
+     *
+     * @return generated chunk builder.
+     */
+    public ChunkBuilder build(final int x, final int z)
+    {
+        final ChunkPos pos = new ChunkPos(x, z, this.world);
+        return this.generator.generate(this.generator.generateBiomes(new ChunkBuilderImpl(this.biomeGrid), pos), pos);
+    }
+
+    /**
+     * Returns builder prepared by worker thread for given chunk, or generate new one in current thread.
+     *
+     * @param x x coordinate of chunk.
+     * @param z z coordinate of chunk.
+     *
+     * @return generated chunk builder.
+     */
+    public ChunkBuilder takeOrBuild(final int x, final int z)
+    {
+        final ChunkBuilder builder = this.prepared.remove(BigEndianUtils.toLong(x, z));
+        if (builder != null)
+        {
+            return builder;
+        }
+        this.syncGenerated.incrementAndGet();
+        return this.build(x, z);
+    }
+
+    /**
+     * Queue generation of given chunk, callback is invoked by main thread after {@link ChunkGenerateEvent}. <br>
+     * If chunk is already queued, callback is only added to existing request.
+     *
+     * @param chunk  chunk to generate.
+     * @param onDone callback to invoke after generation.
+     */
+    public void generate(final ChunkImpl chunk, final Runnable onDone)
+    {
+        final long key = BigEndianUtils.toLong(chunk.getX(), chunk.getZ());
+        final Collection<Runnable> callbacks = new ArrayList<>(2);
+        callbacks.add(onDone);
+        final Collection<Runnable> queued = this.pending.putIfAbsent(key, callbacks);
+        if (queued != null)
+        {
+            synchronized (queued)
+            {
+                if (this.pending.get(key) == queued)
+                {
+                    queued.add(onDone);
+                    return;
+                }
+            }
+            // request was finished in meantime
+            this.generate(chunk, onDone);
+            return;
+        }
+        final ExecutorService executor = this.getExecutor();
+        if (executor == null)
+        {
+            this.core.sync(() -> this.finish(key, chunk));
+            return;
+        }
+        try
+        {
+            executor.execute(() -> this.prepare(key, chunk));
+        } catch (final RejectedExecutionException e)
+        {
+            this.core.sync(() -> this.finish(key, chunk));
+        }
+    }
+
+    private void prepare(final long key, final ChunkImpl chunk)
+    {
+        try
+        {
+            this.prepared.put(key, this.build(chunk.getX(), chunk.getZ()));
+            this.asyncGenerated.incrementAndGet();
+        } catch (final Throwable e)
+        {
+            System.err.println("[ChunkGen] Error while generating chunk (" + chunk.getX() + "," + chunk.getZ() + ") in " + this.world.getName() + ", it will be generated by main thread.");
+            e.printStackTrace();
+        }
+        this.core.sync(() -> this.finish(key, chunk));
+    }
+
+    private void finish(final long key, final ChunkImpl chunk)
+    {
+        try
+        {
+            if (! chunk.isLoaded())
+            {
+                EventType.callEvent(new ChunkGenerateEvent(chunk));
+            }
+        } finally
+        {
+            // drop builder if event was cancelled or chunk was loaded in other way.
+            this.prepared.remove(key);
+            final Collection<Runnable> callbacks = this.pending.get(key);
+            if (callbacks != null)
+            {
+                synchronized (callbacks)
+                {
+                    this.pending.remove(key);
+                }
+                callbacks.forEach(Runnable::run);
+            }
+        }
+    }
+
+    private ExecutorService getExecutor()
+    {
+        if ((this.threads == 0) || this.closed)
+        {
+            return null;
+        }
+        ExecutorService executor = this.executor;
+        if (executor == null)
+        {
+            synchronized (this)
+            {
+                executor = this.executor;
+                if ((executor == null) && ! this.closed)
+                {
+                    executor = Executors.newFixedThreadPool(this.threads, new ThreadFactoryBuilder().setNameFormat("{" + this.world.getName() + "|ChunkGen-%1$d}").setDaemon(true).build());
+                    this.executor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Stop worker threads, chunks that are still queued are dropped.
+     *
+     * @param timeout max time to wait for chunks that are being generated, in milliseconds.
+     */
+    public void close(final long timeout)
+    {
+        synchronized (this)
+        {
+            this.closed = true;
+        }
+        final ExecutorService executor = this.executor;
+        if (executor == null)
+        {
+            return;
+        }
+        executor.shutdownNow();
+        try
+        {
+            if (! executor.awaitTermination(timeout, TimeUnit.MILLISECONDS))
+            {
+                System.err.println("[ChunkGen] Generation threads of " + this.world.getName() + " didn't finish in " + timeout + " ms.");
+            }
+        } catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("world", this.world.getName()).append("threads", this.threads).append("pending", this.pending.size()).append("asyncGenerated", this.asyncGenerated.get()).append("syncGenerated", this.syncGenerated.get()).toString();
+    }
+}
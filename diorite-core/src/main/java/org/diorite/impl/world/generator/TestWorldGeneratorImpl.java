@@ -75,6 +75,9 @@ public class TestWorldGeneratorImpl extends WorldGenerator
         final int overhangsMagnitude = 16; //used when we generate the noise for the tops of the overhangs
         final int bottomsMagnitude = 32;
 
+        final double[] overhangsNoise = overhangs.fill(new double[Chunk.CHUNK_SIZE * Chunk.CHUNK_SIZE], pos.getX() << 4, pos.getZ() << 4, Chunk.CHUNK_SIZE, Chunk.CHUNK_SIZE, 0.5, 0.5, false);
+        final double[] bottomsNoise = bottoms.fill(new double[Chunk.CHUNK_SIZE * Chunk.CHUNK_SIZE], pos.getX() << 4, pos.getZ() << 4, Chunk.CHUNK_SIZE, Chunk.CHUNK_SIZE, 0.5, 0.5, false);
+
         for (int x = 0; x < 16; x++)
         {
             for (int z = 0; z < 16; z++)
@@ -82,8 +85,8 @@ public class TestWorldGeneratorImpl extends WorldGenerator
                 final int realX = x + (pos.getX() << 4);
                 final int realZ = z + (pos.getZ() << 4);
 
-                final int bottomHeight = (int) ((bottoms.noise(realX, realZ, 0.5, 0.5) * bottomsMagnitude) + 64);
-                final int maxHeight = ((int) overhangs.noise(realX, realZ, 0.5, 0.5) * overhangsMagnitude) + bottomHeight + 32;
+                final int bottomHeight = (int) ((bottomsNoise[(z + (x * Chunk.CHUNK_SIZE))] * bottomsMagnitude) + 64);
+                final int maxHeight = ((int) overhangsNoise[(z + (x * Chunk.CHUNK_SIZE))] * overhangsMagnitude) + bottomHeight + 32;
                 final double threshold = 0.3;
 
                 //make the terrain
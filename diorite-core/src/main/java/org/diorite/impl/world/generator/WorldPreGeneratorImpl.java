@@ -0,0 +1,583 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world.generator;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.diorite.impl.DioriteCore;
+import org.diorite.impl.world.WorldImpl;
+import org.diorite.impl.world.chunk.ChunkImpl;
+import org.diorite.impl.world.chunk.ChunkManagerImpl;
+import org.diorite.impl.world.chunk.ChunkManagerImpl.ChunkLock;
+import org.diorite.impl.world.io.ChunkIOService;
+import org.diorite.utils.math.endian.BigEndianUtils;
+import org.diorite.world.generator.WorldPreGenerator;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+/**
+ * Background job that generates, populates and saves all chunks in given radius. <br>
+ * Chunks are visited in spiral from center, loaded or generated by {@link ChunkManagerImpl#loadChunkAsync(int, int, boolean, java.util.function.BiConsumer)},
+ * and populated like any other loaded chunk by {@link ChunkManagerImpl#populateQueued(long)}, when whole 3x3 area around them is ready,
+ * so one more ring of chunks is generated around radius. <br>
+ * Chunks are saved and unloaded as soon as every chunk around them is populated, so only few rings of chunks are loaded at once. <br>
+ * Job doesn't request new chunks while server TPS is too low, and never uses more than {@link #getMaxStepTime()} ms of single tick.
+ */
+public class WorldPreGeneratorImpl implements WorldPreGenerator
+{
+    public static final int    DEFAULT_MAX_IN_FLIGHT = 64;
+    public static final long   DEFAULT_MAX_STEP_TIME = 10;
+    public static final double MIN_TPS_RATIO         = 0.9;
+    public static final long   REPORT_INTERVAL       = TimeUnit.SECONDS.toMillis(10);
+
+    private final DioriteCore      core;
+    private final WorldImpl        world;
+    private final ChunkManagerImpl chunkManager;
+    private final Logger           logger;
+    private final ChunkLock        lock;
+    private final int              centerX;
+    private final int              centerZ;
+    private final int              radius;
+    private final long             toPopulate;
+    private final long             toRequest;
+
+    /**
+     * Chunks already processed by chunk manager, waiting for main thread.
+     */
+    private final Queue<ChunkImpl>    ready       = new ConcurrentLinkedQueue<>();
+    /**
+     * Requested chunks that aren't ready yet, only used by main thread.
+     */
+    private final LongSet             requested   = new LongOpenHashSet(DEFAULT_MAX_IN_FLIGHT);
+    /**
+     * Chunks that are ready and not yet unloaded, only used by main thread.
+     */
+    private final LongSet             loaded      = new LongOpenHashSet(1000);
+    private final Consumer<ChunkImpl> onPopulated = this.ready::add;
+
+    private volatile int  maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private volatile long maxStepTime = DEFAULT_MAX_STEP_TIME;
+
+    private volatile long requestIndex;
+    private volatile long populateIndex;
+    private volatile long unloadedChunks;
+    private volatile long throttledSteps;
+
+    private          long startTime;
+    private          long lastReport;
+    private volatile boolean started;
+    private volatile boolean cancelled;
+    private volatile boolean done;
+
+    public WorldPreGeneratorImpl(final DioriteCore core, final WorldImpl world, final int centerX, final int centerZ, final int radius)
+    {
+        if (radius < 0)
+        {
+            throw new IllegalArgumentException("Radius can't be negative: " + radius);
+        }
+        this.core = core;
+        this.world = world;
+        this.chunkManager = world.getChunkManager();
+        this.logger = LoggerFactory.getLogger("[PreGenerator][" + world.getName() + "]");
+        this.lock = world.createLock("pre-generator");
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.toPopulate = ringEnd(radius);
+        this.toRequest = ringEnd(radius + 1);
+    }
+
+    @Override
+    public WorldImpl getWorld()
+    {
+        return this.world;
+    }
+
+    @Override
+    public int getCenterX()
+    {
+        return this.centerX;
+    }
+
+    @Override
+    public int getCenterZ()
+    {
+        return this.centerZ;
+    }
+
+    @Override
+    public int getRadius()
+    {
+        return this.radius;
+    }
+
+    @Override
+    public int getMaxInFlight()
+    {
+        return this.maxInFlight;
+    }
+
+    @Override
+    public void setMaxInFlight(final int maxInFlight)
+    {
+        this.maxInFlight = Math.max(maxInFlight, 1);
+    }
+
+    @Override
+    public long getMaxStepTime()
+    {
+        return this.maxStepTime;
+    }
+
+    @Override
+    public void setMaxStepTime(final long maxStepTime)
+    {
+        this.maxStepTime = Math.max(maxStepTime, 1);
+    }
+
+    @Override
+    public long getTotalChunks()
+    {
+        return this.toPopulate;
+    }
+
+    @Override
+    public long getPopulatedChunks()
+    {
+        return this.populateIndex;
+    }
+
+    @Override
+    public long getRequestedChunks()
+    {
+        return this.requestIndex;
+    }
+
+    @Override
+    public long getUnloadedChunks()
+    {
+        return this.unloadedChunks;
+    }
+
+    @Override
+    public long getThrottledSteps()
+    {
+        return this.throttledSteps;
+    }
+
+    @Override
+    public double getChunksPerSecond()
+    {
+        final long time = System.currentTimeMillis() - this.startTime;
+        if (! this.started || (time <= 0))
+        {
+            return 0;
+        }
+        return (this.populateIndex * 1000.0) / time;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return this.done;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return this.cancelled;
+    }
+
+    /**
+     * Start pre-generation in new thread, each step of job is executed by main thread.
+     */
+    public synchronized void start()
+    {
+        if (this.started)
+        {
+            throw new IllegalStateException("Pre-generator is already started.");
+        }
+        this.started = true;
+        this.startTime = System.currentTimeMillis();
+        this.lastReport = this.startTime;
+        this.logger.info("Pre-generating " + this.toPopulate + " chunks around " + this.centerX + ", " + this.centerZ + " (radius: " + this.radius + ")");
+        this.attach();
+        final Thread thread = new Thread(this::run, "{" + this.world.getName() + "|PreGenerator}");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void cancel()
+    {
+        this.cancelled = true;
+    }
+
+    /**
+     * Start listening for chunks processed by chunk manager.
+     */
+    void attach()
+    {
+        this.chunkManager.addPopulateListener(this.onPopulated);
+    }
+
+    private void run()
+    {
+        final long tickTime = TimeUnit.SECONDS.toMillis(1) / this.core.getTps();
+        while (! this.done && this.core.isRunning())
+        {
+            final CountDownLatch latch = new CountDownLatch(1);
+            this.core.sync(() -> {
+                try
+                {
+                    this.step();
+                } catch (final Throwable e)
+                {
+                    this.logger.error("Error while pre-generating chunks, stopping.", e);
+                    this.finish();
+                } finally
+                {
+                    latch.countDown();
+                }
+            });
+            try
+            {
+                while (! latch.await(1, TimeUnit.SECONDS))
+                {
+                    if (! this.core.isRunning())
+                    {
+                        return;
+                    }
+                }
+                // sync tasks are executed until queue is empty, so wait for next tick.
+                Thread.sleep(tickTime);
+            } catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if server TPS is too low to run next step of job.
+     */
+    boolean isThrottled()
+    {
+        return this.core.getRecentTps()[0] < (this.core.getTps() * MIN_TPS_RATIO);
+    }
+
+    /**
+     * Single step of job, executed by main thread every tick.
+     */
+    void step()
+    {
+        if (this.cancelled)
+        {
+            this.logger.info("Pre-generation cancelled, populated " + this.populateIndex + "/" + this.toPopulate + " chunks.");
+            this.finish();
+            return;
+        }
+        ChunkImpl chunk;
+        while ((chunk = this.ready.poll()) != null)
+        {
+            final long key = BigEndianUtils.toLong(chunk.getX(), chunk.getZ());
+            if (this.requested.remove(key))
+            {
+                this.loaded.add(key);
+            }
+        }
+        if (this.isThrottled())
+        {
+            this.throttledSteps++;
+            return;
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.maxStepTime);
+
+        // populating chunk needs next ring, so requests can be at most one ring ahead of it.
+        final long requestLimit = Math.min(this.toRequest, ringEnd(ringOf(this.populateIndex) + 2));
+        while ((this.requested.size() < this.maxInFlight) && (this.requestIndex < requestLimit))
+        {
+            final long pos = spiralPos(this.requestIndex++);
+            this.request(this.centerX + BigEndianUtils.getIntA(pos), this.centerZ + BigEndianUtils.getIntB(pos));
+        }
+
+        while ((this.populateIndex < this.toPopulate) && (System.nanoTime() < deadline))
+        {
+            final long pos = spiralPos(this.populateIndex);
+            final int x = BigEndianUtils.getIntA(pos);
+            final int z = BigEndianUtils.getIntB(pos);
+            // chunk manager populates chunk when last chunk around it is processed, so population was already done (or cancelled) here.
+            if (! this.isReadyAround(x, z))
+            {
+                break;
+            }
+            this.populateIndex++;
+            this.unloadAround(x, z);
+        }
+
+        final long time = System.currentTimeMillis();
+        if ((time - this.lastReport) >= REPORT_INTERVAL)
+        {
+            this.lastReport = time;
+            this.logger.info(String.format("Chunks: %d/%d (%.1f%%), %.1f chunks/s, loaded: %d, queued: %d", this.populateIndex, this.toPopulate, (this.populateIndex * 100.0) / this.toPopulate, this.getChunksPerSecond(), this.loaded.size(), this.requested.size()));
+        }
+        if ((this.populateIndex == this.toPopulate) && (this.requestIndex == this.toRequest) && this.requested.isEmpty())
+        {
+            // margin ring is never populated, so rest of chunks can be unloaded now.
+            for (final long key : this.loaded.toLongArray())
+            {
+                this.unload(BigEndianUtils.getIntA(key), BigEndianUtils.getIntB(key));
+            }
+            this.logger.info(String.format("Pre-generated %d chunks in %d s (%.1f chunks/s).", this.toPopulate, TimeUnit.MILLISECONDS.toSeconds(time - this.startTime), this.getChunksPerSecond()));
+            this.finish();
+        }
+    }
+
+    private void request(final int x, final int z)
+    {
+        final long key = BigEndianUtils.toLong(x, z);
+        this.lock.acquire(key);
+        this.requested.add(key);
+        this.chunkManager.loadChunkAsync(x, z, true, (chunk, loaded) -> {
+            if (! loaded)
+            {
+                // chunk was already loaded, so it won't be queued to population again.
+                this.ready.add(chunk);
+            }
+        });
+    }
+
+    private boolean isReadyAround(final int x, final int z)
+    {
+        for (int ax = x - 1; ax <= (x + 1); ax++)
+        {
+            for (int az = z - 1; az <= (z + 1); az++)
+            {
+                // chunk manager may populate chunks out of spiral order, so some of ready chunks may be already unloaded.
+                if ((spiralIndex(ax, az) >= this.requestIndex) || this.requested.contains(BigEndianUtils.toLong(this.centerX + ax, this.centerZ + az)))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void unloadAround(final int x, final int z)
+    {
+        for (int ax = x - 1; ax <= (x + 1); ax++)
+        {
+            for (int az = z - 1; az <= (z + 1); az++)
+            {
+                if (this.loaded.contains(BigEndianUtils.toLong(this.centerX + ax, this.centerZ + az)) && this.isPopulatedAround(ax, az))
+                {
+                    this.unload(this.centerX + ax, this.centerZ + az);
+                }
+            }
+        }
+    }
+
+    private boolean isPopulatedAround(final int x, final int z)
+    {
+        for (int ax = x - 1; ax <= (x + 1); ax++)
+        {
+            for (int az = z - 1; az <= (z + 1); az++)
+            {
+                if (Math.max(Math.abs(ax), Math.abs(az)) > this.radius)
+                {
+                    continue; // margin ring is never populated by this job.
+                }
+                final long key = BigEndianUtils.toLong(this.centerX + ax, this.centerZ + az);
+                if (this.loaded.contains(key))
+                {
+                    // population may be cancelled by event, or done earlier by chunk manager or before server restart.
+                    if (! this.chunkManager.getChunk(this.centerX + ax, this.centerZ + az).isPopulated())
+                    {
+                        return false;
+                    }
+                }
+                else if (spiralIndex(ax, az) >= this.populateIndex)
+                {
+                    return false; // not loaded yet, so it can't be populated yet.
+                }
+            }
+        }
+        return true;
+    }
+
+    private void unload(final int x, final int z)
+    {
+        final long key = BigEndianUtils.toLong(x, z);
+        this.loaded.remove(key);
+        this.lock.release(key);
+        this.unloadedChunks++;
+        final ChunkImpl chunk = this.chunkManager.getChunk(x, z);
+        if (! chunk.isLoaded())
+        {
+            return;
+        }
+        if (chunk.isModifiedSinceSave())
+        {
+            // chunk must stay loaded until it is saved.
+            this.chunkManager.getService().queueChunkSave(chunk, ChunkIOService.MEDIUM_PRIORITY).addOnEnd(r -> this.core.sync(() -> this.unloadSaved(chunk)));
+        }
+        else
+        {
+            this.unloadSaved(chunk);
+        }
+    }
+
+    private void unloadSaved(final ChunkImpl chunk)
+    {
+        if (! this.chunkManager.isChunkInUse(chunk.getX(), chunk.getZ()))
+        {
+            chunk.unload(false, false);
+        }
+    }
+
+    private void finish()
+    {
+        this.chunkManager.removePopulateListener(this.onPopulated);
+        this.lock.clear();
+        this.requested.clear();
+        this.loaded.clear();
+        this.done = true;
+    }
+
+    /**
+     * Returns index of first chunk after given ring of spiral, this is also amount of chunks in square of given radius.
+     *
+     * @param ring ring of spiral.
+     *
+     * @return index of first chunk after given ring.
+     */
+    static long ringEnd(final long ring)
+    {
+        final long size = (ring << 1) + 1;
+        return size * size;
+    }
+
+    /**
+     * Returns ring of spiral that contains chunk of given index.
+     *
+     * @param index index of chunk in spiral.
+     *
+     * @return ring of spiral.
+     */
+    static int ringOf(final long index)
+    {
+        int ring = (int) ((((long) Math.sqrt(index)) + 1) >> 1);
+        // fix rounding errors of sqrt.
+        while (ringEnd(ring) <= index)
+        {
+            ring++;
+        }
+        while ((ring > 0) && (ringEnd(ring - 1) > index))
+        {
+            ring--;
+        }
+        return ring;
+    }
+
+    /**
+     * Returns index of chunk in spiral, coordinates are relative to center of spiral.
+     *
+     * @param x x coordinate of chunk.
+     * @param z z coordinate of chunk.
+     *
+     * @return index of chunk in spiral.
+     */
+    static long spiralIndex(final int x, final int z)
+    {
+        final int ring = Math.max(Math.abs(x), Math.abs(z));
+        if (ring == 0)
+        {
+            return 0;
+        }
+        final long start = ringEnd(ring - 1);
+        final int side = (ring << 1) + 1;
+        if (z == - ring)
+        {
+            return start + x + ring;
+        }
+        if (z == ring)
+        {
+            return start + side + x + ring;
+        }
+        if (x == - ring)
+        {
+            return start + (side << 1) + ((z + ring) - 1);
+        }
+        return start + (side << 1) + (side - 2) + ((z + ring) - 1);
+    }
+
+    /**
+     * Returns coordinates of chunk of given index in spiral, relative to center of spiral.
+     *
+     * @param index index of chunk in spiral.
+     *
+     * @return coordinates packed by {@link BigEndianUtils#toLong(int, int)}
+     */
+    static long spiralPos(final long index)
+    {
+        final int ring = ringOf(index);
+        if (ring == 0)
+        {
+            return BigEndianUtils.toLong(0, 0);
+        }
+        final int side = (ring << 1) + 1;
+        final int offset = (int) (index - ringEnd(ring - 1));
+        if (offset < side)
+        {
+            return BigEndianUtils.toLong(offset - ring, - ring);
+        }
+        if (offset < (side << 1))
+        {
+            return BigEndianUtils.toLong((offset - side) - ring, ring);
+        }
+        if (offset < ((side << 1) + (side - 2)))
+        {
+            return BigEndianUtils.toLong(- ring, ((offset - (side << 1)) - ring) + 1);
+        }
+        return BigEndianUtils.toLong(ring, ((offset - (side << 1) - (side - 2)) - ring) + 1);
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("world", this.world.getName()).append("centerX", this.centerX).append("centerZ", this.centerZ).append("radius", this.radius).append("populated", this.populateIndex).append("total", this.toPopulate).append("done", this.done).toString();
+    }
+}
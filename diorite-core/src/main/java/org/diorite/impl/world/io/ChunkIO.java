@@ -31,7 +31,8 @@ import org.diorite.impl.world.chunk.ChunkImpl;
 
 public abstract class ChunkIO
 {
-    protected final ChunkRegionCache cache;
+    protected final    ChunkRegionCache  cache;
+    protected volatile ChunkIODurability durability = ChunkIODurability.PER_BATCH;
 
     public ChunkIO(final ChunkRegionCache cache)
     {
@@ -46,6 +47,39 @@ public abstract class ChunkIO
 
     protected abstract ChunkRegion getChunkRegion(int chunkX, int chunkZ);
 
+    public ChunkIODurability getDurability()
+    {
+        return this.durability;
+    }
+
+    public void setDurability(final ChunkIODurability durability)
+    {
+        this.durability = durability;
+    }
+
+    /**
+     * Write all pending changes of cached regions, and force them to disk if durability mode allows it.
+     */
+    public void flush()
+    {
+        this.cache.flush(this.durability.isForcing());
+    }
+
+    /**
+     * Invoked by io thread when there is no more requests to process.
+     */
+    public void batchFinished()
+    {
+        if (this.durability == ChunkIODurability.PER_BATCH)
+        {
+            this.cache.flush(true);
+        }
+        else if (this.durability == ChunkIODurability.OS_MANAGED)
+        {
+            this.cache.flush(false);
+        }
+    }
+
     public void close()
     {
         this.cache.clear();
@@ -54,7 +88,7 @@ public abstract class ChunkIO
     @Override
     public String toString()
     {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("cache", this.cache).toString();
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("cache", this.cache).append("durability", this.durability).toString();
     }
 
 }
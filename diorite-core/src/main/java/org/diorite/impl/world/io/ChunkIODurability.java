@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.diorite.impl.world.io;
+
+/**
+ * Decides when saved chunks are forced to disk by chunk io service. <br>
+ * Regions that support it (like mapped anvil regions) never write updated chunk locations before chunk data is forced,
+ * so after crash region always points to old or new (but always complete) chunk data. (except {@link #OS_MANAGED})
+ */
+public enum ChunkIODurability
+{
+    /**
+     * Every chunk is forced to disk right after it is saved.
+     */
+    PER_CHUNK,
+    /**
+     * Saved chunks are forced to disk when io thread don't have any more requests to process.
+     */
+    PER_BATCH,
+    /**
+     * Saved chunks are forced to disk only when whole world is saved (autosave, save command, shutdown)
+     */
+    PER_AUTOSAVE,
+    /**
+     * Data is never explicitly forced to disk (except when region file is closed), operating system decides when it will be written. <br>
+     * Chunk locations are updated when io thread don't have any more requests to process, and there is no crash-consistency guarantee.
+     */
+    OS_MANAGED;
+
+    /**
+     * @return true if this mode explicitly force data to disk.
+     */
+    public boolean isForcing()
+    {
+        return this != OS_MANAGED;
+    }
+}
@@ -31,6 +31,7 @@ import java.util.function.IntConsumer;
 import org.diorite.impl.world.WorldImpl;
 import org.diorite.impl.world.chunk.ChunkImpl;
 import org.diorite.impl.world.io.requests.ChunkDeleteRequest;
+import org.diorite.impl.world.io.requests.ChunkFlushRequest;
 import org.diorite.impl.world.io.requests.ChunkLoadRequest;
 import org.diorite.impl.world.io.requests.ChunkSaveRequest;
 import org.diorite.impl.world.io.requests.Request;
@@ -93,6 +94,18 @@ public interface ChunkIOService
         return this.queueAndGet(new ChunkDeleteRequest(priority, chunk.getX(), chunk.getZ()));
     }
 
+    /**
+     * Queue request that will write (and force to disk, if current durability mode allows it) all chunks saved before it.
+     *
+     * @param priority priority of request, should be lower than priority of save requests.
+     *
+     * @return queued request.
+     */
+    default ChunkFlushRequest queueFlush(final int priority)
+    {
+        return this.queue(new ChunkFlushRequest(priority));
+    }
+
     default <OUT, T extends Request<OUT>> T queueAndAwait(T request)
     {
         request = this.queue(request);
@@ -108,6 +121,10 @@ public interface ChunkIOService
 
     void start(WorldImpl world);
 
+    ChunkIODurability getDurability();
+
+    void setDurability(ChunkIODurability durability);
+
     default <OUT, T extends Request<OUT>> T queue(final T request)
     {
         return this.queue(request, null);
@@ -25,12 +25,16 @@
 package org.diorite.impl.world.io;
 
 import java.io.File;
+import java.io.IOException;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import org.diorite.impl.world.chunk.ChunkImpl;
+import org.diorite.nbt.NbtInputStream;
+import org.diorite.nbt.NbtStreamReader;
 import org.diorite.nbt.NbtTagCompound;
+import org.diorite.nbt.NbtTagType;
 
 public abstract class ChunkRegion
 {
@@ -61,7 +65,63 @@ public abstract class ChunkRegion
 
     public abstract boolean deleteChunk(final int x, final int z);
 
-    public abstract void saveChunk(final int x, final int z, final NbtTagCompound data);
+    public abstract boolean saveChunk(final int x, final int z, final NbtTagCompound data);
+
+    /**
+     * Encode and save given chunk directly, without building nbt tag tree.
+     *
+     * @param x     local x coordinate of chunk.
+     * @param z     local z coordinate of chunk.
+     * @param chunk chunk to save.
+     *
+     * @return false if chunk wasn't saved, because it isn't loaded or because of error.
+     */
+    public abstract boolean saveChunk(final int x, final int z, final ChunkImpl chunk);
+
+    /**
+     * Decode chunk from given nbt stream, only "Level" compound is read, rest of data is skipped.
+     *
+     * @param stream nbt stream with chunk data.
+     * @param chunk  chunk to load data to.
+     *
+     * @throws IOException if any read operation failed or stream don't contains valid chunk data.
+     */
+    protected static void loadChunk(final NbtInputStream stream, final ChunkImpl chunk) throws IOException
+    {
+        final NbtStreamReader reader = new NbtStreamReader(stream);
+        if (reader.nextTag() != NbtTagType.COMPOUND)
+        {
+            throw new IOException("Invalid chunk data, root tag must be a compound.");
+        }
+        reader.readName();
+        boolean loaded = false;
+        NbtTagType type;
+        while ((type = reader.nextTag()) != NbtTagType.END)
+        {
+            if (reader.readName().equals("Level") && (type == NbtTagType.COMPOUND) && ! loaded)
+            {
+                chunk.loadFrom(reader);
+                loaded = true;
+            }
+            else
+            {
+                reader.skip(type);
+            }
+        }
+        if (! loaded)
+        {
+            throw new IOException("Invalid chunk data, missing Level tag.");
+        }
+    }
+
+    /**
+     * Write all pending changes of this region, by default region don't need any flushing.
+     *
+     * @param force if data should be forced to disk.
+     */
+    public void flush(final boolean force)
+    {
+    }
 
     @Override
     public String toString()
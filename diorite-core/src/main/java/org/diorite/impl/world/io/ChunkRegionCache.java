@@ -25,21 +25,17 @@
 package org.diorite.impl.world.io;
 
 import java.io.File;
-import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import org.diorite.utils.math.endian.BigEndianUtils;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap.Entry;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
 
 public abstract class ChunkRegionCache
 {
-    protected final Long2ObjectMap<Reference<ChunkRegion>> cache = new Long2ObjectOpenHashMap<>(100);
+    protected final Long2ObjectLinkedOpenHashMap<ChunkRegion> cache = new Long2ObjectLinkedOpenHashMap<>(100); // regions may have pending changes, so they can't be just collected by gc. Ordered from least recently used.
 
     protected final String extension;
     protected final File   regionDir;
@@ -62,44 +58,51 @@ public abstract class ChunkRegionCache
         final long key = BigEndianUtils.toLong(regionX, regionZ);
         final File file = new File(this.regionDir, "r." + regionX + "." + regionZ + this.extension);
 
-        final Reference<ChunkRegion> ref = this.cache.get(key);
-
-        if ((ref != null) && (ref.get() != null))
+        synchronized (this.cache)
         {
-            return ref.get();
-        }
+            final ChunkRegion cached = this.cache.getAndMoveToLast(key);
+            if (cached != null)
+            {
+                return cached;
+            }
 
-        if (! this.regionDir.isDirectory() && ! this.regionDir.mkdirs())
-        {
-            System.err.println("[WorldIO] Failed to create directory: " + this.regionDir);
-        }
+            if (! this.regionDir.isDirectory() && ! this.regionDir.mkdirs())
+            {
+                System.err.println("[WorldIO] Failed to create directory: " + this.regionDir);
+            }
 
-        if (this.cache.size() >= this.maxCacheSize)
-        {
-            this.clear();
+            // close only least recently used region, closing all of them would force every cached region to disk at once.
+            while (! this.cache.isEmpty() && (this.cache.size() >= this.maxCacheSize))
+            {
+                this.cache.removeFirst().close();
+            }
+
+            final ChunkRegion reg = this.createNewRegion(file, regionX, regionZ);
+            this.cache.putAndMoveToLast(key, reg);
+            return reg;
         }
+    }
+
+    public abstract ChunkRegion createNewRegion(final File file, final int regionX, final int regionZ);
 
-        final ChunkRegion reg = this.createNewRegion(file, regionX, regionZ);
+    public void flush(final boolean force)
+    {
         synchronized (this.cache)
         {
-            this.cache.put(key, new SoftReference<>(reg));
+            for (final ChunkRegion region : this.cache.values())
+            {
+                region.flush(force);
+            }
         }
-        return reg;
     }
 
-    public abstract ChunkRegion createNewRegion(final File file, final int regionX, final int regionZ);
-
     public synchronized void clear()
     {
         synchronized (this.cache)
         {
-            for (final Entry<Reference<ChunkRegion>> entry : this.cache.long2ObjectEntrySet())
+            for (final ChunkRegion region : this.cache.values())
             {
-                final ChunkRegion value = entry.getValue().get();
-                if (value != null)
-                {
-                    value.close();
-                }
+                region.close();
             }
             this.cache.clear();
         }
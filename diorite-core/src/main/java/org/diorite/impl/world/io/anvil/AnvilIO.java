@@ -31,12 +31,19 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 
 import org.diorite.impl.world.chunk.ChunkImpl;
 import org.diorite.impl.world.io.ChunkIO;
+import org.diorite.impl.world.io.ChunkIODurability;
 import org.diorite.impl.world.io.ChunkRegion;
-import org.diorite.nbt.NbtTagCompound;
 
 public class AnvilIO extends ChunkIO
 {
-    public static final int REGION_SIZE = 32;
+    public static final int    REGION_SIZE            = 32;
+    public static final String DEFAULT_EXTENSION      = ".mca";
+    public static final int    DEFAULT_MAX_CACHE_SIZE = AnvilRegionCache.DEFAULT_MAX_CACHE_SIZE;
+
+    protected AnvilIO(final File basePath, final String extension, final int maxCacheSize, final boolean mappedRegions)
+    {
+        super(new AnvilRegionCache(basePath, extension, maxCacheSize, mappedRegions));
+    }
 
     protected AnvilIO(final File basePath, final String extension, final int maxCacheSize)
     {
@@ -64,22 +71,28 @@ public class AnvilIO extends ChunkIO
     public boolean deleteChunk(final int x, final int z)
     {
         final ChunkRegion region = this.getChunkRegion(x, z);
-        return region.deleteChunk(x, z);
+        final boolean deleted = region.deleteChunk(this.getLocalFromRegion(x), this.getLocalFromRegion(z));
+        if (deleted && (this.durability == ChunkIODurability.PER_CHUNK))
+        {
+            region.flush(true);
+        }
+        return deleted;
     }
 
     @Override
     public void saveChunk(final ChunkImpl chunk)
     {
         final ChunkRegion region = this.getChunkRegion(chunk.getX(), chunk.getZ());
-        NbtTagCompound lvl = new NbtTagCompound("Level");
-        final NbtTagCompound top = new NbtTagCompound();
-        lvl = chunk.writeTo(lvl);
-        if (lvl == null)
+        final int version = chunk.getModificationVersion(); // read before serialization, so changes made during save are not lost.
+        if (! region.saveChunk(this.getLocalFromRegion(chunk.getX()), this.getLocalFromRegion(chunk.getZ()), chunk))
         {
             return;
         }
-        top.addTag(lvl);
-        region.saveChunk(this.getLocalFromRegion(chunk.getX()), this.getLocalFromRegion(chunk.getZ()), top); // TODO, not sure about nbt tag
+        chunk.markSaved(version);
+        if (this.durability == ChunkIODurability.PER_CHUNK)
+        {
+            region.flush(true);
+        }
     }
 
     @Override
@@ -24,6 +24,7 @@
 
 package org.diorite.impl.world.io.anvil;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -43,7 +44,6 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.diorite.impl.world.chunk.ChunkImpl;
 import org.diorite.impl.world.io.ChunkRegion;
 import org.diorite.nbt.NbtInputStream;
-import org.diorite.nbt.NbtLimiter;
 import org.diorite.nbt.NbtOutputStream;
 import org.diorite.nbt.NbtTagCompound;
 
@@ -63,10 +63,10 @@ import org.diorite.nbt.NbtTagCompound;
 @SuppressWarnings({"ClassHasNoToStringMethod", "MagicNumber"})
 class AnvilRegion extends ChunkRegion
 {
-    private static final int    SECTOR_BYTES    = 4096;
-    private static final int    SECTOR_INTS     = SECTOR_BYTES / 4;
-    private static final byte   VERSION_GZIP    = 1;
-    private static final byte   VERSION_DEFLATE = 2;
+    static final         int    SECTOR_BYTES    = 4096;
+    static final         int    SECTOR_INTS     = SECTOR_BYTES / 4;
+    static final         byte   VERSION_GZIP    = 1;
+    static final         byte   VERSION_DEFLATE = 2;
     private static final byte[] emptySector     = new byte[SECTOR_BYTES];
 
     private final int[] locations = new int[SECTOR_INTS];
@@ -172,7 +172,7 @@ class AnvilRegion extends ChunkRegion
             }
             try (final NbtInputStream stream = this.getInputStream(length, this.raf.readByte()))
             {
-                chunk.loadFrom(((NbtTagCompound) stream.readTag(NbtLimiter.getUnlimited())).getCompound("Level"));
+                loadChunk(stream, chunk);
             }
             return chunk;
         } catch (final IOException e)
@@ -189,13 +189,13 @@ class AnvilRegion extends ChunkRegion
         {
             final byte[] data = new byte[length - 1];
             this.raf.read(data);
-            return new NbtInputStream(new GZIPInputStream(new ByteArrayInputStream(data)));
+            return new NbtInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(data))));
         }
         if (version == VERSION_DEFLATE)
         {
             final byte[] data = new byte[length - 1];
             this.raf.read(data);
-            return new NbtInputStream(new InflaterInputStream(new ByteArrayInputStream(data)));
+            return new NbtInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(data))));
         }
         throw new RuntimeException("Unknown version: " + version);
     }
@@ -227,7 +227,7 @@ class AnvilRegion extends ChunkRegion
     }
 
     @Override
-    public void saveChunk(final int x, final int z, final NbtTagCompound data)
+    public boolean saveChunk(final int x, final int z, final NbtTagCompound data)
     {
         try
         {
@@ -235,9 +235,33 @@ class AnvilRegion extends ChunkRegion
             {
                 stream.write(data);
             }
+            return true;
         } catch (final IOException e)
         {
             System.err.println("[ChunkIO] Region \"" + this.file.getPath() + "\": can't be loaded. region(" + this.x + ", " + this.z + "), local chunk(" + x + ", " + z + "), map chunk(" + ((this.x << 5) + x) + ", " + ((this.z << 5) + z) + ")");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean saveChunk(final int x, final int z, final ChunkImpl chunk)
+    {
+        try
+        {
+            this.checkBounds(x, z);
+            final ChunkEncoder encoder = ChunkEncoder.get();
+            if (! encoder.encode(chunk, 0))
+            {
+                return false;
+            }
+            this.write(x, z, encoder.getData(), encoder.getLength());
+            return true;
+        } catch (final IOException e)
+        {
+            System.err.println("[ChunkIO] Region \"" + this.file.getPath() + "\": can't be saved. region(" + this.x + ", " + this.z + "), local chunk(" + x + ", " + z + "), map chunk(" + ((this.x << 5) + x) + ", " + ((this.z << 5) + z) + ")");
+            e.printStackTrace();
+            return false;
         }
     }
 
@@ -267,7 +291,7 @@ class AnvilRegion extends ChunkRegion
             return false;
         }
         this.locations[(x + (z << 5))] = 0;
-        this.raf.seek(key >> 1);
+        this.raf.seek(key << 2);
         this.raf.writeInt(0);
         return true;
     }
@@ -343,36 +367,8 @@ class AnvilRegion extends ChunkRegion
                 this.freeSectors.set(offset + i, true);
             }
 
-            int runStart = this.freeSectors.nextSetBit(0);
-            int runLength = 0;
-            if (runStart != - 1)
-            {
-                for (int i = runStart; i < this.freeSectors.getLargestIndex(); ++ i)
-                {
-                    if (runLength != 0)
-                    {
-                        if (this.freeSectors.get(i))
-                        {
-                            runLength++;
-                        }
-                        else
-                        {
-                            runLength = 0;
-                        }
-                    }
-                    else if (this.freeSectors.get(i))
-                    {
-                        runStart = i;
-                        runLength = 1;
-                    }
-                    if (runLength >= newSize)
-                    {
-                        break;
-                    }
-                }
-            }
-
-            if (runLength >= newSize) // we found space to save this chunk
+            final int runStart = this.freeSectors.findFreeRun(newSize);
+            if (runStart != - 1) // we found space to save this chunk
             {
                 offset = runStart;
                 this.setLocation(x, z, (offset << 8) | newSize);
@@ -33,19 +33,31 @@ class AnvilRegionCache extends ChunkRegionCache
 {
     public static final int DEFAULT_MAX_CACHE_SIZE = 255;
 
-    AnvilRegionCache(final File basePath, final String extension, final int maxCacheSize)
+    private final boolean mappedRegions;
+
+    AnvilRegionCache(final File basePath, final String extension, final int maxCacheSize, final boolean mappedRegions)
     {
         super(basePath, extension, maxCacheSize);
+        this.mappedRegions = mappedRegions;
+    }
+
+    AnvilRegionCache(final File basePath, final String extension, final int maxCacheSize)
+    {
+        this(basePath, extension, maxCacheSize, true);
     }
 
     AnvilRegionCache(final File basePath)
     {
-        super(basePath, ".mca", DEFAULT_MAX_CACHE_SIZE);
+        this(basePath, AnvilIO.DEFAULT_EXTENSION, DEFAULT_MAX_CACHE_SIZE);
     }
 
     @Override
     public ChunkRegion createNewRegion(final File file, final int regionX, final int regionZ)
     {
+        if (this.mappedRegions)
+        {
+            return new MappedAnvilRegion(file, regionX, regionZ);
+        }
         return new AnvilRegion(file, regionX, regionZ);
     }
 }
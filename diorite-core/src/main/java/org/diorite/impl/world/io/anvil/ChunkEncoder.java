@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world.io.anvil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import org.diorite.impl.world.chunk.ChunkImpl;
+import org.diorite.nbt.NbtOutputStream;
+import org.diorite.nbt.NbtStreamWriter;
+
+/**
+ * Per-thread chunk encoder, it writes chunk nbt data directly from chunk to reused buffer,
+ * and then compress it using reused deflater into second reused buffer. <br>
+ * Result is valid only until next {@link #encode(ChunkImpl, int)} call on the same thread.
+ */
+final class ChunkEncoder
+{
+    private static final int INITIAL_BUFFER = AnvilRegion.SECTOR_BYTES << 4;
+
+    private static final ThreadLocal<ChunkEncoder> encoders = ThreadLocal.withInitial(ChunkEncoder::new);
+
+    private final RawBuffer       raw      = new RawBuffer();
+    private final NbtStreamWriter writer   = new NbtStreamWriter(new NbtOutputStream(this.raw));
+    private final Deflater        deflater = new Deflater(Deflater.BEST_SPEED);
+    private       byte[]          data     = new byte[INITIAL_BUFFER];
+    private       int             length;
+
+    private ChunkEncoder()
+    {
+    }
+
+    /**
+     * Returns encoder of current thread.
+     *
+     * @return encoder of current thread.
+     */
+    static ChunkEncoder get()
+    {
+        return encoders.get();
+    }
+
+    /**
+     * Encode and deflate given chunk, compressed data will start after given amount of reserved bytes.
+     *
+     * @param chunk  chunk to encode.
+     * @param offset amount of bytes to reserve for chunk header.
+     *
+     * @return false if chunk isn't loaded and nothing was encoded.
+     *
+     * @throws IOException if chunk can't be written.
+     */
+    boolean encode(final ChunkImpl chunk, final int offset) throws IOException
+    {
+        this.raw.reset();
+        this.writer.beginCompound("");
+        this.writer.beginCompound("Level");
+        if (! chunk.writeTo(this.writer))
+        {
+            return false;
+        }
+        this.writer.endCompound();
+        this.writer.endCompound();
+
+        final Deflater deflater = this.deflater;
+        deflater.reset();
+        deflater.setInput(this.raw.getBuffer(), 0, this.raw.size());
+        deflater.finish();
+        int length = offset;
+        while (! deflater.finished())
+        {
+            if (length == this.data.length)
+            {
+                this.data = Arrays.copyOf(this.data, this.data.length << 1);
+            }
+            length += deflater.deflate(this.data, length, this.data.length - length);
+        }
+        this.length = length;
+        return true;
+    }
+
+    /**
+     * Returns buffer with last encoded chunk, data starts after reserved bytes.
+     *
+     * @return buffer with last encoded chunk.
+     */
+    byte[] getData()
+    {
+        return this.data;
+    }
+
+    /**
+     * Returns length of last encoded chunk, including reserved bytes.
+     *
+     * @return length of last encoded chunk.
+     */
+    int getLength()
+    {
+        return this.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("raw", this.raw.size()).append("length", this.length).toString();
+    }
+
+    private static class RawBuffer extends ByteArrayOutputStream
+    {
+        private RawBuffer()
+        {
+            super(INITIAL_BUFFER);
+        }
+
+        private byte[] getBuffer()
+        {
+            return this.buf;
+        }
+    }
+}
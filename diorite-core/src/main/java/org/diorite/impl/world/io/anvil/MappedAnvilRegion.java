@@ -0,0 +1,466 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.diorite.impl.world.io.anvil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import org.diorite.impl.world.chunk.ChunkImpl;
+import org.diorite.impl.world.io.ChunkRegion;
+import org.diorite.nbt.NbtInputStream;
+import org.diorite.nbt.NbtOutputStream;
+import org.diorite.nbt.NbtTagCompound;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+/**
+ * Anvil region that use same file format as {@link AnvilRegion}, but it don't use {@link java.io.RandomAccessFile} seeks. <br>
+ * Location and timestamp tables (first two sectors) are mapped to memory, chunk data is read by single positional read
+ * into reused per-thread buffer and written by single positional write. <br>
+ * Data isn't forced to disk after every chunk, it happens on {@link #flush(boolean)} and {@link #close()}. <br>
+ * Chunks are never overwritten in place, new data is always written to free sectors, and new locations are written to
+ * the header only on flush, after chunk data was forced to disk. Old sectors are reused only after that,
+ * so after crash header always points to complete chunk data.
+ */
+@SuppressWarnings("MagicNumber")
+class MappedAnvilRegion extends ChunkRegion
+{
+    private static final int HEADER_BYTES     = AnvilRegion.SECTOR_BYTES << 1;
+    private static final int CHUNK_HEADER     = 5;
+    private static final int INITIAL_BUFFER   = AnvilRegion.SECTOR_BYTES << 3;
+    private static final int MAX_CHUNK_SECTORS = 256;
+
+    private static final ThreadLocal<byte[]> readBuffer = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER]);
+
+    private final FileChannel      channel;
+    private final MappedByteBuffer header;
+    private final IntBuffer        table; // locations and then timestamps
+    private final int[]            locations   = new int[AnvilRegion.SECTOR_INTS];
+    private final int[]            timestamps  = new int[AnvilRegion.SECTOR_INTS];
+    private final BitSet           pendingKeys = new BitSet(AnvilRegion.SECTOR_INTS); // locations not yet written to header
+    private final IntList          pendingFree = new IntArrayList(10); // old locations that can be reused after header update
+    private final SectorsBitSet    freeSectors;
+    private       boolean          dirty; // data written but not forced
+
+    MappedAnvilRegion(final File file, final int x, final int z)
+    {
+        super(file, x, z);
+        try
+        {
+            if (! file.exists())
+            {
+                file.getAbsoluteFile().getParentFile().mkdirs();
+            }
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (this.channel.size() < HEADER_BYTES)
+            {
+                this.writeFully(ByteBuffer.allocate(HEADER_BYTES), 0);
+            }
+            this.header = this.channel.map(MapMode.READ_WRITE, 0, HEADER_BYTES);
+            this.table = this.header.asIntBuffer();
+
+            final int nSectors = (int) (this.channel.size() / AnvilRegion.SECTOR_BYTES);
+            this.freeSectors = new SectorsBitSet(nSectors);
+            for (int i = 2; i < nSectors; ++ i)
+            {
+                this.freeSectors.set(i, true);
+            }
+            this.freeSectors.set(0, false);
+            this.freeSectors.set(1, false);
+
+            for (int i = 0; i < AnvilRegion.SECTOR_INTS; ++ i)
+            {
+                final int location = this.table.get(i);
+                this.locations[i] = location;
+                this.timestamps[i] = this.table.get(AnvilRegion.SECTOR_INTS + i);
+                final int offset = (location >> 8);
+                final int size = (location & 0xff);
+
+                if ((location != 0) && (offset >= 0) && ((offset + size) <= this.freeSectors.getLargestIndex()))
+                {
+                    for (int sectorNum = 0; sectorNum < size; ++ sectorNum)
+                    {
+                        this.freeSectors.set(offset + sectorNum, false);
+                    }
+                }
+                else if (location != 0)
+                {
+                    System.err.println("[ChunkIO] Region \"" + file.getPath() + "\": locations[" + i + "] = " + location + " -> " + offset + ", " + size + " does not fit");
+                }
+            }
+        } catch (final IOException e)
+        {
+            throw new RuntimeException("Can't create MappedAnvilRegion(" + x + ", " + z + ") file: " + file.getPath(), e);
+        }
+    }
+
+    @Override
+    public void flush(final boolean force)
+    {
+        if (! this.dirty && this.pendingKeys.isEmpty())
+        {
+            return;
+        }
+        try
+        {
+            if (force && this.dirty)
+            {
+                this.channel.force(false); // chunk data must be on disk before header points to it.
+            }
+            this.dirty = false;
+            for (int key = this.pendingKeys.nextSetBit(0); key >= 0; key = this.pendingKeys.nextSetBit(key + 1))
+            {
+                this.table.put(key, this.locations[key]);
+                this.table.put(AnvilRegion.SECTOR_INTS + key, this.timestamps[key]);
+            }
+            if (force)
+            {
+                this.header.force();
+            }
+            this.pendingKeys.clear();
+            for (int i = 0, size = this.pendingFree.size(); i < size; i++)
+            {
+                this.freeSectors(this.pendingFree.getInt(i));
+            }
+            this.pendingFree.clear();
+        } catch (final IOException e)
+        {
+            System.err.println("[ChunkIO] Region \"" + this.file.getPath() + "\": can't be flushed.");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        this.flush(true);
+        try
+        {
+            this.channel.close();
+        } catch (final IOException e)
+        {
+            System.err.println("[ChunkIO] Region \"" + this.file.getPath() + "\": can't be closed.");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public ChunkImpl loadChunk(final int x, final int z, final ChunkImpl chunk)
+    {
+        try
+        {
+            final int location = this.locations[this.getKey(x, z)];
+            if (location == 0)
+            {
+                return null;
+            }
+            final int offset = location >> 8;
+            final int size = location & 0xFF;
+            if ((offset + size) > this.freeSectors.getLargestIndex())
+            {
+                throw new RuntimeException("Invalid sector: " + offset + "+" + size + " > " + this.freeSectors.getLargestIndex());
+            }
+            final int bytes = size * AnvilRegion.SECTOR_BYTES;
+            byte[] buffer = readBuffer.get();
+            if (buffer.length < bytes)
+            {
+                buffer = new byte[bytes];
+                readBuffer.set(buffer);
+            }
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, bytes);
+            this.readFully(byteBuffer, (long) offset * AnvilRegion.SECTOR_BYTES);
+            if (byteBuffer.position() < CHUNK_HEADER)
+            {
+                throw new RuntimeException("Invalid chunk data, region file is too short.");
+            }
+            final int length = byteBuffer.getInt(0);
+            if ((length <= 0) || ((length + 4) > byteBuffer.position()))
+            {
+                throw new RuntimeException("Invalid length: " + length + " > " + (byteBuffer.position() - 4));
+            }
+            try (final NbtInputStream stream = this.getInputStream(buffer, length - 1, buffer[4]))
+            {
+                loadChunk(stream, chunk);
+            }
+            return chunk;
+        } catch (final IOException e)
+        {
+            System.err.println("[ChunkIO] Region \"" + this.file.getPath() + "\": can't be loaded. region(" + this.x + ", " + this.z + "), local chunk(" + x + ", " + z + "), map chunk(" + ((this.x << 5) + x) + ", " + ((this.z << 5) + z) + ")");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private NbtInputStream getInputStream(final byte[] buffer, final int length, final byte version) throws IOException
+    {
+        if (version == AnvilRegion.VERSION_GZIP)
+        {
+            return new NbtInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(buffer, CHUNK_HEADER, length))));
+        }
+        if (version == AnvilRegion.VERSION_DEFLATE)
+        {
+            return new NbtInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(buffer, CHUNK_HEADER, length))));
+        }
+        throw new RuntimeException("Unknown version: " + version);
+    }
+
+    private NbtOutputStream getOutputStream(final int x, final int z, final byte version) throws IOException
+    {
+        this.checkBounds(x, z);
+        if (version == AnvilRegion.VERSION_GZIP)
+        {
+            return new NbtOutputStream(new BufferedOutputStream(new GZIPOutputStream(new ChunkBuffer(x, z, version))));
+        }
+        if (version == AnvilRegion.VERSION_DEFLATE)
+        {
+            return new NbtOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new ChunkBuffer(x, z, version), new Deflater(Deflater.BEST_SPEED))));
+        }
+        throw new RuntimeException("Unknown version: " + version);
+    }
+
+    @Override
+    public boolean deleteChunk(final int x, final int z)
+    {
+        this.checkBounds(x, z);
+        final int key = this.getKey(x, z);
+        final int location = this.locations[key];
+        if (location == 0)
+        {
+            return false;
+        }
+        this.pendingFree.add(location);
+        this.locations[key] = 0;
+        this.timestamps[key] = 0;
+        this.pendingKeys.set(key);
+        return true;
+    }
+
+    @Override
+    public boolean saveChunk(final int x, final int z, final NbtTagCompound data)
+    {
+        try
+        {
+            try (final NbtOutputStream stream = this.getOutputStream(x, z, AnvilRegion.VERSION_DEFLATE))
+            {
+                stream.write(data);
+            }
+            return true;
+        } catch (final IOException e)
+        {
+            System.err.println("[ChunkIO] Region \"" + this.file.getPath() + "\": can't be saved. region(" + this.x + ", " + this.z + "), local chunk(" + x + ", " + z + "), map chunk(" + ((this.x << 5) + x) + ", " + ((this.z << 5) + z) + ")");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean saveChunk(final int x, final int z, final ChunkImpl chunk)
+    {
+        try
+        {
+            this.checkBounds(x, z);
+            final ChunkEncoder encoder = ChunkEncoder.get();
+            if (! encoder.encode(chunk, CHUNK_HEADER))
+            {
+                return false;
+            }
+            this.write(x, z, encoder.getData(), encoder.getLength(), AnvilRegion.VERSION_DEFLATE);
+            return true;
+        } catch (final IOException e)
+        {
+            System.err.println("[ChunkIO] Region \"" + this.file.getPath() + "\": can't be saved. region(" + this.x + ", " + this.z + "), local chunk(" + x + ", " + z + "), map chunk(" + ((this.x << 5) + x) + ", " + ((this.z << 5) + z) + ")");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public boolean hasChunk(final int x, final int z)
+    {
+        return this.locations[this.getKey(x, z)] != 0;
+    }
+
+    private int getKey(final int x, final int z)
+    {
+        return x + (z << 5);
+    }
+
+    private void checkBounds(final int x, final int z)
+    {
+        if ((x < 0) || (x >= AnvilIO.REGION_SIZE) || (z < 0) || (z >= AnvilIO.REGION_SIZE))
+        {
+            throw new IllegalArgumentException("Chunk out of bounds: region(" + this.x + ", " + this.z + "), local chunk(" + x + ", " + z + "), map chunk(" + ((this.x << 5) + x) + ", " + ((this.z << 5) + z) + ")");
+        }
+    }
+
+    private void freeSectors(final int location)
+    {
+        final int offset = location >> 8;
+        final int size = location & 0xFF;
+        for (int i = 0; i < size; ++ i)
+        {
+            this.freeSectors.set(offset + i, true);
+        }
+    }
+
+    private void readFully(final ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            final int read = this.channel.read(buffer, position);
+            if (read == - 1)
+            {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    private void writeFully(final ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            position += this.channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Write chunk data to region file, data must start with {@link #CHUNK_HEADER} bytes reserved for chunk header.
+     *
+     * @param x      local x coordinate of chunk.
+     * @param z      local z coordinate of chunk.
+     * @param data   chunk data with reserved space for header.
+     * @param length length of data, including header.
+     * @param version compression version of data.
+     *
+     * @throws IOException if write fails.
+     */
+    protected void write(final int x, final int z, final byte[] data, final int length, final byte version) throws IOException
+    {
+        final int key = this.getKey(x, z);
+        final int location = this.locations[key];
+        final int newSize = ((length - 1) / AnvilRegion.SECTOR_BYTES) + 1;
+
+        // chunk can't be bigger than 1MiB
+        if (newSize >= MAX_CHUNK_SECTORS)
+        {
+            throw new RuntimeException("Chunk is bigger than 1MiB! (" + ((newSize << 2) - 1024) + " KiB bigger) region(" + this.x + ", " + this.z + "), local chunk(" + x + ", " + z + "), map chunk(" + ((this.x << 5) + x) + ", " + ((this.z << 5) + z) + ")");
+        }
+
+        // old sectors are still used by header on disk, so chunk is always written to new ones.
+        int offset = this.freeSectors.findFreeRun(newSize);
+        if (offset == - 1) // file is too small, chunk will be appended to the end of file
+        {
+            offset = this.freeSectors.getLargestIndex();
+        }
+        for (int i = 0; i < newSize; ++ i) // mark sectors as used
+        {
+            this.freeSectors.set(offset + i, false);
+        }
+
+        final int dataLength = length - CHUNK_HEADER;
+        data[0] = (byte) ((dataLength + 1) >>> 24);
+        data[1] = (byte) ((dataLength + 1) >>> 16);
+        data[2] = (byte) ((dataLength + 1) >>> 8);
+        data[3] = (byte) (dataLength + 1);
+        data[4] = version;
+        final long position = (long) offset * AnvilRegion.SECTOR_BYTES;
+        this.writeFully(ByteBuffer.wrap(data, 0, length), position);
+
+        // region files must be always made of full sectors.
+        final long end = position + ((long) newSize * AnvilRegion.SECTOR_BYTES);
+        if (this.channel.size() < end)
+        {
+            this.writeFully(ByteBuffer.allocate(1), end - 1);
+        }
+
+        if (location != 0)
+        {
+            this.pendingFree.add(location);
+        }
+        this.locations[key] = (offset << 8) | newSize;
+        this.timestamps[key] = (int) (System.currentTimeMillis() / 1000);
+        this.pendingKeys.set(key);
+        this.dirty = true;
+    }
+
+    class ChunkBuffer extends ByteArrayOutputStream
+    {
+        private static final int SIZE = 8096;
+        private final int x, z;
+        private final byte version;
+
+        ChunkBuffer(final int x, final int z, final byte version)
+        {
+            super(SIZE); // initialize to 8KB
+            this.x = x;
+            this.z = z;
+            this.version = version;
+            this.count = CHUNK_HEADER; // reserve space for chunk header, so data don't need to be copied before write.
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                MappedAnvilRegion.this.write(this.x, this.z, this.buf, this.count, this.version);
+            } finally
+            {
+                super.close();
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("x", this.x).append("z", this.z).toString();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("dirty", this.dirty).append("pendingKeys", this.pendingKeys.cardinality()).toString();
+    }
+}
@@ -55,6 +55,28 @@ class SectorsBitSet extends BitSet
         return this.largestIndex;
     }
 
+    /**
+     * Find first run of set (free) bits that is at least given size.
+     *
+     * @param size required size of run.
+     *
+     * @return index of first bit of found run, or -1 if there is no such run.
+     */
+    public int findFreeRun(final int size)
+    {
+        int runStart = this.nextSetBit(0);
+        while ((runStart != - 1) && (runStart < this.largestIndex))
+        {
+            final int runEnd = Math.min(this.nextClearBit(runStart), this.largestIndex);
+            if ((runEnd - runStart) >= size)
+            {
+                return runStart;
+            }
+            runStart = this.nextSetBit(runEnd);
+        }
+        return - 1;
+    }
+
     @Override
     public void flip(final int bitIndex)
     {
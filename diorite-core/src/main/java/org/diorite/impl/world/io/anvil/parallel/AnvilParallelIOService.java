@@ -21,10 +21,10 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-
 package org.diorite.impl.world.io.anvil.parallel;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.IntConsumer;
 
@@ -32,12 +32,52 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import org.diorite.impl.world.WorldImpl;
+import org.diorite.impl.world.chunk.ChunkManagerImpl.ChunkLock;
+import org.diorite.impl.world.io.ChunkIODurability;
 import org.diorite.impl.world.io.ParallelChunkIOService;
+import org.diorite.impl.world.io.anvil.AnvilIO;
+import org.diorite.impl.world.io.requests.ChunkFlushRequest;
+import org.diorite.impl.world.io.requests.ChunkSaveRequest;
 import org.diorite.impl.world.io.requests.Request;
 
+/**
+ * Chunk IO service that split requests between {@link #getMaxThreads()} {@link IOGroup}s. <br>
+ * Requests are assigned to groups by region file, so all requests for one region are always executed by the same thread,
+ * in order of priority (and in order of queueing for requests with same priority).
+ */
 public class AnvilParallelIOService implements ParallelChunkIOService
 {
-    private int maxThreads = 3;
+    public static final int DEFAULT_MAX_THREADS = 3;
+
+    private final AtomicInteger pending     = new AtomicInteger();
+    private final Object        pendingLock = new Object();
+    private final File      basePath;
+    private final String    worldName;
+    private final String    extension;
+    private final int       maxCacheSize;
+    private       int       maxThreads;
+    private       ChunkLock lock;
+    private volatile ChunkIODurability durability = ChunkIODurability.PER_BATCH;
+    private volatile IOGroup[]         groups;
+
+    public AnvilParallelIOService(final File basePath, final String worldName, final String extension, final int maxCacheSize, final int maxThreads)
+    {
+        this.basePath = basePath;
+        this.worldName = worldName;
+        this.extension = extension;
+        this.maxCacheSize = maxCacheSize;
+        this.maxThreads = maxThreads;
+    }
+
+    public AnvilParallelIOService(final File basePath, final String worldName, final int maxThreads)
+    {
+        this(basePath, worldName, AnvilIO.DEFAULT_EXTENSION, AnvilIO.DEFAULT_MAX_CACHE_SIZE, maxThreads);
+    }
+
+    public AnvilParallelIOService(final File basePath, final String worldName)
+    {
+        this(basePath, worldName, DEFAULT_MAX_THREADS);
+    }
 
     @Override
     public int getMaxThreads()
@@ -45,45 +85,202 @@ public class AnvilParallelIOService implements ParallelChunkIOService
         return this.maxThreads;
     }
 
+    /**
+     * Set amount of io threads, can be only changed before service is started.
+     *
+     * @param threads amount of threads.
+     */
     @Override
     public void setMaxThreads(final int threads)
     {
+        if (this.groups != null)
+        {
+            throw new IllegalStateException("Can't change amount of threads of running service.");
+        }
         this.maxThreads = threads;
     }
 
+    /**
+     * @return amount of queued or currently processed requests.
+     */
+    public int getPendingRequests()
+    {
+        return this.pending.get();
+    }
+
     @Override
     public void start(final WorldImpl world)
     {
+        this.lock = world.createLock("ChunkIO");
+        final int threads = Math.max(1, this.maxThreads);
+        final int cacheSize = Math.max(1, this.maxCacheSize / threads);
+        final IOGroup[] groups = new IOGroup[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            groups[i] = new IOGroup(this, new AnvilParallelIO(this.basePath, this.extension, cacheSize), this.worldName, i);
+            groups[i].getIO().setDurability(this.durability);
+        }
+        this.groups = groups;
+        for (final IOGroup group : groups)
+        {
+            group.start();
+        }
+    }
+
+    @Override
+    public ChunkIODurability getDurability()
+    {
+        return this.durability;
+    }
+
+    @Override
+    public void setDurability(final ChunkIODurability durability)
+    {
+        this.durability = durability;
+        final IOGroup[] groups = this.groups;
+        if (groups != null)
+        {
+            for (final IOGroup group : groups)
+            {
+                group.getIO().setDurability(durability);
+            }
+        }
+    }
+
+    /**
+     * Flush request is queued to every io group, returned request is finished when all groups finish flushing.
+     *
+     * @param priority priority of request, should be lower than priority of save requests.
+     *
+     * @return request finished after all groups flush saved chunks.
+     */
+    @Override
+    public ChunkFlushRequest queueFlush(final int priority)
+    {
+        if (this.groups == null)
+        {
+            throw new IllegalStateException("Service isn't started yet.");
+        }
+        final ChunkFlushRequest result = new ChunkFlushRequest(priority);
+        final AtomicInteger left = new AtomicInteger(this.groups.length);
+        for (final IOGroup group : this.groups)
+        {
+            final ChunkFlushRequest request = new ChunkFlushRequest(priority);
+            request.addOnEnd(r -> {
+                if (left.decrementAndGet() == 0)
+                {
+                    result.setResult(null);
+                }
+            });
+            this.pending.incrementAndGet();
+            group.queue(request);
+        }
+        return result;
+    }
 
+    private IOGroup getGroup(final int chunkX, final int chunkZ)
+    {
+        final int regionX = chunkX >> 5;
+        final int regionZ = chunkZ >> 5;
+        return this.groups[Math.floorMod((31 * regionX) + regionZ, this.groups.length)];
     }
 
     @Override
     public <OUT, T extends Request<OUT>> T queue(final T request, final Consumer<Request<OUT>> callback)
     {
-        return null;
+        if (this.groups == null)
+        {
+            throw new IllegalStateException("Service isn't started yet.");
+        }
+        if (request instanceof ChunkSaveRequest)
+        {
+            final ChunkSaveRequest req = (ChunkSaveRequest) request;
+            final long key = req.getData().getPos().asLong();
+            this.lock.acquire(key);
+            req.addOnEnd(r -> this.lock.release(key));
+        }
+        if (callback != null)
+        {
+            request.addOnEnd(callback);
+        }
+        this.pending.incrementAndGet();
+        this.getGroup(request.getX(), request.getZ()).queue(request);
+        return request;
+    }
+
+    void requestDone()
+    {
+        if (this.pending.decrementAndGet() == 0)
+        {
+            synchronized (this.pendingLock)
+            {
+                this.pendingLock.notifyAll();
+            }
+        }
     }
 
     @Override
     public void await(final IntConsumer rest, final int timer)
     {
-        // TODO
+        try
+        {
+            //noinspection StatementWithEmptyBody
+            while (this.await_(rest, timer))
+            {
+            }
+        } catch (final InterruptedException ignored)
+        {
+            this.await(rest);
+        }
+    }
+
+    private boolean await_(final IntConsumer rest, final int timer) throws InterruptedException
+    {
+        if (this.pending.get() == 0)
+        {
+            if (rest != null)
+            {
+                rest.accept(0);
+            }
+            return false;
+        }
+        synchronized (this.pendingLock)
+        {
+            if (this.pending.get() != 0)
+            {
+                this.pendingLock.wait(timer);
+            }
+        }
+        if (rest != null)
+        {
+            rest.accept(this.pending.get());
+        }
+        return true;
     }
 
     @Override
     public File getWorldDataFolder()
     {
-        return null;
+        return this.basePath.getAbsoluteFile();
     }
 
     @Override
     public void close(final IntConsumer rest)
     {
-
+        this.await(rest);
+        if (this.groups == null)
+        {
+            return;
+        }
+        for (final IOGroup group : this.groups)
+        {
+            group.close();
+        }
     }
 
     @Override
     public String toString()
     {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("maxThreads", this.maxThreads).toString();
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("maxThreads", this.maxThreads).append("pending", this.pending.get()).append("worldName", this.worldName).toString();
     }
 }
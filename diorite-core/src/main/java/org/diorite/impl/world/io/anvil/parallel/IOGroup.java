@@ -21,10 +21,133 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-
 package org.diorite.impl.world.io.anvil.parallel;
 
-public class IOGroup
+import java.util.concurrent.PriorityBlockingQueue;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import org.diorite.impl.world.io.anvil.AnvilIO;
+import org.diorite.impl.world.io.requests.Request;
+
+/**
+ * Single worker of {@link AnvilParallelIOService}, every region file is always handled by the same group,
+ * so each group owns own region cache and regions don't need any additional synchronization.
+ */
+public class IOGroup extends Thread
 {
+    private final PriorityBlockingQueue<Request<?>> queue = new PriorityBlockingQueue<>(20);
+    private final AnvilParallelIOService service;
+    private final AnvilIO                io;
+    private final int                    id;
+
+    private volatile boolean closed;
+
+    IOGroup(final AnvilParallelIOService service, final AnvilIO io, final String worldName, final int id)
+    {
+        super("ChunkIO-" + worldName + "-" + id);
+        this.setDaemon(true);
+        this.service = service;
+        this.io = io;
+        this.id = id;
+    }
+
+    public int getGroupId()
+    {
+        return this.id;
+    }
+
+    public AnvilIO getIO()
+    {
+        return this.io;
+    }
+
+    public int getQueueSize()
+    {
+        return this.queue.size();
+    }
+
+    void queue(final Request<?> request)
+    {
+        this.queue.add(request);
+        synchronized (this.queue)
+        {
+            this.queue.notifyAll();
+        }
+    }
+
+    /**
+     * Process all queued requests and stop worker, thread is never interrupted, as interrupting thread blocked in
+     * {@link java.nio.channels.FileChannel} operation closes that channel, and region headers could not be written then.
+     */
+    void close()
+    {
+        this.closed = true;
+        synchronized (this.queue)
+        {
+            this.queue.notifyAll();
+        }
+        try
+        {
+            this.join();
+        } catch (final InterruptedException e)
+        {
+            e.printStackTrace();
+        }
+        this.io.close();
+    }
+
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            final Request<?> r = this.queue.poll();
+            if (r != null)
+            {
+                try
+                {
+                    r.run(this.io);
+                } catch (final Throwable e)
+                {
+                    System.err.println("[ChunkIO] Exception in " + this.getName() + " while processing: " + r);
+                    e.printStackTrace();
+                    if (! r.isFinished())
+                    {
+                        // waiting threads and callbacks must be always released.
+                        r.setFailed(e);
+                    }
+                } finally
+                {
+                    this.service.requestDone();
+                }
+                continue;
+            }
+            if (this.closed)
+            {
+                return;
+            }
+            this.io.batchFinished();
+            try
+            {
+                synchronized (this.queue)
+                {
+                    if (this.queue.isEmpty() && ! this.closed)
+                    {
+                        this.queue.wait();
+                    }
+                }
+            } catch (final InterruptedException e)
+            {
+                e.printStackTrace(); // worker is stopped only by close(), so queued requests are never lost.
+            }
+        }
+    }
 
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("id", this.id).append("queue", this.queue.size()).append("io", this.io).toString();
+    }
 }
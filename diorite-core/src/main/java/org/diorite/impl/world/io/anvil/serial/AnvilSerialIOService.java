@@ -34,6 +34,7 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 
 import org.diorite.impl.world.WorldImpl;
 import org.diorite.impl.world.chunk.ChunkManagerImpl.ChunkLock;
+import org.diorite.impl.world.io.ChunkIODurability;
 import org.diorite.impl.world.io.SerialChunkIOService;
 import org.diorite.impl.world.io.anvil.AnvilIO;
 import org.diorite.impl.world.io.requests.ChunkSaveRequest;
@@ -66,6 +67,18 @@ public class AnvilSerialIOService extends Thread implements SerialChunkIOService
         this.start();
     }
 
+    @Override
+    public ChunkIODurability getDurability()
+    {
+        return this.io.getDurability();
+    }
+
+    @Override
+    public void setDurability(final ChunkIODurability durability)
+    {
+        this.io.setDurability(durability);
+    }
+
     @Override
     public <OUT, T extends Request<OUT>> T queue(final T request, final Consumer<Request<OUT>> callback)
     {
@@ -146,9 +159,22 @@ public class AnvilSerialIOService extends Thread implements SerialChunkIOService
             final Request<?> r = this.queue.poll();
             if (r != null)
             {
-                r.run(this.io);
+                try
+                {
+                    r.run(this.io);
+                } catch (final Throwable e)
+                {
+                    System.err.println("[ChunkIO] Exception in " + Thread.currentThread().getName() + " while processing: " + r);
+                    e.printStackTrace();
+                    if (! r.isFinished())
+                    {
+                        // waiting threads and callbacks must be always released.
+                        r.setFailed(e);
+                    }
+                }
                 continue;
             }
+            this.io.batchFinished();
             try
             {
                 synchronized (this.queue)
@@ -27,6 +27,7 @@ package org.diorite.impl.world.io.requests;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
@@ -36,9 +37,13 @@ import org.diorite.impl.world.io.ChunkIO;
 
 public abstract class Request<OUT> implements Comparable<Request<?>>
 {
-    protected final CountDownLatch latch = new CountDownLatch(1);
+    private static final AtomicLong sequenceCounter = new AtomicLong();
+
+    protected final CountDownLatch latch    = new CountDownLatch(1);
+    private final   long           sequence = sequenceCounter.getAndIncrement();
 
     private volatile OUT                         result;
+    private volatile Throwable                   error;
     private volatile boolean                     finished;
     private final    int                         priority;
     private          Set<Consumer<Request<OUT>>> onEnd;
@@ -52,11 +57,40 @@ public abstract class Request<OUT> implements Comparable<Request<?>>
     {
         this.result = result;
         this.finished = true;
-        if (this.onEnd != null)
+        try
+        {
+            if (this.onEnd != null)
+            {
+                this.onEnd.forEach(r -> r.accept(this));
+            }
+        } finally
         {
-            this.onEnd.forEach(r -> r.accept(this));
+            this.latch.countDown();
         }
-        this.latch.countDown();
+    }
+
+    /**
+     * Finish request without result, used when processing of request failed, so waiting threads and callbacks are always released.
+     *
+     * @param error cause of failure.
+     */
+    public void setFailed(final Throwable error)
+    {
+        this.error = error;
+        this.setResult(null);
+    }
+
+    /**
+     * @return cause of failure, or null if request didn't fail.
+     */
+    public Throwable getError()
+    {
+        return this.error;
+    }
+
+    public boolean isFinished()
+    {
+        return this.finished;
     }
 
     public synchronized void addOnEnd(final Consumer<Request<OUT>> onEnd)
@@ -128,12 +162,18 @@ public abstract class Request<OUT> implements Comparable<Request<?>>
     @Override
     public int compareTo(final Request<?> o)
     {
-        return Integer.compare(o.priority, this.priority);
+        final int cmp = Integer.compare(o.priority, this.priority);
+        if (cmp != 0)
+        {
+            return cmp;
+        }
+        // requests with same priority are executed in order of creation, so save -> load of same chunk can't be reordered.
+        return Long.compare(this.sequence, o.sequence);
     }
 
     @Override
     public String toString()
     {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("result", this.result).append("finished", this.finished).toString();
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("result", this.result).append("finished", this.finished).append("error", this.error).toString();
     }
 }
@@ -27,13 +27,8 @@ package org.diorite.impl.world.tick;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
-import org.diorite.impl.world.chunk.ChunkImpl;
-import org.diorite.impl.world.chunk.ChunkManagerImpl;
-import org.diorite.utils.math.endian.BigEndianUtils;
 import org.diorite.world.World;
 
-import it.unimi.dsi.fastutil.longs.LongIterator;
-
 public class ChunkTickGroup implements TickGroupImpl
 {
     private final ChunkGroup chunks;
@@ -50,19 +45,12 @@ public class ChunkTickGroup implements TickGroupImpl
         {
             return;
         }
-        final ChunkManagerImpl cm = this.chunks.getWorld().getChunkManager();
-        for (final LongIterator it = this.chunks.getChunks().iterator(); it.hasNext(); )
-        {
-            final long key = it.next();
-            final int x = BigEndianUtils.getIntA(key);
-            final int z = BigEndianUtils.getIntB(key);
-            final ChunkImpl chunk = cm.getChunk(x, z);
-            if ((chunk == null) || ! chunk.isLoaded())
-            {
-                return;
-            }
-            this.tickChunk(chunk, tps);
-        }
+        this.chunks.doTick(this, tps);
+    }
+
+    public ChunkGroup getChunks()
+    {
+        return this.chunks;
     }
 
     @Override
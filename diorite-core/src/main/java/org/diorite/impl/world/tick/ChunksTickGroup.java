@@ -30,13 +30,8 @@ import java.util.Set;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
-import org.diorite.impl.world.chunk.ChunkImpl;
-import org.diorite.impl.world.chunk.ChunkManagerImpl;
-import org.diorite.utils.math.endian.BigEndianUtils;
 import org.diorite.world.World;
 
-import it.unimi.dsi.fastutil.longs.LongIterator;
-
 public class ChunksTickGroup implements TickGroupImpl
 {
     private final Set<ChunkGroup> chunks;
@@ -49,21 +44,12 @@ public class ChunksTickGroup implements TickGroupImpl
     @Override
     public void doTick(final int tps)
     {
-        this.chunks.stream().filter(ChunkGroup::isLoaded).forEach(chunks -> {
-            final ChunkManagerImpl cm = chunks.getWorld().getChunkManager();
-            for (final LongIterator it = chunks.getChunks().iterator(); it.hasNext(); )
-            {
-                final long key = it.next();
-                final int x = BigEndianUtils.getIntA(key);
-                final int z = BigEndianUtils.getIntB(key);
-                final ChunkImpl chunk = cm.getChunk(x, z);
-                if ((chunk == null) || ! chunk.isLoaded())
-                {
-                    return;
-                }
-                this.tickChunk(chunk, tps);
-            }
-        });
+        this.chunks.stream().filter(ChunkGroup::isLoaded).forEach(chunks -> chunks.doTick(this, tps));
+    }
+
+    public Set<ChunkGroup> getChunks()
+    {
+        return this.chunks;
     }
 
     @Override
@@ -32,11 +32,14 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.diorite.impl.Tickable;
 import org.diorite.impl.world.WorldImpl;
 import org.diorite.impl.world.chunk.ChunkImpl;
+import org.diorite.impl.world.chunk.ChunkManagerImpl;
+import org.diorite.utils.math.endian.BigEndianUtils;
 import org.diorite.world.TickGroup;
 import org.diorite.world.World;
 import org.diorite.world.chunk.Chunk;
 
 import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 
 public interface TickGroupImpl extends Tickable, TickGroup
@@ -64,6 +67,7 @@ public interface TickGroupImpl extends Tickable, TickGroup
         private final WeakReference<WorldImpl> world;
         public static final int            CHUNKS_PER_FILE = 1024;
         private final       LongCollection chunks          = new LongOpenHashSet(CHUNKS_PER_FILE / 2, .5f);
+        private final       TickGroupStats stats           = new TickGroupStats();
 
         public ChunkGroup(final WorldImpl world)
         {
@@ -80,6 +84,46 @@ public interface TickGroupImpl extends Tickable, TickGroup
             return this.world.get();
         }
 
+        /**
+         * Returns execution time measurements of this group, used to estimate cost of ticking it.
+         *
+         * @return execution time measurements of this group.
+         */
+        public TickGroupStats getStats()
+        {
+            return this.stats;
+        }
+
+        /**
+         * Tick all loaded chunks of this group using given tick group.
+         *
+         * @param group tick group used to tick chunks.
+         * @param tps   current tps.
+         */
+        public void doTick(final TickGroupImpl group, final int tps)
+        {
+            final WorldImpl world = this.world.get();
+            if (world == null)
+            {
+                return;
+            }
+            final long start = System.nanoTime();
+            final ChunkManagerImpl cm = world.getChunkManager();
+            for (final LongIterator it = this.chunks.iterator(); it.hasNext(); )
+            {
+                final long key = it.next();
+                final int x = BigEndianUtils.getIntA(key);
+                final int z = BigEndianUtils.getIntB(key);
+                final ChunkImpl chunk = cm.getChunk(x, z);
+                if ((chunk == null) || ! chunk.isLoaded())
+                {
+                    continue;
+                }
+                group.tickChunk(chunk, tps);
+            }
+            this.stats.update(System.nanoTime() - start);
+        }
+
         public boolean isLoaded()
         {
             return ! this.chunks.isEmpty() && (this.world.get() != null);
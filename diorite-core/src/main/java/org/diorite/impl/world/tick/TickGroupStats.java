@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.diorite.impl.world.tick;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Execution time measurements of single {@link TickGroupImpl}, all times are in nanoseconds.
+ */
+public class TickGroupStats
+{
+    /**
+     * Weight of last measurement in average time.
+     */
+    public static final double SMOOTHING = 0.1;
+
+    private volatile long   ticks;
+    private volatile long   lastTime;
+    private volatile long   maxTime;
+    private volatile double averageTime;
+
+    void update(final long time)
+    {
+        this.lastTime = time;
+        if (time > this.maxTime)
+        {
+            this.maxTime = time;
+        }
+        this.averageTime = (this.ticks == 0) ? time : ((this.averageTime * (1 - SMOOTHING)) + (time * SMOOTHING));
+        this.ticks++;
+    }
+
+    /**
+     * @return amount of measured ticks.
+     */
+    public long getTicks()
+    {
+        return this.ticks;
+    }
+
+    /**
+     * @return execution time of last tick.
+     */
+    public long getLastTime()
+    {
+        return this.lastTime;
+    }
+
+    /**
+     * @return longest measured execution time.
+     */
+    public long getMaxTime()
+    {
+        return this.maxTime;
+    }
+
+    /**
+     * @return exponential moving average of execution time, single lag spikes don't change it much.
+     */
+    public double getAverageTime()
+    {
+        return this.averageTime;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("ticks", this.ticks).append("lastTime", this.lastTime).append("maxTime", this.maxTime).append("averageTime", this.averageTime).toString();
+    }
+}
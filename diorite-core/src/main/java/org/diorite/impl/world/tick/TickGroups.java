@@ -24,10 +24,15 @@
 
 package org.diorite.impl.world.tick;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -45,7 +50,10 @@ public class TickGroups implements Tickable
     private static final Object key = new Object(); // key to spammy messages
 
     protected final DioriteCore core;
+    private final Map<TickGroupImpl, TickGroupStats> stats = new ConcurrentHashMap<>(10);
     private Collection<TickGroupImpl> groups = new ConcurrentSet<>(10);
+    private          int          threads; // 0 -> amount of available processors
+    private volatile ForkJoinPool pool;
 
     public TickGroups(final DioriteCore core)
     {
@@ -62,6 +70,137 @@ public class TickGroups implements Tickable
         this.groups = groups;
     }
 
+    /**
+     * Returns execution time measurements of given group.
+     *
+     * @param group group to check.
+     *
+     * @return measurements of group, or null if group wasn't ticked yet.
+     */
+    public TickGroupStats getStats(final TickGroupImpl group)
+    {
+        return this.stats.get(group);
+    }
+
+    public Map<TickGroupImpl, TickGroupStats> getStats()
+    {
+        return Collections.unmodifiableMap(this.stats);
+    }
+
+    public int getThreads()
+    {
+        return this.threads;
+    }
+
+    /**
+     * Set amount of tick threads, used when pool is created, so it should be set before first tick.
+     *
+     * @param threads amount of tick threads, 0 to use amount of available processors.
+     */
+    public void setThreads(final int threads)
+    {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns amount of groups that can be ticked in parallel.
+     *
+     * @return amount of groups that can be ticked in parallel.
+     */
+    public int getParallelism()
+    {
+        return (this.threads > 0) ? this.threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    private ForkJoinPool getPool()
+    {
+        if (this.pool == null)
+        {
+            final int threads = this.getParallelism();
+            final AtomicInteger i = new AtomicInteger(0);
+            this.pool = new ForkJoinPool(threads, p -> new NamedForkJoinWorkerThread(p, i.getAndIncrement()), (t, e) -> {
+                // TODO: maybe add some pretty error priting
+                System.err.println("Error in tick thread: " + t.getName());
+                e.printStackTrace();
+            }, false);
+        }
+        return this.pool;
+    }
+
+    /**
+     * Shutdown tick threads, pool will be created again on next tick.
+     */
+    public synchronized void close()
+    {
+        if (this.pool != null)
+        {
+            this.pool.shutdown();
+            this.pool = null;
+        }
+    }
+
+    private void tickGroup(final TickGroupImpl tickGroup, final int tps)
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            tickGroup.doTick(tps);
+        } catch (final Throwable throwable)
+        {
+            throwable.printStackTrace();
+        } finally
+        {
+            this.stats.computeIfAbsent(tickGroup, g -> new TickGroupStats()).update(System.nanoTime() - start);
+        }
+    }
+
+    private void runGroup(final TickGroupImpl tickGroup, final int tps)
+    {
+        try
+        {
+            tickGroup.doTick(tps);
+        } catch (final Throwable throwable)
+        {
+            throwable.printStackTrace();
+        }
+        this.core.runSync();
+    }
+
+    /**
+     * Tick given groups in parallel using tick threads and wait until all of them are done. <br>
+     * Can be used by main thread and by other tick groups, tick threads waiting for sub-groups will help execute them.
+     *
+     * @param groups groups to tick, they should not share any chunks.
+     * @param tps    current tps.
+     */
+    public void tickAll(final Collection<? extends TickGroupImpl> groups, final int tps)
+    {
+        if (groups.isEmpty())
+        {
+            return;
+        }
+        if (groups.size() == 1)
+        {
+            this.runGroup(groups.iterator().next(), tps);
+            return;
+        }
+        final Collection<ForkJoinTask<?>> tasks = new ArrayList<>(groups.size());
+        for (final TickGroupImpl tickGroup : groups)
+        {
+            tasks.add(ForkJoinTask.adapt(() -> this.runGroup(tickGroup, tps)));
+        }
+        final ForkJoinPool pool = this.getPool();
+        final Thread thread = Thread.currentThread();
+        if ((thread instanceof ForkJoinWorkerThread) && (((ForkJoinWorkerThread) thread).getPool() == pool))
+        {
+            ForkJoinTask.invokeAll(tasks);
+        }
+        else
+        {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+    }
+
     @Override
     public synchronized void doTick(final int tps)
     {
@@ -75,30 +214,14 @@ public class TickGroups implements Tickable
         }
         if (this.groups.size() == 1)
         {
-            /**
-             * TODO count time of execution and split if needed.
-             */
-            try
-            {
-                this.groups.iterator().next().doTick(tps);
-            } catch (final Throwable throwable)
-            {
-                throwable.printStackTrace();
-            }
+            // single group is ticked by main thread, there is nothing to run in parallel.
+            this.tickGroup(this.groups.iterator().next(), tps);
             return;
         }
-        final AtomicInteger i = new AtomicInteger(0);
-        final ForkJoinPool pool = new ForkJoinPool(this.groups.size(), p -> new NamedForkJoinWorkerThread(p, i.getAndIncrement()), (t, e) -> {
-            // TODO: maybe add some pretty error priting
-            System.err.println("Error in tick thread: " + t.getName());
-            e.printStackTrace();
-        }, false);
+        final ForkJoinPool pool = this.getPool();
 
-        /**
-         * TODO count time of execution for all groups.
-         * if any group is creating lags, try split it. (should not count single-time lags?)
-         * if two grups can be join, try join them.
-         */
+        // groups are executed by persistent pool, so idle threads can steal pending groups from busy ones.
+        // chunks of each world are split into independent islands by WorldTickGroup itself.
         final CountDownLatch latch = new CountDownLatch(this.groups.size());
         for (final Iterator<TickGroupImpl> it = this.groups.iterator(); it.hasNext(); )
         {
@@ -106,14 +229,14 @@ public class TickGroups implements Tickable
             if (tickGroup.isEmpty())
             {
                 it.remove();
+                this.stats.remove(tickGroup);
                 latch.countDown();
                 continue;
             }
-            pool.submit(() -> {
+            pool.execute(() -> {
                 try
                 {
-                    tickGroup.doTick(tps);
-                    this.core.runScheduler(false);
+                    this.tickGroup(tickGroup, tps);
                     this.core.runSync();
                 } finally
                 {
@@ -133,7 +256,7 @@ public class TickGroups implements Tickable
     @Override
     public String toString()
     {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("groups", this.groups).toString();
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("groups", this.groups).append("threads", this.threads).toString();
     }
 
     private static class NamedForkJoinWorkerThread extends ForkJoinWorkerThread
@@ -25,31 +25,246 @@
 package org.diorite.impl.world.tick;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import org.diorite.impl.DioriteCore;
 import org.diorite.impl.world.WorldImpl;
+import org.diorite.impl.world.chunk.ChunkImpl;
+import org.diorite.utils.math.endian.BigEndianUtils;
 import org.diorite.world.World;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+/**
+ * Ticks single world, loaded chunks of world are split into islands, chunks of different islands are at least
+ * {@link #ISLAND_MARGIN} chunks away from each other, so islands can be ticked in parallel. <br>
+ * Islands are distributed between tick threads using measured tick time of each island, cheap islands are joined
+ * into one group, and expensive ones get own thread.
+ */
 public class WorldTickGroup implements TickGroupImpl
 {
+    /**
+     * Chunks closer than this (in chunks) are always in the same island.
+     */
+    public static final int  ISLAND_MARGIN      = 2;
+    /**
+     * How often (in ticks) islands are rebuilt and distributed again.
+     */
+    public static final int  REBALANCE_INTERVAL = 20;
+    /**
+     * If estimated tick time of all islands is smaller than this, they are ticked by single thread, as scheduling them costs more.
+     */
+    public static final long MIN_PARALLEL_TIME  = TimeUnit.MILLISECONDS.toNanos(1);
+
     private final WeakReference<WorldImpl> world;
+    private final LongSet                  grouped = new LongOpenHashSet(100);
+    private       Collection<ChunkGroup>   islands = Collections.emptyList();
+    private       Collection<TickGroupImpl> groups = Collections.emptyList();
+    private       int                      rebalanceTimer;
 
     public WorldTickGroup(final WorldImpl world)
     {
         this.world = new WeakReference<>(world);
     }
 
+    public Collection<TickGroupImpl> getGroups()
+    {
+        return this.groups;
+    }
+
     @Override
     public void doTick(final int tps)
     {
         final WorldImpl impl = this.world.get();
-        if (impl != null)
+        if (impl == null)
+        {
+            return;
+        }
+        impl.doTick(tps);
+        final List<ChunkImpl> chunks = impl.getChunkManager().getLoadedChunks();
+        if (this.rebalanceTimer-- <= 0)
+        {
+            this.rebalanceTimer = REBALANCE_INTERVAL;
+            this.rebalance(impl, chunks);
+        }
+        DioriteCore.getInstance().getTicker().tickAll(this.groups, tps);
+
+        // chunks loaded since last rebalance.
+        for (final ChunkImpl chunk : chunks)
+        {
+            if ((chunk.isLoaded() || ! chunk.getEntities().isEmpty()) && ! this.grouped.contains(BigEndianUtils.toLong(chunk.getX(), chunk.getZ())))
+            {
+                this.tickChunk(chunk, tps);
+            }
+        }
+    }
+
+    private void rebalance(final WorldImpl impl, final Collection<ChunkImpl> chunks)
+    {
+        // estimate tick time of each chunk using measurements of old islands.
+        final Long2LongMap chunkTimes = new Long2LongOpenHashMap(this.grouped.size());
+        long knownTime = 0;
+        int knownChunks = 0;
+        for (final ChunkGroup island : this.islands)
+        {
+            final TickGroupStats stats = island.getStats();
+            final int size = island.getChunks().size();
+            if ((stats.getTicks() == 0) || (size == 0))
+            {
+                continue;
+            }
+            final long chunkTime = (long) (stats.getAverageTime() / size);
+            for (final LongIterator it = island.getChunks().iterator(); it.hasNext(); )
+            {
+                chunkTimes.put(it.nextLong(), chunkTime);
+            }
+            knownTime += stats.getAverageTime();
+            knownChunks += size;
+        }
+        chunkTimes.defaultReturnValue((knownChunks == 0) ? 0 : (knownTime / knownChunks));
+
+        final long[] keys = chunks.stream().filter(c -> c.isLoaded() || ! c.getEntities().isEmpty()).mapToLong(c -> BigEndianUtils.toLong(c.getX(), c.getZ())).toArray();
+        final List<ChunkGroup> islands = findIslands(impl, keys);
+        final long[] times = new long[islands.size()];
+        long totalTime = 0;
+        for (int i = 0; i < times.length; i++)
+        {
+            for (final LongIterator it = islands.get(i).getChunks().iterator(); it.hasNext(); )
+            {
+                times[i] += chunkTimes.get(it.nextLong());
+            }
+            totalTime += times[i];
+        }
+
+        // longest processing time first, each island goes to least loaded thread.
+        final Integer[] order = new Integer[times.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(times[b], times[a]));
+        final int threads = (totalTime < MIN_PARALLEL_TIME) ? 1 : Math.min(DioriteCore.getInstance().getTicker().getParallelism(), islands.size());
+        final long[] loads = new long[threads];
+        final List<Set<ChunkGroup>> bins = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++)
+        {
+            bins.add(new HashSet<>(4));
+        }
+        for (final int island : order)
+        {
+            int min = 0;
+            for (int i = 1; i < threads; i++)
+            {
+                if (loads[i] < loads[min])
+                {
+                    min = i;
+                }
+            }
+            loads[min] += times[island];
+            bins.get(min).add(islands.get(island));
+        }
+
+        final Collection<TickGroupImpl> groups = new ArrayList<>(threads);
+        for (final Set<ChunkGroup> bin : bins)
+        {
+            if (bin.size() == 1)
+            {
+                groups.add(new ChunkTickGroup(bin.iterator().next()));
+            }
+            else if (! bin.isEmpty())
+            {
+                groups.add(new ChunksTickGroup(bin));
+            }
+        }
+        this.grouped.clear();
+        for (final long key : keys)
+        {
+            this.grouped.add(key);
+        }
+        this.islands = islands;
+        this.groups = groups;
+    }
+
+    /**
+     * Split given chunks into groups, where chunks of different groups are at least {@link #ISLAND_MARGIN} chunks away from each other.
+     *
+     * @param world world of chunks.
+     * @param keys  keys of chunks.
+     *
+     * @return list of chunk islands.
+     */
+    static List<ChunkGroup> findIslands(final WorldImpl world, final long[] keys)
+    {
+        final Long2IntMap indexes = new Long2IntOpenHashMap(keys.length);
+        indexes.defaultReturnValue(- 1);
+        final int[] parents = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+        {
+            indexes.put(keys[i], i);
+            parents[i] = i;
+        }
+        for (int i = 0; i < keys.length; i++)
+        {
+            final int x = BigEndianUtils.getIntA(keys[i]);
+            final int z = BigEndianUtils.getIntB(keys[i]);
+            for (int dx = - ISLAND_MARGIN; dx <= ISLAND_MARGIN; dx++)
+            {
+                for (int dz = - ISLAND_MARGIN; dz <= ISLAND_MARGIN; dz++)
+                {
+                    final int j = indexes.get(BigEndianUtils.toLong(x + dx, z + dz));
+                    if (j > i)
+                    {
+                        final int rootI = findRoot(parents, i);
+                        final int rootJ = findRoot(parents, j);
+                        if (rootI != rootJ)
+                        {
+                            parents[rootJ] = rootI;
+                        }
+                    }
+                }
+            }
+        }
+        final Int2ObjectMap<ChunkGroup> islands = new Int2ObjectOpenHashMap<>(16);
+        for (int i = 0; i < keys.length; i++)
+        {
+            final int root = findRoot(parents, i);
+            ChunkGroup island = islands.get(root);
+            if (island == null)
+            {
+                island = new ChunkGroup(world);
+                islands.put(root, island);
+            }
+            island.getChunks().add(keys[i]);
+        }
+        return new ArrayList<>(islands.values());
+    }
+
+    private static int findRoot(final int[] parents, int i)
+    {
+        while (parents[i] != i)
         {
-            impl.doTick(tps);
-            impl.getChunkManager().getLoadedChunks().stream().filter(c -> c.isLoaded() || ! c.getEntities().isEmpty()).forEach(c -> this.tickChunk(c, tps));
+            parents[i] = parents[parents[i]];
+            i = parents[i];
         }
+        return i;
     }
 
     @Override
@@ -58,6 +273,9 @@ public class WorldTickGroup implements TickGroupImpl
         if (world.equals(this.world.get()))
         {
             this.world.clear();
+            this.islands = Collections.emptyList();
+            this.groups = Collections.emptyList();
+            this.grouped.clear();
             return true;
         }
         return false;
@@ -72,6 +290,6 @@ public class WorldTickGroup implements TickGroupImpl
     @Override
     public String toString()
     {
-        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("world", this.world).toString();
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("world", this.world).append("groups", this.groups).toString();
     }
 }
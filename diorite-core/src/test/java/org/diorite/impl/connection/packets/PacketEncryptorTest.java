@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.connection.packets;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.util.Arrays;
+
+import org.diorite.impl.connection.EnumProtocol;
+import org.diorite.impl.connection.MinecraftEncryption;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundKeepAlive;
+
+import junit.framework.TestCase;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+@SuppressWarnings("MagicNumber")
+public class PacketEncryptorTest extends TestCase
+{
+    static
+    {
+        if (EnumProtocol.getByPacketClass(new PacketPlayClientboundKeepAlive()) == null)
+        {
+            EnumProtocol.init(PacketPlayClientboundKeepAlive.class);
+        }
+    }
+
+    private static SecretKey createKey(final int seed)
+    {
+        final byte[] key = new byte[16];
+        Arrays.fill(key, (byte) seed);
+        return new SecretKeySpec(key, "AES");
+    }
+
+    private static EmbeddedChannel createChannel(final SecretKey key)
+    {
+        if (key == null)
+        {
+            return new EmbeddedChannel(new PacketSizer());
+        }
+        return new EmbeddedChannel(new PacketEncryptor(MinecraftEncryption.getCipher(Cipher.ENCRYPT_MODE, key), MinecraftEncryption.getCipher(Cipher.DECRYPT_MODE, key)), new PacketSizer());
+    }
+
+    private static byte[] getBytes(final ByteBuf byteBuf)
+    {
+        final byte[] bytes = new byte[byteBuf.readableBytes()];
+        byteBuf.getBytes(byteBuf.readerIndex(), bytes);
+        return bytes;
+    }
+
+    private static byte[] readDecrypted(final EmbeddedChannel channel, final SecretKey key)
+    {
+        final ByteBuf byteBuf = channel.readOutbound();
+        try
+        {
+            return MinecraftEncryption.getCipher(Cipher.DECRYPT_MODE, key).update(getBytes(byteBuf));
+        } finally
+        {
+            byteBuf.release();
+        }
+    }
+
+    private static byte[] encode(final PreparedPacket packet)
+    {
+        final PacketFrame frame = packet.retainFrame(- 1);
+        try
+        {
+            return getBytes(frame.content());
+        } finally
+        {
+            frame.release();
+        }
+    }
+
+    @org.junit.Test
+    public void testPlainChannelWrittenFirst() throws Exception
+    {
+        final SecretKey key1 = createKey(1);
+        final SecretKey key2 = createKey(2);
+        final EmbeddedChannel encrypted1 = createChannel(key1);
+        final EmbeddedChannel encrypted2 = createChannel(key2);
+        final EmbeddedChannel plain = createChannel(null);
+
+        final PreparedPacket packet = new PreparedPacket(new PacketPlayClientboundKeepAlive(123456789));
+        final byte[] expected = encode(packet);
+        final PacketFrame frame1 = packet.retainFrame(- 1);
+        final PacketFrame frame2 = packet.retainFrame(- 1);
+        final PacketFrame frame3 = packet.retainFrame(- 1);
+        packet.release(); // frames are now owned only by channels.
+
+        plain.writeAndFlush(frame3);
+        final ByteBuf plainBuf = plain.readOutbound();
+        assertTrue("Plain channel must send original bytes!", Arrays.equals(expected, getBytes(plainBuf)));
+
+        encrypted1.writeAndFlush(frame1); // shared buffer, must be ciphered into new one.
+        assertTrue("Plain channel bytes can't be changed by encryption of other channel!", Arrays.equals(expected, getBytes(plainBuf)));
+        assertTrue("First channel must decrypt to original bytes!", Arrays.equals(expected, readDecrypted(encrypted1, key1)));
+        assertTrue("Plain channel bytes can't be changed by encryption of other channel!", Arrays.equals(expected, getBytes(plainBuf)));
+        plainBuf.release();
+
+        encrypted2.writeAndFlush(frame2); // last owner of buffer, may be ciphered in place.
+        assertTrue("Second channel must decrypt to original bytes!", Arrays.equals(expected, readDecrypted(encrypted2, key2)));
+        assertTrue("All frames must be released!", frame1.refCnt() == 0);
+
+        assertTrue("Channels can't have any more data!", ! encrypted1.finish() && ! encrypted2.finish() && ! plain.finish());
+    }
+
+    @org.junit.Test
+    public void testPlainChannelWrittenLast() throws Exception
+    {
+        final SecretKey key1 = createKey(3);
+        final SecretKey key2 = createKey(4);
+        final EmbeddedChannel encrypted1 = createChannel(key1);
+        final EmbeddedChannel encrypted2 = createChannel(key2);
+        final EmbeddedChannel plain = createChannel(null);
+
+        final PreparedPacket packet = new PreparedPacket(new PacketPlayClientboundKeepAlive(987654321));
+        final byte[] expected = encode(packet);
+        final PacketFrame frame1 = packet.retainFrame(- 1);
+        final PacketFrame frame2 = packet.retainFrame(- 1);
+        final PacketFrame frame3 = packet.retainFrame(- 1);
+        packet.release();
+
+        encrypted1.writeAndFlush(frame1);
+        encrypted2.writeAndFlush(frame2);
+        plain.writeAndFlush(frame3);
+
+        final ByteBuf plainBuf = plain.readOutbound();
+        try
+        {
+            assertTrue("Plain channel bytes can't be changed by encryption of other channels!", Arrays.equals(expected, getBytes(plainBuf)));
+        } finally
+        {
+            plainBuf.release();
+        }
+        assertTrue("First channel must decrypt to original bytes!", Arrays.equals(expected, readDecrypted(encrypted1, key1)));
+        assertTrue("Second channel must decrypt to original bytes!", Arrays.equals(expected, readDecrypted(encrypted2, key2)));
+        assertTrue("All frames must be released!", frame1.refCnt() == 0);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.diorite.impl.connection.packets.Packet;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundMultiBlockChange;
+import org.diorite.impl.world.chunk.ChunkImpl;
+import org.diorite.impl.world.chunk.ChunkPartImpl;
+import org.diorite.material.Material;
+import org.diorite.world.chunk.Chunk;
+import org.diorite.world.chunk.ChunkPos;
+
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import junit.framework.TestCase;
+
+@SuppressWarnings("MagicNumber")
+public class BlockChangeQueueTest extends TestCase
+{
+    @org.junit.Test
+    public void testEmptiedSectionIsSentAsBlockChanges() throws Exception
+    {
+        final ChunkPartImpl[] sections = new ChunkPartImpl[Chunk.CHUNK_PARTS];
+        sections[0] = new ChunkPartImpl((byte) 0, true);
+        // section 1 was emptied by block changes, so chunk removed it.
+        final ChunkImpl chunk = new ChunkImpl(new ChunkPos(2, 3), sections);
+        final ShortSet positions = new ShortOpenHashSet(BlockChangeQueue.SECTIONS_RESEND_THRESHOLD);
+        for (int i = 0; i < BlockChangeQueue.SECTIONS_RESEND_THRESHOLD; i++)
+        {
+            positions.add(PacketPlayClientboundMultiBlockChange.packPosition(i & 15, 16 + (i >> 4), 0));
+        }
+
+        final List<Packet<?>> packets = new ArrayList<>(2);
+        new BlockChangeQueue(null).createPackets(chunk, positions, packets);
+
+        assertEquals("Emptied section must be sent as single multi block change!", 1, packets.size());
+        assertTrue("Emptied section must be sent as multi block change!", packets.get(0) instanceof PacketPlayClientboundMultiBlockChange);
+        final PacketPlayClientboundMultiBlockChange packet = (PacketPlayClientboundMultiBlockChange) packets.get(0);
+        assertEquals("Invalid chunk x!", 2, packet.getChunkX());
+        assertEquals("Invalid chunk z!", 3, packet.getChunkZ());
+        assertEquals("All changed blocks must be sent!", positions.size(), packet.getPositions().length);
+        final int air = PacketPlayClientboundMultiBlockChange.packBlockData(Material.AIR);
+        for (final int data : packet.getBlockData())
+        {
+            assertEquals("Blocks of emptied section must be sent as air!", air, data);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world.chunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import org.diorite.impl.world.WorldImpl;
+import org.diorite.impl.world.chunk.palette.BlockStates;
+import org.diorite.impl.world.io.ChunkIODurability;
+import org.diorite.impl.world.io.ChunkIOService;
+import org.diorite.impl.world.io.requests.Request;
+import org.diorite.nbt.NbtInputStream;
+import org.diorite.nbt.NbtLimiter;
+import org.diorite.nbt.NbtOutputStream;
+import org.diorite.nbt.NbtStreamReader;
+import org.diorite.nbt.NbtStreamWriter;
+import org.diorite.nbt.NbtTag;
+import org.diorite.nbt.NbtTagCompound;
+import org.diorite.nbt.NbtTagType;
+import org.diorite.world.Dimension;
+import org.diorite.world.WorldType;
+import org.diorite.world.chunk.ChunkPos;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("MagicNumber")
+public class ChunkImplNbtTest extends TestCase
+{
+    private static final int   BLOCKS   = ChunkPartImpl.CHUNK_DATA_SIZE;
+    private static final int   NIBBLES  = BLOCKS >> 1;
+    private static final int[] SECTIONS = {0, 3, 4, 15};
+
+    @org.junit.Test
+    public void testStreamReadOfTreeWrittenChunk() throws Exception
+    {
+        this.checkStreamRead(true);
+        this.checkStreamRead(false);
+    }
+
+    @org.junit.Test
+    public void testStreamWriteTreeRead() throws Exception
+    {
+        this.checkStreamWrite(true);
+        this.checkStreamWrite(false);
+    }
+
+    private void checkStreamRead(final boolean vanillaCompatible) throws IOException
+    {
+        final TestWorld world = new TestWorld(vanillaCompatible);
+        final Random random = new Random(vanillaCompatible ? 1 : 2);
+        final int[][] states = createStates(random);
+        final NbtTagCompound level = createLevelTag(random, states, vanillaCompatible, 7, - 9);
+        assertTrue("Diorite height map must be saved inside Diorite compound!", vanillaCompatible || (level.getTag("Diorite") instanceof NbtTagCompound));
+
+        final NbtTagCompound root = new NbtTagCompound("");
+        root.addTag(level);
+        root.setInt("DataVersion", 169); // tags outside of Level must be skipped.
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(65536);
+        try (final NbtOutputStream stream = new NbtOutputStream(out))
+        {
+            stream.write(root);
+        }
+
+        final ChunkImpl streamChunk = new ChunkImpl(new ChunkPos(7, - 9, world));
+        final NbtStreamReader reader = new NbtStreamReader(new NbtInputStream(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals("Root tag must be compound!", NbtTagType.COMPOUND, reader.nextTag());
+        reader.readName();
+        NbtTagType type;
+        while ((type = reader.nextTag()) != NbtTagType.END)
+        {
+            if (reader.readName().equals("Level"))
+            {
+                streamChunk.loadFrom(reader);
+            }
+            else
+            {
+                reader.skip(type);
+            }
+        }
+
+        final ChunkImpl treeChunk = new ChunkImpl(new ChunkPos(7, - 9, world));
+        treeChunk.loadFrom(level);
+
+        final String msg = "[vc=" + vanillaCompatible + "] ";
+        checkChunk(msg + "[tree] ", treeChunk, level, states);
+        checkChunk(msg + "[stream] ", streamChunk, level, states);
+    }
+
+    private static void checkChunk(final String msg, final ChunkImpl chunk, final NbtTagCompound level, final int[][] states)
+    {
+        assertTrue(msg + "Chunk must be loaded!", chunk.isLoaded());
+        assertEquals(msg + "Populated flag must be this same!", level.getBoolean("TerrainPopulated"), chunk.isPopulated());
+        assertTrue(msg + "Biomes must be this same!", Arrays.equals(level.getByteArray("Biomes"), chunk.getBiomes()));
+        final boolean vc = level.containsTag("HeightMap");
+        for (int i = 0; i < 256; i++)
+        {
+            final int expected = vc ? level.getIntArray("HeightMap")[i] : level.getShortArray("Diorite.HeightMap")[i];
+            assertEquals(msg + "Height map must be this same!", expected, chunk.getHighestBlockY(i & 15, i >> 4));
+        }
+        assertTrue(msg + "Entities must be this same!", chunk.getEntities().isEmpty() && level.getList("Entities", NbtTagCompound.class).isEmpty());
+        assertTrue(msg + "Tile entities must be this same!", chunk.getTileEntities().isEmpty() && level.getList("TileEntities", NbtTagCompound.class).isEmpty());
+
+        final List<NbtTagCompound> sections = level.getList("Sections", NbtTagCompound.class);
+        final ChunkPartImpl[] parts = chunk.getChunkParts();
+        int found = 0;
+        for (int y = 0; y < parts.length; y++)
+        {
+            final ChunkPartImpl part = parts[y];
+            if (part == null)
+            {
+                continue;
+            }
+            final NbtTagCompound section = sections.get(found++);
+            assertEquals(msg + "Section must be placed at its Y position!", section.getByte("Y"), part.getYPos());
+            final int[] expected = states[found - 1];
+            for (int i = 0; i < BLOCKS; i++)
+            {
+                assertEquals(msg + "Block " + i + " of section " + y + " must be this same!", expected[i], part.getBlockData().getAsInt(i, part.getPalette()));
+            }
+            assertTrue(msg + "Block light must be this same!", Arrays.equals(section.getByteArray("BlockLight"), part.getBlockLight().getRawData()));
+            assertTrue(msg + "Sky light must be this same!", Arrays.equals(section.getByteArray("SkyLight"), part.getSkyLight().getRawData()));
+        }
+        assertEquals(msg + "All sections must be loaded!", sections.size(), found);
+    }
+
+    private void checkStreamWrite(final boolean vanillaCompatible) throws IOException
+    {
+        final TestWorld world = new TestWorld(vanillaCompatible);
+        final Random random = new Random(vanillaCompatible ? 3 : 4);
+        final NbtTagCompound level = createLevelTag(random, createStates(random), vanillaCompatible, - 1, 30);
+        final ChunkImpl chunk = new ChunkImpl(new ChunkPos(- 1, 30, world));
+        chunk.loadFrom(level);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(65536);
+        try (final NbtStreamWriter writer = new NbtStreamWriter(new NbtOutputStream(out)))
+        {
+            writer.beginCompound("");
+            writer.beginCompound("Level");
+            assertTrue("Loaded chunk must be written!", chunk.writeTo(writer));
+            writer.endCompound();
+            writer.endCompound();
+        }
+        final NbtTagCompound root = (NbtTagCompound) new NbtInputStream(new ByteArrayInputStream(out.toByteArray())).readTag(NbtLimiter.getUnlimited());
+        final NbtTagCompound written = root.getCompound("Level");
+        for (final NbtTagCompound section : written.getList("Sections", NbtTagCompound.class))
+        {
+            assertEquals("Data must be nibble array of all blocks!", NIBBLES, section.getByteArray("Data").length);
+        }
+        assertEquals("[vc=" + vanillaCompatible + "] Chunk written by stream writer must be this same as tree tag!", level, written);
+    }
+
+    private static int[][] createStates(final Random random)
+    {
+        final List<Integer> valid = new ArrayList<>(5000);
+        for (int i = 0; i < BlockStates.STATES_SIZE; i++)
+        {
+            if (BlockStates.isValid(i))
+            {
+                valid.add(i);
+            }
+        }
+        final int[][] states = new int[SECTIONS.length][BLOCKS];
+        for (final int[] section : states)
+        {
+            for (int i = 0; i < BLOCKS; i++)
+            {
+                // mostly air, like in real chunks, so palette must grow and shrink bits per block.
+                section[i] = (random.nextInt(4) == 0) ? valid.get(random.nextInt(valid.size())) : 0;
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Creates content of "Level" compound in this same format as it is written by chunk.
+     */
+    private static NbtTagCompound createLevelTag(final Random random, final int[][] states, final boolean vanillaCompatible, final int x, final int z)
+    {
+        final NbtTagCompound level = new NbtTagCompound("Level");
+        level.setByte("V", 1);
+        level.setInt("xPos", x);
+        level.setInt("zPos", z);
+        level.setLong("LastUpdate", 0);
+        if (vanillaCompatible)
+        {
+            level.setIntArray("HeightMap", random.ints(256, 0, 256).toArray());
+        }
+        else
+        {
+            final short[] heightMap = new short[256];
+            for (int i = 0; i < heightMap.length; i++)
+            {
+                heightMap[i] = (short) random.nextInt(256);
+            }
+            level.setShortArray("Diorite.HeightMap", heightMap);
+        }
+        level.setBoolean("TerrainPopulated", true);
+        level.setBoolean("LightPopulated", false);
+        level.setLong("InhabitedTime", 0);
+
+        final List<NbtTag> sections = new ArrayList<>(SECTIONS.length);
+        for (int s = 0; s < SECTIONS.length; s++)
+        {
+            final byte[] blocks = new byte[BLOCKS];
+            final byte[] data = new byte[NIBBLES];
+            final byte[] add = new byte[NIBBLES];
+            boolean hasAdd = false;
+            for (int i = 0; i < BLOCKS; i++)
+            {
+                final int state = states[s][i];
+                final int shift = (i & 1) << 2;
+                blocks[i] = (byte) (state >> 4);
+                data[i >> 1] |= (state & 15) << shift;
+                if ((state >> 12) != 0)
+                {
+                    hasAdd = true;
+                    add[i >> 1] |= ((state >> 12) & 15) << shift;
+                }
+            }
+            final byte[] blockLight = new byte[NIBBLES];
+            final byte[] skyLight = new byte[NIBBLES];
+            random.nextBytes(blockLight);
+            random.nextBytes(skyLight);
+
+            final NbtTagCompound section = new NbtTagCompound();
+            section.setByte("Y", SECTIONS[s]);
+            section.setByteArray("Blocks", blocks);
+            section.setByteArray("Data", data);
+            if (hasAdd)
+            {
+                section.setByteArray("Add", add);
+            }
+            section.setByteArray("BlockLight", blockLight);
+            section.setByteArray("SkyLight", skyLight);
+            sections.add(section);
+        }
+        level.setList("Sections", sections);
+
+        final byte[] biomes = new byte[256];
+        random.nextBytes(biomes);
+        level.setByteArray("Biomes", biomes);
+        level.setList("Entities", new ArrayList<>(0));
+        level.setList("TileEntities", new ArrayList<>(0));
+        return level;
+    }
+
+    /**
+     * World without server and chunk io, chunks don't trigger population after load.
+     */
+    private static class TestWorld extends WorldImpl
+    {
+        private final ChunkManagerImpl manager;
+
+        private TestWorld(final boolean vanillaCompatible)
+        {
+            super(null, new NoopChunkIOService(), "test", null, Dimension.OVERWORLD, WorldType.NORMAL, null);
+            this.vanillaCompatible = vanillaCompatible;
+            this.manager = new ChunkManagerImpl(null, this, null, null)
+            {
+                @Override
+                public void onChunkLoaded(final ChunkImpl chunk)
+                {
+                }
+            };
+        }
+
+        @Override
+        public ChunkManagerImpl getChunkManager()
+        {
+            return this.manager;
+        }
+    }
+
+    private static class NoopChunkIOService implements ChunkIOService
+    {
+        @Override
+        public void start(final WorldImpl world)
+        {
+        }
+
+        @Override
+        public ChunkIODurability getDurability()
+        {
+            return ChunkIODurability.OS_MANAGED;
+        }
+
+        @Override
+        public void setDurability(final ChunkIODurability durability)
+        {
+        }
+
+        @Override
+        public <OUT, T extends Request<OUT>> T queue(final T request, final Consumer<Request<OUT>> callback)
+        {
+            throw new UnsupportedOperationException("Test world don't have chunk io.");
+        }
+
+        @Override
+        public void await(final IntConsumer rest, final int timer)
+        {
+        }
+
+        @Override
+        public File getWorldDataFolder()
+        {
+            return null;
+        }
+
+        @Override
+        public void close(final IntConsumer rest)
+        {
+        }
+    }
+}
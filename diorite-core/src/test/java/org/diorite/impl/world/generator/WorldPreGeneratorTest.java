@@ -0,0 +1,341 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world.generator;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import org.diorite.impl.world.WorldImpl;
+import org.diorite.impl.world.chunk.ChunkImpl;
+import org.diorite.impl.world.chunk.ChunkManagerImpl;
+import org.diorite.impl.world.chunk.ChunkManagerImpl.ChunkLock;
+import org.diorite.impl.world.chunk.ChunkPartImpl;
+import org.diorite.impl.world.io.ChunkIODurability;
+import org.diorite.impl.world.io.ChunkIOService;
+import org.diorite.impl.world.io.requests.ChunkSaveRequest;
+import org.diorite.impl.world.io.requests.Request;
+import org.diorite.utils.math.endian.BigEndianUtils;
+import org.diorite.world.Dimension;
+import org.diorite.world.WorldType;
+import org.diorite.world.chunk.Chunk;
+
+import junit.framework.TestCase;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+@SuppressWarnings("MagicNumber")
+public class WorldPreGeneratorTest extends TestCase
+{
+    private static final int CENTER_X      = 10;
+    private static final int CENTER_Z      = - 7;
+    private static final int RADIUS        = 4;
+    private static final int MAX_IN_FLIGHT = 5;
+
+    @org.junit.Test
+    public void testSpiral() throws Exception
+    {
+        final int radius = 60;
+        final LongSet seen = new LongOpenHashSet((int) WorldPreGeneratorImpl.ringEnd(radius));
+        for (int x = - radius; x <= radius; x++)
+        {
+            for (int z = - radius; z <= radius; z++)
+            {
+                final long index = WorldPreGeneratorImpl.spiralIndex(x, z);
+                final int ring = Math.max(Math.abs(x), Math.abs(z));
+                assertTrue("Index must be unique! (" + x + ", " + z + ")", seen.add(index));
+                assertTrue("Index must be inside its ring! (" + x + ", " + z + ")", (index < WorldPreGeneratorImpl.ringEnd(ring)) && ((ring == 0) || (index >= WorldPreGeneratorImpl.ringEnd(ring - 1))));
+                assertEquals("Ring of index must be ring of position! (" + x + ", " + z + ")", ring, WorldPreGeneratorImpl.ringOf(index));
+                assertEquals("Position of index must be this same! (" + x + ", " + z + ")", BigEndianUtils.toLong(x, z), WorldPreGeneratorImpl.spiralPos(index));
+            }
+        }
+        assertEquals("Spiral must cover whole square!", WorldPreGeneratorImpl.ringEnd(radius), seen.size());
+
+        for (final int ring : new int[]{1, 2, 1000, 46340, 46341, 1_000_000, 100_000_000})
+        {
+            final long first = WorldPreGeneratorImpl.ringEnd(ring - 1);
+            final long last = WorldPreGeneratorImpl.ringEnd(ring) - 1;
+            assertEquals("First index must be in ring " + ring + "!", ring, WorldPreGeneratorImpl.ringOf(first));
+            assertEquals("Last index must be in ring " + ring + "!", ring, WorldPreGeneratorImpl.ringOf(last));
+            assertEquals("Index before ring " + ring + " must be in previous ring!", ring - 1, WorldPreGeneratorImpl.ringOf(first - 1));
+            for (final long pos : new long[]{BigEndianUtils.toLong(- ring, - ring), BigEndianUtils.toLong(ring, - ring), BigEndianUtils.toLong(- ring, ring), BigEndianUtils.toLong(ring, ring), BigEndianUtils.toLong(0, ring), BigEndianUtils.toLong(ring, 0), BigEndianUtils.toLong(- ring, 1 - ring), BigEndianUtils.toLong(ring, ring - 1)})
+            {
+                final long index = WorldPreGeneratorImpl.spiralIndex(BigEndianUtils.getIntA(pos), BigEndianUtils.getIntB(pos));
+                assertTrue("Index must be inside ring " + ring + "!", (index >= first) && (index <= last));
+                assertEquals("Position of index must be this same!", pos, WorldPreGeneratorImpl.spiralPos(index));
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testPreGenerate() throws Exception
+    {
+        final TestWorld world = new TestWorld();
+        final TestChunkManager manager = world.manager;
+        final long alreadyPopulated = BigEndianUtils.toLong(CENTER_X + 1, CENTER_Z + 1);
+        final long cancelled = BigEndianUtils.toLong(CENTER_X - 2, CENTER_Z + 3);
+        manager.alreadyPopulated.add(alreadyPopulated);
+        manager.cancelled.add(cancelled);
+
+        final int[] steps = {0};
+        final WorldPreGeneratorImpl preGenerator = new WorldPreGeneratorImpl(null, world, CENTER_X, CENTER_Z, RADIUS)
+        {
+            @Override
+            boolean isThrottled()
+            {
+                return (steps[0] % 7) == 6;
+            }
+        };
+        preGenerator.setMaxInFlight(MAX_IN_FLIGHT);
+        preGenerator.attach();
+
+        final LongSet held = new LongOpenHashSet();
+        long throttled = 0;
+        while (! preGenerator.isDone())
+        {
+            assertTrue("Pre-generator must finish!", steps[0]++ < 10_000);
+            final long requested = preGenerator.getRequestedChunks();
+            final long populated = preGenerator.getPopulatedChunks();
+            final boolean throttledStep = preGenerator.isThrottled();
+            if ((steps[0] % 5) == 4)
+            {
+                final int queued = manager.getQueuedToPopulate();
+                manager.populateQueued(System.nanoTime());
+                assertEquals("Chunks can't be populated after deadline!", queued, manager.getQueuedToPopulate());
+            }
+            else
+            {
+                manager.populateQueued(Long.MAX_VALUE);
+            }
+            preGenerator.step();
+            if (throttledStep)
+            {
+                throttled++;
+                assertEquals("Throttled step can't request chunks!", requested, preGenerator.getRequestedChunks());
+                assertEquals("Throttled step can't populate chunks!", populated, preGenerator.getPopulatedChunks());
+            }
+            assertTrue("Too many chunks are queued at once!", manager.pending.size() <= MAX_IN_FLIGHT);
+            if (preGenerator.isDone())
+            {
+                break;
+            }
+
+            // chunks unloaded in this step must not be needed by population of any chunk around them.
+            for (final long key : held.toLongArray())
+            {
+                final int x = BigEndianUtils.getIntA(key);
+                final int z = BigEndianUtils.getIntB(key);
+                if (manager.isChunkInUse(x, z))
+                {
+                    continue;
+                }
+                held.remove(key);
+                assertTrue("Chunk must be saved before unload!", world.service.saved.contains(key));
+                for (int ax = x - 1; ax <= (x + 1); ax++)
+                {
+                    for (int az = z - 1; az <= (z + 1); az++)
+                    {
+                        if ((Math.abs(ax - CENTER_X) <= RADIUS) && (Math.abs(az - CENTER_Z) <= RADIUS))
+                        {
+                            assertTrue("Chunk " + x + ", " + z + " was unloaded before " + ax + ", " + az + " was populated!", manager.getChunk(ax, az).isPopulated());
+                        }
+                    }
+                }
+            }
+            for (final long key : manager.requested)
+            {
+                if (manager.isChunkInUse(BigEndianUtils.getIntA(key), BigEndianUtils.getIntB(key)))
+                {
+                    held.add(key);
+                }
+            }
+            // finish some of queued chunks, in reverse order.
+            for (int i = 0; (i < 3) && ! manager.pending.isEmpty(); i++)
+            {
+                manager.pending.pollLast().run();
+            }
+        }
+
+        assertEquals("Throttled steps must be counted!", throttled, preGenerator.getThrottledSteps());
+        assertEquals("All chunks in radius must be populated!", WorldPreGeneratorImpl.ringEnd(RADIUS), preGenerator.getPopulatedChunks());
+        assertEquals("All chunks in radius and margin ring must be requested!", WorldPreGeneratorImpl.ringEnd(RADIUS + 1), manager.requested.size());
+        assertEquals("All requested chunks must be unloaded!", WorldPreGeneratorImpl.ringEnd(RADIUS + 1), preGenerator.getUnloadedChunks());
+        final LongSet toPopulate = new LongOpenHashSet((int) WorldPreGeneratorImpl.ringEnd(RADIUS));
+        for (int i = 0; i < WorldPreGeneratorImpl.ringEnd(RADIUS); i++)
+        {
+            final long pos = WorldPreGeneratorImpl.spiralPos(i);
+            toPopulate.add(BigEndianUtils.toLong(CENTER_X + BigEndianUtils.getIntA(pos), CENTER_Z + BigEndianUtils.getIntB(pos)));
+        }
+        toPopulate.remove(alreadyPopulated);
+        assertEquals("All chunks in radius must be populated by chunk manager!", toPopulate, new LongOpenHashSet(manager.populated));
+        long populatedTwice = 0;
+        for (int i = 0; i < manager.populated.size(); i++)
+        {
+            if (manager.populated.indexOf(manager.populated.getLong(i)) != i)
+            {
+                populatedTwice++;
+                assertEquals("Only chunk with cancelled population can be populated again!", cancelled, manager.populated.getLong(i));
+            }
+        }
+        assertEquals("Chunks must be populated once!", toPopulate.size(), manager.populated.size() - populatedTwice);
+        for (final long key : manager.requested)
+        {
+            final int x = BigEndianUtils.getIntA(key);
+            final int z = BigEndianUtils.getIntB(key);
+            assertFalse("Chunk can't be in use after pre-generation!", manager.isChunkInUse(x, z));
+            final boolean inRadius = (Math.abs(x - CENTER_X) <= RADIUS) && (Math.abs(z - CENTER_Z) <= RADIUS);
+            assertEquals("Only chunks in radius can be populated!", inRadius && (key != cancelled), manager.getChunk(x, z).isPopulated());
+        }
+        assertTrue("Neighbours of chunk with cancelled population can't be unloaded before end!", held.contains(BigEndianUtils.toLong(CENTER_X - 1, CENTER_Z + 2)));
+    }
+
+    private static class TestChunkManager extends ChunkManagerImpl
+    {
+        private final Deque<Runnable> pending          = new ArrayDeque<>(MAX_IN_FLIGHT);
+        private final LongList        requested        = new LongArrayList(100);
+        private final LongList        populated        = new LongArrayList(100);
+        private final LongSet         alreadyPopulated = new LongOpenHashSet();
+        private final LongSet         cancelled        = new LongOpenHashSet();
+
+        private TestChunkManager(final WorldImpl world, final ChunkIOService service)
+        {
+            super(null, world, service, null);
+        }
+
+        @Override
+        public void loadChunkAsync(final int x, final int z, final boolean generate, final BiConsumer<ChunkImpl, Boolean> onEnd)
+        {
+            final long key = BigEndianUtils.toLong(x, z);
+            assertTrue("Pre-generator must generate missing chunks!", generate);
+            assertFalse("Chunk can't be requested twice!", this.requested.contains(key));
+            this.requested.add(key);
+            this.pending.add(() -> {
+                final ChunkImpl chunk = this.getChunk(x, z);
+                chunk.setChunkParts(new ChunkPartImpl[Chunk.CHUNK_PARTS]);
+                chunk.setPopulated(this.alreadyPopulated.contains(key));
+                this.onChunkLoaded(chunk);
+                onEnd.accept(chunk, true);
+            });
+        }
+
+        @Override
+        public void populateChunk(final int x, final int z, final boolean force)
+        {
+            for (int ax = x - 1; ax <= (x + 1); ax++)
+            {
+                for (int az = z - 1; az <= (z + 1); az++)
+                {
+                    assertTrue("Chunks around populated chunk must be loaded!", this.getChunk(ax, az).isLoaded() && this.isChunkInUse(ax, az));
+                }
+            }
+            final long key = BigEndianUtils.toLong(x, z);
+            this.populated.add(key);
+            final ChunkImpl chunk = this.getChunk(x, z);
+            if (! chunk.isPopulated() && ! this.cancelled.contains(key))
+            {
+                chunk.setPopulated(true);
+            }
+        }
+    }
+
+    private static class TestWorld extends WorldImpl
+    {
+        private final SaveRecordingService service;
+        private final TestChunkManager     manager;
+
+        private TestWorld()
+        {
+            super(null, new SaveRecordingService(), "test", null, Dimension.OVERWORLD, WorldType.NORMAL, null);
+            this.service = new SaveRecordingService();
+            this.manager = new TestChunkManager(this, this.service);
+        }
+
+        @Override
+        public ChunkManagerImpl getChunkManager()
+        {
+            return this.manager;
+        }
+
+        @Override
+        public ChunkLock createLock(final String desc)
+        {
+            return new ChunkLock(this.manager, this.getName() + ": " + desc);
+        }
+    }
+
+    /**
+     * Records saved chunks, but never finishes save requests.
+     */
+    private static class SaveRecordingService implements ChunkIOService
+    {
+        private final LongSet saved = new LongOpenHashSet();
+
+        @Override
+        public void start(final WorldImpl world)
+        {
+        }
+
+        @Override
+        public ChunkIODurability getDurability()
+        {
+            return ChunkIODurability.OS_MANAGED;
+        }
+
+        @Override
+        public void setDurability(final ChunkIODurability durability)
+        {
+        }
+
+        @Override
+        public <OUT, T extends Request<OUT>> T queue(final T request, final Consumer<Request<OUT>> callback)
+        {
+            assertTrue("Only save requests are expected!", request instanceof ChunkSaveRequest);
+            final ChunkImpl chunk = ((ChunkSaveRequest) request).getData();
+            this.saved.add(BigEndianUtils.toLong(chunk.getX(), chunk.getZ()));
+            return request;
+        }
+
+        @Override
+        public void await(final IntConsumer rest, final int timer)
+        {
+        }
+
+        @Override
+        public File getWorldDataFolder()
+        {
+            return null;
+        }
+
+        @Override
+        public void close(final IntConsumer rest)
+        {
+        }
+    }
+}
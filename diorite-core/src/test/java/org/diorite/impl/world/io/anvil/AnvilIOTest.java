@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world.io.anvil;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.diorite.impl.world.io.ChunkIODurability;
+import org.diorite.impl.world.io.ChunkRegion;
+import org.diorite.nbt.NbtTagCompound;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("MagicNumber")
+public class AnvilIOTest extends TestCase
+{
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        this.dir = Files.createTempDirectory("diorite-world").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        final File regionDir = new File(this.dir, "region");
+        final File[] files = regionDir.listFiles();
+        if (files != null)
+        {
+            for (final File file : files)
+            {
+                file.delete();
+            }
+        }
+        regionDir.delete();
+        this.dir.delete();
+    }
+
+    private File getRegionFile(final int x, final int z)
+    {
+        return new File(new File(this.dir, "region"), "r." + x + "." + z + AnvilIO.DEFAULT_EXTENSION);
+    }
+
+    @org.junit.Test
+    public void testHeaderWrittenAfterPayload() throws Exception
+    {
+        final AnvilIO io = new AnvilIO(this.dir);
+        final ChunkRegion region = io.getChunkRegion(0, 0);
+        final File file = this.getRegionFile(0, 0);
+        final NbtTagCompound oldTag = MappedAnvilRegionTest.createChunkTag(1, 5000);
+        final NbtTagCompound newTag = MappedAnvilRegionTest.createChunkTag(2, 5000);
+
+        region.saveChunk(0, 0, oldTag);
+        region.flush(true);
+        final long length = file.length();
+
+        region.saveChunk(0, 0, newTag);
+        assertTrue("Payload must be written before header is updated!", file.length() > length);
+        assertEquals("Header must point to old, complete chunk until flush!", oldTag, MappedAnvilRegionTest.readChunkTag(file, 0, 0));
+        region.flush(true);
+        assertEquals("Header must point to new chunk after flush!", newTag, MappedAnvilRegionTest.readChunkTag(file, 0, 0));
+        io.close();
+    }
+
+    @org.junit.Test
+    public void testDurabilityModes() throws Exception
+    {
+        this.checkDurability(ChunkIODurability.PER_BATCH, true, true);
+        this.checkDurability(ChunkIODurability.OS_MANAGED, true, true);
+        this.checkDurability(ChunkIODurability.PER_AUTOSAVE, false, true);
+
+        // deleted chunk is flushed right away.
+        final AnvilIO io = new AnvilIO(this.dir);
+        io.setDurability(ChunkIODurability.PER_CHUNK);
+        final File file = this.getRegionFile(0, 0);
+        io.getChunkRegion(0, 0).saveChunk(5, 5, MappedAnvilRegionTest.createChunkTag(1, 100));
+        io.flush();
+        assertTrue("[PER_CHUNK] Chunk must be saved!", MappedAnvilRegionTest.readLocation(file, 5, 5) != 0);
+        assertTrue("[PER_CHUNK] Chunk must be deleted!", io.deleteChunk(5, 5));
+        assertEquals("[PER_CHUNK] Deleted chunk must be removed from header right away!", 0, MappedAnvilRegionTest.readLocation(file, 5, 5));
+        io.close();
+    }
+
+    private void checkDurability(final ChunkIODurability durability, final boolean afterBatch, final boolean afterFlush) throws Exception
+    {
+        final AnvilIO io = new AnvilIO(this.dir);
+        io.setDurability(durability);
+        final File file = this.getRegionFile(0, 0);
+        final int x = durability.ordinal();
+        final NbtTagCompound tag = MappedAnvilRegionTest.createChunkTag(x, 100);
+
+        io.getChunkRegion(0, 0).saveChunk(x, 0, tag);
+        assertEquals("[" + durability + "] Header can't be updated before batch end!", 0, MappedAnvilRegionTest.readLocation(file, x, 0));
+        io.batchFinished();
+        assertEquals("[" + durability + "] Header update after batch end.", afterBatch, MappedAnvilRegionTest.readLocation(file, x, 0) != 0);
+        io.flush();
+        assertEquals("[" + durability + "] Header update after world save.", afterFlush, MappedAnvilRegionTest.readLocation(file, x, 0) != 0);
+        io.close();
+        assertEquals("[" + durability + "] Chunk must be this same!", tag, MappedAnvilRegionTest.readChunkTag(file, x, 0));
+    }
+
+    @org.junit.Test
+    public void testLeastRecentlyUsedRegionEvicted() throws Exception
+    {
+        final AnvilIO io = new AnvilIO(this.dir, AnvilIO.DEFAULT_EXTENSION, 2);
+        io.setDurability(ChunkIODurability.PER_AUTOSAVE);
+        final ChunkRegion first = io.getChunkRegion(0, 0);
+        final ChunkRegion second = io.getChunkRegion(32, 0);
+        first.saveChunk(0, 0, MappedAnvilRegionTest.createChunkTag(1, 100));
+        second.saveChunk(0, 0, MappedAnvilRegionTest.createChunkTag(2, 100));
+
+        assertTrue("Cached region must be reused!", io.getChunkRegion(0, 0) == first); // second region is now least recently used.
+        final ChunkRegion third = io.getChunkRegion(64, 0);
+        assertTrue("Recently used region can't be evicted!", io.getChunkRegion(0, 0) == first);
+        assertTrue("Recently created region can't be evicted!", io.getChunkRegion(64, 0) == third);
+        assertTrue("Evicted region must be closed and flushed!", MappedAnvilRegionTest.readLocation(this.getRegionFile(1, 0), 0, 0) != 0);
+        assertEquals("Other regions can't be flushed on eviction!", 0, MappedAnvilRegionTest.readLocation(this.getRegionFile(0, 0), 0, 0));
+        assertTrue("Evicted region must be opened again!", io.getChunkRegion(32, 0) != second);
+        io.close();
+    }
+}
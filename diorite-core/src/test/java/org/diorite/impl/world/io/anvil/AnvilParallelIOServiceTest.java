@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world.io.anvil;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.diorite.impl.world.WorldImpl;
+import org.diorite.impl.world.io.ChunkIO;
+import org.diorite.impl.world.io.ChunkIODurability;
+import org.diorite.impl.world.io.anvil.parallel.AnvilParallelIOService;
+import org.diorite.impl.world.io.requests.Request;
+import org.diorite.nbt.NbtTagCompound;
+import org.diorite.world.Dimension;
+import org.diorite.world.WorldType;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("MagicNumber")
+public class AnvilParallelIOServiceTest extends TestCase
+{
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        this.dir = Files.createTempDirectory("diorite-world").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        final File regionDir = new File(this.dir, "region");
+        final File[] files = regionDir.listFiles();
+        if (files != null)
+        {
+            for (final File file : files)
+            {
+                file.delete();
+            }
+        }
+        regionDir.delete();
+        this.dir.delete();
+    }
+
+    private AnvilParallelIOService startService()
+    {
+        final AnvilParallelIOService service = new AnvilParallelIOService(this.dir, "test", AnvilIO.DEFAULT_EXTENSION, AnvilIO.DEFAULT_MAX_CACHE_SIZE, 3);
+        service.setDurability(ChunkIODurability.PER_BATCH);
+        new WorldImpl(null, service, "test", null, Dimension.OVERWORLD, WorldType.NORMAL, null); // starts service.
+        return service;
+    }
+
+    @org.junit.Test
+    public void testCloseWritesAllChunks() throws Exception
+    {
+        for (int attempt = 0; attempt < 5; attempt++)
+        {
+            final AnvilParallelIOService service = this.startService();
+            final List<SaveTagRequest> requests = new ArrayList<>(200);
+            for (int i = 0; i < 200; i++)
+            {
+                final SaveTagRequest request = new SaveTagRequest((i % 5) * 32, (i / 5) - 20, MappedAnvilRegionTest.createChunkTag((attempt * 1000) + i, 2000));
+                requests.add(service.queue(request));
+            }
+            service.close(null);
+            for (final SaveTagRequest request : requests)
+            {
+                final File file = new File(new File(this.dir, "region"), "r." + (request.x >> 5) + "." + (request.z >> 5) + AnvilIO.DEFAULT_EXTENSION);
+                assertEquals("Chunk queued before close must be saved!", request.tag, MappedAnvilRegionTest.readChunkTag(file, request.x & 31, request.z & 31));
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testFailedRequestIsFinished() throws Exception
+    {
+        final AnvilParallelIOService service = this.startService();
+        final AtomicInteger callbacks = new AtomicInteger();
+        final Request<Void> failing = new Request<Void>(5)
+        {
+            @Override
+            public void run(final ChunkIO io)
+            {
+                throw new IllegalStateException("Expected exception of test request.");
+            }
+
+            @Override
+            public int getX()
+            {
+                return 0;
+            }
+
+            @Override
+            public int getZ()
+            {
+                return 0;
+            }
+        };
+        failing.addOnEnd(r -> callbacks.incrementAndGet());
+        service.queue(failing);
+        assertNull("Failed request must be finished without result!", failing.await());
+        assertTrue("Failed request must keep cause of failure!", failing.getError() instanceof IllegalStateException);
+
+        final SaveTagRequest next = service.queue(new SaveTagRequest(0, 0, MappedAnvilRegionTest.createChunkTag(1, 100)));
+        service.queueFlush(1).await();
+        // await only waits for result, callbacks are invoked after it, so they are checked after rest of queue is done.
+        assertEquals("Callbacks of failed request must be invoked!", 1, callbacks.get());
+        assertTrue("Requests after failed one must be processed!", next.isFinished() && (next.getError() == null));
+        service.close(null);
+    }
+
+    private static class SaveTagRequest extends Request<Void>
+    {
+        private final int            x;
+        private final int            z;
+        private final NbtTagCompound tag;
+
+        private SaveTagRequest(final int x, final int z, final NbtTagCompound tag)
+        {
+            super(10);
+            this.x = x;
+            this.z = z;
+            this.tag = tag;
+        }
+
+        @Override
+        public void run(final ChunkIO io)
+        {
+            ((AnvilIO) io).getChunkRegion(this.x, this.z).saveChunk(this.x & 31, this.z & 31, this.tag);
+            this.setResult(null);
+        }
+
+        @Override
+        public int getX()
+        {
+            return this.x;
+        }
+
+        @Override
+        public int getZ()
+        {
+            return this.z;
+        }
+    }
+}
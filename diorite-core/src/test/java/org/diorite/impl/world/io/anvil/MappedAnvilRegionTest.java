@@ -0,0 +1,242 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.impl.world.io.anvil;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.diorite.nbt.NbtInputStream;
+import org.diorite.nbt.NbtLimiter;
+import org.diorite.nbt.NbtTagCompound;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("MagicNumber")
+public class MappedAnvilRegionTest extends TestCase
+{
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        this.dir = Files.createTempDirectory("diorite-region").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        final File[] files = this.dir.listFiles();
+        if (files != null)
+        {
+            for (final File file : files)
+            {
+                file.delete();
+            }
+        }
+        this.dir.delete();
+    }
+
+    @org.junit.Test
+    public void testWriteReopenRead() throws Exception
+    {
+        final File file = new File(this.dir, "r.0.0.mca");
+        final NbtTagCompound a = createChunkTag(1, 100);
+        final NbtTagCompound b = createChunkTag(2, 5000);
+        final NbtTagCompound c = createChunkTag(3, 20000);
+
+        MappedAnvilRegion region = new MappedAnvilRegion(file, 0, 0);
+        assertTrue("Chunk must be saved!", region.saveChunk(0, 0, a));
+        assertTrue("Chunk must be saved!", region.saveChunk(31, 0, b));
+        assertTrue("Chunk must be saved!", region.saveChunk(5, 31, c));
+        region.close();
+
+        assertTrue("Region file must be made of full sectors!", (file.length() % AnvilRegion.SECTOR_BYTES) == 0);
+        region = new MappedAnvilRegion(file, 0, 0);
+        assertTrue("Saved chunk must exist after reopen!", region.hasChunk(0, 0) && region.hasChunk(31, 0) && region.hasChunk(5, 31));
+        assertTrue("Not saved chunk can't exist!", ! region.hasChunk(1, 1));
+        region.close();
+
+        assertEquals("Chunk read after reopen must be this same!", a, readChunkTag(file, 0, 0));
+        assertEquals("Chunk read after reopen must be this same!", b, readChunkTag(file, 31, 0));
+        assertEquals("Chunk read after reopen must be this same!", c, readChunkTag(file, 5, 31));
+    }
+
+    @org.junit.Test
+    public void testOverwriteWithLargerPayload() throws Exception
+    {
+        final File file = new File(this.dir, "r.0.0.mca");
+        final NbtTagCompound small = createChunkTag(1, 100);
+        final NbtTagCompound other = createChunkTag(2, 100);
+        final NbtTagCompound large = createChunkTag(3, 3 * AnvilRegion.SECTOR_BYTES);
+
+        final MappedAnvilRegion region = new MappedAnvilRegion(file, 0, 0);
+        region.saveChunk(0, 0, small);
+        region.saveChunk(1, 0, other); // placed right after first chunk, so larger chunk can't grow in place.
+        region.flush(true);
+        final int oldLocation = readLocation(file, 0, 0);
+
+        region.saveChunk(0, 0, large);
+        region.close();
+
+        final int newLocation = readLocation(file, 0, 0);
+        assertTrue("Larger chunk must use more sectors!", (newLocation & 0xFF) > (oldLocation & 0xFF));
+        assertTrue("Larger chunk can't overlap with other chunk!", (newLocation >> 8) != (oldLocation >> 8));
+        assertEquals("Overwritten chunk must be this same!", large, readChunkTag(file, 0, 0));
+        assertEquals("Other chunk can't be changed!", other, readChunkTag(file, 1, 0));
+    }
+
+    @org.junit.Test
+    public void testDelete() throws Exception
+    {
+        final File file = new File(this.dir, "r.0.0.mca");
+        final NbtTagCompound other = createChunkTag(2, 100);
+
+        MappedAnvilRegion region = new MappedAnvilRegion(file, 0, 0);
+        region.saveChunk(3, 3, createChunkTag(1, 100));
+        region.saveChunk(4, 3, other);
+        region.flush(true);
+        assertTrue("Existing chunk must be deleted!", region.deleteChunk(3, 3));
+        assertTrue("Deleted chunk can't exist!", ! region.hasChunk(3, 3));
+        assertTrue("Missing chunk can't be deleted!", ! region.deleteChunk(3, 3));
+        assertTrue("Deleted chunk must stay in header until flush!", readLocation(file, 3, 3) != 0);
+        region.close();
+
+        assertEquals("Deleted chunk must be removed from header!", 0, readLocation(file, 3, 3));
+        region = new MappedAnvilRegion(file, 0, 0);
+        assertTrue("Deleted chunk can't exist after reopen!", ! region.hasChunk(3, 3));
+        region.close();
+        assertEquals("Other chunk can't be changed!", other, readChunkTag(file, 4, 3));
+    }
+
+    @org.junit.Test
+    public void testSectorsReusedAfterFlush() throws Exception
+    {
+        final File file = new File(this.dir, "r.0.0.mca");
+        final MappedAnvilRegion region = new MappedAnvilRegion(file, 0, 0);
+        region.saveChunk(0, 0, createChunkTag(1, AnvilRegion.SECTOR_BYTES));
+        region.flush(true);
+        final int first = readLocation(file, 0, 0);
+        assertEquals("First chunk must be placed right after header!", 2, first >> 8);
+
+        // old sectors are still used by header on disk, so they can't be reused before flush.
+        region.saveChunk(0, 0, createChunkTag(2, AnvilRegion.SECTOR_BYTES));
+        region.saveChunk(1, 0, createChunkTag(3, AnvilRegion.SECTOR_BYTES));
+        assertEquals("Header can't change before flush!", first, readLocation(file, 0, 0));
+        region.flush(true);
+        final int second = readLocation(file, 0, 0);
+        final int other = readLocation(file, 1, 0);
+        assertTrue("Sectors can't be reused before flush!", ((second >> 8) != (first >> 8)) && ((other >> 8) != (first >> 8)));
+        final long length = file.length();
+
+        final NbtTagCompound reused = createChunkTag(4, AnvilRegion.SECTOR_BYTES);
+        region.saveChunk(2, 0, reused);
+        region.close();
+        assertEquals("Sectors freed by flush must be reused!", first >> 8, readLocation(file, 2, 0) >> 8);
+        assertEquals("File can't grow when free sectors are reused!", length, file.length());
+        assertEquals("Chunk stored in reused sectors must be this same!", reused, readChunkTag(file, 2, 0));
+    }
+
+    @org.junit.Test
+    public void testReadOldRegion() throws Exception
+    {
+        final File file = new File(this.dir, "r.0.0.mca");
+        final NbtTagCompound a = createChunkTag(1, 100);
+        final NbtTagCompound b = createChunkTag(2, 3 * AnvilRegion.SECTOR_BYTES);
+        final NbtTagCompound c = createChunkTag(3, 200);
+
+        final AnvilRegion old = new AnvilRegion(file, 0, 0);
+        old.saveChunk(0, 0, a);
+        old.saveChunk(7, 9, b);
+        old.close();
+
+        MappedAnvilRegion region = new MappedAnvilRegion(file, 0, 0);
+        assertTrue("Chunks saved by old region must exist!", region.hasChunk(0, 0) && region.hasChunk(7, 9));
+        region.saveChunk(1, 1, c);
+        region.close();
+
+        assertEquals("Chunk saved by old region must be this same!", a, readChunkTag(file, 0, 0));
+        assertEquals("Chunk saved by old region must be this same!", b, readChunkTag(file, 7, 9));
+        assertEquals("Chunk saved after old region must be this same!", c, readChunkTag(file, 1, 1));
+        final int locationA = readLocation(file, 0, 0);
+        final int locationB = readLocation(file, 7, 9);
+        final int locationC = readLocation(file, 1, 1);
+        assertTrue("New chunk can't overlap old chunks!", ((locationC >> 8) >= ((locationA >> 8) + (locationA & 0xFF))) && ((locationC >> 8) >= ((locationB >> 8) + (locationB & 0xFF))));
+
+        final AnvilRegion reopened = new AnvilRegion(file, 0, 0);
+        assertTrue("Old region must read file written by mapped region!", reopened.hasChunk(0, 0) && reopened.hasChunk(7, 9) && reopened.hasChunk(1, 1));
+        reopened.close();
+    }
+
+    static NbtTagCompound createChunkTag(final long seed, final int payload)
+    {
+        final byte[] bytes = new byte[payload];
+        new Random(seed).nextBytes(bytes); // random data can't be compressed, so payload size decides about number of sectors.
+        final NbtTagCompound level = new NbtTagCompound("Level");
+        level.setLong("Seed", seed);
+        level.setByteArray("Payload", bytes);
+        final NbtTagCompound root = new NbtTagCompound("");
+        root.addTag(level);
+        return root;
+    }
+
+    static int readLocation(final File file, final int x, final int z) throws IOException
+    {
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        {
+            raf.seek((x + (z << 5)) << 2);
+            return raf.readInt();
+        }
+    }
+
+    /**
+     * Read chunk directly from region file, without using any region implementation.
+     */
+    static NbtTagCompound readChunkTag(final File file, final int x, final int z) throws IOException
+    {
+        final int location = readLocation(file, x, z);
+        assertTrue("Chunk must exist in header!", location != 0);
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        {
+            raf.seek((long) (location >> 8) * AnvilRegion.SECTOR_BYTES);
+            final int length = raf.readInt();
+            assertTrue("Chunk length must fit in its sectors!", (length > 0) && ((length + 4) <= ((location & 0xFF) * AnvilRegion.SECTOR_BYTES)));
+            final byte version = raf.readByte();
+            final byte[] data = new byte[length - 1];
+            raf.readFully(data);
+            final InputStream in = (version == AnvilRegion.VERSION_GZIP) ? new GZIPInputStream(new ByteArrayInputStream(data)) : new InflaterInputStream(new ByteArrayInputStream(data));
+            try (final NbtInputStream stream = new NbtInputStream(in))
+            {
+                return (NbtTagCompound) stream.readTag(NbtLimiter.getUnlimited());
+            }
+        }
+    }
+}
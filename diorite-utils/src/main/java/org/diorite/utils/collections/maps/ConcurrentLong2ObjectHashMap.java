@@ -0,0 +1,571 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.utils.collections.maps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Concurrent map with primitive long keys, split to lock-striped segments of open-addressing hash tables. <br>
+ * Keys are never boxed, so lookups don't allocate anything. Lookups don't lock at all, they use optimistic reads and
+ * only take read lock of single segment if that segment was modified during lookup. Modifications lock single segment.
+ * <br>
+ * Iteration methods work on snapshot of each segment, so given actions are invoked without holding any lock and might not see changes made
+ * during iteration.
+ *
+ * @param <V> type of values.
+ */
+public class ConcurrentLong2ObjectHashMap<V>
+{
+    /**
+     * Default amount of segments as power of two.
+     */
+    public static final int DEFAULT_SEGMENT_BITS = 5;
+
+    private final int          segmentShift;
+    private final Segment<V>[] segments;
+
+    /**
+     * Construct new map with default amount of segments.
+     *
+     * @param expected expected amount of elements.
+     */
+    public ConcurrentLong2ObjectHashMap(final int expected)
+    {
+        this(expected, DEFAULT_SEGMENT_BITS);
+    }
+
+    /**
+     * Construct new map.
+     *
+     * @param expected    expected amount of elements.
+     * @param segmentBits amount of segments as power of two, so map will use 2^segmentBits segments.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLong2ObjectHashMap(final int expected, final int segmentBits)
+    {
+        if ((segmentBits < 0) || (segmentBits > 16))
+        {
+            throw new IllegalArgumentException("Segment bits must be between 0 and 16: " + segmentBits);
+        }
+        final int size = 1 << segmentBits;
+        this.segmentShift = 64 - segmentBits;
+        this.segments = new Segment[size];
+        final int perSegment = Math.max(expected / size, 4);
+        for (int i = 0; i < size; i++)
+        {
+            this.segments[i] = new Segment<>(perSegment);
+        }
+    }
+
+    private Segment<V> getSegment(final long hash)
+    {
+        // high bits are used, as low bits of same hash are used by segment itself.
+        return (this.segmentShift == 64) ? this.segments[0] : this.segments[(int) (hash >>> this.segmentShift)];
+    }
+
+    /**
+     * Returns value for given key.
+     *
+     * @param key key of value.
+     *
+     * @return value for given key, or null if there is no value for that key.
+     */
+    public V get(final long key)
+    {
+        final long hash = HashCommon.mix(key);
+        return this.getSegment(hash).get(key, (int) hash);
+    }
+
+    /**
+     * Returns true if map contains given key.
+     *
+     * @param key key to check.
+     *
+     * @return true if map contains given key.
+     */
+    public boolean containsKey(final long key)
+    {
+        return this.get(key) != null;
+    }
+
+    /**
+     * Put value to map.
+     *
+     * @param key   key of value.
+     * @param value value to put, can't be null.
+     *
+     * @return previous value for given key, or null.
+     */
+    public V put(final long key, final V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("Value can't be null.");
+        }
+        final long hash = HashCommon.mix(key);
+        final Segment<V> segment = this.getSegment(hash);
+        final long stamp = segment.lock.writeLock();
+        try
+        {
+            return segment.put(key, (int) hash, value, false);
+        } finally
+        {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Put value to map only if there is no value for given key yet.
+     *
+     * @param key   key of value.
+     * @param value value to put, can't be null.
+     *
+     * @return current value for given key, or null if given value was added.
+     */
+    public V putIfAbsent(final long key, final V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("Value can't be null.");
+        }
+        final long hash = HashCommon.mix(key);
+        final Segment<V> segment = this.getSegment(hash);
+        final long stamp = segment.lock.writeLock();
+        try
+        {
+            return segment.put(key, (int) hash, value, true);
+        } finally
+        {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns value for given key, if there is no value, new one is created using given function and added to map. <br>
+     * Function is invoked while segment of map is locked, so it should be fast and must not use this map.
+     *
+     * @param key      key of value.
+     * @param function function used to create new value.
+     *
+     * @return current or created value for given key.
+     */
+    public V computeIfAbsent(final long key, final LongFunction<? extends V> function)
+    {
+        final long hash = HashCommon.mix(key);
+        final Segment<V> segment = this.getSegment(hash);
+        V value = segment.get(key, (int) hash);
+        if (value != null)
+        {
+            return value;
+        }
+        final long stamp = segment.lock.writeLock();
+        try
+        {
+            value = segment.find(key, (int) hash);
+            if (value == null)
+            {
+                value = function.apply(key);
+                if (value != null)
+                {
+                    segment.put(key, (int) hash, value, false);
+                }
+            }
+            return value;
+        } finally
+        {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove value for given key.
+     *
+     * @param key key of value.
+     *
+     * @return removed value, or null.
+     */
+    public V remove(final long key)
+    {
+        final long hash = HashCommon.mix(key);
+        final Segment<V> segment = this.getSegment(hash);
+        final long stamp = segment.lock.writeLock();
+        try
+        {
+            return segment.remove(key, (int) hash, null);
+        } finally
+        {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove value for given key, only if it is equal to given value.
+     *
+     * @param key   key of value.
+     * @param value expected value.
+     *
+     * @return true if value was removed.
+     */
+    public boolean remove(final long key, final Object value)
+    {
+        if (value == null)
+        {
+            return false;
+        }
+        final long hash = HashCommon.mix(key);
+        final Segment<V> segment = this.getSegment(hash);
+        final long stamp = segment.lock.writeLock();
+        try
+        {
+            return segment.remove(key, (int) hash, value) != null;
+        } finally
+        {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return amount of elements in map.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (final Segment<V> segment : this.segments)
+        {
+            final long stamp = segment.lock.readLock();
+            try
+            {
+                size += segment.size;
+            } finally
+            {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return true if map is empty.
+     */
+    public boolean isEmpty()
+    {
+        for (final Segment<V> segment : this.segments)
+        {
+            final long stamp = segment.lock.readLock();
+            try
+            {
+                if (segment.size != 0)
+                {
+                    return false;
+                }
+            } finally
+            {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove all elements from map.
+     */
+    public void clear()
+    {
+        for (final Segment<V> segment : this.segments)
+        {
+            final long stamp = segment.lock.writeLock();
+            try
+            {
+                segment.clear();
+            } finally
+            {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * @return snapshot of all values in map.
+     */
+    public Collection<V> values()
+    {
+        final Collection<V> values = new ArrayList<>(this.size());
+        this.forEachValue(values::add);
+        return values;
+    }
+
+    /**
+     * Invoke given action for each value in map, action is invoked for snapshot of each segment, without holding any lock.
+     *
+     * @param action action to invoke.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(final Consumer<? super V> action)
+    {
+        Object[] values = new Object[16];
+        for (final Segment<V> segment : this.segments)
+        {
+            int size = 0;
+            final long stamp = segment.lock.readLock();
+            try
+            {
+                if (segment.size == 0)
+                {
+                    continue;
+                }
+                if (values.length < segment.size)
+                {
+                    values = new Object[segment.size];
+                }
+                for (final Object value : segment.table.values)
+                {
+                    if (value != null)
+                    {
+                        values[size++] = value;
+                    }
+                }
+            } finally
+            {
+                segment.lock.unlockRead(stamp);
+            }
+            for (int i = 0; i < size; i++)
+            {
+                action.accept((V) values[i]);
+                values[i] = null;
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).appendSuper(super.toString()).append("segments", this.segments.length).append("size", this.size()).toString();
+    }
+
+    private static class Table
+    {
+        private final long[]   keys;
+        private final Object[] values; // null value marks free slot, so key 0 doesn't need special handling.
+
+        private Table(final int capacity)
+        {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+        }
+    }
+
+    /**
+     * Linear probing hash table, modified only under write lock. <br>
+     * Lookups read table without locking and validate stamp of lock after that, table is never read past its length,
+     * so torn reads can only produce wrong result that is then discarded.
+     */
+    private static class Segment<V>
+    {
+        private static final float LOAD_FACTOR = .5f;
+
+        private final StampedLock lock = new StampedLock();
+        private Table table;
+        private int   size;
+        private int   maxFill;
+
+        private Segment(final int expected)
+        {
+            this.setTable(new Table(HashCommon.arraySize(expected, LOAD_FACTOR)));
+        }
+
+        private void setTable(final Table table)
+        {
+            this.table = table;
+            this.maxFill = HashCommon.maxFill(table.values.length, LOAD_FACTOR);
+        }
+
+        private V get(final long key, final int hash)
+        {
+            final long stamp = this.lock.tryOptimisticRead();
+            if (stamp != 0)
+            {
+                final V value = this.find(key, hash);
+                if (this.lock.validate(stamp))
+                {
+                    return value;
+                }
+            }
+            final long readStamp = this.lock.readLock();
+            try
+            {
+                return this.find(key, hash);
+            } finally
+            {
+                this.lock.unlockRead(readStamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private V find(final long key, final int hash)
+        {
+            final Table table = this.table;
+            final long[] keys = table.keys;
+            final Object[] values = table.values;
+            final int mask = values.length - 1;
+            for (int i = 0, pos = hash & mask; i <= mask; i++, pos = (pos + 1) & mask)
+            {
+                final Object value = values[pos];
+                if (value == null)
+                {
+                    return null;
+                }
+                if (keys[pos] == key)
+                {
+                    return (V) value;
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V put(final long key, final int hash, final V value, final boolean onlyIfAbsent)
+        {
+            final long[] keys = this.table.keys;
+            final Object[] values = this.table.values;
+            final int mask = values.length - 1;
+            int pos = hash & mask;
+            Object current;
+            while ((current = values[pos]) != null)
+            {
+                if (keys[pos] == key)
+                {
+                    if (! onlyIfAbsent)
+                    {
+                        values[pos] = value;
+                    }
+                    return (V) current;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = key;
+            values[pos] = value;
+            if (++ this.size >= this.maxFill)
+            {
+                this.rehash(values.length << 1);
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V remove(final long key, final int hash, final Object expected)
+        {
+            final long[] keys = this.table.keys;
+            final Object[] values = this.table.values;
+            final int mask = values.length - 1;
+            int pos = hash & mask;
+            Object current;
+            while ((current = values[pos]) != null)
+            {
+                if (keys[pos] == key)
+                {
+                    if ((expected != null) && ! expected.equals(current))
+                    {
+                        return null;
+                    }
+                    this.size--;
+                    this.shiftKeys(pos);
+                    return (V) current;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * Remove entry at given position, and shift following entries back, so there are no holes in their probe sequences.
+         */
+        private void shiftKeys(int pos)
+        {
+            final long[] keys = this.table.keys;
+            final Object[] values = this.table.values;
+            final int mask = values.length - 1;
+            int last;
+            while (true)
+            {
+                pos = ((last = pos) + 1) & mask;
+                while (true)
+                {
+                    if (values[pos] == null)
+                    {
+                        values[last] = null;
+                        return;
+                    }
+                    final int slot = (int) HashCommon.mix(keys[pos]) & mask;
+                    if ((last <= pos) ? ((last >= slot) || (slot > pos)) : ((last >= slot) && (slot > pos)))
+                    {
+                        break;
+                    }
+                    pos = (pos + 1) & mask;
+                }
+                keys[last] = keys[pos];
+                values[last] = values[pos];
+            }
+        }
+
+        private void rehash(final int capacity)
+        {
+            final Table old = this.table;
+            final Table table = new Table(capacity);
+            final int mask = capacity - 1;
+            for (int i = 0; i < old.values.length; i++)
+            {
+                final Object value = old.values[i];
+                if (value == null)
+                {
+                    continue;
+                }
+                final long key = old.keys[i];
+                int pos = (int) HashCommon.mix(key) & mask;
+                while (table.values[pos] != null)
+                {
+                    pos = (pos + 1) & mask;
+                }
+                table.keys[pos] = key;
+                table.values[pos] = value;
+            }
+            this.setTable(table);
+        }
+
+        private void clear()
+        {
+            this.size = 0;
+            this.setTable(new Table(this.table.values.length));
+        }
+    }
+}
@@ -24,6 +24,8 @@
 
 package org.diorite.utils.math.noise;
 
+import java.util.Arrays;
+
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
@@ -198,6 +200,98 @@ public abstract class NoiseGenerator
         return result;
     }
 
+    /**
+     * Generates noise for whole grid of 3D coordinates using the specified number of
+     * octaves and parameters, grid points are placed every 1 unit starting from given coordinates. <br>
+     * Values are this same as returned by {@link #noise(double, double, double, int, double, double, boolean)}
+     * for each point, and are stored with z changing fastest: {@code out[(((ix * sizeY) + iy) * sizeZ) + iz]}
+     *
+     * @param out        array to store noise in, must be at least of size sizeX * sizeY * sizeZ
+     * @param x          X-coordinate of first point
+     * @param y          Y-coordinate of first point
+     * @param z          Z-coordinate of first point
+     * @param sizeX      amount of points on X axis
+     * @param sizeY      amount of points on Y axis
+     * @param sizeZ      amount of points on Z axis
+     * @param octaves    Number of octaves to use
+     * @param frequency  How much to alter the frequency by each octave
+     * @param amplitude  How much to alter the amplitude by each octave
+     * @param normalized If true, normalize the value to [-1, 1]
+     *
+     * @return given array.
+     */
+    public double[] fill(final double[] out, final double x, final double y, final double z, final int sizeX, final int sizeY, final int sizeZ, final int octaves, final double frequency, final double amplitude, final boolean normalized)
+    {
+        final int size = sizeX * sizeY * sizeZ;
+        Arrays.fill(out, 0, size, 0);
+        final double[] xs = new double[sizeX];
+        final double[] ys = new double[sizeY];
+        final double[] zs = new double[sizeZ];
+        double amp = 1;
+        double freq = 1;
+        double max = 0;
+
+        for (int i = 0; i < octaves; i++)
+        {
+            fillCoords(xs, x, 1, freq);
+            fillCoords(ys, y, 1, freq);
+            fillCoords(zs, z, 1, freq);
+            this.addNoise(out, xs, ys, zs, amp);
+            max += amp;
+            freq *= frequency;
+            amp *= amplitude;
+        }
+
+        if (normalized)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                out[i] /= max;
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Adds noise of each point of given grid, multiplied by amplitude, to given array. <br>
+     * Values are stored with z changing fastest: {@code out[(((ix * ys.length) + iy) * zs.length) + iz]}
+     *
+     * @param out       array to add noise to, must be at least of size xs.length * ys.length * zs.length
+     * @param xs        X coordinates of grid
+     * @param ys        Y coordinates of grid
+     * @param zs        Z coordinates of grid
+     * @param amplitude value to multiply noise by
+     */
+    public void addNoise(final double[] out, final double[] xs, final double[] ys, final double[] zs, final double amplitude)
+    {
+        this.addNoisePerPoint(out, xs, ys, zs, amplitude);
+    }
+
+    /**
+     * Implementation of {@link #addNoise(double[], double[], double[], double[], double)} that use {@link #noise(double, double, double)} for each point.
+     *
+     * @param out       array to add noise to, must be at least of size xs.length * ys.length * zs.length
+     * @param xs        X coordinates of grid
+     * @param ys        Y coordinates of grid
+     * @param zs        Z coordinates of grid
+     * @param amplitude value to multiply noise by
+     */
+    protected final void addNoisePerPoint(final double[] out, final double[] xs, final double[] ys, final double[] zs, final double amplitude)
+    {
+        int index = 0;
+        for (final double x : xs)
+        {
+            for (final double y : ys)
+            {
+                for (final double z : zs)
+                {
+                    out[index++] += this.noise(x, y, z) * amplitude;
+                }
+            }
+        }
+    }
+
     @Override
     public String toString()
     {
@@ -216,6 +310,22 @@ public abstract class NoiseGenerator
         return (x >= 0) ? (int) x : ((int) x - 1);
     }
 
+    /**
+     * Fill given array with coordinates of grid, each coordinate is computed as {@code ((start + i) * scale) * frequency}
+     *
+     * @param coords    array to fill.
+     * @param start     first coordinate.
+     * @param scale     scale of coordinates.
+     * @param frequency frequency of octave.
+     */
+    protected static void fillCoords(final double[] coords, final double start, final double scale, final double frequency)
+    {
+        for (int i = 0; i < coords.length; i++)
+        {
+            coords[i] = ((start + i) * scale) * frequency;
+        }
+    }
+
     protected static double fade(final double x)
     {
         return x * x * x * ((x * ((x * 6) - 15)) + 10);
@@ -24,6 +24,8 @@
 
 package org.diorite.utils.math.noise;
 
+import java.util.Arrays;
+
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
@@ -249,6 +251,77 @@ public abstract class OctaveGenerator
         return result;
     }
 
+    /**
+     * Generates noise for whole grid of 3D coordinates using the specified number of
+     * octaves and parameters, grid points are placed every 1 unit (before scaling) starting from given coordinates. <br>
+     * Values are this same as returned by {@link #noise(double, double, double, double, double, boolean)}
+     * for each point, and are stored with z changing fastest: {@code out[(((ix * sizeY) + iy) * sizeZ) + iz]}
+     *
+     * @param out        array to store noise in, must be at least of size sizeX * sizeY * sizeZ
+     * @param x          X-coordinate of first point
+     * @param y          Y-coordinate of first point
+     * @param z          Z-coordinate of first point
+     * @param sizeX      amount of points on X axis
+     * @param sizeY      amount of points on Y axis
+     * @param sizeZ      amount of points on Z axis
+     * @param frequency  How much to alter the frequency by each octave
+     * @param amplitude  How much to alter the amplitude by each octave
+     * @param normalized If true, normalize the value to [-1, 1]
+     *
+     * @return given array.
+     */
+    public double[] fill(final double[] out, final double x, final double y, final double z, final int sizeX, final int sizeY, final int sizeZ, final double frequency, final double amplitude, final boolean normalized)
+    {
+        final int size = sizeX * sizeY * sizeZ;
+        Arrays.fill(out, 0, size, 0);
+        final double[] xs = new double[sizeX];
+        final double[] ys = new double[sizeY];
+        final double[] zs = new double[sizeZ];
+        double amp = 1;
+        double freq = 1;
+        double max = 0;
+
+        for (final NoiseGenerator octave : this.octaves)
+        {
+            NoiseGenerator.fillCoords(xs, x, this.xScale, freq);
+            NoiseGenerator.fillCoords(ys, y, this.yScale, freq);
+            NoiseGenerator.fillCoords(zs, z, this.zScale, freq);
+            octave.addNoise(out, xs, ys, zs, amp);
+            max += amp;
+            freq *= frequency;
+            amp *= amplitude;
+        }
+
+        if (normalized)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                out[i] /= max;
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Generates noise for whole grid of 2D coordinates, see {@link #fill(double[], double, double, double, int, int, int, double, double, boolean)}
+     *
+     * @param out        array to store noise in, must be at least of size sizeX * sizeY
+     * @param x          X-coordinate of first point
+     * @param y          Y-coordinate of first point
+     * @param sizeX      amount of points on X axis
+     * @param sizeY      amount of points on Y axis
+     * @param frequency  How much to alter the frequency by each octave
+     * @param amplitude  How much to alter the amplitude by each octave
+     * @param normalized If true, normalize the value to [-1, 1]
+     *
+     * @return given array.
+     */
+    public double[] fill(final double[] out, final double x, final double y, final int sizeX, final int sizeY, final double frequency, final double amplitude, final boolean normalized)
+    {
+        return this.fill(out, x, y, 0, sizeX, sizeY, 1, frequency, amplitude, normalized);
+    }
+
     @Override
     public String toString()
     {
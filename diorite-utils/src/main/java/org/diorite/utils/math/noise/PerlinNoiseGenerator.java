@@ -125,6 +125,72 @@ public class PerlinNoiseGenerator extends NoiseGenerator
         return lerp(fZ, lerp(fY, lerp(fX, grad(this.perm[AA], x, y, z), grad(this.perm[BA], x - 1, y, z)), lerp(fX, grad(this.perm[AB], x, y - 1, z), grad(this.perm[BB], x - 1, y - 1, z))), lerp(fY, lerp(fX, grad(this.perm[AA + 1], x, y, z - 1), grad(this.perm[BA + 1], x - 1, y, z - 1)), lerp(fX, grad(this.perm[AB + 1], x, y - 1, z - 1), grad(this.perm[BB + 1], x - 1, y - 1, z - 1))));
     }
 
+    @SuppressWarnings("SuspiciousNameCombination")
+    @Override
+    public void addNoise(final double[] out, final double[] xs, final double[] ys, final double[] zs, final double amplitude)
+    {
+        // everything that depends only on single coordinate is computed once per axis.
+        final int[] cubeXs = new int[xs.length];
+        final double[] relXs = new double[xs.length];
+        final double[] fadeXs = new double[xs.length];
+        prepareAxis(xs, this.offsetX, cubeXs, relXs, fadeXs);
+        final int[] cubeYs = new int[ys.length];
+        final double[] relYs = new double[ys.length];
+        final double[] fadeYs = new double[ys.length];
+        prepareAxis(ys, this.offsetY, cubeYs, relYs, fadeYs);
+        final int[] cubeZs = new int[zs.length];
+        final double[] relZs = new double[zs.length];
+        final double[] fadeZs = new double[zs.length];
+        prepareAxis(zs, this.offsetZ, cubeZs, relZs, fadeZs);
+
+        final int[] perm = this.perm;
+        int index = 0;
+        for (int ix = 0; ix < xs.length; ix++)
+        {
+            final int X = cubeXs[ix];
+            final double x = relXs[ix];
+            final double fX = fadeXs[ix];
+            final int permX = perm[X];
+            final int permX1 = perm[X + 1];
+            for (int iy = 0; iy < ys.length; iy++)
+            {
+                final int Y = cubeYs[iy];
+                final double y = relYs[iy];
+                final double fY = fadeYs[iy];
+                final int A = permX + Y;
+                final int B = permX1 + Y;
+                final int permA = perm[A];
+                final int permA1 = perm[A + 1];
+                final int permB = perm[B];
+                final int permB1 = perm[B + 1];
+                for (int iz = 0; iz < zs.length; iz++)
+                {
+                    final int Z = cubeZs[iz];
+                    final double z = relZs[iz];
+                    final double fZ = fadeZs[iz];
+                    final int AA = permA + Z;
+                    final int AB = permA1 + Z;
+                    final int BA = permB + Z;
+                    final int BB = permB1 + Z;
+
+                    out[index++] += lerp(fZ, lerp(fY, lerp(fX, grad(perm[AA], x, y, z), grad(perm[BA], x - 1, y, z)), lerp(fX, grad(perm[AB], x, y - 1, z), grad(perm[BB], x - 1, y - 1, z))), lerp(fY, lerp(fX, grad(perm[AA + 1], x, y, z - 1), grad(perm[BA + 1], x - 1, y, z - 1)), lerp(fX, grad(perm[AB + 1], x, y - 1, z - 1), grad(perm[BB + 1], x - 1, y - 1, z - 1)))) * amplitude;
+                }
+            }
+        }
+    }
+
+    private static void prepareAxis(final double[] coords, final double offset, final int[] cubes, final double[] rel, final double[] fades)
+    {
+        for (int i = 0; i < coords.length; i++)
+        {
+            final double coord = coords[i] + offset;
+            final int floor = floor(coord);
+            cubes[i] = floor & 255;
+            rel[i] = coord - floor;
+            fades[i] = fade(rel[i]);
+        }
+    }
+
     /**
      * Computes and returns the 1D unseeded perlin noise for the given
      * coordinates in 1D space
@@ -83,6 +83,13 @@ public class SimplexNoiseGenerator extends PerlinNoiseGenerator
         offsetW = rand.nextDouble() * 256;
     }
 
+    @Override
+    public void addNoise(final double[] out, final double[] xs, final double[] ys, final double[] zs, final double amplitude)
+    {
+        // skew of simplex noise depends on all coordinates, so there is nothing to compute once per axis.
+        this.addNoisePerPoint(out, xs, ys, zs, amplitude);
+    }
+
     @Override
     public double noise(double xin, double yin, double zin)
     {
@@ -0,0 +1,246 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.utils.collections.maps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("MagicNumber")
+public class ConcurrentLong2ObjectHashMapTest extends TestCase
+{
+    private static final int THREADS = 8;
+
+    private static long randomKey(final Random random)
+    {
+        switch (random.nextInt(10))
+        {
+            case 0:
+                return 0;
+            case 1:
+                return (random.nextBoolean()) ? Long.MIN_VALUE : Long.MAX_VALUE;
+            case 2:
+                return random.nextLong(); // almost always missing
+            default:
+                return random.nextInt(2000) - 1000;
+        }
+    }
+
+    private static void checkRandomOperations(final int segmentBits, final long seed)
+    {
+        final Random random = new Random(seed);
+        final ConcurrentLong2ObjectHashMap<Object> map = new ConcurrentLong2ObjectHashMap<>(4, segmentBits);
+        final Map<Long, Object> expected = new HashMap<>(100);
+        for (int i = 0; i < 200_000; i++)
+        {
+            final long key = randomKey(random);
+            final String msg = "[" + segmentBits + ", " + seed + "] Operation " + i + " on key " + key + " must be this same as in HashMap!";
+            switch (random.nextInt(9))
+            {
+                case 0:
+                case 1:
+                {
+                    final Object value = new Object();
+                    assertEquals(msg, expected.put(key, value), map.put(key, value));
+                    break;
+                }
+                case 2:
+                {
+                    final Object value = new Object();
+                    assertEquals(msg, expected.putIfAbsent(key, value), map.putIfAbsent(key, value));
+                    break;
+                }
+                case 3:
+                {
+                    final Object value = new Object();
+                    assertEquals(msg, expected.computeIfAbsent(key, k -> value), map.computeIfAbsent(key, k -> value));
+                    break;
+                }
+                case 4:
+                    assertEquals(msg, expected.remove(key), map.remove(key));
+                    break;
+                case 5:
+                {
+                    final Object value = (random.nextBoolean()) ? expected.get(key) : new Object();
+                    assertEquals(msg, expected.remove(key, value), map.remove(key, value));
+                    break;
+                }
+                case 6:
+                    assertEquals(msg, expected.containsKey(key), map.containsKey(key));
+                    break;
+                default:
+                    assertEquals(msg, expected.get(key), map.get(key));
+                    break;
+            }
+            if (random.nextInt(50_000) == 0)
+            {
+                expected.clear();
+                map.clear();
+            }
+            if ((i % 1000) == 0)
+            {
+                assertEquals(msg, expected.size(), map.size());
+                assertEquals(msg, expected.isEmpty(), map.isEmpty());
+            }
+        }
+        for (final Map.Entry<Long, Object> entry : expected.entrySet())
+        {
+            assertTrue("[" + segmentBits + ", " + seed + "] Map must contain all values of HashMap!", map.get(entry.getKey()) == entry.getValue());
+        }
+        final Collection<Object> values = map.values();
+        assertEquals("[" + segmentBits + ", " + seed + "] Map can't contain any other values!", expected.size(), values.size());
+        final AtomicInteger count = new AtomicInteger();
+        map.forEachValue(v -> count.incrementAndGet());
+        assertEquals("[" + segmentBits + ", " + seed + "] Each value must be visited once!", expected.size(), count.get());
+    }
+
+    @org.junit.Test
+    public void testRandomOperations() throws Exception
+    {
+        checkRandomOperations(0, 1);
+        checkRandomOperations(2, 2);
+        checkRandomOperations(ConcurrentLong2ObjectHashMap.DEFAULT_SEGMENT_BITS, 3);
+    }
+
+    private static void runThreads(final Runnable runnable) throws InterruptedException
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++)
+        {
+            final Thread thread = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    runnable.run();
+                } catch (final Throwable e)
+                {
+                    error.compareAndSet(null, e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+        if (error.get() != null)
+        {
+            throw new AssertionError("Error in test thread.", error.get());
+        }
+    }
+
+    @org.junit.Test
+    public void testConcurrentComputeIfAbsent() throws Exception
+    {
+        final int keys = 20_000;
+        final ConcurrentLong2ObjectHashMap<AtomicInteger> map = new ConcurrentLong2ObjectHashMap<>(4, 2);
+        final AtomicInteger created = new AtomicInteger();
+        final Object[][] results = new Object[THREADS][keys];
+        final AtomicInteger threadIndex = new AtomicInteger();
+        runThreads(() -> {
+            final Object[] result = results[threadIndex.getAndIncrement()];
+            for (int i = 0; i < keys; i++)
+            {
+                final AtomicInteger value = map.computeIfAbsent(i * 31L, k -> {
+                    created.incrementAndGet();
+                    return new AtomicInteger();
+                });
+                value.incrementAndGet();
+                result[i] = value;
+            }
+        });
+        assertEquals("Each value must be created only once!", keys, created.get());
+        assertEquals("Map must contain all values!", keys, map.size());
+        for (int i = 0; i < keys; i++)
+        {
+            final AtomicInteger value = map.get(i * 31L);
+            assertEquals("Each thread must get value of key once!", THREADS, value.get());
+            for (final Object[] result : results)
+            {
+                assertTrue("All threads must get this same value!", result[i] == value);
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testReadsDuringWrites() throws Exception
+    {
+        final int stable = 1000;
+        final ConcurrentLong2ObjectHashMap<Object> map = new ConcurrentLong2ObjectHashMap<>(4, 0);
+        final Object[] values = new Object[stable];
+        for (int i = 0; i < stable; i++)
+        {
+            values[i] = new Object();
+            map.put(i, values[i]);
+        }
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger threadIndex = new AtomicInteger();
+        runThreads(() -> {
+            final int index = threadIndex.getAndIncrement();
+            if (index == 0)
+            {
+                // writer, causes rehashes and shifting of entries after removal.
+                final Random random = new Random(index);
+                for (int i = 0; i < 500_000; i++)
+                {
+                    final long key = stable + random.nextInt(50_000);
+                    if (random.nextBoolean())
+                    {
+                        map.put(key, key);
+                    }
+                    else
+                    {
+                        map.remove(key);
+                    }
+                }
+                running.set(false);
+                return;
+            }
+            while (running.get())
+            {
+                for (int i = 0; i < stable; i++)
+                {
+                    if (map.get(i) != values[i])
+                    {
+                        throw new AssertionError("Value of key " + i + " must be visible during writes!");
+                    }
+                }
+            }
+        });
+    }
+}
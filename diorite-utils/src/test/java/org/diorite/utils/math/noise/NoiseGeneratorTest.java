@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016. Diorite (by Bartłomiej Mazur (aka GotoFinal))
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.diorite.utils.math.noise;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("MagicNumber")
+public class NoiseGeneratorTest extends TestCase
+{
+    private static final int    SIZE_X  = 5;
+    private static final int    SIZE_Y  = 7;
+    private static final int    SIZE_Z  = 6;
+    private static final double GARBAGE = 12345;
+
+    @org.junit.Test
+    public void testNoiseGeneratorFill() throws Exception
+    {
+        for (final NoiseGenerator generator : new NoiseGenerator[]{new PerlinNoiseGenerator(1), new SimplexNoiseGenerator(1)})
+        {
+            for (final boolean normalized : new boolean[]{false, true})
+            {
+                checkNoiseGenerator(generator, - 37.25, 0.5, 1003.75, 1, 1, normalized);
+                checkNoiseGenerator(generator, 13.1, - 64.3, - 9.9, 4, 2.0, normalized);
+                checkNoiseGenerator(generator, - 0.5, 200, 0.125, 6, 1.7, normalized);
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void testOctaveGeneratorFill() throws Exception
+    {
+        for (final OctaveGenerator generator : new OctaveGenerator[]{new PerlinOctaveGenerator(2, 8), new SimplexOctaveGenerator(2, 8)})
+        {
+            for (final boolean normalized : new boolean[]{false, true})
+            {
+                generator.setScale(1);
+                checkOctaveGenerator(generator, - 37.25, 0.5, 1003.75, 2, normalized);
+                generator.setXScale(1 / 64.0);
+                generator.setYScale(1 / 8.0);
+                generator.setZScale(1 / 200.0);
+                checkOctaveGenerator(generator, 13.1, - 64.3, - 9.9, 2, normalized);
+                checkOctaveGenerator(generator, - 1000, 3, 70000.5, 1.7, normalized);
+            }
+        }
+    }
+
+    private static void checkNoiseGenerator(final NoiseGenerator generator, final double x, final double y, final double z, final int octaves, final double frequency, final boolean normalized)
+    {
+        final String msg = generator.getClass().getSimpleName() + " (" + x + ", " + y + ", " + z + ", octaves: " + octaves + ", normalized: " + normalized + ") ";
+        final double[] values3D = createArray(SIZE_X * SIZE_Y * SIZE_Z);
+        generator.fill(values3D, x, y, z, SIZE_X, SIZE_Y, SIZE_Z, octaves, frequency, 0.5, normalized);
+        checkGarbage(msg, values3D, SIZE_X * SIZE_Y * SIZE_Z);
+        final double[] values2D = createArray(SIZE_X * SIZE_Y);
+        generator.fill(values2D, x, y, 0, SIZE_X, SIZE_Y, 1, octaves, frequency, 0.5, normalized);
+        checkGarbage(msg, values2D, SIZE_X * SIZE_Y);
+        int index = 0;
+        for (int ix = 0; ix < SIZE_X; ix++)
+        {
+            for (int iy = 0; iy < SIZE_Y; iy++)
+            {
+                assertEquals(msg + "2D bulk noise must be this same as point noise!", generator.noise(x + ix, y + iy, octaves, frequency, 0.5, normalized), values2D[(ix * SIZE_Y) + iy], 0);
+                for (int iz = 0; iz < SIZE_Z; iz++)
+                {
+                    assertEquals(msg + "3D bulk noise must be this same as point noise!", generator.noise(x + ix, y + iy, z + iz, octaves, frequency, 0.5, normalized), values3D[index++], 0);
+                }
+            }
+        }
+    }
+
+    private static void checkOctaveGenerator(final OctaveGenerator generator, final double x, final double y, final double z, final double frequency, final boolean normalized)
+    {
+        final String msg = generator.getClass().getSimpleName() + " (" + x + ", " + y + ", " + z + ", scale: " + generator.getXScale() + ", normalized: " + normalized + ") ";
+        final double[] values3D = createArray(SIZE_X * SIZE_Y * SIZE_Z);
+        generator.fill(values3D, x, y, z, SIZE_X, SIZE_Y, SIZE_Z, frequency, 0.5, normalized);
+        checkGarbage(msg, values3D, SIZE_X * SIZE_Y * SIZE_Z);
+        final double[] values2D = createArray(SIZE_X * SIZE_Y);
+        generator.fill(values2D, x, y, SIZE_X, SIZE_Y, frequency, 0.5, normalized);
+        checkGarbage(msg, values2D, SIZE_X * SIZE_Y);
+        int index = 0;
+        for (int ix = 0; ix < SIZE_X; ix++)
+        {
+            for (int iy = 0; iy < SIZE_Y; iy++)
+            {
+                assertEquals(msg + "2D bulk noise must be this same as point noise!", generator.noise(x + ix, y + iy, frequency, 0.5, normalized), values2D[(ix * SIZE_Y) + iy], 0);
+                for (int iz = 0; iz < SIZE_Z; iz++)
+                {
+                    assertEquals(msg + "3D bulk noise must be this same as point noise!", generator.noise(x + ix, y + iy, z + iz, frequency, 0.5, normalized), values3D[index++], 0);
+                }
+            }
+        }
+    }
+
+    // array is filled with garbage and is bigger than needed, fill must clear only used part of it.
+    private static double[] createArray(final int size)
+    {
+        final double[] array = new double[size + 3];
+        Arrays.fill(array, GARBAGE);
+        return array;
+    }
+
+    private static void checkGarbage(final String msg, final double[] array, final int size)
+    {
+        for (int i = size; i < array.length; i++)
+        {
+            assertEquals(msg + "Values after grid can't be changed!", GARBAGE, array[i], 0);
+        }
+    }
+}
@@ -171,6 +171,15 @@ public class ServerConnection extends Thread implements ConnectionHandler
         }
     }
 
+    @Override
+    public void flush()
+    {
+        for (final NetworkManager networkManager : this.connections)
+        {
+            networkManager.flush();
+        }
+    }
+
     public ChannelFuture getChannelFuture()
     {
         return this.channelFuture;
@@ -33,12 +33,8 @@ import org.slf4j.Logger;
 import org.diorite.impl.CoreMain;
 import org.diorite.impl.DioriteCore;
 import org.diorite.impl.connection.CoreNetworkManager;
-import org.diorite.impl.connection.packets.Packet;
-import org.diorite.impl.connection.packets.play.PacketPlayClientboundListener;
 import org.diorite.impl.connection.packets.play.PacketPlayServerboundListener;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundDisconnect;
-import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundEntityHeadRotation;
-import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundEntityLook;
 import org.diorite.impl.connection.packets.play.serverbound.PacketPlayServerboundAbilities;
 import org.diorite.impl.connection.packets.play.serverbound.PacketPlayServerboundArmAnimation;
 import org.diorite.impl.connection.packets.play.serverbound.PacketPlayServerboundBlockDig;
@@ -70,7 +66,6 @@ import org.diorite.impl.connection.packets.play.serverbound.PacketPlayServerboun
 import org.diorite.impl.connection.packets.play.serverbound.PacketPlayServerboundUseItem;
 import org.diorite.impl.connection.packets.play.serverbound.PacketPlayServerboundVehicleMove;
 import org.diorite.impl.connection.packets.play.serverbound.PacketPlayServerboundWindowClick;
-import org.diorite.impl.entity.IEntity;
 import org.diorite.impl.entity.IPlayer;
 import org.diorite.impl.input.InputAction;
 import org.diorite.impl.input.InputActionType;
@@ -152,59 +147,20 @@ public class PlayListener implements PacketPlayServerboundListener
     @Override
     public void handle(final PacketPlayServerboundPositionLook packet)
     {
-        // TODO: don't sync packets when client sends too much of them
-        final IPlayer player = this.player;
-        if ((player.getX() == packet.getX()) && (player.getY() == packet.getY()) && (player.getZ() == packet.getZ()))
-        {
-            if ((player.getYaw() == packet.getYaw()) && (player.getPitch() == packet.getPitch()))
-            {
-                return;
-            }
-            this.core.sync(() -> player.setRotation(packet.getYaw(), packet.getPitch()), player);
-            return;
-        }
-        if ((player.getYaw() == packet.getYaw()) && (player.getPitch() == packet.getPitch()))
-        {
-            this.core.sync(() -> player.setPosition(packet.getX(), packet.getY(), packet.getZ()), player);
-            return;
-        }
-        this.core.sync(() -> player.setPositionAndRotation(packet.getX(), packet.getY(), packet.getZ(), packet.getYaw(), packet.getPitch()), player);
-        this.core.getPlayersManager().forEachExcept(this.player, p -> p.getWorld().equals(this.player.getWorld()), this.packetAndHeadRotation(this.player, new PacketPlayClientboundEntityLook(this.player.getId(), player.getYaw(), player.getPitch(), player.isOnGround())));
+        // movement is applied once per tick, and broadcast by entity tracker.
+        this.player.getMovementMailbox().offerPositionAndRotation(packet.getX(), packet.getY(), packet.getZ(), packet.getYaw(), packet.getPitch());
     }
 
     @Override
     public void handle(final PacketPlayServerboundPosition packet)
     {
-        final IPlayer player = this.player;
-        if ((player.getX() == packet.getX()) && (player.getY() == packet.getY()) && (player.getZ() == packet.getZ()))
-        {
-            return;
-        }
-        // TODO: don't sync packets when client sends too much of them
-        this.core.sync(() -> player.setPosition(packet.getX(), packet.getY(), packet.getZ()), player);
+        this.player.getMovementMailbox().offerPosition(packet.getX(), packet.getY(), packet.getZ());
     }
 
     @Override
     public void handle(final PacketPlayServerboundLook packet)
     {
-        final IPlayer player = this.player;
-        if ((player.getYaw() == packet.getYaw()) && (player.getPitch() == packet.getPitch()))
-        {
-            return;
-        }
-        // TODO: don't sync packets when client sends too much of them
-        this.core.sync(() -> player.setRotation(packet.getYaw(), packet.getPitch()), player);
-        this.core.getPlayersManager().forEachExcept(this.player, p -> p.getWorld().equals(this.player.getWorld()), this.packetAndHeadRotation(this.player, new PacketPlayClientboundEntityLook(this.player.getId(), player.getYaw(), player.getPitch(), player.isOnGround())));
-    }
-
-    private Packet<PacketPlayClientboundListener>[] packetAndHeadRotation(final IEntity e, final Packet<PacketPlayClientboundListener> base)
-    {
-        final Packet<PacketPlayClientboundListener>[] packets = new Packet[2];
-
-        packets[0] = base;
-        packets[1] = new PacketPlayClientboundEntityHeadRotation(e.getId(), e.getYaw());
-
-        return packets;
+        this.player.getMovementMailbox().offerRotation(packet.getYaw(), packet.getPitch());
     }
 
     @Override
@@ -122,6 +122,15 @@ public class ClientConnection extends Thread implements ConnectionHandler
     {
     }
 
+    @Override
+    public void flush()
+    {
+        if (this.connection != null)
+        {
+            this.connection.flush();
+        }
+    }
+
     public ChannelFuture getChannelFuture()
     {
         return this.channelFuture;
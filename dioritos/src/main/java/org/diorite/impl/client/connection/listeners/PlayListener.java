@@ -54,6 +54,7 @@ import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboun
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundKeepAlive;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundLogin;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundMapChunk;
+import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundMultiBlockChange;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundNamedEntitySpawn;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundNamedSoundEffect;
 import org.diorite.impl.connection.packets.play.clientbound.PacketPlayClientboundOpenWindow;
@@ -166,6 +167,12 @@ public class PlayListener implements PacketPlayClientboundListener
 
     }
 
+    @Override
+    public void handle(final PacketPlayClientboundMultiBlockChange packet)
+    {
+
+    }
+
     @Override
     public void handle(final PacketPlayClientboundTabComplete packet)
     {